@@ -0,0 +1,216 @@
+package application;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import metabolicNetwork.Compound;
+
+/*
+ * A set of compounds of a PrecursorSet: a bit set, one bit per compound,
+ * for the membership, union, subset and equality tests a word at a time,
+ * and the compounds in the order they were added, which the getters of
+ * PrecursorSet return and the outputs print.
+ *
+ * The bit of a compound is given by an index shared by all the sets and
+ * keyed like Compound.equals, so that the same compound of two copies of
+ * the network has the same bit. Compound.getIdxBitSet can not be used:
+ * it is only assigned by Main.assignIdx2CompoundsAndReactions, the sources
+ * and the other compounds are numbered from 0 each, and the compounds added
+ * afterwards (TARGET, the many-to-one network) keep 0.
+ */
+class CompoundBitSet implements java.io.Serializable {
+
+	private static final long serialVersionUID = 4416125387032641349L;
+
+	private static final ConcurrentMap<Compound, Integer> indices = new ConcurrentHashMap<Compound, Integer>();
+	private static final AtomicInteger nbIndices = new AtomicInteger(0);
+
+	private long[] words = new long[1];
+	private final List<Compound> compounds;
+
+	CompoundBitSet() {
+		this.compounds = new ArrayList<Compound>();
+	}
+
+	CompoundBitSet(CompoundBitSet other) {
+		this.words = other.words.clone();
+		this.compounds = new ArrayList<Compound>(other.compounds);
+	}
+
+	static int indexOf(Compound c) {
+		Integer i = indices.get(c);
+		if (i == null) {
+			Integer newIndex = nbIndices.getAndIncrement();
+			i = indices.putIfAbsent(c, newIndex);
+			if (i == null) {
+				i = newIndex;
+			}
+		}
+		return i;
+	}
+
+	/*
+	 * The compounds in the order they were added. Sorting the list is fine,
+	 * any other change must go through the methods of this class.
+	 */
+	List<Compound> list() {
+		return this.compounds;
+	}
+
+	int size() {
+		return this.compounds.size();
+	}
+
+	private boolean get(int i) {
+		int w = i >>> 6;
+		return w < this.words.length && (this.words[w] & (1L << i)) != 0;
+	}
+
+	private void set(int i) {
+		int w = i >>> 6;
+		if (w >= this.words.length) {
+			long[] grown = new long[Math.max(w + 1, 2 * this.words.length)];
+			System.arraycopy(this.words, 0, grown, 0, this.words.length);
+			this.words = grown;
+		}
+		this.words[w] |= 1L << i;
+	}
+
+	boolean contains(Compound c) {
+		return get(indexOf(c));
+	}
+
+	boolean add(Compound c) {
+		int i = indexOf(c);
+		if (get(i)) {
+			return false;
+		}
+		set(i);
+		this.compounds.add(c);
+		return true;
+	}
+
+	/*
+	 * Adds the compounds of other not in this set yet, in their order in
+	 * other.
+	 */
+	void addAll(CompoundBitSet other) {
+		if (other.isSubSetOf(this)) {
+			return;
+		}
+		for (Compound c : other.compounds) {
+			add(c);
+		}
+	}
+
+	void addAll(Collection<Compound> l) {
+		for (Compound c : l) {
+			add(c);
+		}
+	}
+
+	void remove(Compound c) {
+		int i = indexOf(c);
+		if (get(i)) {
+			this.words[i >>> 6] &= ~(1L << i);
+			this.compounds.remove(c);
+		}
+	}
+
+	void clear() {
+		this.words = new long[1];
+		this.compounds.clear();
+	}
+
+	boolean isSubSetOf(CompoundBitSet other) {
+		if (size() > other.size()) {
+			return false;
+		}
+		for (int w = 0; w < this.words.length; ++w) {
+			if (this.words[w] != 0
+					&& (w >= other.words.length || (this.words[w] & ~other.words[w]) != 0)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	boolean isSameSetAs(CompoundBitSet other) {
+		return size() == other.size() && isSubSetOf(other);
+	}
+
+	boolean intersects(CompoundBitSet other) {
+		int n = Math.min(this.words.length, other.words.length);
+		for (int w = 0; w < n; ++w) {
+			if ((this.words[w] & other.words[w]) != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * The bits of the compounds of the set, in increasing order.
+	 */
+	int[] indices() {
+		int[] indices = new int[size()];
+		int k = 0;
+		for (int w = 0; w < this.words.length; ++w) {
+			long word = this.words[w];
+			while (word != 0) {
+				indices[k++] = (w << 6) + Long.numberOfTrailingZeros(word);
+				word &= word - 1;
+			}
+		}
+		return indices;
+	}
+
+	/*
+	 * Whether a1 U a2 is a subset of b1 U b2.
+	 */
+	static boolean isUnionSubSetOf(CompoundBitSet a1, CompoundBitSet a2,
+			CompoundBitSet b1, CompoundBitSet b2) {
+		int n = Math.max(a1.words.length, a2.words.length);
+		for (int w = 0; w < n; ++w) {
+			long a = word(a1, w) | word(a2, w);
+			if (a != 0 && (a & ~(word(b1, w) | word(b2, w))) != 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * The words of the bit set without the trailing zeros, equal for two
+	 * equal sets.
+	 */
+	long[] trimmedWords() {
+		return trim(this.words);
+	}
+
+	static long[] unionWords(CompoundBitSet a1, CompoundBitSet a2) {
+		long[] union = new long[Math.max(a1.words.length, a2.words.length)];
+		for (int w = 0; w < union.length; ++w) {
+			union[w] = word(a1, w) | word(a2, w);
+		}
+		return trim(union);
+	}
+
+	private static long[] trim(long[] words) {
+		int n = words.length;
+		while (n > 0 && words[n - 1] == 0) {
+			--n;
+		}
+		long[] trimmed = new long[n];
+		System.arraycopy(words, 0, trimmed, 0, n);
+		return trimmed;
+	}
+
+	private static long word(CompoundBitSet s, int w) {
+		return w < s.words.length ? s.words[w] : 0L;
+	}
+}
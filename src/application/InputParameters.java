@@ -5,6 +5,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import metabolicNetwork.Compound;
+import utils.IndicatorLinkStrategy;
 
 public class InputParameters {
 	private static List<Compound> inputCompounds = new ArrayList<Compound>();
@@ -31,6 +32,8 @@ public class InputParameters {
 	public static boolean randomChoices = true;
 	public static int     stopNoNew = 0;
 	public static int	  nbThreads = 1;
+	public static int	  nbWorkers = 1;
+	public static int	  nbPivots = 0;
 	public static String  forceSources = "";
 	public static String  filterPairedCofactors = "";
 	public static File  dirPrecursorSolutions = new File("");
@@ -44,11 +47,28 @@ public class InputParameters {
 	public static boolean modeDuplicatingMachinery = false;
 	public static boolean modeSteadyState = false;
 	public static boolean modeCheckSolutionsOnly = false;
+	public static boolean stopAtFirstFalse = false;
 	public static boolean checkMinimality;
 	public static boolean addReactionsToSolutions = false;
 	public static boolean addCumulatedCompoundsToSolutions = false;
 	public static boolean fbaCheck;
 	public static int TiLim;
+	public static String solver = "cplex";
+	public static boolean singlePassEnumeration = false;
+	public static String  streamFormat = "";
+	public static int     streamFlushEvery = 1000;
+	public static long    streamFlushDelay = 5000;
+	public static boolean checkpoint = false;
+	public static int     checkpointSyncEvery = 100;
+	public static long    checkpointSyncDelay = 10000;
+	public static boolean compressNetwork = false;
+	public static boolean removeBlockedReactions = false;
+	public static IndicatorLinkStrategy indicatorLink = null;
+	public static boolean benchmarkLinks = false;
+	public static File    metricsFile = null;
+	public static int     metricsEvery = 10;
+	public static File    diagnosticsDir = null;
+	public static int     diagnosticsFirst = 1;
 
 	
 	public static List<Compound> getInputCompounds() {
@@ -18,9 +18,11 @@ along with PITUFO.  If not, see <http://www.gnu.org/licenses/>.
  */
 package application;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
@@ -31,6 +33,10 @@ import metabolicNetwork.Reaction;
 import pitufolandia.Pitufrankstein;
 import pitufolandia.Sasita;
 import utils.ArgumentParser;
+import utils.BlockedReactionFinder;
+import utils.Diagnostics;
+import utils.IndicatorLinkStrategy;
+import utils.Metrics;
 import utils.SolutionChecker;
 import utils.StringUtils;
 
@@ -55,6 +61,7 @@ public class Main {
 			
 			InputParameters.oneByOne = p.hasOption("o");
 			InputParameters.nbThreads = p.hasOption("nbThreads") ? Integer.parseInt(p.getOption("nbThreads")) : 1;
+			InputParameters.nbWorkers = p.hasOption("nbWorkers") ? Integer.parseInt(p.getOption("nbWorkers")) : 1;
 			InputParameters.considerOnlyUserDefinedPrecursors =  p.hasOption("udpo") ? true : false;
 			InputParameters.noPreprocessing = p.hasOption("nopreprocess") ? true : false;
 			InputParameters.verbose =  p.hasOption("verbose") ? true : false;
@@ -66,9 +73,23 @@ public class Main {
 			InputParameters.modeDuplicatingMachinery = p.hasOption("dupMach") ? true : false;
 			InputParameters.modeSteadyState = p.hasOption("steadyState") ? true : false;
 			InputParameters.modeCheckSolutionsOnly = p.hasOption("checkSolsOnly") ? true : false;
+			InputParameters.stopAtFirstFalse = p.hasOption("stopAtFalse") ? true : false;
 			InputParameters.addReactionsToSolutions = p.hasOption("addReactions") ? true : false;
 			InputParameters.addCumulatedCompoundsToSolutions = p.hasOption("addCumulated") ? true : false;
 			InputParameters.TiLim = p.hasOption("tiLim") ? Integer.parseInt(p.getOption("tiLim")) : 3600;
+			InputParameters.solver = p.hasOption("solver") ? p.getOption("solver") : "cplex";
+			InputParameters.singlePassEnumeration = p.hasOption("singlePass") ? true : false;
+			InputParameters.nbPivots = p.hasOption("pivots") ? Integer.parseInt(p.getOption("pivots")) : 0;
+			InputParameters.streamFormat = p.hasOption("stream") ? p.getOption("stream") : "";
+			InputParameters.checkpoint = p.hasOption("checkpoint") ? true : false;
+			InputParameters.compressNetwork = p.hasOption("compress") ? true : false;
+			InputParameters.removeBlockedReactions = p.hasOption("fva") ? true : false;
+			String link = p.hasOption("link") ? p.getOption("link") : "";
+			InputParameters.benchmarkLinks = p.hasOption("benchmarkLinks") ? true : false;
+			InputParameters.metricsFile = p.hasOption("metrics") ? new File(p.getOption("metrics")) : null;
+			InputParameters.metricsEvery = p.hasOption("metricsEvery") ? Integer.parseInt(p.getOption("metricsEvery")) : 10;
+			InputParameters.diagnosticsDir = p.hasOption("diagnostics") ? new File(p.getOption("diagnostics")) : null;
+			InputParameters.diagnosticsFirst = p.hasOption("diagnosticsFirst") ? Integer.parseInt(p.getOption("diagnosticsFirst")) : 1;
 
 
 			String sbmlFile = p.getOption("s");
@@ -82,12 +103,92 @@ public class Main {
 				printUsage();
 			}
 			
+			if (!InputParameters.solver.equals("cplex") && !InputParameters.solver.equals("java")){
+				System.err.println("[ERROR] Unknown solver " + InputParameters.solver + ", use either cplex or java.");
+				printUsage();
+			}
+			
+			if (InputParameters.singlePassEnumeration && (InputParameters.modeDuplicatingMachinery || InputParameters.modeSteadyState)){
+				System.err.println("[ERROR] -singlePass does not work with -dupMach or -steadyState.");
+				printUsage();
+			}
+			
+			if (!link.isEmpty()){
+				InputParameters.indicatorLink = IndicatorLinkStrategy.fromName(link);
+				if (InputParameters.indicatorLink == null){
+					System.err.println("[ERROR] Unknown link " + link + ", use either bigM, ifThen or logical.");
+					printUsage();
+				}
+			}
+			
+			if ((InputParameters.indicatorLink != null || InputParameters.benchmarkLinks) && !InputParameters.solver.equals("cplex")){
+				System.err.println("[ERROR] -link and -benchmarkLinks only work with the cplex solver.");
+				printUsage();
+			}
+			
+			if (InputParameters.benchmarkLinks && (!InputParameters.streamFormat.isEmpty() || InputParameters.checkpoint)){
+				System.err.println("[ERROR] -benchmarkLinks does not work with -stream or -checkpoint.");
+				printUsage();
+			}
+			
+			if (!InputParameters.streamFormat.isEmpty() && !InputParameters.streamFormat.equals("xml") && !InputParameters.streamFormat.equals("jsonl")){
+				System.err.println("[ERROR] Unknown stream format " + InputParameters.streamFormat + ", use either xml or jsonl.");
+				printUsage();
+			}
+			
+			if (!InputParameters.streamFormat.isEmpty() && InputParameters.checkMinimality){
+				System.err.println("[ERROR] -checkMin needs all the solutions in memory and does not work with -stream.");
+				printUsage();
+			}
+			
+			if (InputParameters.nbPivots < 0 || InputParameters.nbPivots > 16){
+				System.err.println("[ERROR] -pivots must be between 0 and 16.");
+				printUsage();
+			}
+			
+			if (InputParameters.compressNetwork && InputParameters.modeDuplicatingMachinery){
+				System.err.println("[ERROR] -compress does not work with -dupMach.");
+				printUsage();
+			}
+			
+			if (InputParameters.removeBlockedReactions && InputParameters.modeDuplicatingMachinery){
+				System.err.println("[ERROR] -fva does not work with -dupMach.");
+				printUsage();
+			}
+			
+			if (InputParameters.checkpoint && InputParameters.nbPivots > 0){
+				System.err.println("[ERROR] -checkpoint does not work with -pivots.");
+				printUsage();
+			}
+			
+			if (InputParameters.checkpoint && InputParameters.singlePassEnumeration){
+				System.err.println("[ERROR] -checkpoint does not work with -singlePass.");
+				printUsage();
+			}
+			
+			if (InputParameters.nbPivots > 0 && (InputParameters.modeDuplicatingMachinery || InputParameters.modeSteadyState)){
+				System.err.println("[ERROR] -pivots does not work with -dupMach or -steadyState.");
+				printUsage();
+			}
+			
+			if (InputParameters.stopAtFirstFalse && !InputParameters.modeCheckSolutionsOnly){
+				System.err.println("[ERROR] -stopAtFalse only works with -checkSolsOnly.");
+				printUsage();
+			}
+			
 			if (InputParameters.modeDuplicatingMachinery && InputParameters.modeSteadyState){
 				System.err.println("[ERROR] Incompatible modes. You should chose either -dupMach or -steadyState.");
 				printUsage();
 			}
 			
 			System.out.println("Number of threads: " + InputParameters.nbThreads);
+			
+			if (InputParameters.metricsFile != null && InputParameters.metricsEvery > 0){
+				Metrics.startExport(InputParameters.metricsFile, InputParameters.metricsEvery * 1000L);
+			}
+			if (InputParameters.diagnosticsDir != null){
+				Diagnostics.open(InputParameters.diagnosticsDir, InputParameters.diagnosticsFirst);
+			}
 
 			printGPLShortNotice();
 			System.out.println("SBML File:"+sbmlFile);
@@ -101,14 +202,17 @@ public class Main {
 			
 			// Check if in mode of checking solutions only
 			if (InputParameters.modeCheckSolutionsOnly){
+				int nbFalseSolutions = 0;
 				try {
 					SolutionChecker checker = new SolutionChecker(main.getNetwork(), InputParameters.getTargetCompounds());
-					checker.checkSolutions(solutionsToCheckFile);
+					nbFalseSolutions = checker.checkSolutions(solutionsToCheckFile,
+							InputParameters.nbThreads, InputParameters.stopAtFirstFalse);
 				} catch (Exception e) {
 					System.err.println(e.getMessage());
 				}
+				finishRun();
 				System.out.println("\nFinished at "+new Date());
-				System.exit(0);
+				System.exit(nbFalseSolutions > 0 ? -3 : 0);
 			}
 			
 			// Launch SASITA
@@ -121,6 +225,13 @@ public class Main {
 			finder.setBigM(InputParameters.bigM);
 			finder.setDuplicatingMachineryActive(InputParameters.modeDuplicatingMachinery);
 			finder.setSteadyState(InputParameters.modeSteadyState);
+			finder.setOutputName(sbmlFile + ".output");
+			if (InputParameters.benchmarkLinks){
+				finder.benchmarkIndicatorLinks(InputParameters.getTargetCompounds());
+				finishRun();
+				System.out.println("\nFinished at "+new Date());
+				System.exit(0);
+			}
 			List<PrecursorSet> solutions = finder.findPrecursorsInNetwork(InputParameters.getTargetCompounds());
 			
 			 /*Pitufrankstein finderTest = new Pitufrankstein(main.getNetwork(), false);
@@ -128,19 +239,35 @@ public class Main {
 			 finderTest.setBigM(InputParameters.bigM);
 			 List<PrecursorSet> solutions = finderTest.findPrecursorsInNetwork(InputParameters.getTargetCompounds());
 			*/
-			if (solutions != null){
-				finder.printSolutions2Xml(solutions, sbmlFile + ".output");
+			if (solutions != null && InputParameters.streamFormat.isEmpty()){
+				long t = Metrics.start();
+				finder.printSolutions2Xml(solutions, finder.getOutputName());
+				Metrics.stop("output.xml", t);
 			}
 			if (InputParameters.checkMinimality){
 				finder.checkMinimality(solutions);
 			}
 			
 			long estimatedTime = System.nanoTime() - startTime;
+			Metrics.stop("sasita.total", startTime);
+			finishRun();
 			
 			System.out.println("\nElapsed time: " + TimeUnit.NANOSECONDS.toMillis(estimatedTime) + "ms");
 			System.out.println("\nFinished at "+new Date());
 		}
 	}
+	
+	/*
+	 * Waits for the diagnostic files still to write and makes the last
+	 * export of the metrics registry, if -metrics was given.
+	 */
+	private static void finishRun(){
+		Diagnostics.close();
+		if (InputParameters.metricsFile != null){
+			Metrics.stopExport();
+			Metrics.write(InputParameters.metricsFile);
+		}
+	}
 	public static void printGPLShortNotice()
 	{
 		System.out.println("------------------------------SASITA------------------------------");
@@ -164,17 +291,32 @@ public class Main {
 		System.err.println("-bigM=X\t\tSet the value of bigM as X (default: 1000)");
 		System.err.println("-udpo\t\tConsider only user defined precursors as source\n\t\tcompounds");
 		System.err.println("-nbThreads=X\tSet as X the amount of threads for parallel \n\t\tprocessing (default: 1)");
+		System.err.println("-nbWorkers=X\tWith -o, process X targets at the same time, \n\t\tsplitting the -nbThreads threads between them \n\t\t(default: 1)");
 		System.err.println("-nopreprocess\tSkip optional preprocessing");
 		System.err.println("-addReactions\tAdd the IDs of the trigered reactions to each \n\t\tsolution");
 		System.err.println("-addCumulated\tAdd the IDs of the compounds that accumulate (Sv>0)\n\t to each \n\t\tsolution");
 		System.err.println("-checkMin\tCheck if all solutions are minimal (helps \n\t\tdetecting if parameters were correctly choosed)");
 		System.err.println("-fbaCheck\tCheck if each solution can really produce the\n\t\ttarget through a FBA test where all compounds can \n\t\taccumulate (helps detecting if parameters were \n\t\tcorrectly choosed)");
+		System.err.println("-solver=X\tMILP solver used by SASITA, cplex or java (the \n\t\tpure Java solver, no native library needed) \n\t\t(default: cplex)");
+		System.err.println("-singlePass\tEnumerate all minimal precursor sets of a target \n\t\tin a single branch-and-bound search, excluding each \n\t\tset found with a lazy cut instead of solving again");
+		System.err.println("-pivots=K\tSplit the search of each target in 2^K partitions \n\t\tfixing K sources as used or not used, enumerated \n\t\tby the -nbWorkers workers (default: 0)");
+		System.err.println("-stream=X\tWrite the solutions of each target to \n\t\t<target>_PS.X (<sbmlFile>.output_PS.X without \n\t\t-o) as they are found, X being xml or \n\t\tjsonl, instead of keeping them until the end");
+		System.err.println("-checkpoint\tLog the precursor sets of each target to \n\t\tcheckpointFor<target>.log while they are found, and \n\t\tresume from this log if the run was killed");
+		System.err.println("-link=X\tFormulation of the link between the indicator and \n\t\tthe flux of each source, bigM, ifThen or logical \n\t\t(default: logical for the default mode, bigM for \n\t\tthe others)");
+		System.err.println("-benchmarkLinks\tEnumerate each target with every -link and report \n\t\tthe time to the first solution and the total time");
+		System.err.println("-fva\t\tRemove the reactions that can carry no flux even \n\t\twith all the sources open, found by flux \n\t\tvariability with -nbThreads threads");
+		System.err.println("-compress\tMerge the linear chains of reactions before the \n\t\tsearch, -addReactions still gives the input reactions");
+		System.err.println("-metrics=F\tWrite the timers and counters of the run to F, \n\t\tas JSON if F ends with .json and as CSV otherwise");
+		System.err.println("-metricsEvery=X\tWith -metrics, also write F every X seconds \n\t\tduring the run, 0 to only write it at the end \n\t\t(default: 10)");
+		System.err.println("-diagnostics=D\tWrite the preprocessed networks and the MILP models \n\t\tto a new directory D/run-<date> (default: none)");
+		System.err.println("-diagnosticsFirst=N\tWith -diagnostics, only write the first N files \n\t\tof each kind (default: 1)");
 		System.err.println("-verbose\tPrints more information in the screen");
 		System.err.println("--------------------------Optional Modes--------------------------");
 		System.err.println("You can choose (optionally) one of the following modes:");
 		System.err.println("-dupMach\tRun using the duplicating machinery model");
 		System.err.println("-steadyState\tRun using the steady state model (Sv=0)\n");
-		System.err.println("-checkSolsOnly\tRun just a check of solutions given in the XML \n\t\tformat through the flag \"-p=<file>\" \n");
+		System.err.println("-checkSolsOnly\tRun just a check of solutions given in the XML \n\t\tformat through the flag \"-p=<file>\", with \n\t\t-nbThreads threads \n");
+		System.err.println("-stopAtFalse\tWith -checkSolsOnly, stop at the first false \n\t\tsolution of the file \n");
 		System.err.println("If no optional mode is selected, the default mode is ");
 		System.err.println("the Stoichiometric Factory mode (Sv>=0).");
 		System.err.println("------------------------------------------------------------------");
@@ -232,13 +374,17 @@ public class Main {
 	public Main(String sbmlFile, String inputFile) 
 	{
 			MetabolicNetwork network = new MetabolicNetwork();		
+			long t = Metrics.start();
 			network.parseSbmlFormat(sbmlFile);
+			Metrics.stop("sbml.parse", t);
 			
 			System.out.println("\nThe original network contains "+ network.getReactions().size()+" reactions and "+network.getCompounds().size()+" compounds.");
 			
 			this.setNetwork(network);
 			
+			t = Metrics.start();
 			this.readInputFile(inputFile);
+			Metrics.stop("sbml.readInput", t);
 	}
 
 	public MetabolicNetwork getNetwork() {
@@ -259,6 +405,7 @@ public class Main {
 
 		// remove catalyst compounds (present as substrate and product of the same reaction),
 		// orphans (compounds that are used by no reaction) and "empty" reaction (reaction with empty substrate or product list)
+		long t = Metrics.start();
 		network.removeCompoundsFromReactionsIfPresentAsSubstrateAndProduct();
 		if (!InputParameters.modeSteadyState){
 			// We don't remove empty reactions in the case of the steady state.
@@ -271,21 +418,30 @@ public class Main {
 		}
 		network.cleanRepeatedReactions();
 		network.cleanOrphanCompounds();
+		Metrics.stop("preprocess.cleanReactions", t);
 		
 		// remove unbalanced reactions
 		if(! InputParameters.noPreprocessing){
+			t = Metrics.start();
 			network.removeUnBalancedReactions();
+			Metrics.stop("preprocess.removeUnbalanced", t);
 			// remove co-factors if reaction remains still balanced
 			//fullNetwork = network.backupHardCopy();
+			t = Metrics.start();
 			network.removePairedCoFactors(true);
 			network.removeCO2();
+			Metrics.stop("preprocess.removeCofactors", t);
+			t = Metrics.start();
 			network.removeSubReactions();
+			Metrics.stop("preprocess.removeSubReactions", t);
 		}
 		// first decide which are the topological precursors
+		t = Metrics.start();
 		network.extendTopologicalPrecursors( InputParameters.precursorIfProducedOnlyByReversible );				
 
 		// All compounds defined as precursors have to be transformed in topological precursors
 		network.extendNonTopologicalPrecursors();
+		Metrics.stop("preprocess.markPrecursors", t);
 
 		List<Compound> listPrecursorOld = new ArrayList<Compound>();
 		List<Compound> listOfbootstraps = InputParameters.getBootstrapCompounds();
@@ -299,9 +455,11 @@ public class Main {
 		
 		// for Azrael: check if we can produce all targets if we use all sources and if we can produce something out of nothing
 		if(! InputParameters.noPreprocessing){
+			t = Metrics.start();
 			network.checkNetwork(InputParameters.getTargetCompounds(), compoundList);
 			network.cleanOrphanCompounds();
 			network.extendTopologicalPrecursors( InputParameters.precursorIfProducedOnlyByReversible );
+			Metrics.stop("preprocess.checkNetwork", t);
 		}
 
 		List<Compound> listPrecursorNew = new ArrayList<Compound>();
@@ -314,7 +472,9 @@ public class Main {
 		if(! InputParameters.noPreprocessing){
 			List<Compound> sourcesAndBootstraps = new ArrayList<Compound>(listPrecursorOld);
 			sourcesAndBootstraps.addAll(listOfbootstraps);
+			t = Metrics.start();
 			deleteRecursivelyReactionWithUnAcceptedSources(sourcesAndBootstraps);
+			Metrics.stop("preprocess.removeUnreachable", t);
 		}
 		int nRev=0;
 		for(Reaction rxn : network.getReactions().values()) 
@@ -323,8 +483,47 @@ public class Main {
 				nRev++;
 		}
 		System.out.println("\nNumber of reversible reactions : "+(nRev/2)+"\n");
+
+		if(InputParameters.removeBlockedReactions){
+			t = Metrics.start();
+			Set<String> keep = getTargetAndBootstrapIds();
+			List<Reaction> blocked = new BlockedReactionFinder(network, keep)
+					.findBlockedReactions(InputParameters.nbThreads);
+			for(Reaction r : blocked){
+				network.removeReaction(r);
+			}
+			network.cleanOrphanCompounds();
+			Metrics.stop("preprocess.fva", t);
+			Metrics.add("preprocess.blockedReactions", blocked.size());
+			System.out.println("Flux variability removed "+blocked.size()+" blocked reactions, the network has now "
+					+network.getReactions().size()+" reactions and "+network.getCompounds().size()+" compounds.\n");
+		}
+
+		if(InputParameters.compressNetwork){
+			t = Metrics.start();
+			Set<String> keep = getTargetAndBootstrapIds();
+			int nbMerged = network.compressLinearChains(keep, InputParameters.modeSteadyState);
+			Metrics.stop("preprocess.compress", t);
+			Metrics.add("preprocess.mergedReactions", nbMerged);
+			System.out.println("Compression merged "+nbMerged+" pairs of reactions, the network has now "
+					+network.getReactions().size()+" reactions and "+network.getCompounds().size()+" compounds.\n");
+		}
 	}
 	
+	/*
+	 * Compounds that the simplifications of the network must not remove.
+	 */
+	private Set<String> getTargetAndBootstrapIds(){
+		Set<String> ids = new HashSet<String>();
+		for(Compound c : InputParameters.getTargetCompounds()){
+			ids.add(c.getId());
+		}
+		for(Compound c : InputParameters.getBootstrapCompounds()){
+			ids.add(c.getId());
+		}
+		return ids;
+	}
+
 	public void assignIdx2CompoundsAndReactions(){
 		network.extendTopologicalPrecursors( InputParameters.precursorIfProducedOnlyByReversible );
 		// asign index to each compound (precursor, other source)
@@ -0,0 +1,54 @@
+package application;
+
+import java.util.List;
+
+/*
+ * Keeps only the inclusion-minimal precursor sets (compared on their
+ * precursors) among the sets added to it. Adding a set that has a stored
+ * subset is refused, and adding a set removes the stored supersets.
+ * The methods are synchronized because solver callbacks may add sets
+ * from several threads.
+ *
+ * The sets are kept in a PrecursorSetIndex, so that an add does not
+ * compare s with every stored set.
+ */
+public class MinimalPrecursorSetStore {
+
+	private PrecursorSetIndex sets = new PrecursorSetIndex();
+
+	/*
+	 * Returns true if s was stored, false if a subset of s (or s itself)
+	 * was already there.
+	 */
+	public synchronized boolean add(PrecursorSet s) {
+		if (containsSubsetOf(s)) {
+			return false;
+		}
+		// a stored set with the sources of s would be a subset, these are
+		// all strict supersets
+		for (PrecursorSet superset : sets.getSupersetsOf(s)) {
+			sets.remove(superset);
+		}
+		sets.add(s);
+		return true;
+	}
+
+	public synchronized boolean containsSubsetOf(PrecursorSet s) {
+		return sets.containsSubsetOf(s) || sets.contains(s);
+	}
+
+	public synchronized int size() {
+		return sets.size();
+	}
+
+	public synchronized void clear() {
+		sets = new PrecursorSetIndex();
+	}
+
+	/*
+	 * Copy of the stored sets, in insertion order.
+	 */
+	public synchronized List<PrecursorSet> getMinimalSets() {
+		return sets.getSets();
+	}
+}
@@ -44,8 +44,8 @@ public class PrecursorSet implements Comparable<PrecursorSet>, java.io.Serializa
 	 * 
 	 */
 	private static final long serialVersionUID = -8613887645675257673L;
-	private List<Compound> precursors;
-	private List<Compound> bootstraps;
+	private CompoundBitSet precursors;
+	private CompoundBitSet bootstraps;
 	private Set<Reaction> reactions;
 	private Set<Compound> cumulatedCompounds = new HashSet<Compound>();
 	
@@ -68,10 +68,10 @@ public class PrecursorSet implements Comparable<PrecursorSet>, java.io.Serializa
 		this.cumulatedCompounds.clear();
 	}
 
-	private List<Compound> byProducts = new ArrayList<Compound>();
-	private List<Compound> visitedCompounds = new ArrayList<Compound>();
-	private List<Compound> stopCompoundsSubstrates = new ArrayList<Compound>();
-	private List<Compound> stopCompoundsByProducts = new ArrayList<Compound>();
+	private CompoundBitSet byProducts = new CompoundBitSet();
+	private CompoundBitSet visitedCompounds = new CompoundBitSet();
+	private CompoundBitSet stopCompoundsSubstrates = new CompoundBitSet();
+	private CompoundBitSet stopCompoundsByProducts = new CompoundBitSet();
 	//private List<Compound> singleSourcesToProduceACompoundOnThePath = new ArrayList<Compound>();
 
 	private boolean stoppedPremature = false;
@@ -109,12 +109,12 @@ public class PrecursorSet implements Comparable<PrecursorSet>, java.io.Serializa
 	 */
 	public PrecursorSet() {
 		
-		precursors = new ArrayList<Compound>();
-		bootstraps = new ArrayList<Compound>();
+		precursors = new CompoundBitSet();
+		bootstraps = new CompoundBitSet();
 		reactions  = new HashSet<Reaction>();
 		//potentialStopCompounds = new HashSet<Compound>();
-		visitedCompounds = new ArrayList<Compound>();
-		setByProducts(new ArrayList<Compound>());
+		visitedCompounds = new CompoundBitSet();
+		byProducts = new CompoundBitSet();
 		//singleSourcesToProduceACompoundOnThePath = new ArrayList<Compound>();
 		this.reachedSizeK = false;
 		this.positiveNetProductionOfZeroCycle = false;
@@ -122,12 +122,12 @@ public class PrecursorSet implements Comparable<PrecursorSet>, java.io.Serializa
 
 	public PrecursorSet(int nbSources, int nbInternalCompounds, int nbReactions) {
 		
-		precursors = new ArrayList<Compound>();
-		bootstraps = new ArrayList<Compound>();
+		precursors = new CompoundBitSet();
+		bootstraps = new CompoundBitSet();
 		reactions  = new HashSet<Reaction>();
 		//potentialStopCompounds = new HashSet<Compound>();
-		visitedCompounds = new ArrayList<Compound>();
-		setByProducts(new ArrayList<Compound>());
+		visitedCompounds = new CompoundBitSet();
+		byProducts = new CompoundBitSet();
 		//singleSourcesToProduceACompoundOnThePath = new ArrayList<Compound>();
 		this.stoppedPremature = false;
 		this.reachedSizeK = false;
@@ -141,33 +141,17 @@ public class PrecursorSet implements Comparable<PrecursorSet>, java.io.Serializa
 	
 	public PrecursorSet(PrecursorSet sol) {
 		
-		this.precursors = new ArrayList<Compound>();
-		this.bootstraps = new ArrayList<Compound>(sol.getBootstraps());
+		this.precursors = new CompoundBitSet(sol.precursors);
+		this.bootstraps = new CompoundBitSet(sol.bootstraps);
 		this.reactions  = new HashSet<Reaction>();
-		this.stopCompoundsByProducts = new ArrayList<Compound>();
-		this.stopCompoundsSubstrates = new ArrayList<Compound>();
+		this.stopCompoundsByProducts = new CompoundBitSet(sol.stopCompoundsByProducts);
+		this.stopCompoundsSubstrates = new CompoundBitSet(sol.stopCompoundsSubstrates);
 		//potentialStopCompounds = new HashSet<Compound>(sol.getPotentialStopCompounds());
-		this.visitedCompounds = new ArrayList<Compound>();
-		this.byProducts = new ArrayList<Compound>();
+		this.visitedCompounds = new CompoundBitSet(sol.visitedCompounds);
+		// the by-products are filtered again on the sources
+		this.byProducts = new CompoundBitSet();
 		//this.singleSourcesToProduceACompoundOnThePath = new ArrayList<Compound>();
 		//this.bitSetSources = new byte[sol.getBitSetSources()==null? 0 : sol.getBitSetSources().length];
-		for(Compound c : sol.getPrecursors()){
-			addPrecursor(c);
-		}
-		
-		// add stop comounds
-		for(Compound c : sol.getStopCompoundsByProducts()){
-			addByProductAsStopCompound(c);
-		}
-		for(Compound c : sol.getStopCompoundsSubstrates()){
-			addSubstrateAsStopCompound(c);
-		}
-		
-		// add visited compounds
-		for(Compound c : sol.getVisitedCompounds()){
-			addVisitedCompound(c);
-		}
-		
 		// add by-products
 		for(Compound c : sol.getByProducts()){
 			addByProduct(c);
@@ -191,34 +175,17 @@ public class PrecursorSet implements Comparable<PrecursorSet>, java.io.Serializa
 	
     public PrecursorSet(PrecursorSet sol, boolean stochiometricFeasibile) {
 		
-		this.precursors = new ArrayList<Compound>();
-		this.bootstraps = new ArrayList<Compound>(sol.getBootstraps());
+		this.precursors = new CompoundBitSet(sol.precursors);
+		this.bootstraps = new CompoundBitSet(sol.bootstraps);
 		this.reactions  = new HashSet<Reaction>();
-		this.stopCompoundsByProducts = new ArrayList<Compound>();
-		this.stopCompoundsSubstrates = new ArrayList<Compound>();
+		this.stopCompoundsByProducts = new CompoundBitSet(sol.stopCompoundsByProducts);
+		this.stopCompoundsSubstrates = new CompoundBitSet(sol.stopCompoundsSubstrates);
 		//potentialStopCompounds = new HashSet<Compound>(sol.getPotentialStopCompounds());
-		this.visitedCompounds = new ArrayList<Compound>();
-		this.byProducts = new ArrayList<Compound>();
+		this.visitedCompounds = new CompoundBitSet(sol.visitedCompounds);
+		// the by-products are filtered again on the sources
+		this.byProducts = new CompoundBitSet();
 		//this.singleSourcesToProduceACompoundOnThePath = new ArrayList<Compound>();
 		
-		// add precursers
-		for(Compound c : sol.getPrecursors()){
-			addPrecursor(c);
-		}
-		
-		// add stop comounds
-		for(Compound c : sol.getStopCompoundsByProducts()){
-			addByProductAsStopCompound(c);
-		}
-		for(Compound c : sol.getStopCompoundsSubstrates()){
-			addSubstrateAsStopCompound(c);
-		}
-		
-		// add visited compounds
-		for(Compound c : sol.getVisitedCompounds()){
-			addVisitedCompound(c);
-		}
-		
 		// add by-products
 		for(Compound c : sol.getByProducts()){
 			addByProduct(c);
@@ -242,23 +209,11 @@ public class PrecursorSet implements Comparable<PrecursorSet>, java.io.Serializa
 	}
 
     public void union(PrecursorSet sol) {
-    	for(Compound c : sol.getPrecursors()){
-    		addPrecursor(c);
-    	}
-    	for(Compound c : sol.getBootstraps()){
-    		addBootstrap(c);
-    		
-    	}
-		
-		for(Compound c : sol.getStopCompoundsByProducts()){
-			addByProductAsStopCompound(c);
-		}
-		for(Compound c : sol.getStopCompoundsSubstrates()){
-			addSubstrateAsStopCompound(c);
-		}
-		for(Compound c : sol.getVisitedCompounds()){
-			addVisitedCompound(c);
-		}
+		this.precursors.addAll(sol.precursors);
+		this.bootstraps.addAll(sol.bootstraps);
+		this.stopCompoundsByProducts.addAll(sol.stopCompoundsByProducts);
+		this.stopCompoundsSubstrates.addAll(sol.stopCompoundsSubstrates);
+		this.visitedCompounds.addAll(sol.visitedCompounds);
 		for(Compound c : sol.getByProducts()){
 			addByProduct(c);
 		}
@@ -301,17 +256,9 @@ public class PrecursorSet implements Comparable<PrecursorSet>, java.io.Serializa
 		}
 				
 		// check if the two objects have the same bootstrap set
-		if( bootstraps.size() != other.bootstraps.size()) {
+		if( !bootstraps.isSameSetAs(other.bootstraps)) {
 			return false;
 		}
-		ArrayList<Compound> myList = new ArrayList<Compound>(bootstraps);
-		for(Compound c: other.bootstraps) {
-			if( myList.contains(c) ) {
-				myList.remove(c);
-			}
-		}
-		if( myList.size() != 0 ) // if they are equal, I removed all element of the other list
-			return false;
 		
 		
 		//check if reactions are equal
@@ -377,9 +324,7 @@ public class PrecursorSet implements Comparable<PrecursorSet>, java.io.Serializa
 	
 	
 	public void addPrecursor(Compound p) {
-		if(! this.getPrecursors().contains(p)){
-			this.getPrecursors().add(p);
-		}
+		this.precursors.add(p);
 	}
 	
 	public void addPrecursors(List<Compound> l){
@@ -389,46 +334,34 @@ public class PrecursorSet implements Comparable<PrecursorSet>, java.io.Serializa
 	}
 	
 	public void addBootstrap(Compound b) {
-		if(! this.bootstraps.contains(b)){
-			this.bootstraps.add(b);
-		}
+		this.bootstraps.add(b);
 	}
 	
 	public void add(PrecursorSet sol) {
 		
-		for(Compound c : sol.getPrecursors()){
-    		addPrecursor(c);
-    	}
-    	for(Compound c : sol.getBootstraps()){
-    		addBootstrap(c);
-    		
-    	}
+		this.precursors.addAll(sol.precursors);
+		this.bootstraps.addAll(sol.bootstraps);
 		reactions.addAll(sol.getReactions());
 		
-		for(Compound c : sol.getStopCompoundsByProducts()){
-			addByProductAsStopCompound(c);
-		}
-		for(Compound c : sol.getStopCompoundsSubstrates()){
-			addSubstrateAsStopCompound(c);
-		}
-		for(Compound c : sol.getVisitedCompounds()){
-			addVisitedCompound(c);
-		}
+		this.stopCompoundsByProducts.addAll(sol.stopCompoundsByProducts);
+		this.stopCompoundsSubstrates.addAll(sol.stopCompoundsSubstrates);
+		this.visitedCompounds.addAll(sol.visitedCompounds);
 		for(Compound c : sol.getByProducts()){
 			addByProduct(c);
 		}
 	}
 
 	public List<Compound> getBootstraps() {
-		return bootstraps;
+		return bootstraps.list();
 	}
 
 	public void setBootstraps(List<Compound> bootstraps) {
-		this.bootstraps = bootstraps;
+		this.bootstraps.clear();
+		this.bootstraps.addAll(bootstraps);
 	}
 
 	public List<Compound> getPrecursors() {
-		return precursors;
+		return precursors.list();
 	}
 
 	public void setPrecursors(List<Compound> precursors) {
@@ -456,7 +389,7 @@ public class PrecursorSet implements Comparable<PrecursorSet>, java.io.Serializa
 		
 		
 		//String xml = "Precursors: "+precursors + " Reactions: " + reactions + " Stop compounds: [" + getStopCompoundsByProducts() + ", " + getStopCompoundsSubstrates() + "]";
-		String xml = "Precursors: "+precursors + " Stop compounds: [" + getStopCompoundsByProducts() + ", " + getStopCompoundsSubstrates() + "]";
+		String xml = "Precursors: "+getPrecursors() + " Stop compounds: [" + getStopCompoundsByProducts() + ", " + getStopCompoundsSubstrates() + "]";
 		
 		
 		/*
@@ -518,6 +451,13 @@ public class PrecursorSet implements Comparable<PrecursorSet>, java.io.Serializa
 	}
 
 	public void addReaction(Reaction r) {
+		// a reaction of the compressed network stands for the ones it merged
+		if(! r.getCompressedReactions().isEmpty()){
+			for(Reaction member : r.getCompressedReactions().values()){
+				addReaction(member);
+			}
+			return;
+		}
 		if(! this.reactions.contains(r)){
 			this.reactions.add(r);
 			//this.changedAfterFeasibilityCheck = true;
@@ -697,8 +637,8 @@ public class PrecursorSet implements Comparable<PrecursorSet>, java.io.Serializa
 */
 	public List<Compound> getStopCompounds() {
 		List<Compound> allStopCompounds = new ArrayList<Compound>();
-		allStopCompounds.addAll(this.stopCompoundsByProducts);
-		allStopCompounds.addAll(this.stopCompoundsSubstrates);
+		allStopCompounds.addAll(this.stopCompoundsByProducts.list());
+		allStopCompounds.addAll(this.stopCompoundsSubstrates.list());
 		return allStopCompounds;
 	}
 
@@ -717,15 +657,11 @@ public class PrecursorSet implements Comparable<PrecursorSet>, java.io.Serializa
 	}
 	
 	public void addByProductAsStopCompound(Compound c){
-		if(! this.stopCompoundsByProducts.contains(c)){
-			this.stopCompoundsByProducts.add(c);
-		}
+		this.stopCompoundsByProducts.add(c);
 	}
 	
 	public void addSubstrateAsStopCompound(Compound c){
-		if(! this.stopCompoundsSubstrates.contains(c)){
-			this.stopCompoundsSubstrates.add(c);
-			}
+		this.stopCompoundsSubstrates.add(c);
 	}
 	
 	/*public void removeStopCompound(Compound c){
@@ -745,33 +681,15 @@ public class PrecursorSet implements Comparable<PrecursorSet>, java.io.Serializa
 	}*/
 	
 	public void removeByProductAsStopCompound(Compound c){
-		Iterator<Compound> iter = this.stopCompoundsByProducts.iterator();
-		while(iter.hasNext()){
-			if(iter.next().equals(c)){
-				iter.remove();
-				break;
-			}
-		}
+		this.stopCompoundsByProducts.remove(c);
 	}
 
 	public void removeSubstrateAsStopCompound(Compound c){
-		Iterator<Compound> iter = this.stopCompoundsSubstrates.iterator();
-		while(iter.hasNext()){
-			if(iter.next().equals(c)){
-				iter.remove();
-				break;
-			}
-		}
+		this.stopCompoundsSubstrates.remove(c);
 	}
 	
 	public void removeVisitedCompound(Compound c){
-		Iterator<Compound> iter = this.visitedCompounds.iterator();
-		while(iter.hasNext()){
-			if(iter.next().equals(c)){
-				iter.remove();
-				break;
-			}
-		}
+		this.visitedCompounds.remove(c);
 	}
 
 	public void removeAllByProductsAsStopCompounds(){
@@ -784,9 +702,6 @@ public class PrecursorSet implements Comparable<PrecursorSet>, java.io.Serializa
 	}
 	
 	public void removeAllPrecursors(){
-		for(Compound c : this.precursors){
-			removePrecursor(c);
-		}
 		this.precursors.clear();
 	}
 	
@@ -816,7 +731,7 @@ public class PrecursorSet implements Comparable<PrecursorSet>, java.io.Serializa
 */
 	
 	public List<Compound> getVisitedCompounds() {
-		return visitedCompounds;
+		return visitedCompounds.list();
 	}
 
 	public void setVisitedCompounds(List<Compound> visitedCompounds) {
@@ -832,9 +747,7 @@ public class PrecursorSet implements Comparable<PrecursorSet>, java.io.Serializa
 	}
 
 	public void addVisitedCompound(Compound c){
-		if(! this.visitedCompounds.contains(c)){
-			this.visitedCompounds.add(c);
-		}
+		this.visitedCompounds.add(c);
 	}
 	
 	public void addVisitedCompounds(Set<Compound> s){
@@ -844,7 +757,7 @@ public class PrecursorSet implements Comparable<PrecursorSet>, java.io.Serializa
 	}
 
 	public List<Compound> getByProducts() {
-		return byProducts;
+		return byProducts.list();
 	}
 
 	public void setByProducts(List<Compound> byProducts) {
@@ -860,7 +773,7 @@ public class PrecursorSet implements Comparable<PrecursorSet>, java.io.Serializa
 	}
 
 	public void addByProduct(Compound c){
-		if(! this.byProducts.contains(c) && ! c.isPrecursor()){
+		if(! c.isPrecursor()){
 			this.byProducts.add(c);
 		}
 	}
@@ -886,59 +799,86 @@ public class PrecursorSet implements Comparable<PrecursorSet>, java.io.Serializa
 		this.byProducts.remove(c);
 	}
 
-	public boolean haveSameSources(PrecursorSet ps){
-		if(this.getPrecursors().size() != ps.getPrecursors().size()){
-			return false;
+	/*
+	 * A key to hash the sets: two sets have the same key when they are
+	 * equal, same sources, stop compounds and bootstraps. PrecursorSet keeps
+	 * the identity hashCode, which PrecursorSets relies on.
+	 */
+	public Object getKey(){
+		return new SetKey(new long[][] { this.precursors.trimmedWords(), this.bootstraps.trimmedWords(),
+				CompoundBitSet.unionWords(this.stopCompoundsByProducts, this.stopCompoundsSubstrates) },
+				nbStopCompounds());
+	}
+	
+	/*
+	 * A key to hash the sets on their sources only.
+	 */
+	public Object getSourcesKey(){
+		return new SetKey(new long[][] { this.precursors.trimmedWords() }, 0);
+	}
+	
+	private static class SetKey {
+		private final long[][] words;
+		private final int size;
+		
+		SetKey(long[][] words, int size){
+			this.words = words;
+			this.size = size;
 		}
-		HashSet<Compound> hashSources = new HashSet<Compound>();
-		for(int i = 0; i < ps.getPrecursors().size(); i++)
-			hashSources.add(ps.getPrecursors().get(i));
-		for(int j = 0; j < this.getPrecursors().size(); j++)
-		{
-			if( ! hashSources.contains(this.getPrecursors().get(j)) )
+		
+		@Override
+		public boolean equals(Object obj){
+			if(!(obj instanceof SetKey)){
 				return false;
+			}
+			SetKey other = (SetKey)obj;
+			return this.size == other.size && Arrays.deepEquals(this.words, other.words);
+		}
+		
+		@Override
+		public int hashCode(){
+			return 31 * Arrays.deepHashCode(this.words) + this.size;
 		}
-		return true;
 	}
 	
+	public boolean haveSameSources(PrecursorSet ps){
+		return this.precursors.isSameSetAs(ps.precursors);
+	}
+	
+	/*
+	 * The stop compounds are compared as one set, the by-products and the
+	 * substrates together.
+	 */
 	public boolean haveSameStopCompounds(PrecursorSet ps){
-		HashSet<Compound> hashStopCompounds = new HashSet<Compound>();
-		for(int i = 0; i < ps.getStopCompounds().size(); i++)
-			hashStopCompounds.add(ps.getStopCompounds().get(i));
-		for(int j = 0; j < this.getStopCompounds().size(); j++)
-		{
-			if( ! hashStopCompounds.contains(this.getStopCompounds().get(j)) )
-				return false;
-		}
-		
-		return (this.getStopCompounds().size() == ps.getStopCompounds().size());
+		return CompoundBitSet.isUnionSubSetOf(this.stopCompoundsByProducts, this.stopCompoundsSubstrates,
+				ps.stopCompoundsByProducts, ps.stopCompoundsSubstrates)
+				&& nbStopCompounds() == ps.nbStopCompounds();
 	}
 	
+	private int nbStopCompounds(){
+		return this.stopCompoundsByProducts.size() + this.stopCompoundsSubstrates.size();
+	}
 	
 	public boolean isStopCompoundSubSetOf(PrecursorSet ps, boolean properSubset){
-		HashSet<Compound> hashStopCompounds = new HashSet<Compound>();
-		for(int i = 0; i < ps.getStopCompounds().size(); i++)
-			hashStopCompounds.add(ps.getStopCompounds().get(i));
-		for(int j = 0; j < this.getStopCompounds().size(); j++)
-		{
-			if( ! hashStopCompounds.contains(this.getStopCompounds().get(j)) )
-				return false;
+		if(! CompoundBitSet.isUnionSubSetOf(this.stopCompoundsByProducts, this.stopCompoundsSubstrates,
+				ps.stopCompoundsByProducts, ps.stopCompoundsSubstrates)){
+			return false;
 		}
-		
-		return !properSubset || (this.getStopCompounds().size() < ps.getStopCompounds().size());
+		return !properSubset || (nbStopCompounds() < ps.nbStopCompounds());
+	}
+	
+	/*
+	 * The bits of the sources in CompoundBitSet, for PrecursorSetIndex.
+	 */
+	int[] getSourceIndices(){
+		return this.precursors.indices();
 	}
 	
 	public boolean isSourcesSubSetOf(PrecursorSet ps, boolean properSubset){
-		HashSet<Compound> hashSources = new HashSet<Compound>();
-		for(int i = 0; i < ps.getPrecursors().size(); i++)
-			hashSources.add(ps.getPrecursors().get(i));
-		for(int j = 0; j < this.getPrecursors().size(); j++)
-		{
-			if( ! hashSources.contains(this.getPrecursors().get(j)) )
-				return false;
+		if(! this.precursors.isSubSetOf(ps.precursors)){
+			return false;
 		}
-		
-		return !properSubset || (this.getPrecursors().size() < ps.getPrecursors().size());
+		return !properSubset || (this.precursors.size() < ps.precursors.size());
 	}
 	
 	public boolean isReactionSubSetOf(PrecursorSet ps, boolean properSubset){
@@ -959,39 +899,17 @@ public class PrecursorSet implements Comparable<PrecursorSet>, java.io.Serializa
 
 	public boolean hasIntersectionBetweenByProductAndLineCompound(
 			PrecursorSet ps) {
-		// TODO Auto-generated method stub
-		boolean intersection = false;
-		for(Compound byProduct : this.byProducts){
-			for(Compound visitedCompound : ps.getVisitedCompounds()){
-				if(byProduct.equals(visitedCompound)){
-					intersection = true;
-					break;
-				}
-			}
-			if(intersection == true){
-				break;
-			}
-		}
-		if(intersection == false){
-			return false;
-		}
-		// opposite direction
-		for(Compound byProduct : ps.byProducts){
-			for(Compound visitedCompound : this.getVisitedCompounds()){
-				if(byProduct.equals(visitedCompound)){
-					return intersection;
-				}
-			}
-		}
-		return false;
+		// in both directions
+		return this.byProducts.intersects(ps.visitedCompounds)
+				&& ps.byProducts.intersects(this.visitedCompounds);
 	}
 
 	public List<Compound> getStopCompoundsSubstrates() {
-		return stopCompoundsSubstrates;
+		return stopCompoundsSubstrates.list();
 	}
 
 	public List<Compound> getStopCompoundsByProducts() {
-		return stopCompoundsByProducts;
+		return stopCompoundsByProducts.list();
 	}
 
 	public void addSubstrateAsStopCompounds(
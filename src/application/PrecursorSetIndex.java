@@ -0,0 +1,231 @@
+package application;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeMap;
+
+/*
+ * An index of precursor sets on their sources, for the minimality checks:
+ * is a stored set a subset of s, which stored sets are subsets or
+ * supersets of s, as PrecursorSet.isSourcesSubSetOf(.., false).
+ *
+ * The sets are stored in a set-trie: each set is the path of its sources
+ * in increasing order of their bits in CompoundBitSet. The subsets of s
+ * are found by following only the sources of s, the supersets by
+ * following the paths through all the sources of s. Each node counts the
+ * sets below it, so that the branches left empty by remove are skipped.
+ *
+ * The sets are indexed on their sources when they are added, they must
+ * not change while stored. A set is never a subset or superset of itself,
+ * and the queries return the sets in the order they were added.
+ */
+public class PrecursorSetIndex {
+
+	private final Node root = new Node(-1);
+	private long nbAdded = 0;
+
+	public PrecursorSetIndex() {
+	}
+
+	public PrecursorSetIndex(Collection<PrecursorSet> sets) {
+		for (PrecursorSet s : sets) {
+			add(s);
+		}
+	}
+
+	public void add(PrecursorSet s) {
+		Node node = this.root;
+		++node.size;
+		for (int i : s.getSourceIndices()) {
+			Node child = node.children.get(i);
+			if (child == null) {
+				child = new Node(i);
+				node.children.put(i, child);
+			}
+			node = child;
+			++node.size;
+		}
+		node.entries.add(new Entry(s, this.nbAdded++));
+	}
+
+	/*
+	 * Removes s, the same object, if stored.
+	 */
+	public boolean remove(PrecursorSet s) {
+		Node[] path = findPath(s);
+		if (path == null) {
+			return false;
+		}
+		List<Entry> entries = path[path.length - 1].entries;
+		for (int e = 0; e < entries.size(); ++e) {
+			if (entries.get(e).set == s) {
+				entries.remove(e);
+				for (Node node : path) {
+					--node.size;
+				}
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * Whether s, the same object, is stored.
+	 */
+	public boolean contains(PrecursorSet s) {
+		Node[] path = findPath(s);
+		if (path == null) {
+			return false;
+		}
+		for (Entry e : path[path.length - 1].entries) {
+			if (e.set == s) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * The nodes from the root to the node of the sources of s, null if
+	 * there is none.
+	 */
+	private Node[] findPath(PrecursorSet s) {
+		int[] sources = s.getSourceIndices();
+		Node[] path = new Node[sources.length + 1];
+		path[0] = this.root;
+		for (int k = 0; k < sources.length; ++k) {
+			path[k + 1] = path[k].children.get(sources[k]);
+			if (path[k + 1] == null) {
+				return null;
+			}
+		}
+		return path;
+	}
+
+	public int size() {
+		return this.root.size;
+	}
+
+	/*
+	 * All the stored sets.
+	 */
+	public List<PrecursorSet> getSets() {
+		List<Entry> found = new ArrayList<Entry>();
+		collect(this.root, null, found);
+		return inOrder(found);
+	}
+
+	/*
+	 * Whether a stored set other than s has its sources in the sources of
+	 * s.
+	 */
+	public boolean containsSubsetOf(PrecursorSet s) {
+		return findSubsets(this.root, s.getSourceIndices(), 0, s, null);
+	}
+
+	public List<PrecursorSet> getSubsetsOf(PrecursorSet s) {
+		List<Entry> found = new ArrayList<Entry>();
+		findSubsets(this.root, s.getSourceIndices(), 0, s, found);
+		return inOrder(found);
+	}
+
+	public List<PrecursorSet> getSupersetsOf(PrecursorSet s) {
+		List<Entry> found = new ArrayList<Entry>();
+		findSupersets(this.root, s.getSourceIndices(), 0, s, found);
+		return inOrder(found);
+	}
+
+	/*
+	 * The sets below node on the sources of s from sources[from], all in
+	 * found, or stops at the first one if found is null.
+	 */
+	private static boolean findSubsets(Node node, int[] sources, int from, PrecursorSet s, List<Entry> found) {
+		boolean any = false;
+		for (Entry e : node.entries) {
+			if (e.set != s) {
+				if (found == null) {
+					return true;
+				}
+				found.add(e);
+				any = true;
+			}
+		}
+		for (int k = from; k < sources.length; ++k) {
+			Node child = node.children.get(sources[k]);
+			if (child != null && child.size > 0 && findSubsets(child, sources, k + 1, s, found)) {
+				if (found == null) {
+					return true;
+				}
+				any = true;
+			}
+		}
+		return any;
+	}
+
+	/*
+	 * The sets below node with the sources of s from sources[from], the
+	 * children past the next source can not contain it.
+	 */
+	private static void findSupersets(Node node, int[] sources, int from, PrecursorSet s, List<Entry> found) {
+		if (from == sources.length) {
+			collect(node, s, found);
+			return;
+		}
+		for (Node child : node.children.headMap(sources[from], true).values()) {
+			if (child.size > 0) {
+				findSupersets(child, sources, child.element == sources[from] ? from + 1 : from, s, found);
+			}
+		}
+	}
+
+	private static void collect(Node node, PrecursorSet s, List<Entry> found) {
+		for (Entry e : node.entries) {
+			if (e.set != s) {
+				found.add(e);
+			}
+		}
+		for (Node child : node.children.values()) {
+			if (child.size > 0) {
+				collect(child, s, found);
+			}
+		}
+	}
+
+	private static List<PrecursorSet> inOrder(List<Entry> found) {
+		Collections.sort(found, new Comparator<Entry>() {
+			@Override
+			public int compare(Entry e1, Entry e2) {
+				return e1.order < e2.order ? -1 : (e1.order == e2.order ? 0 : 1);
+			}
+		});
+		List<PrecursorSet> sets = new ArrayList<PrecursorSet>(found.size());
+		for (Entry e : found) {
+			sets.add(e.set);
+		}
+		return sets;
+	}
+
+	private static class Node {
+		final int element;
+		final TreeMap<Integer, Node> children = new TreeMap<Integer, Node>();
+		final List<Entry> entries = new ArrayList<Entry>(1);
+		int size = 0;
+
+		Node(int element) {
+			this.element = element;
+		}
+	}
+
+	private static class Entry {
+		final PrecursorSet set;
+		final long order;
+
+		Entry(PrecursorSet set, long order) {
+			this.set = set;
+			this.order = order;
+		}
+	}
+}
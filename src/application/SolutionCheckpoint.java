@@ -0,0 +1,232 @@
+package application;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
+
+import metabolicNetwork.Compound;
+import metabolicNetwork.MetabolicNetwork;
+
+/*
+ * Append-only log of the minimal precursor sets found for one target, so
+ * that an enumeration killed before the end can be resumed. The file is
+ *
+ *   mode <NORMAL|DUPMACH|STEADYSTATE> sources <number of sources>
+ *   set <compound id> ... ;
+ *   level <size of the biggest set found> ;
+ *   ...
+ *
+ * A record is only read back when it ends with " ;" and a new line. A
+ * line cut by a crash is ignored, and cut off the file before the next
+ * records are appended after the last complete one. The writes are forced to the disk every syncEvery
+ * records or syncDelay milliseconds, whichever comes first, and when the
+ * log is closed.
+ */
+public class SolutionCheckpoint {
+
+	private final File file;
+	private final String header;
+	private final int syncEvery;
+	private final long syncDelay;
+	private FileOutputStream stream = null;
+	private BufferedWriter writer = null;
+	private int nbSinceSync = 0;
+	private long lastSync;
+
+	private List<PrecursorSet> restoredSolutions = new ArrayList<PrecursorSet>();
+	private int sizeLevel = 0;
+	/*
+	 * Length of the header and the complete records read back.
+	 */
+	private long completeLength = 0;
+
+	public SolutionCheckpoint(File file, String mode, int nbSources,
+			int syncEvery, long syncDelay) {
+		this.file = file;
+		this.header = "mode " + mode + " sources " + nbSources;
+		this.syncEvery = syncEvery;
+		this.syncDelay = syncDelay;
+	}
+
+	/*
+	 * Reads the sets of a previous run of the same mode, if any, and opens
+	 * the log to append the next ones.
+	 */
+	public void open(MetabolicNetwork network) {
+		boolean resume = this.file.exists() && read(network);
+		try {
+			this.stream = new FileOutputStream(this.file, resume);
+			if (resume) {
+				this.stream.getChannel().truncate(this.completeLength);
+			}
+			this.writer = new BufferedWriter(new OutputStreamWriter(this.stream, "UTF-8"));
+			if (!resume) {
+				this.writer.write(this.header + "\n");
+				sync();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.err.println("Could not open the checkpoint " + this.file + ", Aborting.");
+			System.exit(-1);
+		}
+		this.lastSync = System.currentTimeMillis();
+	}
+
+	private boolean read(MetabolicNetwork network) {
+		List<PrecursorSet> sets = new ArrayList<PrecursorSet>();
+		int level = 0;
+		byte[] content;
+		try {
+			content = readContent();
+		} catch (FileNotFoundException e) {
+			return false;
+		} catch (IOException e) {
+			e.printStackTrace();
+			return false;
+		}
+		try {
+			int start = 0;
+			boolean header = true;
+			while (start < content.length) {
+				int end = start;
+				while (end < content.length && content[end] != '\n') {
+					++end;
+				}
+				if (end == content.length) {
+					// last record, cut by the crash before its new line
+					break;
+				}
+				String line = new String(content, start, end - start, "UTF-8");
+				if (header) {
+					if (!line.equals(this.header)) {
+						System.err.println("Checkpoint " + this.file
+								+ " was written by another kind of run, it is ignored.");
+						return false;
+					}
+					header = false;
+				} else {
+					if (!line.endsWith(" ;")) {
+						// last record, cut by the crash
+						break;
+					}
+					StringTokenizer tokens = new StringTokenizer(line, " ");
+					String kind = tokens.nextToken();
+					if (kind.equals("level")) {
+						level = Math.max(level, Integer.parseInt(tokens.nextToken()));
+					} else if (kind.equals("set")) {
+						PrecursorSet set = new PrecursorSet();
+						String id;
+						while (!(id = tokens.nextToken()).equals(";")) {
+							Compound c = network.getCompounds().get(id);
+							if (c == null) {
+								System.err.println("Compound " + id + " of the checkpoint " + this.file
+										+ " is not in the network, the checkpoint is ignored.");
+								return false;
+							}
+							set.addPrecursor(c);
+						}
+						sets.add(set);
+					}
+				}
+				start = end + 1;
+				this.completeLength = start;
+			}
+			if (header) {
+				System.err.println("Checkpoint " + this.file
+						+ " was written by another kind of run, it is ignored.");
+				return false;
+			}
+		} catch (UnsupportedEncodingException e) {
+			e.printStackTrace();
+			return false;
+		}
+		this.restoredSolutions = sets;
+		this.sizeLevel = level;
+		return true;
+	}
+
+	private byte[] readContent() throws IOException {
+		FileInputStream in = new FileInputStream(this.file);
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		try {
+			byte[] buffer = new byte[1 << 16];
+			int n;
+			while ((n = in.read(buffer)) > 0) {
+				content.write(buffer, 0, n);
+			}
+		} finally {
+			in.close();
+		}
+		return content.toByteArray();
+	}
+
+	public List<PrecursorSet> getRestoredSolutions() {
+		return restoredSolutions;
+	}
+
+	public int getSizeLevel() {
+		return sizeLevel;
+	}
+
+	public synchronized void add(PrecursorSet set) {
+		StringBuilder record = new StringBuilder("set");
+		for (Compound c : set.getPrecursors()) {
+			record.append(' ').append(c.getId());
+		}
+		record.append(" ;\n");
+		if (set.getPrecursors().size() > this.sizeLevel) {
+			this.sizeLevel = set.getPrecursors().size();
+			record.append("level ").append(this.sizeLevel).append(" ;\n");
+		}
+		try {
+			this.writer.write(record.toString());
+			nbSinceSync++;
+			if (nbSinceSync >= syncEvery
+					|| System.currentTimeMillis() - lastSync >= syncDelay) {
+				sync();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.err.println("Could not write the checkpoint " + this.file + ", Aborting.");
+			System.exit(-1);
+		}
+	}
+
+	private void sync() throws IOException {
+		this.writer.flush();
+		this.stream.getFD().sync();
+		nbSinceSync = 0;
+		lastSync = System.currentTimeMillis();
+	}
+
+	public synchronized void close() {
+		if (this.writer == null) {
+			return;
+		}
+		try {
+			sync();
+			this.writer.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		this.writer = null;
+		this.stream = null;
+	}
+
+	/*
+	 * Called once the target is done, the log is not needed anymore.
+	 */
+	public void delete() {
+		close();
+		this.file.delete();
+	}
+}
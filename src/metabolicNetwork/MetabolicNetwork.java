@@ -31,6 +31,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 
 import org.jdom2.Document;
 import org.jdom2.Element;
@@ -71,6 +72,7 @@ public class MetabolicNetwork {
 			Reaction copiedReaction = copy.addNewReaction(r.getId(), r.getName(), r.isReversible());
 			copiedReaction.setIdxBitSet(nbReactions++);
 			copiedReaction.addCofactors(r.getCofactors());
+			copiedReaction.setCompressedReactions(new HashMap<String, Reaction>(r.getCompressedReactions()));
 			Reaction r2 = null;
 			if( r.isReversible() ) {
 				r2 = copy.addNewReaction(r.getId()+"_REV", r.getName()+"_REV", r.isReversible());
@@ -546,6 +548,221 @@ public class MetabolicNetwork {
 		}
 	}
 
+	/*
+	 * Lossless compression of the network. An internal compound made by
+	 * exactly one reaction r1 and used by exactly one other reaction r2 is
+	 * removed, r1 and r2 being replaced by their combination where it
+	 * cancels, so the network loses one row and one column. The members of
+	 * the new reaction are kept in its compressedReactions map, so that
+	 * the solutions can be given with the reactions of the input network.
+	 *
+	 * With steadyState, every such pair is fully coupled (r1 runs exactly
+	 * as fast as r2 needs). Otherwise the compound may accumulate, and the
+	 * merge only keeps the solutions when the compound is the only product
+	 * of r1 or the only substrate of r2: r1 never has to run faster, or r2
+	 * slower, than their combination.
+	 *
+	 * The compounds in keep, the sources, bootstraps, boundaries and
+	 * targets, and the reversible reactions are never merged. Returns the
+	 * number of merged pairs.
+	 */
+	public int compressLinearChains(Set<String> keep, boolean steadyState)
+	{
+		HashMap<Compound, List<Reaction>> producers = new HashMap<Compound, List<Reaction>>();
+		HashMap<Compound, List<Reaction>> consumers = new HashMap<Compound, List<Reaction>>();
+		for(Reaction r: reactions.values())
+			addToIndexes(producers, consumers, r);
+		// The compounds are taken in the order of the map, from the first
+		// one each time. Only the compounds of a merge can change, they are
+		// the only ones taken again.
+		List<Compound> order = new ArrayList<Compound>(compounds.values());
+		HashMap<Compound, Integer> positions = new HashMap<Compound, Integer>();
+		TreeSet<Integer> pending = new TreeSet<Integer>();
+		for(int i = 0; i < order.size(); i++)
+		{
+			positions.put(order.get(i), i);
+			pending.add(i);
+		}
+		int nbMerged = 0;
+		while( !pending.isEmpty() )
+		{
+			Compound c = order.get(pending.pollFirst());
+			if( keep.contains(c.getId()) || c.isPrecursor() || c.isBootstrap() || c.isBoundary() || c.isTarget() )
+				continue;
+			List<Reaction> ps = producers.get(c);
+			List<Reaction> cs = consumers.get(c);
+			if( ps == null || cs == null || ps.size() != 1 || cs.size() != 1 )
+				continue;
+			Reaction r1 = ps.get(0);
+			Reaction r2 = cs.get(0);
+			if( r1 == r2 || r1.isReversible() || r2.isReversible() )
+				continue;
+			if( r1.getProductStochiometricValue(c) <= 0 || r2.getSubstrateStochiometricValue(c) <= 0 )
+				continue;
+			if( !steadyState && r1.getProduces().size() != 1 && r2.getSubstrates().size() != 1 )
+				continue;
+			removeFromIndexes(producers, consumers, r1);
+			removeFromIndexes(producers, consumers, r2);
+			Reaction merged = mergeThrough(c, r1, r2);
+			addToIndexes(producers, consumers, merged);
+			producers.remove(c);
+			consumers.remove(c);
+			List<Compound> touched = new ArrayList<Compound>();
+			for(Reaction r: new Reaction[] {r1, r2})
+			{
+				touched.addAll(r.getSubstrates().values());
+				touched.addAll(r.getProduces().values());
+			}
+			for(Compound other: touched)
+			{
+				Integer position = positions.get(other);
+				if( other != c && position != null )
+					pending.add(position);
+			}
+			nbMerged++;
+		}
+		return nbMerged;
+	}
+
+	private static void addToIndexes(HashMap<Compound, List<Reaction>> producers,
+			HashMap<Compound, List<Reaction>> consumers, Reaction r)
+	{
+		for(Compound c: r.getProduces().values())
+			addToIndex(producers, c, r);
+		for(Compound c: r.getSubstrates().values())
+			addToIndex(consumers, c, r);
+	}
+
+	private static void removeFromIndexes(HashMap<Compound, List<Reaction>> producers,
+			HashMap<Compound, List<Reaction>> consumers, Reaction r)
+	{
+		for(Compound c: r.getProduces().values())
+			producers.get(c).remove(r);
+		for(Compound c: r.getSubstrates().values())
+			consumers.get(c).remove(r);
+	}
+
+	private static void addToIndex(HashMap<Compound, List<Reaction>> index, Compound c, Reaction r)
+	{
+		List<Reaction> rs = index.get(c);
+		if( rs == null )
+		{
+			rs = new ArrayList<Reaction>();
+			index.put(c, rs);
+		}
+		rs.add(r);
+	}
+
+	/*
+	 * Replaces r1, producing c, and r2, consuming it, by a reaction running
+	 * r2 once and r1 as many times as needed for the c consumed by r2.
+	 */
+	private Reaction mergeThrough(Compound c, Reaction r1, Reaction r2)
+	{
+		double factor = r2.getSubstrateStochiometricValue(c) / r1.getProductStochiometricValue(c);
+		// net stoichiometry of the merged reaction, positive for the products
+		LinkedHashMap<Compound, Double> net = new LinkedHashMap<Compound, Double>();
+		for(Compound s: r1.getSubstrates().values())
+			addToStoich(net, s, -factor * r1.getSubstrateStochiometricValue(s));
+		for(Compound p: r1.getProduces().values())
+			addToStoich(net, p, factor * r1.getProductStochiometricValue(p));
+		for(Compound s: r2.getSubstrates().values())
+			addToStoich(net, s, -r2.getSubstrateStochiometricValue(s));
+		for(Compound p: r2.getProduces().values())
+			addToStoich(net, p, r2.getProductStochiometricValue(p));
+
+		// the members go to the larger map of the two, r1 and r2 are
+		// dropped, so a long chain does not copy its members at each merge
+		Reaction larger = r1.getCompressedReactions().size() >= r2.getCompressedReactions().size() ? r1 : r2;
+		HashMap<String, Reaction> members = larger.getCompressedReactions();
+		if( members.isEmpty() )
+			members = new HashMap<String, Reaction>();
+		for(Reaction r: new Reaction[] {r1, r2})
+		{
+			if( r.getCompressedReactions().isEmpty() )
+				members.put(r.getId(), r);
+			else if( r != larger )
+				members.putAll(r.getCompressedReactions());
+		}
+
+		// neither is reversible, the map is keyed on the ids (addNewReaction)
+		for(Reaction r: new Reaction[] {r1, r2})
+		{
+			removeReactionDependencies(r);
+			reactions.remove(r.getId());
+		}
+		String id = "compressed_" + r2.getId();
+		while( reactions.containsKey(id) )
+			id = id + "_";
+		Reaction merged = addNewReaction(id, id, false);
+		merged.setCompressedReactions(members);
+		for(Map.Entry<Compound, Double> e: net.entrySet())
+		{
+			double v = e.getValue();
+			if( Math.abs(v) < 1e-9 )
+				continue;
+			if( v > 0 )
+				merged.addProduct(e.getKey(), v);
+			else
+				merged.addSubstrate(e.getKey(), -v);
+		}
+		compounds.remove(c.getId());
+		return merged;
+	}
+
+	private static void addToStoich(LinkedHashMap<Compound, Double> net, Compound c, double v)
+	{
+		Double old = net.get(c);
+		net.put(c, old == null ? v : old + v);
+	}
+
+	/*
+	 * Returns the compounds from which the target can be reached following
+	 * the reactions from their substrates to their products, the target
+	 * included. A compound outside this set can not take part in the
+	 * production of the target.
+	 */
+	public Set<Compound> getCompoundsUpstreamOf(Compound target)
+	{
+		HashMap<Compound, List<Reaction>> producers = new HashMap<Compound, List<Reaction>>();
+		for(Reaction r: reactions.values())
+		{
+			for(Compound p: r.getProduces().values())
+			{
+				List<Reaction> rs = producers.get(p);
+				if( rs == null )
+				{
+					rs = new ArrayList<Reaction>();
+					producers.put(p, rs);
+				}
+				rs.add(r);
+			}
+		}
+		Set<Compound> upstream = new HashSet<Compound>();
+		Set<Reaction> visited = new HashSet<Reaction>();
+		List<Compound> toVisit = new ArrayList<Compound>();
+		upstream.add(target);
+		toVisit.add(target);
+		while( !toVisit.isEmpty() )
+		{
+			Compound c = toVisit.remove(toVisit.size() - 1);
+			List<Reaction> rs = producers.get(c);
+			if( rs == null )
+				continue;
+			for(Reaction r: rs)
+			{
+				if( !visited.add(r) )
+					continue;
+				for(Compound s: r.getSubstrates().values())
+				{
+					if( upstream.add(s) )
+						toVisit.add(s);
+				}
+			}
+		}
+		return upstream;
+	}
+
 	/*
 	 * Returns true if the network can produce the compound c and false otherwise.
 	 * 
@@ -872,6 +1089,15 @@ public class MetabolicNetwork {
 		this.reactions = reactions;
 	}
 
+	/*
+	 * Builds a frozen sparse stoichiometric matrix with one row per compound of
+	 * the network (in the iteration order of getCompounds()) and one column per
+	 * reaction of the given list (in the list order).
+	 */
+	public StoichiometricMatrix getStoichiometricMatrix(List<Reaction> columns) {
+		return new StoichiometricMatrix(compounds.values(), columns);
+	}
+
 	public void clearAllCompoundsFlags() {
 		for(Compound c: compounds.values()) {
 			c.clearFlag();
@@ -0,0 +1,190 @@
+package metabolicNetwork;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+
+/*
+ * Frozen, index-based sparse view of the stoichiometric matrix of a network.
+ * Rows are compounds and columns are reactions, both in the order given at
+ * construction time. Each row is stored in compressed form (CSR): the column
+ * indices of the reactions touching the compound and the matching
+ * coefficients (positive if the reaction produces the compound, negative if
+ * it consumes it). Consumer columns are kept apart since some models need
+ * the pattern of consuming reactions regardless of the stoichiometry.
+ *
+ * The matrix is a snapshot: changes made to the network after its creation
+ * are not reflected, so model builders must create it after they are done
+ * with any modification of the reactions.
+ */
+public class StoichiometricMatrix {
+
+	private final Compound[] rows;
+	private final Reaction[] columns;
+	private final HashMap<Compound, Integer> rowIndex;
+	private final HashMap<Reaction, Integer> columnIndex;
+
+	private final int[] rowStart;
+	private final int[] colIdx;
+	private final double[] coefs;
+
+	private final int[] consumerStart;
+	private final int[] consumerIdx;
+
+	public StoichiometricMatrix(Collection<Compound> rowCompounds, List<Reaction> columnReactions) {
+		this.rows = rowCompounds.toArray(new Compound[rowCompounds.size()]);
+		this.columns = columnReactions.toArray(new Reaction[columnReactions.size()]);
+		this.rowIndex = new HashMap<Compound, Integer>(2 * rows.length);
+		for (int i = 0; i < rows.length; ++i) {
+			rowIndex.put(rows[i], i);
+		}
+		this.columnIndex = new HashMap<Reaction, Integer>(2 * columns.length);
+		for (int j = 0; j < columns.length; ++j) {
+			columnIndex.put(columns[j], j);
+		}
+
+		// First pass: count the entries of each row
+		int[] nnzPerRow = new int[rows.length];
+		int[] consumersPerRow = new int[rows.length];
+		for (Reaction r : columns) {
+			for (Compound p : r.getProduces().values()) {
+				Integer i = rowIndex.get(p);
+				if (i != null) {
+					nnzPerRow[i]++;
+				}
+			}
+			for (Compound s : r.getSubstrates().values()) {
+				Integer i = rowIndex.get(s);
+				if (i != null) {
+					consumersPerRow[i]++;
+					if (!r.getProduces().containsKey(s.getId())) {
+						nnzPerRow[i]++;
+					}
+				}
+			}
+		}
+
+		this.rowStart = new int[rows.length + 1];
+		this.consumerStart = new int[rows.length + 1];
+		for (int i = 0; i < rows.length; ++i) {
+			rowStart[i + 1] = rowStart[i] + nnzPerRow[i];
+			consumerStart[i + 1] = consumerStart[i] + consumersPerRow[i];
+		}
+		this.colIdx = new int[rowStart[rows.length]];
+		this.coefs = new double[rowStart[rows.length]];
+		this.consumerIdx = new int[consumerStart[rows.length]];
+
+		// Second pass: fill the rows. Columns are visited in increasing order,
+		// so the column indices of each row end up sorted.
+		int[] fill = new int[rows.length];
+		int[] consumerFill = new int[rows.length];
+		for (int j = 0; j < columns.length; ++j) {
+			Reaction r = columns[j];
+			for (Compound p : r.getProduces().values()) {
+				Integer i = rowIndex.get(p);
+				if (i != null) {
+					int pos = rowStart[i] + fill[i]++;
+					colIdx[pos] = j;
+					coefs[pos] = r.getProductStochiometricValue(p);
+				}
+			}
+			for (Compound s : r.getSubstrates().values()) {
+				Integer i = rowIndex.get(s);
+				if (i != null) {
+					consumerIdx[consumerStart[i] + consumerFill[i]++] = j;
+					// a compound on both sides counts as a product, as in the
+					// original model builders
+					if (!r.getProduces().containsKey(s.getId())) {
+						int pos = rowStart[i] + fill[i]++;
+						colIdx[pos] = j;
+						coefs[pos] = -r.getSubstrateStochiometricValue(s);
+					}
+				}
+			}
+		}
+	}
+
+	public int getNbRows() {
+		return rows.length;
+	}
+
+	public int getNbColumns() {
+		return columns.length;
+	}
+
+	public int getNbNonZeros() {
+		return colIdx.length;
+	}
+
+	public Compound getRowCompound(int row) {
+		return rows[row];
+	}
+
+	public Reaction getColumnReaction(int column) {
+		return columns[column];
+	}
+
+	/*
+	 * Returns the row of the given compound or -1 if it is not part of the matrix.
+	 */
+	public int getRowIndex(Compound c) {
+		Integer i = rowIndex.get(c);
+		return i == null ? -1 : i;
+	}
+
+	/*
+	 * Returns the column of the given reaction or -1 if it is not part of the matrix.
+	 */
+	public int getColumnIndex(Reaction r) {
+		Integer j = columnIndex.get(r);
+		return j == null ? -1 : j;
+	}
+
+	/*
+	 * Entries of row i are stored in positions getRowStart(i) (inclusive) to
+	 * getRowEnd(i) (exclusive) of getColumnIndices() and getCoefficients().
+	 */
+	public int getRowStart(int row) {
+		return rowStart[row];
+	}
+
+	public int getRowEnd(int row) {
+		return rowStart[row + 1];
+	}
+
+	public int[] getColumnIndices() {
+		return colIdx;
+	}
+
+	public double[] getCoefficients() {
+		return coefs;
+	}
+
+	/*
+	 * Consumers of row i are stored in positions getConsumerStart(i) (inclusive)
+	 * to getConsumerEnd(i) (exclusive) of getConsumerIndices().
+	 */
+	public int getConsumerStart(int row) {
+		return consumerStart[row];
+	}
+
+	public int getConsumerEnd(int row) {
+		return consumerStart[row + 1];
+	}
+
+	public int[] getConsumerIndices() {
+		return consumerIdx;
+	}
+
+	/*
+	 * Returns the reactions (columns) with a non zero entry in the given row.
+	 */
+	public List<Reaction> getRowReactions(int row) {
+		List<Reaction> l = new ArrayList<Reaction>(rowStart[row + 1] - rowStart[row]);
+		for (int k = rowStart[row]; k < rowStart[row + 1]; ++k) {
+			l.add(columns[colIdx[k]]);
+		}
+		return l;
+	}
+}
@@ -4,15 +4,19 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 
 import metabolicNetwork.Compound;
 import metabolicNetwork.MetabolicNetwork;
 import metabolicNetwork.Reaction;
-import utils.MetabolicNetworkSBMLWriter;
+import utils.Diagnostics;
 import utils.StringUtils;
 import application.InputParameters;
 import application.PrecursorSet;
+import application.PrecursorSetIndex;
 
 public class PrecursorFinder {
 
@@ -112,7 +116,7 @@ public class PrecursorFinder {
 				System.out.println("Num Precursors: "+getNetwork().getNumPrecursors());
 				
 				// writes down the reduced network for analysis
-				new MetabolicNetworkSBMLWriter("preprocessedFor"+target.getId()+".xml").write(getNetwork());
+				Diagnostics.writeNetwork("preprocessedFor"+target.getId(), getNetwork());
 				
 				// Prepare a set of targets containing only the j-th target compound
 				individualTarget.clear();
@@ -380,24 +384,45 @@ public class PrecursorFinder {
 		for(int i = 0; i < l.size(); i++)
 			transformMultisetInPrecursorSet(l.get(i));
 		
-		// goes throw the list of solutions and eliminates the solutions that contain other solutions
-		List<PrecursorSet> reducedL = new ArrayList<PrecursorSet>(l);
+		// goes throw the list of solutions and eliminates the solutions that contain other solutions,
+		// a solution not flagged yet being found in the index
+		PrecursorSetIndex index = new PrecursorSetIndex();
+		for(PrecursorSet s : l)
+		{
+			if( !s.isFlag() )
+				index.add(s);
+		}
+		// a solution removed takes out the first one equal to it still there
+		Map<Object, Queue<Integer>> equalSolutions = new HashMap<Object, Queue<Integer>>();
 		for(int i = 0; i < l.size(); i++)
 		{
-			for(int j = 0; j < l.size(); j++)
+			Object key = l.get(i).getKey();
+			Queue<Integer> positions = equalSolutions.get(key);
+			if( positions == null )
 			{
-				if(i == j)
-					continue;
-				if( !l.get(j).isFlag() && solutionIsSubsetOf(l.get(j), l.get(i), false ) )
-				{
-					reducedL.remove(l.get(i));
-					l.get(i).setFlag( true );
-					break;
-				}
+				positions = new LinkedList<Integer>();
+				equalSolutions.put(key, positions);
+			}
+			positions.add(i);
+		}
+		boolean[] removed = new boolean[l.size()];
+		for(int i = 0; i < l.size(); i++)
+		{
+			if( index.containsSubsetOf(l.get(i)) )
+			{
+				removed[equalSolutions.get(l.get(i).getKey()).poll()] = true;
+				index.remove(l.get(i));
+				l.get(i).setFlag( true );
 			}
 		}
 
 		// return the resulting set		
+		List<PrecursorSet> reducedL = new ArrayList<PrecursorSet>();
+		for(int i = 0; i < l.size(); i++)
+		{
+			if( !removed[i] )
+				reducedL.add(l.get(i));
+		}
 		return reducedL;
 	}
 
@@ -423,15 +448,8 @@ public class PrecursorFinder {
 		if( s1.isEmpty() )
 			return false;
 
-		HashSet<Compound> hashPrecursors = new HashSet<Compound>();
-		for(int i = 0; i < s2.getPrecursors().size(); i++)
-			hashPrecursors.add(s2.getPrecursors().get(i));
-		for(int j = 0; j < s1.getPrecursors().size(); j++)
-		{
-			if( ! hashPrecursors.contains(s1.getPrecursors().get(j)) )
-				return false;
-		}
-		hashPrecursors.clear();
+		if( ! s1.isSourcesSubSetOf(s2, false) )
+			return false;
 
 		if(s1.getPrecursors().size() != s2.getPrecursors().size()){
 			return true;
@@ -481,17 +499,7 @@ public class PrecursorFinder {
 				return false;
 		}*/
 		
-		HashSet<Compound> hash = new HashSet<Compound>();
-		for(int i = 0; i < s2.getPrecursors().size(); i++)
-			hash.add(s2.getPrecursors().get(i));
-		for(int j = 0; j < s1.getPrecursors().size(); j++)
-		{
-			if( ! hash.contains(s1.getPrecursors().get(j)) )
-				return false;
-		}
-
-		// check if they are the same...
-		return !properSubset || (s2.getPrecursors().size() > s1.getPrecursors().size());  // Works only if are sets (and no multisets)
+		return s1.isSourcesSubSetOf(s2, properSubset);
 	}	
 	
 	
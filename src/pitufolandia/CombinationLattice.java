@@ -0,0 +1,182 @@
+package pitufolandia;
+
+import ilog.concert.IloException;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import metabolicNetwork.Compound;
+import metabolicNetwork.MetabolicNetwork;
+import utils.FBAOracle;
+import application.PrecursorSet;
+
+/*
+ * Combination of the partial sets of the many-to-one traversal of
+ * Pitufrankstein, one level at a time: the sets of a level are the unions
+ * of two sets of the previous level that did not produce the target.
+ *
+ * The candidates of a level are hashed on PrecursorSet.getKey, so each
+ * distinct union is only kept once, the first one in the order of the
+ * pairs. A candidate whose sources strictly contain the sources of a known
+ * solution produces the target too and is not minimal, it is dropped
+ * without any FBA. The remaining candidates are checked by FBAOracle on
+ * nbThreads threads, each one with its own oracle, and the productions are
+ * kept by sources, the stop compounds of a set do not change its FBA.
+ */
+public class CombinationLattice {
+
+	private final MetabolicNetwork network;
+	private final Compound target;
+	private final double bigM;
+	private final int nbThreads;
+	private final ExecutorService executor;
+	private final List<FBAOracle> idleOracles = new ArrayList<FBAOracle>();
+	private final Map<Object, Double> productions = new HashMap<Object, Double>();
+
+	public CombinationLattice(MetabolicNetwork network, Compound target, double bigM, int nbThreads) {
+		this.network = network;
+		this.target = target;
+		this.bigM = bigM;
+		this.nbThreads = Math.max(1, nbThreads);
+		this.executor = Executors.newFixedThreadPool(this.nbThreads);
+	}
+
+	/*
+	 * The maximal production of the target by each set, from the sources
+	 * of the set.
+	 */
+	public double[] maxProductions(List<PrecursorSet> sets) {
+		final List<PrecursorSet> toSolve = new ArrayList<PrecursorSet>();
+		Set<Object> queued = new HashSet<Object>();
+		for (PrecursorSet s : sets) {
+			Object key = s.getSourcesKey();
+			if (!this.productions.containsKey(key) && queued.add(key)) {
+				toSolve.add(s);
+			}
+		}
+
+		final double[] solved = new double[toSolve.size()];
+		final AtomicInteger next = new AtomicInteger(0);
+		List<Future<Object>> results = new ArrayList<Future<Object>>();
+		for (int w = 0; w < Math.min(this.nbThreads, toSolve.size()); w++) {
+			results.add(this.executor.submit(new Callable<Object>() {
+				@Override
+				public Object call() throws IloException {
+					FBAOracle oracle = acquireOracle();
+					int i;
+					while ((i = next.getAndIncrement()) < toSolve.size()) {
+						solved[i] = oracle.maxProduction(toSolve.get(i).getPrecursors());
+					}
+					releaseOracle(oracle);
+					return null;
+				}
+			}));
+		}
+		for (Future<Object> result : results) {
+			try {
+				result.get();
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+				System.exit(-1);
+			} catch (ExecutionException e) {
+				e.printStackTrace();
+				System.exit(-1);
+			}
+		}
+		for (int i = 0; i < toSolve.size(); ++i) {
+			this.productions.put(toSolve.get(i).getSourcesKey(), solved[i]);
+		}
+
+		double[] production = new double[sets.size()];
+		for (int i = 0; i < sets.size(); ++i) {
+			production[i] = this.productions.get(sets.get(i).getSourcesKey());
+		}
+		return production;
+	}
+
+	/*
+	 * The next level of combiner: the unions producing the target are added
+	 * to solutions, in the order of the pairs, and the other ones are
+	 * returned.
+	 */
+	public List<PrecursorSet> nextLevel(List<PrecursorSet> combiner, List<PrecursorSet> solutions) {
+		Set<Object> known = new HashSet<Object>();
+		for (PrecursorSet s : solutions) {
+			known.add(s.getKey());
+		}
+		Map<Object, PrecursorSet> candidates = new LinkedHashMap<Object, PrecursorSet>();
+		for (PrecursorSet o : combiner) {
+			for (PrecursorSet p : combiner) {
+				if (o.isSourcesSubSetOf(p, false)) {
+					continue;
+				}
+				PrecursorSet newp = new PrecursorSet(p);
+				newp.add(o);
+				Object key = newp.getKey();
+				if (!known.contains(key) && !candidates.containsKey(key)) {
+					candidates.put(key, newp);
+				}
+			}
+		}
+
+		List<PrecursorSet> toCheck = new ArrayList<PrecursorSet>();
+		for (PrecursorSet c : candidates.values()) {
+			if (!containsSolution(c, solutions)) {
+				toCheck.add(c);
+			}
+		}
+		double[] production = maxProductions(toCheck);
+		List<PrecursorSet> newCombiner = new ArrayList<PrecursorSet>();
+		for (int i = 0; i < toCheck.size(); ++i) {
+			if (production[i] > 0) {
+				solutions.add(toCheck.get(i));
+			} else {
+				newCombiner.add(toCheck.get(i));
+			}
+		}
+		return newCombiner;
+	}
+
+	private static boolean containsSolution(PrecursorSet candidate, List<PrecursorSet> solutions) {
+		for (PrecursorSet s : solutions) {
+			if (s.isSourcesSubSetOf(candidate, true)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private FBAOracle acquireOracle() throws IloException {
+		synchronized (this.idleOracles) {
+			if (!this.idleOracles.isEmpty()) {
+				return this.idleOracles.remove(this.idleOracles.size() - 1);
+			}
+		}
+		return new FBAOracle(this.network, this.target, this.bigM, 0.0, this.bigM);
+	}
+
+	private void releaseOracle(FBAOracle oracle) {
+		synchronized (this.idleOracles) {
+			this.idleOracles.add(oracle);
+		}
+	}
+
+	public void end() {
+		this.executor.shutdown();
+		for (FBAOracle oracle : this.idleOracles) {
+			oracle.end();
+		}
+		this.idleOracles.clear();
+	}
+}
@@ -0,0 +1,136 @@
+package pitufolandia;
+
+import ilog.concert.IloException;
+import ilog.concert.IloIntVar;
+import ilog.concert.IloLinearNumExpr;
+import ilog.concert.IloNumVar;
+import ilog.cplex.IloCplex;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import metabolicNetwork.Compound;
+import metabolicNetwork.StoichiometricMatrix;
+import utils.IndicatorLinkStrategy;
+import application.InputParameters;
+import application.PrecursorSet;
+
+/*
+ * Whether the solutions found by Pitufrankstein are all the precursor sets
+ * of the target: a MILP with an indicator per source, feasible if some
+ * sources produce the target without containing any known solution.
+ *
+ * The model is built once for a target. Each check only adds the
+ * exclusion cuts of the solutions found since the previous one, and gives
+ * the previous incumbent to CPLEX as a MIP start. The model has no
+ * objective, so if no new solution excludes the incumbent, the check ends
+ * on the start.
+ */
+public class CompletenessOracle {
+
+	private final Map<Compound, Integer> sourceIndices = new HashMap<Compound, Integer>();
+	private final Set<Object> excluded = new HashSet<Object>();
+	private IloCplex cplex;
+	private IloNumVar[] vars;
+	private IloIntVar[] ind;
+	private double[] incumbent = null;
+
+	public CompletenessOracle(StoichiometricMatrix sm, List<Compound> sources, Compound target,
+			double bigM) throws IloException {
+		for (int i = 0; i < sources.size(); ++i) {
+			this.sourceIndices.put(sources.get(i), i);
+		}
+		buildModel(sm, sources, target, bigM);
+	}
+
+	private void buildModel(StoichiometricMatrix sm, List<Compound> sources, Compound target,
+			double bigM) throws IloException {
+		this.cplex = new IloCplex();
+		int nbReactions = sm.getNbColumns();
+		String[] names = new String[nbReactions + sources.size()];
+		for (int j = 0; j < nbReactions; ++j) {
+			names[j] = sm.getColumnReaction(j).getId();
+		}
+		for (int i = 0; i < sources.size(); ++i) {
+			names[nbReactions + i] = sources.get(i).getId() + "_producer";
+		}
+		IloNumVar[] x = this.cplex.numVarArray(names.length, 0.0, Double.MAX_VALUE, names);
+		this.ind = this.cplex.intVarArray(sources.size(), 0, 1);
+		for (int i = 0; i < sources.size(); ++i) {
+			this.ind[i].setName(sources.get(i).getId() + "_IND");
+		}
+		this.vars = new IloNumVar[x.length + this.ind.length];
+		System.arraycopy(x, 0, this.vars, 0, x.length);
+		System.arraycopy(this.ind, 0, this.vars, x.length, this.ind.length);
+
+		IndicatorLinkStrategy link = InputParameters.indicatorLink != null
+				? InputParameters.indicatorLink : IndicatorLinkStrategy.BIGM;
+		int[] smCols = sm.getColumnIndices();
+		double[] smCoefs = sm.getCoefficients();
+		for (int row = 0; row < sm.getNbRows(); ++row) {
+			Compound c = sm.getRowCompound(row);
+			IloLinearNumExpr expr = this.cplex.linearNumExpr();
+			Integer delta = this.sourceIndices.get(c);
+			if (delta != null) {
+				expr.addTerm(1.0, x[nbReactions + delta]);
+				link.link(this.cplex, this.ind[delta], x[nbReactions + delta], bigM, c.getId());
+			}
+			for (int k = sm.getRowStart(row); k < sm.getRowEnd(row); ++k) {
+				expr.addTerm(smCoefs[k], x[smCols[k]]);
+			}
+
+			if (target.equals(c)) {
+				this.cplex.addGe(expr, 0.1, c.getId());
+			} else if (!c.isBootstrap()) {
+				this.cplex.addGe(expr, 0.0, c.getId());
+			}
+		}
+
+		if (!InputParameters.verbose) {
+			this.cplex.setOut(null);
+			this.cplex.setWarning(null);
+		}
+		this.cplex.setParam(IloCplex.DoubleParam.EpInt, 1e-9);
+		this.cplex.setParam(IloCplex.DoubleParam.EpRHS, 1e-9);
+		this.cplex.setParam(IloCplex.IntParam.Threads, InputParameters.nbThreads);
+	}
+
+	/*
+	 * True if no set of sources produces the target without containing one
+	 * of the solutions.
+	 */
+	public boolean isComplete(List<PrecursorSet> solutions) throws IloException {
+		for (PrecursorSet s : solutions) {
+			// solutions with the same sources have the same cut
+			if (!this.excluded.add(s.getSourcesKey())) {
+				continue;
+			}
+			IloLinearNumExpr expr = this.cplex.linearNumExpr();
+			for (Compound c : s.getPrecursors()) {
+				expr.addTerm(1.0, this.ind[this.sourceIndices.get(c)]);
+			}
+			this.cplex.addLe(expr, s.getPrecursors().size() - 1.0, "SolutionExclusion" + s);
+		}
+
+		if (this.cplex.getNMIPStarts() > 0) {
+			this.cplex.deleteMIPStarts(0, this.cplex.getNMIPStarts());
+		}
+		if (this.incumbent != null) {
+			// dropped by CPLEX if one of the new cuts excludes it
+			this.cplex.addMIPStart(this.vars, this.incumbent, IloCplex.MIPStartEffort.CheckFeas);
+		}
+		if (this.cplex.solve()) {
+			this.incumbent = this.cplex.getValues(this.vars);
+			return false;
+		}
+		this.incumbent = null;
+		return true;
+	}
+
+	public void end() {
+		this.cplex.end();
+	}
+}
@@ -1,29 +1,35 @@
 package pitufolandia;
 
 import ilog.concert.IloException;
-import ilog.concert.IloIntVar;
-import ilog.concert.IloLinearNumExpr;
-import ilog.concert.IloNumVar;
-import ilog.cplex.IloCplex;
-import ilog.cplex.IloCplexModeler;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.Set;
-import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 
 import metabolicNetwork.Compound;
 import metabolicNetwork.MetabolicNetwork;
 import metabolicNetwork.Reaction;
+import metabolicNetwork.StoichiometricMatrix;
 import pitufo.PrecursorFinder;
+import utils.Metrics;
 import utils.StringUtils;
 import application.InputParameters;
 import application.PrecursorSet;
+import application.PrecursorSetIndex;
 
 /**
  * Implements the combinatorial version of the precursor set eumeration tool
@@ -37,12 +43,30 @@ public class Pitufrankstein extends PrecursorFinder {
 	MetabolicNetwork manyToOneNetwork = new MetabolicNetwork();
 	List<Reaction> allReactions = new LinkedList<Reaction>();
 	LinkedList<Compound> allCompounds = new LinkedList<Compound>();
+	StoichiometricMatrix stoichiometricMatrix = null;
 	/**
 	 * The tolerance for consider that we have a positive production of the target.
 	 */
 	private double epsilon1 = 0.1;
 	private double bigM = 1000.0;
 	int maxK = 4;
+	/*
+	 * Memo of visitCompound, the sets of a visit without the reactions
+	 * visited before it, see VisitKey. The memo is shared by the workers of
+	 * the visit, the indices are only written before it starts.
+	 */
+	private Map<VisitKey, List<PrecursorSet>> visits = new ConcurrentHashMap<VisitKey, List<PrecursorSet>>();
+	private Map<Compound, BitSet[]> upstream = new ConcurrentHashMap<Compound, BitSet[]>();
+	private Map<Compound, Integer> compoundIndices = new HashMap<Compound, Integer>();
+	private Map<Reaction, Integer> reactionIndices = new HashMap<Reaction, Integer>();
+	private Reaction[] reactionsByIndex = null;
+	/*
+	 * With -nbThreads > 1, the visit of a compound with at least
+	 * forkThreshold compounds upstream visits the substrates of its
+	 * producing reactions in parallel, below it the subtree is too small to
+	 * be worth a task.
+	 */
+	int forkThreshold = 16;
 	
 	public Pitufrankstein(MetabolicNetwork network, boolean specialEmptySet) {
 		super(network, specialEmptySet);
@@ -103,6 +127,7 @@ public class Pitufrankstein extends PrecursorFinder {
 		
 		this.allReactions = new LinkedList<Reaction>(this.network.getReactions().values());
 		this.allCompounds = new LinkedList<Compound>(this.network.getCompounds().values());
+		this.stoichiometricMatrix = null;
 		
 		// Generate the many-to-one network
 		HashMap<String, Compound> ncompounds = new HashMap<String, Compound>();
@@ -150,7 +175,7 @@ public class Pitufrankstein extends PrecursorFinder {
 		
 		System.out.println("The many-to-one network has " + nreactions.size() + " reaction and " + ncompounds.size() + " compounds." );
 		Compound targetManyToOne = this.manyToOneNetwork.getCompounds().get(target.getId());
-		List <PrecursorSet> ps = visitCompound(targetManyToOne, null, new LinkedList<Compound>(), new TreeSet<Reaction>());
+		List <PrecursorSet> ps = visitCompound(targetManyToOne, null, new LinkedList<Compound>(), new HashSet<Reaction>());
 		// For each precursor set, replace the reactions from the many-to-one network 
 		// by the corresponding original network reaction
 		for (PrecursorSet p : ps){
@@ -166,12 +191,14 @@ public class Pitufrankstein extends PrecursorFinder {
 			p.setReactions(reacs);
 		}
 		// Check feasibility
+		CombinationLattice lattice = new CombinationLattice(this.network, target, this.bigM,
+				InputParameters.nbThreads);
 		List <PrecursorSet> solutions = new LinkedList<PrecursorSet>();
 		List <PrecursorSet> combiner = new LinkedList<PrecursorSet>();
+		double[] fluxMax = lattice.maxProductions(ps);
+		int nbChecked = 0;
 		for (PrecursorSet p : ps){
-			double fluxMax = 0;
-			fluxMax = doFBA(p.getPrecursors(), p.getBootstraps(), allCompounds, target);
-			if (fluxMax > this.epsilon1){
+			if (fluxMax[nbChecked++] > this.epsilon1){
 				solutions.add(p);
 			}
 			else{
@@ -182,138 +209,509 @@ public class Pitufrankstein extends PrecursorFinder {
 		System.out.println("Combining " + combiner.size() + " tps solutions...");
 		
 		int k=2;
-		while (combiner.size() > 1 && k <= maxK && !haveAllSolutions(solutions,artificialSources,target)){
+		CompletenessOracle completeness = createCompletenessOracle(artificialSources, target);
+		while (combiner.size() > 1 && k <= maxK && !haveAllSolutions(completeness, solutions)){
 			// Combine the unfeasible solutions up to size maxK and check feasibility
-			List<PrecursorSet> powerSet = new LinkedList<PrecursorSet>(combiner);
-			List <PrecursorSet> newcombiner = new LinkedList<PrecursorSet>();
-			for (PrecursorSet o : combiner){
-				for(PrecursorSet p : powerSet) {
-					if (!p.getPrecursors().containsAll(o.getPrecursors())){
-						PrecursorSet newp = new PrecursorSet(p);
-						newp.add(o);
-						double fluxMax = 0;
-						fluxMax = doFBA(newp.getPrecursors(), newp.getBootstraps(), allCompounds, target);
-						if (fluxMax > 0){
-							if (!solutions.contains(newp)){
-								solutions.add(newp);
-							}
-						}
-						else{
-							if (!newcombiner.contains(newp)){
-								newcombiner.add(newp);
-							}
-						}
-					}
-				}
-			}
-			combiner = newcombiner;
+			combiner = lattice.nextLevel(combiner, solutions);
 			++k;
 		}
+		lattice.end();
+		if (completeness != null) {
+			completeness.end();
+		}
 		ps = null;
 		
-		// Remove non minimal precursor sets
-		LinkedList<Integer> rl = new LinkedList<Integer>();
-		for(int i = 0; i< solutions.size(); ++i){
-			PrecursorSet p = solutions.get(i);
-			p.setFlag(false);
-			for(PrecursorSet pP : solutions){
-				if (p != pP && !pP.isFlag() && precursorSetnIsSubsetOf(pP, p)){
-					p.setFlag(true);
-					rl.addFirst(i);
-					break;
-				}
-			}
-		}
-		for(Integer i : rl){
-			solutions.remove(i.intValue());
-		}
+		solutions = removeNonMinimalSolutions(solutions);
 		
 		printSolutions(solutions);
 		return solutions;
 	}
 
+	/*
+	 * The solutions without the non minimal precursor sets, which are
+	 * flagged. The sets not flagged are in the index.
+	 */
+	static List<PrecursorSet> removeNonMinimalSolutions(List<PrecursorSet> solutions){
+		PrecursorSetIndex index = new PrecursorSetIndex();
+		for(PrecursorSet p : solutions){
+			if (!p.isFlag()){
+				index.add(p);
+			}
+		}
+		List<PrecursorSet> minimalSolutions = new LinkedList<PrecursorSet>();
+		for(PrecursorSet p : solutions){
+			boolean indexed = !p.isFlag();
+			p.setFlag(index.containsSubsetOf(p));
+			if (p.isFlag()){
+				index.remove(p);
+			}
+			else{
+				if (!indexed){
+					index.add(p);
+				}
+				minimalSolutions.add(p);
+			}
+		}
+		return minimalSolutions;
+	}
+
+	/*
+	 * The precursor sets of a, the compounds of visitedCompounds and the
+	 * reactions of visitedReactions being already on the path. The visit
+	 * runs on a pool of InputParameters.nbThreads workers if more than one.
+	 */
 	public List<PrecursorSet> visitCompound(Compound a, Reaction incommingReaction, List<Compound> visitedCompounds, Set<Reaction> visitedReactions){
-//		if (incommingReaction != null) 
-//			System.out.println("Visiting: " + a.getId() + "[Reaction: " + incommingReaction.getId() + "]");
-		if (incommingReaction != null){
-			visitedReactions.add(incommingReaction);
+		indexVisits(a, incommingReaction, visitedCompounds, visitedReactions);
+		BitSet compounds = new BitSet();
+		for (Compound c : visitedCompounds){
+			compounds.set(indexOf(this.compoundIndices, c));
 		}
-		if (a.isPrecursor()){
-			List<PrecursorSet> ps = new LinkedList<PrecursorSet>();
-			PrecursorSet s = new PrecursorSet();
-			s.addPrecursor(a);
-			s.addReactions(visitedReactions);
-			ps.add(s);
+		BitSet reactions = new BitSet();
+		for (Reaction r : visitedReactions){
+			reactions.set(indexOf(this.reactionIndices, r));
+		}
+		VisitTask visit = new VisitTask(a, incommingReaction, compounds, reactions);
+		try {
+			if (InputParameters.nbThreads <= 1) {
+				return visit.invoke();
+			}
+			ForkJoinPool pool = new ForkJoinPool(InputParameters.nbThreads);
+			try {
+				return pool.invoke(visit);
+			} finally {
+				pool.shutdown();
+			}
+		} finally {
+			clearVisits();
+		}
+	}
+
+	/*
+	 * A visit from a compound, run at once or forked by another visit.
+	 */
+	private class VisitTask extends RecursiveTask<List<PrecursorSet>> {
+		private static final long serialVersionUID = -2217638467290364215L;
+
+		private Compound compound;
+		private Reaction incommingReaction;
+		private BitSet visitedCompounds;
+		private BitSet visitedReactions;
+
+		VisitTask(Compound compound, Reaction incommingReaction, BitSet visitedCompounds,
+				BitSet visitedReactions) {
+			this.compound = compound;
+			this.incommingReaction = incommingReaction;
+			this.visitedCompounds = visitedCompounds;
+			this.visitedReactions = visitedReactions;
+		}
+
+		@Override
+		protected List<PrecursorSet> compute() {
+			List<PrecursorSet> ps = new Visit(this.visitedCompounds, this.visitedReactions)
+					.run(this.compound, this.incommingReaction);
+			// the task is kept until its parent merges it
+			this.visitedCompounds = null;
+			this.visitedReactions = null;
 			return ps;
 		}
-		if (a.isBootstrap()){
-			List<PrecursorSet> ps = new LinkedList<PrecursorSet>();
-			PrecursorSet s = new PrecursorSet();
-			s.addBootstrap(a);
-			s.addReactions(visitedReactions);
-			ps.add(s);
+	}
+
+	/*
+	 * The traversal of the producing reactions, with a stack of frames
+	 * instead of a recursion as deep as the longest pathway. The visited
+	 * compounds and reactions are bit sets on the indices of indexVisits,
+	 * changed in place: a frame sets the bits of its compound and incoming
+	 * reaction when it is entered, the other substrates of a branch are set
+	 * for the time of the branch, and the bits are cleared on the way back.
+	 * A branch costs its changes instead of a copy of the path, only the
+	 * forks copy the bit sets.
+	 */
+	private class Visit {
+		private final BitSet visitedCompounds;
+		private final BitSet visitedReactions;
+		private final Deque<Frame> stack = new ArrayDeque<Frame>();
+
+		Visit(BitSet visitedCompounds, BitSet visitedReactions) {
+			this.visitedCompounds = visitedCompounds;
+			this.visitedReactions = visitedReactions;
+		}
+
+		List<PrecursorSet> run(Compound a, Reaction incommingReaction) {
+			List<PrecursorSet> ps = enter(a, incommingReaction);
+			while (!this.stack.isEmpty()) {
+				Frame f = this.stack.peek();
+				if (ps != null) {
+					unblock(f);
+					f.merge(ps);
+					ps = null;
+				}
+				if (f.next < f.substrates.length) {
+					block(f, f.next);
+					ps = enter(f.substrates[f.next], f.reactions[f.next]);
+				} else {
+					this.stack.pop();
+					ps = leave(f);
+				}
+			}
 			return ps;
 		}
-		if (visitedCompounds.contains(a)){
+
+		/*
+		 * The sets of a leaf or of a known visit, or null if a frame was
+		 * pushed for the visit of a.
+		 */
+		private List<PrecursorSet> enter(Compound a, Reaction incommingReaction) {
+			boolean newReaction = false;
+			if (incommingReaction != null){
+				int r = indexOf(reactionIndices, incommingReaction);
+				newReaction = !this.visitedReactions.get(r);
+				this.visitedReactions.set(r);
+			}
 			List<PrecursorSet> ps = new LinkedList<PrecursorSet>();
-			PrecursorSet s = new PrecursorSet();
-			s.addReactions(visitedReactions);
-			s.addSubstrateAsStopCompound(a);
-			ps.add(s);
+			if (a.isPrecursor() || a.isBootstrap()){
+				PrecursorSet s = new PrecursorSet();
+				if (a.isPrecursor()){
+					s.addPrecursor(a);
+				}
+				else{
+					s.addBootstrap(a);
+				}
+				addVisitedReactions(s);
+				ps.add(s);
+			}
+			else{
+				// The visit only depends on the compounds and reactions
+				// upstream of a, the same subtree reached from another parent
+				// is not expanded again.
+				VisitKey key = new VisitKey(a, this.visitedCompounds, this.visitedReactions);
+				List<PrecursorSet> visit = visits.get(key);
+				if (visit != null){
+					Metrics.increment("manyToOne.memoHits");
+					for (PrecursorSet s : visit){
+						PrecursorSet copy = new PrecursorSet(s);
+						addVisitedReactions(copy);
+						ps.add(copy);
+					}
+				}
+				else if (this.visitedCompounds.get(indexOf(compoundIndices, a))){
+					PrecursorSet s = new PrecursorSet();
+					addVisitedReactions(s);
+					s.addSubstrateAsStopCompound(a);
+					ps.add(s);
+					remember(key, ps);
+				}
+				else{
+					Frame f = new Frame(a, incommingReaction, newReaction, key);
+					this.visitedCompounds.set(indexOf(compoundIndices, a));
+					if (f.substrates.length > 1 && ForkJoinTask.inForkJoinPool()
+							&& getUpstream(a)[0].cardinality() >= forkThreshold){
+						return fork(f);
+					}
+					this.stack.push(f);
+					return null;
+				}
+			}
+			if (newReaction){
+				this.visitedReactions.clear(indexOf(reactionIndices, incommingReaction));
+			}
 			return ps;
 		}
 
-		visitedCompounds.add(a);
+		/*
+		 * The branches of f in parallel, each one on its own copy of the
+		 * visited compounds and reactions, merged in the order of the
+		 * branches as they would be one after the other.
+		 */
+		private List<PrecursorSet> fork(Frame f) {
+			Metrics.increment("manyToOne.forks");
+			List<VisitTask> branches = new ArrayList<VisitTask>(f.substrates.length);
+			for (int k = 0; k < f.substrates.length; ++k){
+				block(f, k);
+				branches.add(new VisitTask(f.substrates[k], f.reactions[k],
+						(BitSet) this.visitedCompounds.clone(), (BitSet) this.visitedReactions.clone()));
+				unblock(f);
+			}
+			ForkJoinTask.invokeAll(branches);
+			for (VisitTask branch : branches){
+				f.merge(branch.join());
+			}
+			return leave(f);
+		}
 
-		Queue<Reaction> reactionsToAnalyze = new LinkedList<Reaction>();
-		for(Reaction r : a.getProducedBy()){
-			if (!visitedReactions.contains(r)){
-				if((r.getReverseReaction() == null) || (r.getReverseReaction() != null && !visitedReactions.contains(r.getReverseReaction()))){
-					reactionsToAnalyze.add(r);
+		/*
+		 * The other substrates of the reaction of branch k are visited while
+		 * the branch runs.
+		 */
+		private void block(Frame f, int k) {
+			f.nbBlocked = 0;
+			for (Compound c : f.reactions[k].getSubstrates().values()){
+				int i = indexOf(compoundIndices, c);
+				if (c != f.substrates[k] && !this.visitedCompounds.get(i)){
+					this.visitedCompounds.set(i);
+					f.blocked[f.nbBlocked++] = i;
 				}
 			}
 		}
-		
 
-		List<PrecursorSet> allPSs = new LinkedList<PrecursorSet>();
-		boolean allSolutionsFound = false;
-		while( ! reactionsToAnalyze.isEmpty() && !allSolutionsFound){
-			Reaction r = reactionsToAnalyze.poll();
-			List<PrecursorSet> tps =  new LinkedList<PrecursorSet>();
-			for(Compound c: r.getSubstrates().values()){
-				List<Compound> newVisitedCompounds = new LinkedList<Compound>(visitedCompounds);
-				List<Compound> compoundListToAdd = new LinkedList<Compound>(r.getSubstrates().values());
-				compoundListToAdd.remove(c);
-				newVisitedCompounds.addAll(compoundListToAdd);
-				Set<Reaction> newVisitedReactions = new TreeSet<Reaction>(visitedReactions);
-				List<PrecursorSet> lps = visitCompound(c,r, newVisitedCompounds, newVisitedReactions);
-				tps = unionOfPSets(tps, lps);
-			}
-			for (PrecursorSet p : tps){
-				if (!allPSs.contains(p))
-					allPSs.add(p);
-			}
-		}
-
-		// Minimalise the solution list
-		List<PrecursorSet> reducedL = new ArrayList<PrecursorSet>(allPSs);
-		for(int i = 0; i < allPSs.size(); i++)
-		{
-			for(int j = 0; j < allPSs.size(); j++)
+		private void unblock(Frame f) {
+			for (int k = 0; k < f.nbBlocked; ++k){
+				this.visitedCompounds.clear(f.blocked[k]);
+			}
+			f.nbBlocked = 0;
+		}
+
+		private List<PrecursorSet> leave(Frame f) {
+			// Minimalise the solution list
+			List<PrecursorSet> allPSs = f.allPSs;
+			List<PrecursorSet> reducedL = new ArrayList<PrecursorSet>(allPSs);
+			for(int i = 0; i < allPSs.size(); i++)
 			{
-				if(i == j)
-					continue;
-				if( !allPSs.get(j).isFlag() && factoryIsSubsetOf(allPSs.get(j), allPSs.get(i)) )
+				for(int j = 0; j < allPSs.size(); j++)
 				{
-					reducedL.remove(allPSs.get(i));
-					allPSs.get(i).setFlag( true );
-					break;
+					if(i == j)
+						continue;
+					if( !allPSs.get(j).isFlag() && factoryIsSubsetOf(allPSs.get(j), allPSs.get(i)) )
+					{
+						reducedL.remove(allPSs.get(i));
+						allPSs.get(i).setFlag( true );
+						break;
+					}
+				}
+			}
+			f.allPSs = null;
+
+			remember(f.key, reducedL);
+			this.visitedCompounds.clear(indexOf(compoundIndices, f.compound));
+			if (f.newReaction){
+				this.visitedReactions.clear(indexOf(reactionIndices, f.incommingReaction));
+			}
+			return reducedL;
+		}
+
+		/*
+		 * Keeps the sets of a visit without the reactions visited before it,
+		 * they are added back to the copies of a hit.
+		 */
+		private void remember(VisitKey key, List<PrecursorSet> ps) {
+			List<PrecursorSet> visit = new ArrayList<PrecursorSet>(ps.size());
+			for (PrecursorSet s : ps){
+				PrecursorSet stripped = new PrecursorSet(s);
+				for (Iterator<Reaction> it = stripped.getReactions().iterator(); it.hasNext();){
+					Integer r = reactionIndices.get(it.next());
+					if (r != null && this.visitedReactions.get(r)){
+						it.remove();
+					}
 				}
+				visit.add(stripped);
+			}
+			visits.put(key, visit);
+		}
+
+		private void addVisitedReactions(PrecursorSet s) {
+			for (int r = this.visitedReactions.nextSetBit(0); r >= 0; r = this.visitedReactions.nextSetBit(r + 1)){
+				s.addReaction(reactionsByIndex[r]);
 			}
 		}
-		allPSs = null;
 
-		return reducedL;
+		/*
+		 * The visit of a compound in progress: its branches, one per
+		 * substrate of the producing reactions not visited yet, and the sets
+		 * merged so far.
+		 */
+		private class Frame {
+			final Compound compound;
+			final Reaction incommingReaction;
+			final boolean newReaction;
+			final VisitKey key;
+			final Reaction[] reactions;
+			final Compound[] substrates;
+			final boolean[] lastOfReaction;
+			final int[] blocked;
+			int nbBlocked = 0;
+			int next = 0;
+			List<PrecursorSet> tps = null;
+			List<PrecursorSet> allPSs = new LinkedList<PrecursorSet>();
+
+			Frame(Compound a, Reaction incommingReaction, boolean newReaction, VisitKey key) {
+				this.compound = a;
+				this.incommingReaction = incommingReaction;
+				this.newReaction = newReaction;
+				this.key = key;
+				List<Reaction> reactionsToAnalyze = new ArrayList<Reaction>();
+				int nbBranches = 0;
+				int maxSubstrates = 0;
+				for(Reaction r : a.getProducedBy()){
+					if (!visitedReactions.get(indexOf(reactionIndices, r))){
+						if((r.getReverseReaction() == null) || !visitedReactions.get(indexOf(reactionIndices, r.getReverseReaction()))){
+							reactionsToAnalyze.add(r);
+							nbBranches += r.getSubstrates().size();
+							maxSubstrates = Math.max(maxSubstrates, r.getSubstrates().size());
+						}
+					}
+				}
+				this.reactions = new Reaction[nbBranches];
+				this.substrates = new Compound[nbBranches];
+				this.lastOfReaction = new boolean[nbBranches];
+				this.blocked = new int[maxSubstrates];
+				int k = 0;
+				for (Reaction r : reactionsToAnalyze){
+					for (Compound c : r.getSubstrates().values()){
+						this.reactions[k] = r;
+						this.substrates[k++] = c;
+					}
+					if (k > 0){
+						this.lastOfReaction[k - 1] = true;
+					}
+				}
+			}
+
+			/*
+			 * The union of the sets of the branches of a reaction, added to
+			 * allPSs after its last branch.
+			 */
+			void merge(List<PrecursorSet> ps) {
+				if (this.next == 0 || this.lastOfReaction[this.next - 1]){
+					this.tps = new LinkedList<PrecursorSet>();
+				}
+				this.tps = unionOfPSets(this.tps, ps);
+				if (this.lastOfReaction[this.next]){
+					for (PrecursorSet p : this.tps){
+						if (!this.allPSs.contains(p))
+							this.allPSs.add(p);
+					}
+					this.tps = null;
+				}
+				++this.next;
+			}
+		}
+	}
+
+	/*
+	 * Numbers the compounds and reactions the visit of a may meet, for the
+	 * bit sets of the visit and the keys of the memo, before the visit so
+	 * that the workers only read them.
+	 */
+	private void indexVisits(Compound a, Reaction incommingReaction, List<Compound> visitedCompounds, Set<Reaction> visitedReactions) {
+		clearVisits();
+		for (Compound c : visitedCompounds) {
+			addIndex(this.compoundIndices, c);
+		}
+		for (Reaction r : visitedReactions) {
+			addIndex(this.reactionIndices, r);
+		}
+		if (incommingReaction != null) {
+			addIndex(this.reactionIndices, incommingReaction);
+		}
+		Set<Compound> expanded = new HashSet<Compound>();
+		Queue<Compound> toExpand = new LinkedList<Compound>();
+		toExpand.add(a);
+		while (!toExpand.isEmpty()) {
+			Compound c = toExpand.poll();
+			addIndex(this.compoundIndices, c);
+			if (c.isPrecursor() || c.isBootstrap() || !expanded.add(c)) {
+				continue;
+			}
+			for (Reaction r : c.getProducedBy()) {
+				addIndex(this.reactionIndices, r);
+				if (r.getReverseReaction() != null) {
+					addIndex(this.reactionIndices, r.getReverseReaction());
+				}
+				toExpand.addAll(r.getSubstrates().values());
+			}
+		}
+		this.reactionsByIndex = new Reaction[this.reactionIndices.size()];
+		for (Map.Entry<Reaction, Integer> e : this.reactionIndices.entrySet()) {
+			this.reactionsByIndex[e.getValue()] = e.getKey();
+		}
+	}
+
+	private void clearVisits() {
+		this.visits.clear();
+		this.upstream.clear();
+		this.compoundIndices.clear();
+		this.reactionIndices.clear();
+		this.reactionsByIndex = null;
+	}
+
+	private static <T> void addIndex(Map<T, Integer> indices, T o) {
+		if (!indices.containsKey(o)) {
+			indices.put(o, indices.size());
+		}
+	}
+
+	private static <T> int indexOf(Map<T, Integer> indices, T o) {
+		return indices.get(o);
+	}
+
+	/*
+	 * The compounds the visit of a may expand and the reactions it may
+	 * follow or find blocked by their reverse: a and the compounds above it
+	 * through the producing reactions, up to the sources and bootstraps.
+	 */
+	private BitSet[] getUpstream(Compound a) {
+		BitSet[] up = this.upstream.get(a);
+		if (up != null) {
+			return up;
+		}
+		BitSet compounds = new BitSet();
+		BitSet reactions = new BitSet();
+		Queue<Compound> toExpand = new LinkedList<Compound>();
+		toExpand.add(a);
+		while (!toExpand.isEmpty()) {
+			Compound c = toExpand.poll();
+			if (c.isPrecursor() || c.isBootstrap() || compounds.get(indexOf(this.compoundIndices, c))) {
+				continue;
+			}
+			compounds.set(indexOf(this.compoundIndices, c));
+			for (Reaction r : c.getProducedBy()) {
+				reactions.set(indexOf(this.reactionIndices, r));
+				if (r.getReverseReaction() != null) {
+					reactions.set(indexOf(this.reactionIndices, r.getReverseReaction()));
+				}
+				toExpand.addAll(r.getSubstrates().values());
+			}
+		}
+		up = new BitSet[] { compounds, reactions };
+		this.upstream.put(a, up);
+		return up;
+	}
+
+	/*
+	 * A compound with the visited compounds and reactions its visit can
+	 * see, those upstream of it. Two visits with the same key expand the
+	 * same subtree, hit the same stop compounds on the cycles, and only
+	 * differ by the visited reactions added to every set.
+	 */
+	private class VisitKey {
+		private final Compound compound;
+		private final BitSet blockedCompounds;
+		private final BitSet blockedReactions;
+
+		VisitKey(Compound compound, BitSet visitedCompounds, BitSet visitedReactions) {
+			this.compound = compound;
+			BitSet[] up = getUpstream(compound);
+			this.blockedCompounds = (BitSet) visitedCompounds.clone();
+			this.blockedCompounds.and(up[0]);
+			this.blockedReactions = (BitSet) visitedReactions.clone();
+			this.blockedReactions.and(up[1]);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof VisitKey)) {
+				return false;
+			}
+			VisitKey other = (VisitKey) obj;
+			return this.compound == other.compound
+					&& this.blockedCompounds.equals(other.blockedCompounds)
+					&& this.blockedReactions.equals(other.blockedReactions);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * (31 * this.compound.hashCode() + this.blockedCompounds.hashCode())
+					+ this.blockedReactions.hashCode();
+		}
 	}
 
 	protected Compound createArtificialTargetCompound(List<Compound> targets) {
@@ -338,30 +736,13 @@ public class Pitufrankstein extends PrecursorFinder {
 	
 	static private boolean factoryIsSubsetOf(PrecursorSet s1, PrecursorSet s2)
 	{
-		HashSet<Compound> hash = new HashSet<Compound>();
-		for(int i = 0; i < s2.getPrecursors().size(); i++)
-			hash.add(s2.getPrecursors().get(i));
-		
-		boolean isAPrecusorSubset = hash.containsAll(s1.getPrecursors());
-		
-		if (isAPrecusorSubset){
+		if (s1.isSourcesSubSetOf(s2, false)){
 			return s2.getReactions().contains(s1.getReactions());
 		}
 		
 		return false;
 	}	
 	
-	static private boolean precursorSetnIsSubsetOf(PrecursorSet s1, PrecursorSet s2)
-	{
-		HashSet<Compound> hash = new HashSet<Compound>();
-		for(int i = 0; i < s2.getPrecursors().size(); i++)
-			hash.add(s2.getPrecursors().get(i));
-		
-		boolean isAPrecusorSubset = hash.containsAll(s1.getPrecursors());
-		
-		return isAPrecusorSubset;
-	}	
-	
 	/**
 	 * Make the union of all PrecursorSets in lps with all Precursor Sets
 	 * in tps.
@@ -395,132 +776,41 @@ public class Pitufrankstein extends PrecursorFinder {
 		}
 		return tps;
 	}
-	private boolean haveAllSolutions(List<PrecursorSet> solutions, List<Compound> sources, Compound target) {
-		boolean allSolutions = true;
-		IloCplex cplex = null;
-		IloNumVar[] x = null;
-		IloIntVar[] Ind = null;
-		String[] reacNames = new String[this.allReactions.size()
-				+ sources.size()];
-		
+	/*
+	 * Whether solutions are all the precursor sets of the target, see
+	 * CompletenessOracle. True if the oracle could not be built or solved,
+	 * the combination then stops at the current level.
+	 */
+	private boolean haveAllSolutions(CompletenessOracle completeness, List<PrecursorSet> solutions) {
+		if (completeness == null) {
+			return true;
+		}
 		try {
-			cplex = new IloCplex();
-	
-			int nbReac = 0;
-			for (Reaction r : this.allReactions) {
-				reacNames[nbReac++] = r.getId();
-			}
-			for (Compound c : sources) {
-				reacNames[nbReac++] = c.getId() + "_producer";
-			}
-			IloCplexModeler modeler = new IloCplexModeler();
-			x = modeler.numVarArray(
-					this.allReactions.size() + sources.size(), 0.0,
-					Double.MAX_VALUE, reacNames);
-			cplex.add(x);
-			Ind = modeler.intVarArray(sources.size(), 0, 1);
-	
-			for (int i = 0; i < sources.size(); ++i) {
-				Ind[i].setName(sources.get(i).getId() + "_IND");
-			}
-			cplex.add(Ind);
-	
-			for (Compound c : network.getCompounds().values()) {
-				IloLinearNumExpr expr = modeler.linearNumExpr();
-				if (sources.contains(c)) {
-					int delta = sources.indexOf(c);
-					expr.addTerm(1.0, x[this.allReactions.size() + delta]);
-					IloLinearNumExpr intConstraitLHS = modeler
-							.linearNumExpr();
-					intConstraitLHS.addTerm(1.0, x[this.allReactions.size()
-							+ delta]);
-					IloLinearNumExpr intConstraitRHS = modeler
-							.linearNumExpr();
-					intConstraitRHS.addTerm(1000, Ind[delta]);
-					cplex.addLe(intConstraitLHS, intConstraitRHS, c.getId()
-							+ "FluxIfUsed");
-	
-					intConstraitLHS = modeler.linearNumExpr();
-					intConstraitLHS.addTerm(1.0, Ind[delta]);
-					intConstraitRHS = modeler.linearNumExpr();
-					intConstraitRHS.addTerm(1.0, x[this.allReactions.size()
-							+ delta]);
-					cplex.addLe(intConstraitLHS, intConstraitRHS, c.getId()
-							+ "_NotUsedNotCounted");
-	
-					// intConstraitLHS = modeler.linearNumExpr();
-					// intConstraitLHS.addTerm(1.0, I[delta]);
-					// intConstraitRHS = modeler.linearNumExpr();
-					// intConstraitRHS.addTerm(1.0, Ind[delta]);
-					// cplex.addGe(intConstraitLHS, intConstraitRHS,
-					// c.getId()
-					// + "Count");
-				}
-				for (int i = 0; i < this.allReactions.size(); i++) {
-					Reaction r = this.allReactions.get(i);
-					if (r.getProduces().values().contains(c)) { // reaction
-																// j
-																// produces
-																// compound
-																// i
-						expr.addTerm(r.getProductStochiometricValue(c),
-								x[i]);
-					} else if (r.getSubstrates().values().contains(c)) { // reaction
-																			// j
-																			// consumes
-																			// compound
-																			// i
-						expr.addTerm(-r.getSubstrateStochiometricValue(c),
-								x[i]);
-					}
-				}
-	
-				if (target.equals(c)) {
-					cplex.addGe(expr, 0.1, c.getId());
-				} else if (!c.isBootstrap()){
-					cplex.addGe(expr, 0.0, c.getId());
-				}
-			}
-	
-			// Excluding last known solution
-			for (PrecursorSet s : solutions){
-				IloLinearNumExpr expr = modeler.linearNumExpr();
-				for (Compound c : s.getPrecursors()) {
-					int ind = sources.indexOf(c);
-					expr.addTerm(1.0, Ind[ind]);
-				}
-				cplex.addLe(expr,
-						s.getPrecursors().size() - 1.0,
-						"SolutionExclusion" + s);
-			}
-			//IloLinearNumExpr fobj = modeler.linearNumExpr();
-			//for (IloNumVar Ii : Ind) {
-			//	fobj.addTerm(1.0, Ii);
-			//}
-			//cplex.addMinimize(fobj);
-	
-			if (!InputParameters.verbose) {
-				cplex.setOut(null);
-				cplex.setWarning(null);
-			}
-			cplex.setParam(IloCplex.DoubleParam.EpInt, 1e-9);
-			cplex.setParam(IloCplex.DoubleParam.EpRHS, 1e-9);
-			cplex.setParam(IloCplex.IntParam.Threads,
-					InputParameters.nbThreads);
+			return completeness.isComplete(solutions);
 		} catch (IloException e) {
-			System.err.println("Concert exception caught: " + e);
+			System.out.println("Exception thronw, no solution found");
+			return true;
 		}
-		
-		
+	}
+
+	private CompletenessOracle createCompletenessOracle(List<Compound> sources, Compound target) {
 		try {
-			if (cplex.solve()) {
-				allSolutions = false;
-			}
+			return new CompletenessOracle(getStoichiometricMatrix(), sources, target, this.bigM);
 		} catch (IloException e) {
-			System.out.println("Exception thronw, no solution found");
+			System.err.println("Concert exception caught: " + e);
+			return null;
 		}
-		
-		return allSolutions;
+	}
+
+	/*
+	 * Sparse stoichiometric matrix of the network with allReactions as
+	 * columns, for the completeness oracle.
+	 */
+	private StoichiometricMatrix getStoichiometricMatrix() {
+		if (this.stoichiometricMatrix == null) {
+			this.stoichiometricMatrix = this.network.getStoichiometricMatrix(this.allReactions);
+		}
+		return this.stoichiometricMatrix;
 	}
 
 	private void printSolutions(List<PrecursorSet> setOfSets) {
@@ -584,98 +874,5 @@ public class Pitufrankstein extends PrecursorFinder {
 
 		}
 	}
-
-	private double doFBA(List<Compound> sources, List<Compound> bootstrap,
-			List<Compound> freeToAccumulate, Compound target) {
-		double solutionValue = 0;
-		double inOrOutMaxAmount = this.bigM;
-		IloCplex cplex = null;
-		IloNumVar[] x = null;
-		String[] reacNames = new String[this.allReactions.size()
-		                                + sources.size() + bootstrap.size()];
-		try {
-			cplex = new IloCplex();
-			// cplex.setOut(null); // no output to console
-
-			int nbReac = 0;
-			for (Reaction r : this.allReactions) {
-				reacNames[nbReac++] = r.getId();
-			}
-			for (Compound c : sources) {
-				reacNames[nbReac++] = c.getId() + "_producer";
-			}
-			IloCplexModeler modeler = new IloCplexModeler();
-			x = modeler.numVarArray(this.allReactions.size() + sources.size() + bootstrap.size(),
-					0.0, inOrOutMaxAmount, reacNames);
-			cplex.add(x);
-			
-			for (int i=0; i<this.allReactions.size() + sources.size() + bootstrap.size(); ++i){
-				cplex.addGe(x[i], 0.0, "Bound_Inf_"+i);
-				cplex.addLe(x[i], inOrOutMaxAmount, "Bound_Sup_"+i);
-			}
-
-			IloLinearNumExpr fobj = modeler.linearNumExpr();
-
-			for (Compound c : network.getCompounds().values()) {
-				IloLinearNumExpr expr = modeler.linearNumExpr();
-				if (sources.contains(c)) {
-					// If it is a source, add a reaction that produces it from
-					// nothing
-					int delta = sources.indexOf(c);
-					expr.addTerm(1.0, x[this.allReactions.size() + delta]);
-				}
-				else if (c.isBootstrap()){
-					// If it is a bootstrap, add a reaction that produces it from
-					// nothing
-					int delta = bootstrap.indexOf(c);
-					expr.addTerm(1.0, x[this.allReactions.size() + sources.size() + delta]);
-				}
-				for (int i = 0; i < this.allReactions.size(); i++) {
-					Reaction r = this.allReactions.get(i);
-					if (r.getProduces().values().contains(c)) { // reaction j
-						// produces
-						// compound i
-						expr.addTerm(r.getProductStochiometricValue(c), x[i]);
-					} else if (r.getSubstrates().values().contains(c)) { // reaction
-						// j
-						// consumes
-						// compound
-						// i
-						expr.addTerm(-r.getSubstrateStochiometricValue(c), x[i]);
-					}
-				}
-
-				// Mv = 0 except if free to accumulate
-				if ((freeToAccumulate != null && freeToAccumulate.contains(c))
-						|| target.equals(c)) {
-					cplex.addGe(expr, 0.0, c.getId());
-					cplex.addLe(expr, inOrOutMaxAmount, c.getId());
-				} else {
-					cplex.addEq(expr, 0.0, c.getId());
-				}
-
-				if (target.equals(c)) {
-					fobj.add(expr);
-				}
-			}
-			cplex.addMaximize(fobj);
-			if (!InputParameters.verbose) {
-				cplex.setOut(null);
-				cplex.setWarning(null);
-			}
-		} catch (IloException e) {
-			System.err.println("Concert exception caught: " + e);
-		}
-
-		try {
-			// solve
-			if (cplex.solve()) {
-				solutionValue = cplex.getObjValue();
-			}
-		} catch (IloException e) {
-			System.err.println("Concert exception caught: " + e);
-		}
-		return solutionValue;
-	}
 }
 
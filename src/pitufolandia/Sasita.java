@@ -1,39 +1,56 @@
 package pitufolandia;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import metabolicNetwork.Compound;
 import metabolicNetwork.MetabolicNetwork;
 import metabolicNetwork.Reaction;
 import pitufo.PrecursorFinder;
 import utils.CPLEXInterface;
-import utils.MetabolicNetworkSBMLWriter;
+import utils.Diagnostics;
+import utils.IndicatorLinkStrategy;
+import utils.JavaSolverInterface;
+import utils.JsonlSolutionSink;
+import utils.ListSolutionSink;
+import utils.Metrics;
 import utils.OptimisationInterface;
+import utils.SasitaCPLEXModelHolder.SasitaModelType;
 import utils.SolutionChecker;
+import utils.SolutionSink;
+import utils.StreamingSolutionSink;
 import utils.StringUtils;
+import utils.XmlSolutionSink;
 import application.InputParameters;
+import application.MinimalPrecursorSetStore;
 import application.PrecursorSet;
+import application.PrecursorSetIndex;
+import application.SolutionCheckpoint;
 
 public class Sasita extends PrecursorFinder {
 
 	OptimisationInterface ointerface;
 	List<Compound> allCompounds = new LinkedList<Compound>();
 	List<Reaction> allReactions = new LinkedList<Reaction>();
-	//private int backupPartialSolutionsDelay = 300;
 	/**
 	 * The tolerance for consider that we have a positive production of the target.
 	 */
@@ -48,6 +65,24 @@ public class Sasita extends PrecursorFinder {
 	private double bigM = 1000;
 	private boolean duplicatingMachineryActive = false;
 	private boolean steadyState = false;
+	/**
+	 * Threads given to the MILP solver.
+	 */
+	private int solverThreads = InputParameters.nbThreads;
+	/**
+	 * Threads used to enumerate the partitions of -pivots.
+	 */
+	private int nbWorkers = InputParameters.nbWorkers;
+	/**
+	 * Formulation of the Ind/x link, null for the usual one of each model.
+	 */
+	private IndicatorLinkStrategy indicatorLink = InputParameters.indicatorLink;
+	/**
+	 * Base name of the file of the solutions of all the targets at once,
+	 * the id of the artificial target if not set.
+	 */
+	private String outputName = null;
+	private boolean showProgress = true;
 
 
 	public Sasita(MetabolicNetwork network, boolean specialEmptySet) {
@@ -102,6 +137,14 @@ public class Sasita extends PrecursorFinder {
 		this.steadyState = steadyState;
 	}
 
+	public String getOutputName() {
+		return outputName;
+	}
+
+	public void setOutputName(String outputName) {
+		this.outputName = outputName;
+	}
+
 	// Method to find the set of minimal precursor sets that produce a target
 	// compound
 	// directly in the metabolic network
@@ -111,8 +154,7 @@ public class Sasita extends PrecursorFinder {
 		// End of filtering empty reactions for the CDE network
 
 		// Saving the processed network
-		new MetabolicNetworkSBMLWriter("/tmp/preporcessedNetwork.xml")
-				.write(this.getNetwork());
+		Diagnostics.writeNetwork("preprocessedNetwork", this.getNetwork());
 
 		System.out.println("After processing the network has "
 				+ network.getReactions().size() + " reactions and "
@@ -130,42 +172,18 @@ public class Sasita extends PrecursorFinder {
 
 		List<PrecursorSet> solutions = null;
 
-		if (InputParameters.oneByOne) {
+		if (InputParameters.oneByOne && InputParameters.nbWorkers > 1 && targets.size() > 1) {
+			solutions = findPrecursorsInParallel(targets);
+		} else if (InputParameters.oneByOne) {
 			// for each target, call
 			// findPrecursorsInNetworkForTargetCompound(target)
 			for (int j = 0; j < targets.size(); j++) {
-				// starts computing the time to compute the solutions
-				timeStart = System.currentTimeMillis();
-
-				// Get the j-th target from targets and make it a target
-				// and maps it to the restored network
-				Compound target = getNetwork().getCompounds().get(
-						targets.get(j).getId());
-				target.setTarget(true);
-
-				// writes down the reduced network for analysis
-				try {
-					new MetabolicNetworkSBMLWriter("preprocessedFor"
-							+ target.getId() + ".xml").write(getNetwork());
-				} catch (NullPointerException e) {
-					e.printStackTrace();
-					System.exit(-1);
-				}
-				
-				System.out.println("Searching for precursors for targets: " + target);
-
-				// Compute the precursors for this target
-				solutions = findPrecursorsInNetworkForTarget(target,
-						InputParameters.minimalityCheck);
-
-				logln("Processing finished in "
-						+ (System.currentTimeMillis() - timeStart)
-						+ " ms.\n--------------------\n");
-
-				if (solutions.size() == 0) {
-					logln("No solution for: " + targets.get(j));
+				solutions = findPrecursorsForTarget(targets.get(j));
+				if (!isStreaming()) {
+					long t = Metrics.start();
+					printSolutionsPerTarget(solutions, targets.get(j));
+					Metrics.stop("output.print", t);
 				}
-				printSolutionsPerTarget(solutions, targets.get(j));
 			}
 		} else {
 			// starts computing the time to compute the solutions
@@ -183,10 +201,15 @@ public class Sasita extends PrecursorFinder {
 			this.allReactions.clear();
 			this.allReactions.addAll(this.network.getReactions().values());
 			
-			solutions = findPrecursorsInNetworkForTarget(target,
-					InputParameters.minimalityCheck);
-
-			if (solutions.size() == 0) {
+			ListSolutionSink memory = new ListSolutionSink();
+			String name = this.outputName != null ? this.outputName : target.getId();
+			SolutionSink sink = isStreaming() ? createStreamingSink(name) : memory;
+			findPrecursorsInNetworkForTarget(target,
+					InputParameters.minimalityCheck, sink);
+			sink.close();
+			solutions = memory.getSolutions();
+
+			if (sink.getNbSolutions() == 0) {
 				logln("No solution for: " + targets);
 			}
 
@@ -194,28 +217,135 @@ public class Sasita extends PrecursorFinder {
 					+ (System.currentTimeMillis() - start)
 					+ " ms.\n--------------------\n");
 
-			printSolutions(solutions, this.targets);
+			if (!isStreaming()) {
+				long t = Metrics.start();
+				printSolutions(solutions, this.targets);
+				Metrics.stop("output.print", t);
+			}
 		}
 
+		finishOptimisationInterface();
 		return solutions;
 
 	}
 
+	// Computes the precursors of one target of the one-by-one mode
+	private List<PrecursorSet> findPrecursorsForTarget(Compound originalTarget) {
+		// starts computing the time to compute the solutions
+		timeStart = System.currentTimeMillis();
+
+		// Get the target and maps it to the restored network
+		Compound target = getNetwork().getCompounds().get(
+				originalTarget.getId());
+		target.setTarget(true);
+
+		// writes down the reduced network for analysis
+		Diagnostics.writeNetwork("preprocessedFor" + target.getId(), getNetwork());
+		
+		if (showProgress) {
+			System.out.println("Searching for precursors for targets: " + target);
+		}
+
+		// Compute the precursors for this target
+		ListSolutionSink memory = new ListSolutionSink();
+		SolutionSink sink = isStreaming() ? createStreamingSink(target.getId()) : memory;
+		findPrecursorsInNetworkForTarget(target,
+				InputParameters.minimalityCheck, sink);
+		sink.close();
+
+		logln("Processing finished in "
+				+ (System.currentTimeMillis() - timeStart)
+				+ " ms.\n--------------------\n");
+
+		if (sink.getNbSolutions() == 0) {
+			logln("No solution for: " + originalTarget);
+		}
+		return memory.getSolutions();
+	}
+
+	/*
+	 * One-by-one mode with -nbWorkers > 1. Each target is solved by its own
+	 * Sasita, built on a copy of the preprocessed network and with its own
+	 * optimisation interface, so the workers share nothing but the read-only
+	 * input parameters. The -nbThreads threads are split between the workers
+	 * and the solutions are printed in the order of the targets.
+	 */
+	private List<PrecursorSet> findPrecursorsInParallel(List<Compound> targets) {
+		int nbWorkers = Math.min(InputParameters.nbWorkers, targets.size());
+		final int solverThreads = Math.max(1, InputParameters.nbThreads / nbWorkers);
+		System.out.println("Processing the targets with " + nbWorkers
+				+ " workers of " + solverThreads + " solver threads each.");
+		System.out.println("Searching for precursors for targets: " + targets);
+
+		ExecutorService executor = Executors.newFixedThreadPool(nbWorkers);
+		List<Future<List<PrecursorSet>>> results = new ArrayList<Future<List<PrecursorSet>>>();
+		for (final Compound target : targets) {
+			results.add(executor.submit(new Callable<List<PrecursorSet>>() {
+				@Override
+				public List<PrecursorSet> call() {
+					Sasita worker = createWorker(solverThreads);
+					List<PrecursorSet> solutions = worker.findPrecursorsForTarget(target);
+					worker.finishOptimisationInterface();
+					return solutions;
+				}
+			}));
+		}
+		executor.shutdown();
+
+		List<PrecursorSet> solutions = null;
+		for (int j = 0; j < targets.size(); j++) {
+			try {
+				solutions = results.get(j).get();
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+				System.exit(-1);
+			} catch (ExecutionException e) {
+				e.printStackTrace();
+				System.exit(-1);
+			}
+			if (!isStreaming()) {
+				long t = Metrics.start();
+				printSolutionsPerTarget(solutions, targets.get(j));
+				Metrics.stop("output.print", t);
+			}
+		}
+		return solutions;
+	}
+
+	/*
+	 * Sasita with the same parameters as this one working on its own copy
+	 * of the current network.
+	 */
+	private Sasita createWorker(int solverThreads) {
+		Sasita worker = new Sasita(this.network, this.specialEmptySet);
+		worker.setEpsilon1(this.epsilon1);
+		worker.setEpsilon2(this.epsilon2);
+		worker.setBigM(this.bigM);
+		worker.setDuplicatingMachineryActive(this.duplicatingMachineryActive);
+		worker.setSteadyState(this.steadyState);
+		worker.solverThreads = solverThreads;
+		worker.nbWorkers = 1;
+		worker.indicatorLink = this.indicatorLink;
+		worker.showProgress = false;
+		return worker;
+	}
+
+	private void finishOptimisationInterface() {
+		if (this.ointerface != null) {
+			this.ointerface.finish();
+			this.ointerface = null;
+		}
+	}
+
 	// Method to find the set of minimal precursor sets that produce a target
 	// compound
 	// directly in the metabolic network
-	private List<PrecursorSet> findPrecursorsInNetworkForTarget(
-			Compound target, boolean minimalityCheck) {
+	// The solutions are pushed to the sink as soon as they are found
+	private void findPrecursorsInNetworkForTarget(
+			Compound target, boolean minimalityCheck, SolutionSink sink) {
 		List<Compound> sources = getMarkedSources(target);
-		List<PrecursorSet> solutions = new LinkedList<PrecursorSet>();
-		//solutions = loadPartialSolutions("DEBUG_temporary_solutions2.txt");
-		//String partialSolutionsFilename = "partialSolutionsFor"
-		//		+ target.getId() + ".txt";
-        // This is not working in this version
-		//solutions = loadPartialSolutions(partialSolutionsFilename);
 		PrecursorSet lastSolution = null;
 		List <PrecursorSet> lastSolutions = null;
-		//int lastBackup = 0;
 		// DEBUG
 		//PrintWriter writer = null;
 		//try {
@@ -224,19 +354,85 @@ public class Sasita extends PrecursorFinder {
 		//	e.printStackTrace();
 		//	System.exit(-9);
 		//}
-		this.ointerface = new CPLEXInterface(this.network);
-
-		this.ointerface.startup();
+		// the interface, and so the model, is kept from one target to the next
+		if (this.ointerface == null) {
+			this.ointerface = createOptimisationInterface(this.solverThreads);
+			this.ointerface.startup();
+		}
+		// the sources that can not reach the target, and the reactions that
+		// produce nothing upstream of it, are kept out of the search, they
+		// stay in the lists so that the model can be reused
+		List<Compound> uselessSources = new LinkedList<Compound>();
+		List<Reaction> uselessReactions = new LinkedList<Reaction>();
+		if (!duplicatingMachineryActive && !steadyState && !InputParameters.noPreprocessing) {
+			Set<Compound> upstream = this.network.getCompoundsUpstreamOf(target);
+			uselessSources = getSourcesNotIn(sources, upstream);
+			uselessReactions = getReactionsNotProducing(upstream);
+			if (uselessSources.size() > 0) {
+				logln(uselessSources.size() + " of the " + sources.size()
+						+ " sources can not reach " + target + ".");
+			}
+		}
+		this.ointerface.fixSources(uselessSources, new LinkedList<Compound>(), uselessReactions);
 		int numberOfSolutions = 0;
 		int sizeOfBiggestsolution = 0;
 		sizeOfBiggestsolution = 0;
+		SolutionCheckpoint checkpoint = null;
+		if (InputParameters.checkpoint) {
+			checkpoint = openCheckpoint(sources, target);
+			List<PrecursorSet> restored = checkpoint.getRestoredSolutions();
+			if (!restored.isEmpty()) {
+				System.out.println("\nResuming from " + restored.size()
+						+ " precursor sets of the checkpoint.");
+				for (PrecursorSet solution : restored) {
+					sink.add(solution);
+				}
+				numberOfSolutions = restored.size();
+				Metrics.add("solutions.restored", restored.size());
+				sizeOfBiggestsolution = checkpoint.getSizeLevel();
+				this.ointerface.restoreSolutions(restored, checkpoint.getSizeLevel());
+			}
+		}
 		boolean searchForMultipleSolutions = true;
 		boolean areThereMoreSolutions = true;
+		if (InputParameters.singlePassEnumeration && !duplicatingMachineryActive && !steadyState) {
+			List<PrecursorSet> enumerated = enumerateMinimalPrecursors(sources, target);
+			if (enumerated != null) {
+				// same order as the solve/re-solve loop, by increasing size
+				Collections.sort(enumerated, new Comparator<PrecursorSet>() {
+					@Override
+					public int compare(PrecursorSet p1, PrecursorSet p2) {
+						return p1.getPrecursors().size() - p2.getPrecursors().size();
+					}
+				});
+				for (PrecursorSet solution : enumerated) {
+					logln("Solution found for " + target + ": "
+							+ solution.getPrecursors());
+					sink.add(solution);
+					Metrics.increment("solutions.found");
+				}
+				areThereMoreSolutions = false;
+			} else {
+				System.err.println("\nSingle pass enumeration failed, changing strategy...");
+			}
+		}
+		if (areThereMoreSolutions && InputParameters.nbPivots > 0
+				&& !duplicatingMachineryActive && !steadyState) {
+			List<PrecursorSet> merged = findPrecursorsByPartitions(sources, target, uselessSources,
+					uselessReactions);
+			for (PrecursorSet solution : merged) {
+				logln("Solution found for " + target + ": "
+						+ solution.getPrecursors());
+				sink.add(solution);
+				Metrics.increment("solutions.found");
+			}
+			areThereMoreSolutions = false;
+		}
 		while (areThereMoreSolutions) {
 			PrecursorSet solution = null;
 			List <PrecursorSet> multipleSolutions = null;
 
-			if (!InputParameters.verbose){
+			if (!InputParameters.verbose && showProgress){
 				System.out.print("\rPrecursor sets found so far: " + numberOfSolutions + " ");
 			}
 			if (duplicatingMachineryActive) {
@@ -284,17 +480,14 @@ public class Sasita extends PrecursorFinder {
 						}
 						numberOfSolutions++;
 						sizeOfBiggestsolution = Math.max(sizeOfBiggestsolution,solution.getPrecursors().size());
-						solutions.add(solution);
+						sink.add(solution);
+						Metrics.increment("solutions.found");
+						if (checkpoint != null) {
+							checkpoint.add(solution);
+						}
 						lastSolution = solution;
 						logln("Solution found for " + target + ": "
 								+ solution.getPrecursors());
-						// This is not working in this version
-						/*
-						if (solutions.size() / backupPartialSolutionsDelay > lastBackup) {
-							lastBackup = solutions.size() / backupPartialSolutionsDelay;
-						savePartialSolutions(solutions, partialSolutionsFilename);
-						}
-						 */
 					}
 					else if (!searchForMultipleSolutions){ 
 						areThereMoreSolutions = false;
@@ -305,67 +498,283 @@ public class Sasita extends PrecursorFinder {
 				areThereMoreSolutions = false;
 			}
 		}
-		// This is not working in this version
-		//cleanPartialSolutions(partialSolutionsFilename);
-		this.ointerface.finish();
+		if (checkpoint != null) {
+			checkpoint.delete();
+		}
+		this.ointerface.clearSolutionExclusions();
 		//writer.close();
-		return solutions;
 	}
 
-	private List<PrecursorSet> loadPartialSolutions(String filename) {
-		List<PrecursorSet> solutions = new LinkedList<PrecursorSet>();
-		try {
-			BufferedReader in = new BufferedReader(new FileReader(filename));
-			String line = in.readLine();
-			while (line != null) {
-				line = line.replace("[", "");
-				line = line.replace("]", "");
-				StringTokenizer tokens = new StringTokenizer(line, ",");
-				PrecursorSet p = new PrecursorSet();
-				while (tokens.hasMoreTokens()) {
-					String compoundId = tokens.nextToken();
-					compoundId = compoundId.replace("<", "");
-					compoundId = compoundId.replace(">", "");
-					compoundId = compoundId.trim();
-					Compound c = this.network.getCompounds().get(compoundId);
-					p.addPrecursor(c);
+	/*
+	 * Checkpoint of the -checkpoint mode, checkpointFor<target>.log. The
+	 * sets of a previous run killed before the end are read back from it.
+	 */
+	private SolutionCheckpoint openCheckpoint(List<Compound> sources, Compound target) {
+		SasitaModelType mode = SasitaModelType.NORMAL;
+		if (duplicatingMachineryActive) {
+			mode = SasitaModelType.DUPMACH;
+		} else if (steadyState) {
+			mode = SasitaModelType.STEADYSTATE;
+		}
+		SolutionCheckpoint checkpoint = new SolutionCheckpoint(new File(
+				"checkpointFor" + target.getId() + ".log"), mode.name(),
+				sources.size(), InputParameters.checkpointSyncEvery,
+				InputParameters.checkpointSyncDelay);
+		checkpoint.open(this.network);
+		return checkpoint;
+	}
+
+	private boolean isStreaming() {
+		return !InputParameters.streamFormat.isEmpty();
+	}
+
+	/*
+	 * Sink of the -stream mode, writing <name>_PS.xml or <name>_PS.jsonl
+	 * while the target is solved.
+	 */
+	private SolutionSink createStreamingSink(String name) {
+		StreamingSolutionSink sink;
+		if (InputParameters.streamFormat.equals("jsonl")) {
+			sink = new JsonlSolutionSink(name + "_PS.jsonl",
+					InputParameters.streamFlushEvery, InputParameters.streamFlushDelay);
+		} else {
+			sink = new XmlSolutionSink(name + "_PS.xml",
+					InputParameters.streamFlushEvery, InputParameters.streamFlushDelay);
+		}
+		System.out.println("\nStreaming solutions to " + sink.getFilename());
+		return sink;
+	}
+
+	/*
+	 * Mode -pivots=K. A first batch of minimal precursor sets is computed on
+	 * the shared interface and the K sources used the most in it become the
+	 * pivots. Each of the 2^K combinations of used / not used pivots is a
+	 * partition of the search space, enumerated on its own interface by one
+	 * of the workers. A set minimal in the whole network is minimal in its
+	 * partition, and the sets only minimal in their partition are removed
+	 * when the store merges the results of the other partitions.
+	 */
+	private List<PrecursorSet> findPrecursorsByPartitions(
+			final List<Compound> sources, final Compound target,
+			final List<Compound> uselessSources, final List<Reaction> uselessReactions) {
+		final MinimalPrecursorSetStore store = new MinimalPrecursorSetStore();
+		List<PrecursorSet> sample = findNextsMinimalPrecursor(sources, target, null);
+		if (sample == null) {
+			sample = new LinkedList<PrecursorSet>();
+			PrecursorSet first = findNextMinimalPrecursor(sources, target, null);
+			if (first != null) {
+				sample.add(first);
+			}
+		}
+		this.ointerface.clearSolutionExclusions();
+		if (sample.isEmpty()) {
+			return new LinkedList<PrecursorSet>();
+		}
+		for (PrecursorSet solution : sample) {
+			store.add(solution);
+		}
+
+		List<Compound> candidates = new ArrayList<Compound>(sources);
+		candidates.removeAll(uselessSources);
+		final List<Compound> pivots = choosePivots(candidates, sample,
+				Math.min(InputParameters.nbPivots, candidates.size()));
+		final int nbPartitions = 1 << pivots.size();
+		int nbPartitionWorkers = Math.max(1, Math.min(this.nbWorkers, nbPartitions));
+		final int partitionThreads = Math.max(1, this.solverThreads / nbPartitionWorkers);
+		if (showProgress) {
+			System.out.println("\nEnumerating " + nbPartitions
+					+ " partitions on the pivots " + pivots + " with "
+					+ nbPartitionWorkers + " workers.");
+		}
+
+		final AtomicInteger nextPartition = new AtomicInteger(0);
+		ExecutorService executor = Executors.newFixedThreadPool(nbPartitionWorkers);
+		List<Future<Object>> results = new ArrayList<Future<Object>>();
+		for (int w = 0; w < nbPartitionWorkers; w++) {
+			results.add(executor.submit(new Callable<Object>() {
+				@Override
+				public Object call() {
+					OptimisationInterface partitionInterface = createOptimisationInterface(partitionThreads);
+					partitionInterface.startup();
+					int partition;
+					while ((partition = nextPartition.getAndIncrement()) < nbPartitions) {
+						List<Compound> excluded = new ArrayList<Compound>(uselessSources);
+						List<Compound> required = new ArrayList<Compound>();
+						for (int k = 0; k < pivots.size(); k++) {
+							if ((partition & (1 << k)) != 0) {
+								required.add(pivots.get(k));
+							} else {
+								excluded.add(pivots.get(k));
+							}
+						}
+						partitionInterface.fixSources(excluded, required, uselessReactions);
+						for (PrecursorSet solution : enumeratePartition(
+								partitionInterface, sources, target)) {
+							store.add(solution);
+						}
+						partitionInterface.clearSolutionExclusions();
+					}
+					partitionInterface.finish();
+					return null;
 				}
-				solutions.add(p);
-				line = in.readLine();
+			}));
+		}
+		executor.shutdown();
+		for (Future<Object> result : results) {
+			try {
+				result.get();
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+				System.exit(-1);
+			} catch (ExecutionException e) {
+				e.printStackTrace();
+				System.exit(-1);
 			}
-			in.close();
-		} catch (FileNotFoundException e) {
-			logln("File with previous solutions not found, one will be created.");
-		} catch (IOException e) {
-			e.printStackTrace();
 		}
-		return solutions;
+
+		List<PrecursorSet> merged = store.getMinimalSets();
+		Collections.sort(merged, new Comparator<PrecursorSet>() {
+			@Override
+			public int compare(PrecursorSet p1, PrecursorSet p2) {
+				return p1.getPrecursors().size() - p2.getPrecursors().size();
+			}
+		});
+		return merged;
 	}
 
-	/*private void savePartialSolutions(List<PrecursorSet> solutions,
-			String filename) {
-		PrintWriter writer;
-		try {
-			writer = new PrintWriter(filename, "UTF-8");
-			for (PrecursorSet p : solutions) {
-				writer.println(p.getPrecursors().toString());
+	/*
+	 * The minimal precursor sets of one partition, in a single search when
+	 * the backend can, by solving again after each solution otherwise.
+	 */
+	private List<PrecursorSet> enumeratePartition(OptimisationInterface partitionInterface,
+			List<Compound> sources, Compound target) {
+		List<PrecursorSet> found = partitionInterface.enumerateMinimalPrecursors(
+				sources, target, this.bigM, this.epsilon1);
+		if (found != null) {
+			return found;
+		}
+		found = new LinkedList<PrecursorSet>();
+		PrecursorSet solution = null;
+		while ((solution = partitionInterface.findNextMinimalPrecursor(sources,
+				target, solution, this.bigM, this.epsilon1)) != null) {
+			found.add(solution);
+		}
+		return found;
+	}
+
+	/*
+	 * The nbPivots sources appearing in the most sample solutions, ties
+	 * broken by the order of the sources.
+	 */
+	private List<Compound> choosePivots(List<Compound> sources,
+			List<PrecursorSet> sample, int nbPivots) {
+		final HashMap<Compound, Integer> frequency = new HashMap<Compound, Integer>();
+		for (Compound source : sources) {
+			frequency.put(source, 0);
+		}
+		for (PrecursorSet solution : sample) {
+			for (Compound precursor : solution.getPrecursors()) {
+				if (frequency.containsKey(precursor)) {
+					frequency.put(precursor, frequency.get(precursor) + 1);
+				}
 			}
-			writer.close();
-		} catch (FileNotFoundException e) {
-			e.printStackTrace();
-		} catch (UnsupportedEncodingException e) {
-			e.printStackTrace();
 		}
+		List<Compound> ranked = new ArrayList<Compound>(sources);
+		// the sort is stable, so the order of the sources breaks the ties
+		Collections.sort(ranked, new Comparator<Compound>() {
+			@Override
+			public int compare(Compound c1, Compound c2) {
+				return frequency.get(c2) - frequency.get(c1);
+			}
+		});
+		return new ArrayList<Compound>(ranked.subList(0, nbPivots));
 	}
 
-	private void cleanPartialSolutions(String filename) {
-		try {
-			File f = new File(filename);
-			f.delete();
-		} catch (Exception x) {
-			System.err.println(x);
+	/*
+	 * Creates the solver backend selected with -solver.
+	 */
+	private OptimisationInterface createOptimisationInterface(int nbThreads) {
+		if (InputParameters.solver.equals("java")) {
+			return new JavaSolverInterface(this.network);
+		}
+		CPLEXInterface cplexInterface = new CPLEXInterface(this.network);
+		cplexInterface.setNbThreads(nbThreads);
+		cplexInterface.setIndicatorLink(this.indicatorLink);
+		return cplexInterface;
+	}
+
+	/*
+	 * -benchmarkLinks: enumerates each target once per formulation of the
+	 * Ind/x link, each time with a new model, and reports the time to the
+	 * first solution and the time of the whole enumeration.
+	 */
+	public void benchmarkIndicatorLinks(List<Compound> targets) {
+		allReactions.clear();
+		allReactions.addAll(network.getReactions().values());
+		IndicatorLinkStrategy chosenLink = this.indicatorLink;
+		List<String> report = new ArrayList<String>();
+		for (Compound originalTarget : targets) {
+			Compound target = getNetwork().getCompounds().get(originalTarget.getId());
+			target.setTarget(true);
+			for (IndicatorLinkStrategy link : IndicatorLinkStrategy.values()) {
+				System.out.println("Searching for precursors for target " + target
+						+ " with the " + link.getName() + " link.");
+				this.indicatorLink = link;
+				finishOptimisationInterface();
+				TimingSolutionSink sink = new TimingSolutionSink();
+				findPrecursorsInNetworkForTarget(target, false, sink);
+				sink.close();
+				report.add(target.getId() + "\t" + link.getName() + "\t"
+						+ (sink.getNbSolutions() > 0 ? String.valueOf(sink.getFirstSolutionTime()) : "-")
+						+ "\t" + sink.getTotalTime() + "\t" + sink.getNbSolutions());
+			}
+		}
+		finishOptimisationInterface();
+		this.indicatorLink = chosenLink;
+
+		System.out.println("\nTarget\tLink\tFirst solution (ms)\tTotal (ms)\tSolutions");
+		for (String line : report) {
+			System.out.println(line);
+		}
+	}
+
+	/*
+	 * Only counts the sets, with the time of the first one and of the end
+	 * of the enumeration since the creation of the sink.
+	 */
+	private static class TimingSolutionSink implements SolutionSink {
+
+		private final long start = System.currentTimeMillis();
+		private long firstSolutionTime = -1;
+		private long totalTime = -1;
+		private int nbSolutions = 0;
+
+		@Override
+		public synchronized void add(PrecursorSet set) {
+			if (nbSolutions == 0) {
+				firstSolutionTime = System.currentTimeMillis() - start;
+			}
+			nbSolutions++;
+		}
+
+		@Override
+		public synchronized int getNbSolutions() {
+			return nbSolutions;
+		}
+
+		@Override
+		public synchronized void close() {
+			totalTime = System.currentTimeMillis() - start;
 		}
-	}*/
+
+		public synchronized long getFirstSolutionTime() {
+			return firstSolutionTime;
+		}
+
+		public synchronized long getTotalTime() {
+			return totalTime;
+		}
+	}
 
 	private PrecursorSet findNextMinimalPrecursor(List<Compound> sources,
 			Compound target, PrecursorSet lastSolution) {
@@ -376,6 +785,11 @@ public class Sasita extends PrecursorFinder {
 			Compound target, List<PrecursorSet> lastSolutions) {
 		return this.ointerface.findNextsMinimalPrecursor(sources, target, lastSolutions, this.bigM, this.epsilon1);
 	}
+	private List<PrecursorSet> enumerateMinimalPrecursors(List<Compound> sources,
+			Compound target) {
+		return this.ointerface.enumerateMinimalPrecursors(sources, target, this.bigM, this.epsilon1);
+	}
+
 	private PrecursorSet findNextDuplicatingMachineryMinimalPrecursor(
 			List<Compound> sources, Compound target, PrecursorSet lastSolution) {
 		return this.ointerface.findNextDuplicatingMachineryMinimalPrecursor(sources, target, lastSolution, this.bigM, this.epsilon1, this.epsilon2);
@@ -414,6 +828,47 @@ public class Sasita extends PrecursorFinder {
 		}
 	}
 
+	/*
+	 * Sources outside upstream, the compounds from which a chain of
+	 * reactions leads to the target. In the default mode, where the
+	 * compounds may accumulate, the reactions outside the upstream part of
+	 * the target can be turned off in any solution, so these sources never
+	 * belong to a minimal precursor set.
+	 */
+	private List<Compound> getSourcesNotIn(List<Compound> sources, Set<Compound> upstream) {
+		List<Compound> useless = new LinkedList<Compound>();
+		for (Compound c : sources) {
+			if (!upstream.contains(c)) {
+				useless.add(c);
+			}
+		}
+		return useless;
+	}
+
+	/*
+	 * Reactions producing no compound of upstream. The reactions that do
+	 * produce upstream compounds consume only upstream compounds, so the
+	 * products of these ones are of no use to the target, and turning them
+	 * off only leaves more of their substrates: in the default mode any
+	 * solution stays a solution without them.
+	 */
+	private List<Reaction> getReactionsNotProducing(Set<Compound> upstream) {
+		List<Reaction> useless = new LinkedList<Reaction>();
+		for (Reaction r : this.network.getReactions().values()) {
+			boolean producesUpstream = false;
+			for (Compound c : r.getProduces().values()) {
+				if (upstream.contains(c)) {
+					producesUpstream = true;
+					break;
+				}
+			}
+			if (!producesUpstream) {
+				useless.add(r);
+			}
+		}
+		return useless;
+	}
+
 	private List<Compound> getMarkedSources(Compound target) {
 		List<Compound> prec = new LinkedList<Compound>();
 		for (Compound c : this.network.getCompounds().values()) {
@@ -620,22 +1075,39 @@ public class Sasita extends PrecursorFinder {
 	private void logln(String message) {
 		if (InputParameters.verbose) {
 			System.out.println("[SASITA] " + message);
-		} else {
+		} else if (showProgress) {
 			System.out.print(".");
 		}
 	}
 
 	public void checkMinimality(List<PrecursorSet> solutions) {
 		logln("Checking for the minimality of the solutions...");
+		// the index holds the solutions after k, compared with k in their
+		// order
+		PrecursorSetIndex next = new PrecursorSetIndex(solutions);
+		Map<PrecursorSet, Integer> numbers = new IdentityHashMap<PrecursorSet, Integer>();
+		for (PrecursorSet k : solutions) {
+			numbers.put(k, numbers.size() + 1);
+		}
 		int solutionNumber = 1;
 		for (PrecursorSet k : solutions) {
-			List<Compound> keyList = k.getPrecursors();
-			for (int j = solutionNumber; j < solutions.size(); ++j) {
-				List<Compound> testList = solutions.get(j).getPrecursors();
-				if (keyList.containsAll(testList)) {
+			next.remove(k);
+			List<PrecursorSet> subSets = next.getSubsetsOf(k);
+			List<PrecursorSet> superSets = next.getSupersetsOf(k);
+			int sub = 0;
+			int sup = 0;
+			while (sub < subSets.size() || sup < superSets.size()) {
+				int subNumber = sub < subSets.size() ? numbers.get(subSets.get(sub)) : Integer.MAX_VALUE;
+				int supNumber = sup < superSets.size() ? numbers.get(superSets.get(sup)) : Integer.MAX_VALUE;
+				if (subNumber <= supNumber) {
 					logln("Solution " + solutionNumber + " is not minimal");
-				} else if (testList.containsAll(keyList)) {
-					logln("Solution " + (j + 1) + " is not minimal");
+					++sub;
+					if (subNumber == supNumber) {
+						++sup;
+					}
+				} else {
+					logln("Solution " + supNumber + " is not minimal");
+					++sup;
 				}
 			}
 			++solutionNumber;
@@ -0,0 +1,239 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import metabolicNetwork.Compound;
+import metabolicNetwork.MetabolicNetwork;
+import metabolicNetwork.Reaction;
+import metabolicNetwork.StoichiometricMatrix;
+import utils.SimplexSolver.LPStatus;
+import application.InputParameters;
+
+/*
+ * Flux variability on the default model (Sv >= 0) with every source and
+ * bootstrap open: finds the reactions whose maximal flux is 0, which can
+ * not be part of any solution.
+ *
+ * Instead of one LP per reaction, the sum of the fluxes of the reactions
+ * not classified yet is maximised: every reaction with a positive flux in
+ * the optimum is not blocked and leaves the objective, and once the optimum
+ * is 0 the remaining reactions are all blocked. Only the objective changes
+ * from one solve to the next, so each solve starts from the previous basis.
+ * If an optimum puts no reaction above the tolerance, the remaining ones
+ * are maximised one at a time.
+ * The reactions are split between the threads, each one with its own LP.
+ *
+ * Removing the reactions must not turn a compound into a topological
+ * precursor, that would add a source to the model: the blocked reactions
+ * of such a compound are kept, unless it is left without any reaction and
+ * is not in keep, it is then an orphan to clean.
+ */
+public class BlockedReactionFinder {
+
+	private static final double FLUX_TOL = 1e-7;
+
+	private final MetabolicNetwork network;
+	private final List<Reaction> reactions;
+	private final StoichiometricMatrix sm;
+	private final Set<String> keep;
+
+	public BlockedReactionFinder(MetabolicNetwork network, Set<String> keep) {
+		this.network = network;
+		this.keep = keep;
+		this.reactions = new ArrayList<Reaction>(network.getReactions().values());
+		this.sm = network.getStoichiometricMatrix(this.reactions);
+	}
+
+	public List<Reaction> findBlockedReactions(int nbThreads) {
+		int nbChunks = Math.max(1, Math.min(nbThreads, this.reactions.size()));
+		ExecutorService executor = Executors.newFixedThreadPool(nbChunks);
+		List<Future<List<Reaction>>> results = new ArrayList<Future<List<Reaction>>>();
+		for (int k = 0; k < nbChunks; ++k) {
+			final int first = k * this.reactions.size() / nbChunks;
+			final int last = (k + 1) * this.reactions.size() / nbChunks;
+			results.add(executor.submit(new Callable<List<Reaction>>() {
+				@Override
+				public List<Reaction> call() {
+					return findBlockedReactions(first, last);
+				}
+			}));
+		}
+		executor.shutdown();
+
+		List<Reaction> blocked = new ArrayList<Reaction>();
+		for (Future<List<Reaction>> result : results) {
+			try {
+				blocked.addAll(result.get());
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+				System.exit(-1);
+			} catch (ExecutionException e) {
+				e.printStackTrace();
+				System.exit(-1);
+			}
+		}
+		return keepSourcesUnchanged(blocked);
+	}
+
+	/*
+	 * Blocked reactions among the columns first to last - 1.
+	 */
+	private List<Reaction> findBlockedReactions(int first, int last) {
+		SimplexSolver lp = buildLP();
+		List<Integer> unknown = new ArrayList<Integer>();
+		for (int j = first; j < last; ++j) {
+			unknown.add(j);
+			lp.setObjectiveCoefficient(j, -1.0);
+		}
+		while (!unknown.isEmpty()) {
+			if (lp.solve() != LPStatus.OPTIMAL) {
+				System.err.println("Flux variability LP not solved, no reaction removed.");
+				return Collections.emptyList();
+			}
+			if (lp.getObjective() > -FLUX_TOL) {
+				break;
+			}
+			List<Integer> stillUnknown = new ArrayList<Integer>();
+			for (int j : unknown) {
+				if (lp.getValue(j) > FLUX_TOL) {
+					lp.setObjectiveCoefficient(j, 0.0);
+				} else {
+					stillUnknown.add(j);
+				}
+			}
+			if (stillUnknown.size() == unknown.size()) {
+				// the optimum is the sum of fluxes each below the tolerance
+				return findBlockedReactionsOneByOne(lp, unknown);
+			}
+			unknown = stillUnknown;
+		}
+		List<Reaction> blocked = new ArrayList<Reaction>();
+		for (int j : unknown) {
+			blocked.add(this.sm.getColumnReaction(j));
+		}
+		return blocked;
+	}
+
+	/*
+	 * Blocked reactions among the columns of unknown, by maximising the flux
+	 * of each one alone. A column with a positive flux in any of the optima
+	 * is not blocked and needs no LP of its own.
+	 */
+	private List<Reaction> findBlockedReactionsOneByOne(SimplexSolver lp, List<Integer> unknown) {
+		for (int j : unknown) {
+			lp.setObjectiveCoefficient(j, 0.0);
+		}
+		boolean[] notBlocked = new boolean[this.sm.getNbColumns()];
+		List<Reaction> blocked = new ArrayList<Reaction>();
+		for (int j : unknown) {
+			if (notBlocked[j]) {
+				continue;
+			}
+			lp.setObjectiveCoefficient(j, -1.0);
+			if (lp.solve() != LPStatus.OPTIMAL) {
+				System.err.println("Flux variability LP not solved, no reaction removed.");
+				return Collections.emptyList();
+			}
+			lp.setObjectiveCoefficient(j, 0.0);
+			if (lp.getObjective() > -FLUX_TOL) {
+				blocked.add(this.sm.getColumnReaction(j));
+				continue;
+			}
+			for (int k : unknown) {
+				if (lp.getValue(k) > FLUX_TOL) {
+					notBlocked[k] = true;
+				}
+			}
+			notBlocked[j] = true;
+		}
+		return blocked;
+	}
+
+	/*
+	 * One column per reaction with flux in [0, 1], the constraints being
+	 * homogeneous any flux can be scaled down to these bounds. The rows of
+	 * the sources and bootstraps have no lower bound, they can be imported.
+	 */
+	private SimplexSolver buildLP() {
+		SimplexSolver lp = new SimplexSolver();
+		for (int j = 0; j < this.sm.getNbColumns(); ++j) {
+			lp.addColumn(0.0, 1.0, 0.0);
+		}
+		int[] columnIndices = this.sm.getColumnIndices();
+		double[] coefficients = this.sm.getCoefficients();
+		for (int row = 0; row < this.sm.getNbRows(); ++row) {
+			int start = this.sm.getRowStart(row);
+			int len = this.sm.getRowEnd(row) - start;
+			if (len == 0) {
+				continue;
+			}
+			int[] cols = new int[len];
+			double[] vals = new double[len];
+			System.arraycopy(columnIndices, start, cols, 0, len);
+			System.arraycopy(coefficients, start, vals, 0, len);
+			Compound c = this.sm.getRowCompound(row);
+			double lo = (c.isPrecursor() || c.isBootstrap()) ? -SimplexSolver.INF : 0.0;
+			lp.addRow(cols, vals, lo, SimplexSolver.INF);
+		}
+		return lp;
+	}
+
+	private List<Reaction> keepSourcesUnchanged(List<Reaction> blocked) {
+		Set<Reaction> removed = new HashSet<Reaction>(blocked);
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (Compound c : this.network.getCompounds().values()) {
+				if (c.isPrecursor() || !becomesSource(c, removed)) {
+					continue;
+				}
+				// a kept reaction can only bring the other compounds back
+				// to their state in the network, hence the fixed point
+				if (removed.removeAll(c.getReactionsThatProduce(false))
+						| removed.removeAll(c.getReactionsThatConsume(false))) {
+					changed = true;
+				}
+			}
+		}
+		List<Reaction> kept = new ArrayList<Reaction>();
+		for (Reaction r : blocked) {
+			if (removed.contains(r)) {
+				kept.add(r);
+			}
+		}
+		return kept;
+	}
+
+	/*
+	 * Same rules as MetabolicNetwork.extendTopologicalPrecursors, once the
+	 * removed reactions are gone.
+	 */
+	private boolean becomesSource(Compound c, Set<Reaction> removed) {
+		if (InputParameters.getConsiderOnlyUserDefinedPrecursors()) {
+			return false;
+		}
+		List<Reaction> producers = new ArrayList<Reaction>(c.getReactionsThatProduce(false));
+		producers.removeAll(removed);
+		List<Reaction> consumers = new ArrayList<Reaction>(c.getReactionsThatConsume(false));
+		consumers.removeAll(removed);
+		if (producers.isEmpty()) {
+			return !consumers.isEmpty() || this.keep.contains(c.getId());
+		}
+		if (!InputParameters.precursorIfProducedOnlyByReversible || producers.size() != 1) {
+			return false;
+		}
+		Reaction producer = producers.get(0);
+		// removeReaction makes the reverse of a removed reaction irreversible
+		return consumers.size() == 1 && producer.isReversible()
+				&& !removed.contains(producer.getReverseReaction());
+	}
+}
@@ -0,0 +1,240 @@
+package utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import utils.SimplexSolver.LPStatus;
+
+/*
+ * Depth first branch-and-bound on top of SimplexSolver. Nodes only carry
+ * bound changes on the integer columns, so the LP of a node is solved warm
+ * from the basis left by the previous node, and rows added to the LP while
+ * the search runs (e.g. by an IncumbentListener) are valid in every node.
+ *
+ * When every objective coefficient is integer and only integer columns have
+ * a cost, nodes are pruned with the rounded up LP bound, which is what makes
+ * the minimal-cardinality models of Sasita cheap to close.
+ */
+public class BranchAndBoundSolver {
+	/*
+	 * INCOMPLETE: the LP of some nodes stopped on the iteration limit or
+	 * was unbounded, their subtrees were not searched and neither the
+	 * incumbent nor the infeasibility is proven.
+	 */
+	public static enum MIPStatus {OPTIMAL, INFEASIBLE, TIME_LIMIT, INCOMPLETE};
+
+	private static final double INT_TOL = 1e-6;
+
+	/*
+	 * Called for every integer feasible point found by the search. Returning
+	 * false rejects the point; the listener is then expected to have added a
+	 * row to the LP that cuts it off and the node is solved again.
+	 */
+	public static interface IncumbentListener {
+		boolean accept(double[] values, double objective);
+	}
+
+	private static class Node {
+		final Node parent;
+		final int col;
+		final double lower;
+		final double upper;
+
+		Node(Node parent, int col, double lower, double upper) {
+			this.parent = parent;
+			this.col = col;
+			this.lower = lower;
+			this.upper = upper;
+		}
+	}
+
+	private final SimplexSolver lp;
+	private final List<Integer> integerColumns = new ArrayList<Integer>();
+	private boolean[] isInteger = new boolean[0];
+	private IncumbentListener listener = null;
+	private long timeLimit = -1;
+
+	private double[] incumbent = null;
+	private double incumbentObjective = SimplexSolver.INF;
+	private long nodes = 0;
+
+	public BranchAndBoundSolver(SimplexSolver lp) {
+		this.lp = lp;
+	}
+
+	public SimplexSolver getLP() {
+		return lp;
+	}
+
+	public void setInteger(int col) {
+		if (col >= isInteger.length) {
+			boolean[] tmp = new boolean[Math.max(col + 1, 2 * isInteger.length)];
+			System.arraycopy(isInteger, 0, tmp, 0, isInteger.length);
+			isInteger = tmp;
+		}
+		if (!isInteger[col]) {
+			isInteger[col] = true;
+			integerColumns.add(col);
+		}
+	}
+
+	public void setIncumbentListener(IncumbentListener listener) {
+		this.listener = listener;
+	}
+
+	/*
+	 * Time limit in milliseconds, a negative value disables it.
+	 */
+	public void setTimeLimit(long timeLimit) {
+		this.timeLimit = timeLimit;
+	}
+
+	public double[] getValues() {
+		return incumbent;
+	}
+
+	public double getObjective() {
+		return incumbentObjective;
+	}
+
+	public long getNbNodes() {
+		return nodes;
+	}
+
+	public MIPStatus solve() {
+		long start = System.currentTimeMillis();
+		incumbent = null;
+		incumbentObjective = SimplexSolver.INF;
+
+		int nInt = integerColumns.size();
+		double[] rootLower = new double[nInt];
+		double[] rootUpper = new double[nInt];
+		for (int k = 0; k < nInt; ++k) {
+			rootLower[k] = lp.getColumnLB(integerColumns.get(k));
+			rootUpper[k] = lp.getColumnUB(integerColumns.get(k));
+		}
+		boolean integralObjective = hasIntegralObjective();
+
+		Deque<Node> stack = new ArrayDeque<Node>();
+		stack.push(new Node(null, -1, 0, 0));
+		MIPStatus status = MIPStatus.INFEASIBLE;
+		boolean interrupted = false;
+		boolean unsolvedNodes = false;
+
+		while (!stack.isEmpty()) {
+			if (timeLimit >= 0 && System.currentTimeMillis() - start > timeLimit) {
+				interrupted = true;
+				break;
+			}
+			Node node = stack.pop();
+			applyBounds(node, rootLower, rootUpper);
+			nodes++;
+
+			LPStatus lpStatus = lp.solve();
+			if (lpStatus != LPStatus.OPTIMAL) {
+				if (lpStatus != LPStatus.INFEASIBLE) {
+					unsolvedNodes = true;
+				}
+				continue;
+			}
+			double bound = lp.getObjective();
+			if (integralObjective) {
+				bound = Math.ceil(bound - INT_TOL);
+			}
+			if (bound >= incumbentObjective - INT_TOL) {
+				continue;
+			}
+
+			int branchCol = -1;
+			double branchValue = 0.0;
+			double mostFractional = INT_TOL;
+			for (int col : integerColumns) {
+				double v = lp.getValue(col);
+				double frac = Math.abs(v - Math.floor(v + 0.5));
+				if (frac > mostFractional) {
+					mostFractional = frac;
+					branchCol = col;
+					branchValue = v;
+				}
+			}
+
+			if (branchCol < 0) {
+				double[] values = lp.getValues();
+				for (int col : integerColumns) {
+					values[col] = Math.floor(values[col] + 0.5);
+				}
+				double objective = lp.getObjective();
+				if (integralObjective) {
+					objective = Math.floor(objective + 0.5);
+				}
+				if (listener == null || listener.accept(values, objective)) {
+					incumbent = values;
+					incumbentObjective = objective;
+				} else {
+					// the listener cut the point off, solve this node again
+					stack.push(node);
+				}
+				continue;
+			}
+
+			double down = Math.floor(branchValue);
+			double up = down + 1.0;
+			Node downNode = new Node(node, branchCol, lp.getColumnLB(branchCol), down);
+			Node upNode = new Node(node, branchCol, up, lp.getColumnUB(branchCol));
+			// the child closer to the LP value is explored first
+			if (branchValue - down >= 0.5) {
+				stack.push(downNode);
+				stack.push(upNode);
+			} else {
+				stack.push(upNode);
+				stack.push(downNode);
+			}
+		}
+
+		// restore the root bounds
+		for (int k = 0; k < nInt; ++k) {
+			lp.setColumnBounds(integerColumns.get(k), rootLower[k], rootUpper[k]);
+		}
+		if (interrupted) {
+			status = MIPStatus.TIME_LIMIT;
+		} else if (unsolvedNodes) {
+			status = MIPStatus.INCOMPLETE;
+		} else if (incumbent != null) {
+			status = MIPStatus.OPTIMAL;
+		}
+		return status;
+	}
+
+	private boolean hasIntegralObjective() {
+		for (int j = 0; j < lp.getNbColumns(); ++j) {
+			double c = lp.getObjectiveCoefficient(j);
+			if (c == 0.0) {
+				continue;
+			}
+			if ((j >= isInteger.length || !isInteger[j]) || c != Math.floor(c)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void applyBounds(Node node, double[] rootLower, double[] rootUpper) {
+		for (int k = 0; k < integerColumns.size(); ++k) {
+			int col = integerColumns.get(k);
+			if (lp.getColumnLB(col) != rootLower[k] || lp.getColumnUB(col) != rootUpper[k]) {
+				lp.setColumnBounds(col, rootLower[k], rootUpper[k]);
+			}
+		}
+		// apply from the root down so that the deepest change wins
+		List<Node> path = new ArrayList<Node>();
+		for (Node n = node; n != null && n.col >= 0; n = n.parent) {
+			path.add(n);
+		}
+		for (int k = path.size() - 1; k >= 0; --k) {
+			Node n = path.get(k);
+			lp.setColumnBounds(n.col, n.lower, n.upper);
+		}
+	}
+}
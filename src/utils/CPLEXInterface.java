@@ -6,6 +6,7 @@ import ilog.concert.IloIntVar;
 import ilog.concert.IloLinearNumExpr;
 import ilog.concert.IloNumExpr;
 import ilog.concert.IloNumVar;
+import ilog.concert.IloRange;
 import ilog.cplex.IloCplex;
 import ilog.cplex.IloCplex.Status;
 import ilog.cplex.IloCplex.UnknownObjectException;
@@ -16,7 +17,7 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -26,8 +27,10 @@ import java.util.StringTokenizer;
 import metabolicNetwork.Compound;
 import metabolicNetwork.MetabolicNetwork;
 import metabolicNetwork.Reaction;
+import metabolicNetwork.StoichiometricMatrix;
 import utils.SasitaCPLEXModelHolder.SasitaModelType;
 import application.InputParameters;
+import application.MinimalPrecursorSetStore;
 import application.PrecursorSet;
 
 public class CPLEXInterface implements OptimisationInterface {
@@ -37,6 +40,21 @@ public class CPLEXInterface implements OptimisationInterface {
 	private MetabolicNetwork network;
 	private List<Reaction> allReactions = new LinkedList<Reaction>();
 	private List<Compound> allCompounds = new LinkedList<Compound>();
+	private StoichiometricMatrix stoichiometricMatrix = null;
+	private int nbThreads = InputParameters.nbThreads;
+	private IndicatorLinkStrategy indicatorLink = InputParameters.indicatorLink;
+	private Set<Compound> excludedSources = new HashSet<Compound>();
+	private Set<Compound> requiredSources = new HashSet<Compound>();
+	private Set<Reaction> blockedReactions = new HashSet<Reaction>();
+	// bounds last sent for the Ind and x variables of fixedInd, the Ind of
+	// the held model, so that only the changes are sent
+	private IloIntVar[] fixedInd = null;
+	private double[] fixedIndLB = null;
+	private double[] fixedIndUB = null;
+	private boolean[] fixedBlocked = null;
+	// exclusions of a checkpoint, added to the model of the next search
+	private List<PrecursorSet> restoredSolutions = new ArrayList<PrecursorSet>();
+	private int restoredSizeLevel = 0;
 
 	public CPLEXInterface (MetabolicNetwork network){
 		this.network = network;
@@ -66,6 +84,123 @@ public class CPLEXInterface implements OptimisationInterface {
 		
 	}
 	
+	/*
+	 * Threads used by CPLEX for the models built from now on, by default
+	 * the -nbThreads value.
+	 */
+	public void setNbThreads(int nbThreads) {
+		this.nbThreads = nbThreads;
+	}
+
+	/*
+	 * Formulation of the Ind/x link of the models built from now on, null
+	 * to keep the usual one of each model.
+	 */
+	public void setIndicatorLink(IndicatorLinkStrategy indicatorLink) {
+		this.indicatorLink = indicatorLink;
+	}
+
+	private IndicatorLinkStrategy getIndicatorLink(IndicatorLinkStrategy modelDefault) {
+		return this.indicatorLink != null ? this.indicatorLink : modelDefault;
+	}
+
+	@Override
+	public void fixSources(List<Compound> excluded, List<Compound> required, List<Reaction> blocked) {
+		this.excludedSources = new HashSet<Compound>(excluded);
+		this.requiredSources = new HashSet<Compound>(required);
+		this.blockedReactions = new HashSet<Reaction>(blocked);
+	}
+
+	/*
+	 * Sets the bounds of the Ind variables of the held model according to
+	 * the last call to fixSources, and the upper bound of the x of the
+	 * blocked reactions to 0, CPLEX presolve then drops their columns. The
+	 * columns stay in the model, which is kept for the next targets. Only
+	 * the bounds that changed since the last call on the same model are
+	 * sent.
+	 */
+	private void applySourceFixing(List<Compound> sources) {
+		IloIntVar[] Ind = modelHolder.getVarInd();
+		IloNumVar[] x = modelHolder.getVarX();
+		if (this.fixedInd != Ind) {
+			// a new model, with the bounds it was built with
+			this.fixedInd = Ind;
+			this.fixedIndLB = new double[Ind.length];
+			this.fixedIndUB = new double[Ind.length];
+			Arrays.fill(this.fixedIndUB, 1.0);
+			this.fixedBlocked = new boolean[this.allReactions.size()];
+		}
+		try {
+			for (int i = 0; i < sources.size(); ++i) {
+				Compound s = sources.get(i);
+				double lb = 0.0;
+				double ub = 1.0;
+				if (this.excludedSources.contains(s)) {
+					ub = 0.0;
+				} else if (this.requiredSources.contains(s)) {
+					lb = 1.0;
+				}
+				if (lb != this.fixedIndLB[i]) {
+					Ind[i].setLB(lb);
+					this.fixedIndLB[i] = lb;
+				}
+				if (ub != this.fixedIndUB[i]) {
+					Ind[i].setUB(ub);
+					this.fixedIndUB[i] = ub;
+				}
+			}
+			int j = 0;
+			for (Reaction r : this.allReactions) {
+				boolean blocked = this.blockedReactions.contains(r);
+				if (blocked != this.fixedBlocked[j]) {
+					x[j].setUB(blocked ? 0.0 : Double.MAX_VALUE);
+					this.fixedBlocked[j] = blocked;
+				}
+				++j;
+			}
+		} catch (IloException e) {
+			e.printStackTrace();
+			System.err.println("Error while fixing the sources, Aborting.");
+			System.exit(-1);
+		}
+	}
+
+	@Override
+	public void restoreSolutions(List<PrecursorSet> solutions, int sizeLevel) {
+		this.restoredSolutions.addAll(solutions);
+		this.restoredSizeLevel = Math.max(this.restoredSizeLevel, sizeLevel);
+	}
+
+	/*
+	 * Called right before solving: adds the exclusion cuts and the size
+	 * constraint given to restoreSolutions, then sends the pending exclusion
+	 * cuts to the model in one batch.
+	 */
+	private void applyPendingExclusions(List<Compound> sources) {
+		for (PrecursorSet solution : this.restoredSolutions) {
+			modelHolder.addSolutionExclusion(sourceIndices(sources, solution));
+		}
+		if (this.restoredSizeLevel > modelHolder.getSizeOfBiggestSolution()) {
+			modelHolder.addSolutionSizeConstraint(this.restoredSizeLevel);
+		}
+		this.restoredSolutions.clear();
+		this.restoredSizeLevel = 0;
+		modelHolder.flushSolutionExclusions();
+	}
+
+	/*
+	 * Indices in sources, and so in the Ind variables, of the precursors of
+	 * the given set.
+	 */
+	private static int[] sourceIndices(List<Compound> sources, PrecursorSet solution) {
+		int[] indices = new int[solution.getPrecursors().size()];
+		int k = 0;
+		for (Compound c : solution.getPrecursors()) {
+			indices[k++] = sources.indexOf(c);
+		}
+		return indices;
+	}
+
 	@Override
 	public PrecursorSet findNextMinimalPrecursor(List<Compound> sources,
 			Compound target, PrecursorSet lastSolution, double bigM, double epsilon1) {
@@ -79,174 +214,22 @@ public class CPLEXInterface implements OptimisationInterface {
 			x = modelHolder.getVarX();
 			Ind = modelHolder.getVarInd();
 			cplex = modelHolder.getCplex();
-
-			IloCplexModeler modeler = new IloCplexModeler();
+			modelHolder.setTarget(target, epsilon1);
 
 			// Excluding last known solution
-			try {
-				if (lastSolution != null) {
-					IloLinearNumExpr expr;
-					expr = modeler.linearNumExpr();
-					for (Compound c : lastSolution.getPrecursors()) {
-						int ind = sources.indexOf(c);
-						expr.addTerm(1.0, Ind[ind]);
-					}
-					cplex.addLe(expr,
-							lastSolution.getPrecursors().size() - 1.0,
-							"SolutionExclusion" + lastSolution.getPrecursors());
-				}
-			} catch (IloException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-				return null;
+			if (lastSolution != null) {
+				modelHolder.addSolutionExclusion(sourceIndices(sources, lastSolution));
 			}
 		} else {
 			try {
-				cplex = new IloCplex();
-				List<Compound> bootstrap = InputParameters.getBootstrapCompounds();
-
-				String[] reacNames = new String[this.allReactions.size()
-						+ sources.size() + bootstrap.size()];
-				int nbReac = 0;
-				for (Reaction r : this.allReactions) {
-					reacNames[nbReac++] = r.getId();
-				}
-				for (Compound c : sources) {
-					reacNames[nbReac++] = c.getId() + "_producer";
-				}
-				for (Compound c: bootstrap){
-					reacNames[nbReac++] = c.getId() + "_bootstrap_producer";
-				}
-				IloCplexModeler modeler = new IloCplexModeler();
-
-				x = modeler.numVarArray(
-						this.allReactions.size() + sources.size() + bootstrap.size(), 0.0,
-						Double.MAX_VALUE, reacNames);
-				cplex.add(x);
-				for (int i=0; i<this.allReactions.size() + sources.size() + bootstrap.size(); ++i){
-					cplex.addRange(0.0,x[i], bigM, "Bounds_"+i);
-				}
-				Ind = modeler.intVarArray(sources.size(), 0, 1);
-
-				for (int i = 0; i < sources.size(); ++i) {
-					Ind[i].setName(sources.get(i).getId() + "_IND");
-				}
-				cplex.add(Ind);
-
-				for (Compound c : network.getCompounds().values()) {
-					IloLinearNumExpr expr = modeler.linearNumExpr();
-					if (sources.contains(c)) {
-						int delta = sources.indexOf(c);
-						expr.addTerm(1.0, x[this.allReactions.size() + delta]);
-						// IFF Constraint for the flux of artificial reactions and 
-						// objective function variables
-						/*IloLinearNumExpr intConstraitLHS = modeler
-								.linearNumExpr();
-						intConstraitLHS.addTerm(1.0, x[this.allReactions.size()
-								+ delta]);
-						IloLinearNumExpr intConstraitRHS = modeler
-								.linearNumExpr();
-						intConstraitRHS.addTerm(bigM, Ind[delta]);
-						cplex.addLe(intConstraitLHS, intConstraitRHS, c.getId()
-								+ "FluxIfUsed");
-
-						intConstraitLHS = modeler.linearNumExpr();
-						intConstraitLHS.addTerm(1.0, Ind[delta]);
-						intConstraitRHS = modeler.linearNumExpr();
-						intConstraitRHS.addTerm(1.0, x[this.allReactions.size()
-								+ delta]);
-						cplex.addLe(intConstraitLHS, intConstraitRHS, c.getId()
-								+ "_NotUsedNotCounted");
-						*/
-						// Same constraint but a formulation with two IFThen constraints						
-						//cplex.add(cplex.ifThen(cplex.eq(Ind[delta], 0.0),cplex.le(x[this.allReactions.size() + delta], 0.0)));
-						//cplex.add(cplex.ifThen(cplex.le(x[this.allReactions.size() + delta], 0.0),cplex.eq(Ind[delta], 0.0)));
-						
-						// Same constraint but a formulation with the indicator constraint scheme	
-						cplex.addEq(cplex.sum(Ind[delta], cplex.le(x[this.allReactions.size() + delta], 0.0)), 1.0, reacNames[this.allReactions.size() + delta]+"_IC");
-					}
-					else if (c.isBootstrap()){
-						int bdelta = bootstrap.indexOf(c);
-						expr.addTerm(1.0, x[this.allReactions.size() + sources.size() + bdelta]);
-						IloLinearNumExpr intConstraitLHS = modeler.linearNumExpr();
-						intConstraitLHS.addTerm(1.0, x[this.allReactions.size()
-								+ sources.size() + bdelta]);
-						cplex.addLe(intConstraitLHS, bigM, c.getId()
-								+ "BootstrapFluxUpperBound");
-					}
-					for (int i = 0; i < this.allReactions.size(); i++) {
-						Reaction r = this.allReactions.get(i);
-						if (r.getProduces().values().contains(c)) { // reaction
-																	// j
-																	// produces
-																	// compound
-																	// i
-							expr.addTerm(r.getProductStochiometricValue(c),
-									x[i]);
-						} else if (r.getSubstrates().values().contains(c)) { // reaction
-																				// j
-																				// consumes
-																				// compound
-																				// i
-							expr.addTerm(-r.getSubstrateStochiometricValue(c),
-									x[i]);
-						}
-					}
-
-					if (target.equals(c)) {
-						cplex.addGe(expr, epsilon1, c.getId());
-					} else if (!c.isBootstrap()){
-						cplex.addGe(expr, 0.0, c.getId());
-					}
-				}
+				cplex = buildNormalModel(sources, target, bigM, epsilon1);
+				x = modelHolder.getVarX();
+				Ind = modelHolder.getVarInd();
 
 				// Excluding last known solution
 				if (lastSolution != null) {
-					IloLinearNumExpr expr = modeler.linearNumExpr();
-					for (Compound c : lastSolution.getPrecursors()) {
-						int ind = sources.indexOf(c);
-						expr.addTerm(1.0, Ind[ind]);
-					}
-					cplex.addLe(expr,
-							lastSolution.getPrecursors().size() - 1.0,
-							"SolutionExclusion" + lastSolution.getPrecursors());
-				}
-				/*else{
-					List<PrecursorSet> solutions = loadPartialSolutions("/tmp/teste");
-					int cc = 0;
-					for (PrecursorSet sol : solutions){
-						IloLinearNumExpr expr = modeler.linearNumExpr();
-						for (Compound c : sol.getPrecursors()) {
-							int ind = sources.indexOf(c);
-							expr.addTerm(1.0, Ind[ind]);
-						}
-						cplex.addLe(expr,
-								sol.getPrecursors().size() - 1.0,
-								"SolutionExclusion" + sol);
-						++cc;
-					}
-					
-				}*/
-
-				IloLinearNumExpr fobj = modeler.linearNumExpr();
-				for (IloNumVar Ii : Ind) {
-					fobj.addTerm(1.0, Ii);
-				}
-				cplex.addMinimize(fobj);
-
-				//cplex = new IloCplex();
-				//cplex.importModel("/tmp/BUG_MIPEnumerationModel.lp");
-				
-				if (!InputParameters.verbose) {
-					cplex.setOut(null);
-					cplex.setWarning(null);
+					modelHolder.addSolutionExclusion(sourceIndices(sources, lastSolution));
 				}
-				cplex.setParam(IloCplex.DoubleParam.EpInt, 1e-9);
-				cplex.setParam(IloCplex.DoubleParam.EpRHS, 1e-9);
-				cplex.setParam(IloCplex.IntParam.Threads,
-						InputParameters.nbThreads);
-				cplex.setParam(IloCplex.BooleanParam.NumericalEmphasis, true);
-
 			} catch (IloException e) {
 				System.err.println("Concert exception caught: " + e);
 				return null;
@@ -254,16 +237,19 @@ public class CPLEXInterface implements OptimisationInterface {
 		}
 		
 		modelHolder.setModel(cplex, x, Ind, SasitaModelType.NORMAL);
+		applySourceFixing(sources);
+		applyPendingExclusions(sources);
 
 		try {
-			cplex.exportModel("/tmp/MIPEnumerationModel.lp");
+			Diagnostics.exportModel("MIPEnumerationModel", cplex);
 			cplex.setParam(IloCplex.DoubleParam.TiLim, 1e+75);
 
 			// solve
-			if (cplex.solve()) {
+			if (solve(cplex)) {
 				logln("Solution status = " + cplex.getStatus());
 				logln("Solution value = " + cplex.getObjValue());
 
+				long t = Metrics.start();
 				solution = new PrecursorSet();
 				double[] is = cplex.getValues(modelHolder.getVarInd());
 				for (int i = 0; i < is.length; ++i) {
@@ -272,6 +258,7 @@ public class CPLEXInterface implements OptimisationInterface {
 						solution.addPrecursor(s);
 					}
 				}
+				Metrics.stop("solution.extract", t);
 				
 				if (InputParameters.fbaCheck) {
 					//double fbaResult = doFBA(solution.getPrecursors(),
@@ -287,41 +274,7 @@ public class CPLEXInterface implements OptimisationInterface {
 				}
 
 				if (InputParameters.addReactionsToSolutions || InputParameters.addCumulatedCompoundsToSolutions) {
-					Set<Reaction> reactionsInSolution = new HashSet<Reaction>();
-					HashMap<String, Double> SV = new HashMap<String, Double>();
-					double[] xs = cplex.getValues(modelHolder.getVarX());
-					for (int j = 0; j < xs.length; ++j) {
-						if (xs[j] > 0) {
-							String rName = modelHolder.getVarX()[j].getName();
-							for (Reaction r : allReactions) {
-								if (r.getId().equals(rName)) {
-									if (xs[j] > 1e-6) {
-										reactionsInSolution.add(r);
-										for (Compound p : r.getProduces().values()){
-											double tmp = xs[j]*r.getProductStochiometricValue(p);
-											tmp += SV.get(p.getId());
-											SV.put(p.getId(), tmp);
-										}
-										for (Compound p : r.getSubstrates().values()){
-											double tmp = -(xs[j]*r.getSubstrateStochiometricValue(p));
-											tmp += SV.get(p.getId());
-											SV.put(p.getId(), tmp);
-										}
-									}
-								}
-							}
-						}
-					}
-					if (InputParameters.addReactionsToSolutions){
-						solution.addReactions(reactionsInSolution);
-					}
-					if (InputParameters.addCumulatedCompoundsToSolutions){
-						for(Compound c : allCompounds){
-							if (SV.get(c.getId()) > 1e-6){
-								solution.addCumullatedCompound(c);
-							}
-						}
-					}
+					addFluxInformation(solution, cplex.getValues(modelHolder.getVarX()), true);
 				}
 				
 				if (solution.getPrecursors().size() > this.modelHolder.getSizeOfBiggestSolution()){
@@ -349,28 +302,18 @@ public class CPLEXInterface implements OptimisationInterface {
 			x = modelHolder.getVarX();
 			Ind = modelHolder.getVarInd();
 			cplex = modelHolder.getCplex();
-
-			IloCplexModeler modeler = new IloCplexModeler();
+			modelHolder.setTarget(target, epsilon1);
 
 			// Excluding known solutions
-			try {
-				if (lastSolution != null) {
-					IloLinearNumExpr expr;
-					expr = modeler.linearNumExpr();
-					for (Compound c : lastSolution.getPrecursors()) {
-						int ind = sources.indexOf(c);
-						expr.addTerm(1.0, Ind[ind]);
-					}
-					cplex.addLe(expr,
-							lastSolution.getPrecursors().size() - 1.0,
-							"SolutionExclusion" + lastSolution);
-				}
-			} catch (IloException e) {
-				e.printStackTrace();
-				return null;
+			if (lastSolution != null) {
+				modelHolder.addSolutionExclusion(sourceIndices(sources, lastSolution));
 			}
 		} else {
 			try {
+				long t = Metrics.start();
+				if (this.modelHolder.isModelSet()) {
+					this.modelHolder.clearModel();
+				}
 				IloCplexModeler modeler = new IloCplexModeler();
 				cplex = new IloCplex();
 				List<Compound> bootstrap = InputParameters.getBootstrapCompounds();
@@ -385,6 +328,8 @@ public class CPLEXInterface implements OptimisationInterface {
 						}
 					}
 				}
+				// The reactions were changed, the matrix must be rebuilt
+				this.stoichiometricMatrix = null;
 				for (Compound c : sources) {
 					reacNames[nbReac++] = c.getId() + "_producer";
 				}
@@ -407,28 +352,17 @@ public class CPLEXInterface implements OptimisationInterface {
 				}
 				cplex.add(Ind);
 
+				StoichiometricMatrix sm = getStoichiometricMatrix();
+				int[] smCols = sm.getColumnIndices();
+				double[] smCoefs = sm.getCoefficients();
+				int[] smConsumers = sm.getConsumerIndices();
 				for (Compound c : network.getCompounds().values()) {
 					int delta = sources.indexOf(c);
 					IloLinearNumExpr expr = modeler.linearNumExpr();
 					if (sources.contains(c)) {
 						expr.addTerm(1.0, x[this.allReactions.size() + delta]);
-						IloLinearNumExpr intConstraitLHS = modeler
-								.linearNumExpr();
-						intConstraitLHS.addTerm(1.0, x[this.allReactions.size()
-								+ delta]);
-						IloLinearNumExpr intConstraitRHS = modeler
-								.linearNumExpr();
-						intConstraitRHS.addTerm(bigM, Ind[delta]);
-						cplex.addLe(intConstraitLHS, intConstraitRHS, c.getId()
-								+ "FluxIfUsed");
-
-						intConstraitLHS = modeler.linearNumExpr();
-						intConstraitLHS.addTerm(1.0, Ind[delta]);
-						intConstraitRHS = modeler.linearNumExpr();
-						intConstraitRHS.addTerm(1.0, x[this.allReactions.size()
-								+ delta]);
-						cplex.addLe(intConstraitLHS, intConstraitRHS, c.getId()
-								+ "_NotUsedNotCounted");
+						getIndicatorLink(IndicatorLinkStrategy.BIGM).link(cplex,
+								Ind[delta], x[this.allReactions.size() + delta], bigM, c.getId());
 
 						// intConstraitLHS = modeler.linearNumExpr();
 						// intConstraitLHS.addTerm(1.0, I[delta]);
@@ -448,30 +382,18 @@ public class CPLEXInterface implements OptimisationInterface {
 						cplex.addLe(intConstraitLHS, bigM, c.getId()
 								+ "BootstrapFluxUpperBound");
 					}
-					for (int i = 0; i < this.allReactions.size(); i++) {
-						Reaction r = this.allReactions.get(i);
-						if (r.getProduces().values().contains(c)) { // reaction
-																	// j
-																	// produces
-																	// compound
-																	// i
-							expr.addTerm(r.getProductStochiometricValue(c),
-									x[i]);
-						} else if (r.getSubstrates().values().contains(c)) { // reaction
-																				// j
-																				// consumes
-																				// compound
-																				// i
-							expr.addTerm(-r.getSubstrateStochiometricValue(c),
-									x[i]);
-						}
+					int row = sm.getRowIndex(c);
+					for (int k = sm.getRowStart(row); k < sm.getRowEnd(row); ++k) {
+						expr.addTerm(smCoefs[k], x[smCols[k]]);
 					}
 
+					IloRange range;
 					if (target.equals(c)) {
-						cplex.addGe(expr, epsilon1, c.getId());
+						range = cplex.addGe(expr, epsilon1, c.getId());
 					} else {
-						cplex.addGe(expr, 0.0, c.getId());
+						range = cplex.addGe(expr, 0.0, c.getId());
 					}
+					modelHolder.addCompoundRow(c, range, 0.0, Double.MAX_VALUE);
 				}
 
 				// MD constraint
@@ -484,37 +406,15 @@ public class CPLEXInterface implements OptimisationInterface {
 							int bdelta = bootstrap.indexOf(c);
 							C1.addTerm(1.0, x[this.allReactions.size() + sources.size() + bdelta]);
 						}
-						for (int i = 0; i < this.allReactions.size(); i++) {
-							Reaction r = this.allReactions.get(i);
-							if (r.getProduces().values().contains(c)) { // reaction
-																		// j
-																		// produces
-																		// compound
-																		// i
-								C1.addTerm(r.getProductStochiometricValue(c),
-										x[i]);
-							} else if (r.getSubstrates().values().contains(c)) { // reaction
-																					// j
-																					// consumes
-																					// compound
-																					// i
-								C1.addTerm(
-										-r.getSubstrateStochiometricValue(c),
-										x[i]);
-							}
+						int row = sm.getRowIndex(c);
+						for (int k = sm.getRowStart(row); k < sm.getRowEnd(row); ++k) {
+							C1.addTerm(smCoefs[k], x[smCols[k]]);
 						}
 						IloConstraint CC1 = modeler.ge(C1, epsilon2, "KTMP_1_"
 								+ c.getId());
 
-						for (int i = 0; i < this.allReactions.size(); i++) {
-							Reaction r = this.allReactions.get(i);
-							if (r.getSubstrates().values().contains(c)) { // reaction
-																			// j
-																			// consumes
-																			// compound
-																			// i
-								C2.addTerm(1.0, x[i]);
-							}
+						for (int k = sm.getConsumerStart(row); k < sm.getConsumerEnd(row); ++k) {
+							C2.addTerm(1.0, x[smConsumers[k]]);
 						}
 						IloConstraint CC2 = modeler.eq(C2, 0.0,
 								"KTMP_2_" + c.getId());
@@ -524,16 +424,13 @@ public class CPLEXInterface implements OptimisationInterface {
 					}
 				}
 
+				Metrics.stop("model.build", t);
+				modelHolder.setModel(cplex, x, Ind, SasitaModelType.DUPMACH);
+				modelHolder.setTarget(target, epsilon1);
+
 				// Excluding last known solution
 				if (lastSolution != null) {
-					IloLinearNumExpr expr = modeler.linearNumExpr();
-					for (Compound c : lastSolution.getPrecursors()) {
-						int ind = sources.indexOf(c);
-						expr.addTerm(1.0, Ind[ind]);
-					}
-					cplex.addLe(expr,
-							lastSolution.getPrecursors().size() - 1.0,
-							"SolutionExclusion" + lastSolution);
+					modelHolder.addSolutionExclusion(sourceIndices(sources, lastSolution));
 				}
 
 				IloLinearNumExpr fobj = modeler.linearNumExpr();
@@ -554,7 +451,7 @@ public class CPLEXInterface implements OptimisationInterface {
 					cplex.setWarning(null);
 				}
 				cplex.setParam(IloCplex.IntParam.Threads,
-						InputParameters.nbThreads);
+						this.nbThreads);
 
 				/*
 				 * FileOutputStream cplexLogFile; try { cplexLogFile = new
@@ -571,12 +468,14 @@ public class CPLEXInterface implements OptimisationInterface {
 		}
 
 		modelHolder.setModel(cplex, x, Ind, SasitaModelType.DUPMACH);
+		applyPendingExclusions(sources);
 
 		try {
-			if (cplex.solve()) {
+			if (solve(cplex)) {
 				logln("Solution status = " + cplex.getStatus());
 				logln("Solution value = " + cplex.getObjValue());
 
+				long t = Metrics.start();
 				solution = new PrecursorSet();
 				double[] iss = cplex.getValues(Ind);
 				for (int i = 0; i < iss.length; ++i) {
@@ -586,23 +485,10 @@ public class CPLEXInterface implements OptimisationInterface {
 						solution.addPrecursor(s);
 					}
 				}
+				Metrics.stop("solution.extract", t);
 			}
 			if (InputParameters.addReactionsToSolutions) {
-				Set<Reaction> reactionsInSolution = new HashSet<Reaction>();
-				double[] xs = cplex.getValues(modelHolder.getVarX());
-				for (int j = 0; j < xs.length; ++j) {
-					if (xs[j] > 0) {
-						String rName = modelHolder.getVarX()[j].getName();
-						for (Reaction r : allReactions) {
-							if (r.getId().equals(rName)) {
-								if (xs[j] > 1e-6) {
-									reactionsInSolution.add(r);
-								}
-							}
-						}
-					}
-				}
-				solution.addReactions(reactionsInSolution);
+				addFluxInformation(solution, cplex.getValues(modelHolder.getVarX()), false);
 			}
 
 			if (solution.getPrecursors().size() > this.modelHolder.getSizeOfBiggestSolution()){
@@ -630,27 +516,18 @@ public class CPLEXInterface implements OptimisationInterface {
 			x = modelHolder.getVarX();
 			Ind = modelHolder.getVarInd();
 			cplex = modelHolder.getCplex();
+			modelHolder.setTarget(target, epsilon1);
 
-			IloCplexModeler modeler = new IloCplexModeler();
 			// Excluding last known solution
-			try {
-				if (lastSolution != null) {
-					IloLinearNumExpr expr;
-					expr = modeler.linearNumExpr();
-					for (Compound c : lastSolution.getPrecursors()) {
-						int ind = sources.indexOf(c);
-						expr.addTerm(1.0, Ind[ind]);
-					}
-					cplex.addLe(expr,
-							lastSolution.getPrecursors().size() - 1.0,
-							"SolutionExclusion" + lastSolution.getPrecursors());
-				}
-			} catch (IloException e) {
-				e.printStackTrace();
-				return null;
+			if (lastSolution != null) {
+				modelHolder.addSolutionExclusion(sourceIndices(sources, lastSolution));
 			}
 		} else {
 			try {
+				long t = Metrics.start();
+				if (this.modelHolder.isModelSet()) {
+					this.modelHolder.clearModel();
+				}
 				cplex = new IloCplex();
 				List<Compound> bootstrap = InputParameters.getBootstrapCompounds();
 				List<Compound> boundary = new LinkedList<Compound>();
@@ -692,28 +569,16 @@ public class CPLEXInterface implements OptimisationInterface {
 				}
 				cplex.add(Ind);
 
+				StoichiometricMatrix sm = getStoichiometricMatrix();
+				int[] smCols = sm.getColumnIndices();
+				double[] smCoefs = sm.getCoefficients();
 				for (Compound c : network.getCompounds().values()) {
 					IloLinearNumExpr expr = modeler.linearNumExpr();
 					if (sources.contains(c)) {
 						int delta = sources.indexOf(c);
 						expr.addTerm(1.0, x[this.allReactions.size() + delta]);
-						IloLinearNumExpr intConstraitLHS = modeler
-								.linearNumExpr();
-						intConstraitLHS.addTerm(1.0, x[this.allReactions.size()
-								+ delta]);
-						IloLinearNumExpr intConstraitRHS = modeler
-								.linearNumExpr();
-						intConstraitRHS.addTerm(bigM, Ind[delta]);
-						cplex.addLe(intConstraitLHS, intConstraitRHS, c.getId()
-								+ "FluxIfUsed");
-
-						intConstraitLHS = modeler.linearNumExpr();
-						intConstraitLHS.addTerm(1.0, Ind[delta]);
-						intConstraitRHS = modeler.linearNumExpr();
-						intConstraitRHS.addTerm(1.0, x[this.allReactions.size()
-								+ delta]);
-						cplex.addLe(intConstraitLHS, intConstraitRHS, c.getId()
-								+ "_NotUsedNotCounted");
+						getIndicatorLink(IndicatorLinkStrategy.BIGM).link(cplex,
+								Ind[delta], x[this.allReactions.size() + delta], bigM, c.getId());
 					}
 					else if (c.isBootstrap()){
 						int bdelta = bootstrap.indexOf(c);
@@ -731,43 +596,32 @@ public class CPLEXInterface implements OptimisationInterface {
 						}
 						expr.addTerm(-1.0, x[this.allReactions.size() + sources.size() + bootstrap.size() + bdelta]);
 					}*/
-					for (int i = 0; i < this.allReactions.size(); i++) {
-						Reaction r = this.allReactions.get(i);
-						if (r.getProduces().values().contains(c)) { // reaction
-																	// j
-																	// produces
-																	// compound
-																	// i
-							expr.addTerm(r.getProductStochiometricValue(c),
-									x[i]);
-						} else if (r.getSubstrates().values().contains(c)) { // reaction
-																				// j
-																				// consumes
-																				// compound
-																				// i
-							expr.addTerm(-r.getSubstrateStochiometricValue(c),
-									x[i]);
-						}
+					int row = sm.getRowIndex(c);
+					for (int k = sm.getRowStart(row); k < sm.getRowEnd(row); ++k) {
+						expr.addTerm(smCoefs[k], x[smCols[k]]);
 					}
 
+					IloRange range;
 					if (target.equals(c)) {
-						cplex.addGe(expr, epsilon1, c.getId()+"_TARGET");
+						range = cplex.addGe(expr, epsilon1, c.getId()+"_TARGET");
 					} else if (sources.contains(c) || c.isBoundary()){
-						cplex.addGe(expr, 0.0, c.getId()+"_ACC");
+						range = cplex.addGe(expr, 0.0, c.getId()+"_ACC");
 					} else {
-						cplex.addEq(expr, 0.0, c.getId());	
+						range = cplex.addEq(expr, 0.0, c.getId());	
 					} 
+					if (sources.contains(c) || c.isBoundary()){
+						modelHolder.addCompoundRow(c, range, 0.0, Double.MAX_VALUE);
+					} else {
+						modelHolder.addCompoundRow(c, range, 0.0, 0.0);
+					}
 				}
+				Metrics.stop("model.build", t);
+				modelHolder.setModel(cplex, x, Ind, SasitaModelType.STEADYSTATE);
+				modelHolder.setTarget(target, epsilon1);
+
 				// Excluding last known solution
 				if (lastSolution != null) {
-					IloLinearNumExpr expr = modeler.linearNumExpr();
-					for (Compound c : lastSolution.getPrecursors()) {
-						int ind = sources.indexOf(c);
-						expr.addTerm(1.0, Ind[ind]);
-					}
-					cplex.addLe(expr,
-							lastSolution.getPrecursors().size() - 1.0,
-							"SolutionExclusion" + lastSolution.getPrecursors());
+					modelHolder.addSolutionExclusion(sourceIndices(sources, lastSolution));
 				}
 
 				IloLinearNumExpr fobj = modeler.linearNumExpr();
@@ -784,7 +638,7 @@ public class CPLEXInterface implements OptimisationInterface {
 				cplex.setParam(IloCplex.DoubleParam.EpRHS, 1e-9);
 				// cplex.exportModel("MIPEnumerationModel.lp");
 				cplex.setParam(IloCplex.IntParam.Threads,
-						InputParameters.nbThreads);
+						this.nbThreads);
 			} catch (IloException e) {
 				System.err.println("Concert exception caught: " + e);
 				return null;
@@ -792,14 +646,16 @@ public class CPLEXInterface implements OptimisationInterface {
 		}
 
 		modelHolder.setModel(cplex, x, Ind, SasitaModelType.STEADYSTATE);
+		applyPendingExclusions(sources);
 
 		try {
 			// solve
-			cplex.exportModel("/tmp/MIPEnumerationModel.lp");
-			if (cplex.solve()) {
+			Diagnostics.exportModel("MIPEnumerationModel", cplex);
+			if (solve(cplex)) {
 				logln("Solution status = " + cplex.getStatus());
 				logln("Solution value = " + cplex.getObjValue());
 				
+				long t = Metrics.start();
 				solution = new PrecursorSet();
 				double[] is = cplex.getValues(modelHolder.getVarInd());
 				for (int i = 0; i < is.length; ++i) {
@@ -808,23 +664,10 @@ public class CPLEXInterface implements OptimisationInterface {
 						solution.addPrecursor(s);
 					}
 				}
+				Metrics.stop("solution.extract", t);
 				
 				if (InputParameters.addReactionsToSolutions) {
-					Set<Reaction> reactionsInSolution = new HashSet<Reaction>();
-					double[] xs = cplex.getValues(modelHolder.getVarX());
-					for (int j = 0; j < xs.length; ++j) {
-						if (xs[j] > 0) {
-							String rName = modelHolder.getVarX()[j].getName();
-							for (Reaction r : allReactions) {
-								if (r.getId().equals(rName)) {
-									if (xs[j] > 1e-6) {
-										reactionsInSolution.add(r);
-									}
-								}
-							}
-						}
-					}
-					solution.addReactions(reactionsInSolution);
+					addFluxInformation(solution, cplex.getValues(modelHolder.getVarX()), false);
 				}
 				
 				if (solution.getPrecursors().size() > this.modelHolder.getSizeOfBiggestSolution()){
@@ -850,179 +693,26 @@ public class CPLEXInterface implements OptimisationInterface {
 			x = modelHolder.getVarX();
 			Ind = modelHolder.getVarInd();
 			cplex = modelHolder.getCplex();
-
-			IloCplexModeler modeler = new IloCplexModeler();
+			modelHolder.setTarget(target, epsilon1);
 
 			// Excluding last known solutions
-			try {
-				if (lastSolutions != null) {
-					for (PrecursorSet solution : lastSolutions){
-						IloLinearNumExpr expr;
-						expr = modeler.linearNumExpr();
-						for (Compound c : solution.getPrecursors()) {
-							int ind = sources.indexOf(c);
-							expr.addTerm(1.0, Ind[ind]);
-						}
-						cplex.addLe(expr,
-								solution.getPrecursors().size() - 1.0,
-								"SolutionExclusion" + solution);
-					}
+			if (lastSolutions != null) {
+				for (PrecursorSet solution : lastSolutions){
+					modelHolder.addSolutionExclusion(sourceIndices(sources, solution));
 				}
-			} catch (IloException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-				return null;
 			}
 		} else {
 			try {
-				cplex = new IloCplex();
-				List<Compound> bootstrap = InputParameters.getBootstrapCompounds();
-
-				String[] reacNames = new String[this.allReactions.size()
-						+ sources.size() + bootstrap.size()];
-				int nbReac = 0;
-				for (Reaction r : this.allReactions) {
-					reacNames[nbReac++] = r.getId();
-				}
-				for (Compound c : sources) {
-					reacNames[nbReac++] = c.getId() + "_producer";
-				}
-				for (Compound c: bootstrap){
-					reacNames[nbReac++] = c.getId() + "_bootstrap_producer";
-				}
-				IloCplexModeler modeler = new IloCplexModeler();
-
-				x = modeler.numVarArray(
-						this.allReactions.size() + sources.size() + bootstrap.size(), 0.0,
-						Double.MAX_VALUE, reacNames);
-				cplex.add(x);
-				for (int i=0; i<this.allReactions.size() + sources.size() + bootstrap.size(); ++i){
-					cplex.addRange(0.0,x[i], bigM, "Bounds_"+i);
-				}
-				Ind = modeler.intVarArray(sources.size(), 0, 1);
-
-				for (int i = 0; i < sources.size(); ++i) {
-					Ind[i].setName(sources.get(i).getId() + "_IND");
-				}
-				cplex.add(Ind);
-
-				for (Compound c : network.getCompounds().values()) {
-					IloLinearNumExpr expr = modeler.linearNumExpr();
-					if (sources.contains(c)) {
-						int delta = sources.indexOf(c);
-						expr.addTerm(1.0, x[this.allReactions.size() + delta]);
-						// IFF Constraint for the flux of artificial reactions and 
-						// objective function variables
-						/*IloLinearNumExpr intConstraitLHS = modeler
-								.linearNumExpr();
-						intConstraitLHS.addTerm(1.0, x[this.allReactions.size()
-								+ delta]);
-						IloLinearNumExpr intConstraitRHS = modeler
-								.linearNumExpr();
-						intConstraitRHS.addTerm(bigM, Ind[delta]);
-						cplex.addLe(intConstraitLHS, intConstraitRHS, c.getId()
-								+ "FluxIfUsed");
-
-						intConstraitLHS = modeler.linearNumExpr();
-						intConstraitLHS.addTerm(1.0, Ind[delta]);
-						intConstraitRHS = modeler.linearNumExpr();
-						intConstraitRHS.addTerm(1.0, x[this.allReactions.size()
-								+ delta]);
-						cplex.addLe(intConstraitLHS, intConstraitRHS, c.getId()
-								+ "_NotUsedNotCounted");
-						*/
-						// Same constraint but a formulation with two IFThen constraints						
-						//cplex.add(cplex.ifThen(cplex.eq(Ind[delta], 0.0),cplex.le(x[this.allReactions.size() + delta], 0.0)));
-						//cplex.add(cplex.ifThen(cplex.le(x[this.allReactions.size() + delta], 0.0),cplex.eq(Ind[delta], 0.0)));
-						
-						// Same constraint but a formulation with the indicator constraint scheme	
-						cplex.addEq(cplex.sum(Ind[delta], cplex.le(x[this.allReactions.size() + delta], 0.0)), 1.0, reacNames[this.allReactions.size() + delta]+"_IC");
-					}
-					else if (c.isBootstrap()){
-						int bdelta = bootstrap.indexOf(c);
-						expr.addTerm(1.0, x[this.allReactions.size() + sources.size() + bdelta]);
-						IloLinearNumExpr intConstraitLHS = modeler.linearNumExpr();
-						intConstraitLHS.addTerm(1.0, x[this.allReactions.size()
-								+ sources.size() + bdelta]);
-						cplex.addLe(intConstraitLHS, bigM, c.getId()
-								+ "BootstrapFluxUpperBound");
-					}
-					for (int i = 0; i < this.allReactions.size(); i++) {
-						Reaction r = this.allReactions.get(i);
-						if (r.getProduces().values().contains(c)) { // reaction
-																	// j
-																	// produces
-																	// compound
-																	// i
-							expr.addTerm(r.getProductStochiometricValue(c),
-									x[i]);
-						} else if (r.getSubstrates().values().contains(c)) { // reaction
-																				// j
-																				// consumes
-																				// compound
-																				// i
-							expr.addTerm(-r.getSubstrateStochiometricValue(c),
-									x[i]);
-						}
-					}
-
-					if (target.equals(c)) {
-						cplex.addGe(expr, epsilon1, c.getId());
-					} else if (!c.isBootstrap()){
-						cplex.addGe(expr, 0.0, c.getId());
-					}
-				}
+				cplex = buildNormalModel(sources, target, bigM, epsilon1);
+				x = modelHolder.getVarX();
+				Ind = modelHolder.getVarInd();
 
 				// Excluding last known solutions
 				if (lastSolutions != null) {
 					for (PrecursorSet solution : lastSolutions){
-						IloLinearNumExpr expr;
-						expr = modeler.linearNumExpr();
-						for (Compound c : solution.getPrecursors()) {
-							int ind = sources.indexOf(c);
-							expr.addTerm(1.0, Ind[ind]);
-						}
-						cplex.addLe(expr,
-								solution.getPrecursors().size() - 1.0,
-								"SolutionExclusion" + solution);
+						modelHolder.addSolutionExclusion(sourceIndices(sources, solution));
 					}
 				}
-				/*else{
-					List<PrecursorSet> solutions = loadPartialSolutions("/tmp/teste");
-					int cc = 0;
-					for (PrecursorSet sol : solutions){
-						IloLinearNumExpr expr = modeler.linearNumExpr();
-						for (Compound c : sol.getPrecursors()) {
-							int ind = sources.indexOf(c);
-							expr.addTerm(1.0, Ind[ind]);
-						}
-						cplex.addLe(expr,
-								sol.getPrecursors().size() - 1.0,
-								"SolutionExclusion" + sol);
-						++cc;
-					}
-					
-				}*/
-
-				IloLinearNumExpr fobj = modeler.linearNumExpr();
-				for (IloNumVar Ii : Ind) {
-					fobj.addTerm(1.0, Ii);
-				}
-				cplex.addMinimize(fobj);
-
-				//cplex = new IloCplex();
-				//cplex.importModel("/tmp/BUG_MIPEnumerationModel.lp");
-				
-				if (!InputParameters.verbose) {
-					cplex.setOut(null);
-					cplex.setWarning(null);
-				}
-				cplex.setParam(IloCplex.DoubleParam.EpInt, 1e-9);
-				cplex.setParam(IloCplex.DoubleParam.EpRHS, 1e-9);
-				cplex.setParam(IloCplex.IntParam.Threads,
-						InputParameters.nbThreads);
-				cplex.setParam(IloCplex.BooleanParam.NumericalEmphasis, true);
-
 			} catch (IloException e) {
 				System.err.println("Concert exception caught: " + e);
 				return null;
@@ -1030,9 +720,11 @@ public class CPLEXInterface implements OptimisationInterface {
 		}
 		
 		modelHolder.setModel(cplex, x, Ind, SasitaModelType.NORMAL);
+		applySourceFixing(sources);
+		applyPendingExclusions(sources);
 
 		try {
-			cplex.exportModel("/tmp/MIPEnumerationModel.lp");
+			Diagnostics.exportModel("MIPEnumerationModel", cplex);
 			// Set population parameters
 		      cplex.setParam(IloCplex.DoubleParam.SolnPoolAGap, 0.5);
 		      cplex.setParam(IloCplex.IntParam.SolnPoolIntensity, 2);
@@ -1042,7 +734,7 @@ public class CPLEXInterface implements OptimisationInterface {
 		      cplex.setParam(IloCplex.DoubleParam.TiLim, InputParameters.TiLim);
 		      cplex.setParam(IloCplex.IntParam.SolnPoolReplace, 1);			
 			// solve
-			if (cplex.populate()) {
+			if (populate(cplex)) {
 				if (cplex.getStatus() != Status.Optimal){
 					System.err.println("\nPopulate could not find a solution, changing strategy...");
 					this.modelHolder.touchModelToResolve();
@@ -1072,48 +764,6 @@ public class CPLEXInterface implements OptimisationInterface {
 					}
 				}
 
-				if (InputParameters.addReactionsToSolutions || InputParameters.addCumulatedCompoundsToSolutions) {
-					for (PrecursorSet solution : solutions){
-						Set<Reaction> reactionsInSolution = new HashSet<Reaction>();
-						double[] xs = cplex.getValues(modelHolder.getVarX());
-						HashMap<String, Double> SV = new HashMap<String, Double>();
-						for (Compound c : allCompounds){
-							SV.put(c.getId(), 0.0);
-						}
-						for (int j = 0; j < xs.length; ++j) {
-							if (xs[j] > 0) {
-								String rName = modelHolder.getVarX()[j].getName();
-								for (Reaction r : allReactions) {
-									if (r.getId().equals(rName)) {
-										if (xs[j] > 1e-6) {
-											reactionsInSolution.add(r);
-											for (Compound p : r.getProduces().values()){
-												double tmp = xs[j]*r.getProductStochiometricValue(p);
-												tmp += SV.get(p.getId());
-												SV.put(p.getId(), tmp);
-											}
-											for (Compound p : r.getSubstrates().values()){
-												double tmp = -(xs[j]*r.getSubstrateStochiometricValue(p));
-												tmp += SV.get(p.getId());
-												SV.put(p.getId(), tmp);
-											}
-										}
-									}
-								}
-							}
-						}
-						if(InputParameters.addReactionsToSolutions){
-							solution.addReactions(reactionsInSolution);
-						}
-						if(InputParameters.addCumulatedCompoundsToSolutions){
-							for(Compound c : allCompounds){
-								if (SV.get(c.getId()) > 1e-6){
-									solution.addCumullatedCompound(c);
-								}
-							}
-						}
-					}
-				}
 				for (PrecursorSet solution : solutions){
 					if (solution.getPrecursors().size() > this.modelHolder.getSizeOfBiggestSolution()){
 						modelHolder.addSolutionSizeConstraint(solution.getPrecursors().size());
@@ -1128,7 +778,267 @@ public class CPLEXInterface implements OptimisationInterface {
 		return solutions;
 	}
 
+	/*
+	 * Enumerates all the minimal precursor sets in a single branch-and-bound
+	 * search. Every integer point found by CPLEX is recorded and rejected by
+	 * a lazy cut excluding it and its supersets, so the search goes on
+	 * without restarting until the model becomes infeasible. Non minimal
+	 * sets met on the way are dropped by the store once one of their subsets
+	 * is found, which always happens since the subset is not cut off.
+	 */
+	@Override
+	public List<PrecursorSet> enumerateMinimalPrecursors(List<Compound> sources,
+			Compound target, double bigM, double epsilon1) {
+		MinimalPrecursorSetStore store = new MinimalPrecursorSetStore();
+		try {
+			IloCplex cplex;
+			if (this.modelHolder.isModelSet() == true
+					&& this.modelHolder.getModelType() == SasitaModelType.NORMAL) {
+				cplex = modelHolder.getCplex();
+				modelHolder.setTarget(target, epsilon1);
+			} else {
+				cplex = buildNormalModel(sources, target, bigM, epsilon1);
+			}
+			applySourceFixing(sources);
+			applyPendingExclusions(sources);
+			cplex.use(new SolutionExclusionCallback(sources, store));
+			cplex.setParam(IloCplex.DoubleParam.TiLim, 1e+75);
+			solve(cplex);
+			cplex.clearCallbacks();
+			if (cplex.getStatus() != Status.Infeasible
+					&& cplex.getStatus() != Status.InfeasibleOrUnbounded) {
+				System.err.println("\nThe enumeration stopped before the end (status "
+						+ cplex.getStatus() + ").");
+				this.modelHolder.clearModel();
+				return null;
+			}
+			logln("Enumeration finished after " + cplex.getNnodes() + " nodes.");
+		} catch (IloException e) {
+			System.err.print("Concert exception caught: ");
+			e.printStackTrace();
+			if (this.modelHolder.isModelSet()) {
+				this.modelHolder.clearModel();
+			}
+			return null;
+		}
+
+		List<PrecursorSet> solutions = store.getMinimalSets();
+		if (InputParameters.fbaCheck) {
+			logln("Testing solutions...");
+			List<PrecursorSet> falseSolutions = new ArrayList<PrecursorSet>();
+			for (PrecursorSet solution : solutions) {
+				if (!checker.checkSolution(solution.getPrecursors())) {
+					falseSolutions.add(solution);
+				}
+			}
+			if (falseSolutions.size() > 0) {
+				System.err
+						.println("\nError, " + falseSolutions.size() + " of the solutions found are not true solutions.");
+				System.err
+						.println("Choose a bigger epsilon or a smaller bigM.");
+				solutions.removeAll(falseSolutions);
+			}
+		}
+		return solutions;
+	}
+
+	/*
+	 * Records the precursor set of each integer point and cuts it off with
+	 * sum(Ind[s], s in the set) <= |set| - 1.
+	 */
+	private class SolutionExclusionCallback extends IloCplex.LazyConstraintCallback {
+		private List<Compound> sources;
+		private MinimalPrecursorSetStore store;
+
+		SolutionExclusionCallback(List<Compound> sources, MinimalPrecursorSetStore store) {
+			this.sources = sources;
+			this.store = store;
+		}
+
+		@Override
+		protected void main() throws IloException {
+			IloIntVar[] Ind = modelHolder.getVarInd();
+			double[] is = getValues(Ind);
+			PrecursorSet solution = new PrecursorSet();
+			IloLinearNumExpr expr = modelHolder.getCplex().linearNumExpr();
+			for (int i = 0; i < is.length; ++i) {
+				if (((int) (is[i] + 0.5)) == 1.0) {
+					solution.addPrecursor(sources.get(i));
+					expr.addTerm(1.0, Ind[i]);
+				}
+			}
+			if (InputParameters.addReactionsToSolutions || InputParameters.addCumulatedCompoundsToSolutions) {
+				addFluxInformation(solution, getValues(modelHolder.getVarX()), true);
+			}
+			if (store.add(solution)) {
+				logln("Candidate found: " + solution.getPrecursors());
+			}
+			add(modelHolder.getCplex().le(expr, solution.getPrecursors().size() - 1.0));
+			Metrics.increment("cuts.lazy");
+		}
+	}
+
+	/*
+	 * Adds the reactions with a positive flux and, if cumulated, the
+	 * compounds that accumulate (Sv > 0) to the solution, xs being indexed
+	 * as the x variables. The columns of the stoichiometric matrix are the
+	 * first x variables, so Sv is summed row by row on the matrix.
+	 */
+	private void addFluxInformation(PrecursorSet solution, double[] xs, boolean cumulated) {
+		StoichiometricMatrix sm = getStoichiometricMatrix();
+		if (InputParameters.addReactionsToSolutions) {
+			Set<Reaction> reactionsInSolution = new HashSet<Reaction>();
+			for (int j = 0; j < sm.getNbColumns(); ++j) {
+				if (xs[j] > 1e-6) {
+					reactionsInSolution.add(sm.getColumnReaction(j));
+				}
+			}
+			solution.addReactions(reactionsInSolution);
+		}
+		if (cumulated && InputParameters.addCumulatedCompoundsToSolutions) {
+			int[] smCols = sm.getColumnIndices();
+			double[] smCoefs = sm.getCoefficients();
+			for (int row = 0; row < sm.getNbRows(); ++row) {
+				double sv = 0.0;
+				for (int k = sm.getRowStart(row); k < sm.getRowEnd(row); ++k) {
+					double flux = xs[smCols[k]];
+					if (flux > 1e-6) {
+						sv += smCoefs[k] * flux;
+					}
+				}
+				if (sv > 1e-6) {
+					solution.addCumullatedCompound(sm.getRowCompound(row));
+				}
+			}
+		}
+	}
+
+	/*
+	 * Builds the model of the default mode (Sv>=0) without any solution
+	 * exclusion and registers it in the model holder.
+	 */
+	private IloCplex buildNormalModel(List<Compound> sources, Compound target,
+			double bigM, double epsilon1) throws IloException {
+		long t = Metrics.start();
+		if (this.modelHolder.isModelSet()) {
+			this.modelHolder.clearModel();
+		}
+		IloCplex cplex = new IloCplex();
+		IloNumVar[] x = null;
+		IloIntVar[] Ind = null;
+		List<Compound> bootstrap = InputParameters.getBootstrapCompounds();
+
+		String[] reacNames = new String[this.allReactions.size()
+				+ sources.size() + bootstrap.size()];
+		int nbReac = 0;
+		for (Reaction r : this.allReactions) {
+			reacNames[nbReac++] = r.getId();
+		}
+		for (Compound c : sources) {
+			reacNames[nbReac++] = c.getId() + "_producer";
+		}
+		for (Compound c: bootstrap){
+			reacNames[nbReac++] = c.getId() + "_bootstrap_producer";
+		}
+		IloCplexModeler modeler = new IloCplexModeler();
+
+		x = modeler.numVarArray(
+				this.allReactions.size() + sources.size() + bootstrap.size(), 0.0,
+				Double.MAX_VALUE, reacNames);
+		cplex.add(x);
+		for (int i=0; i<this.allReactions.size() + sources.size() + bootstrap.size(); ++i){
+			cplex.addRange(0.0,x[i], bigM, "Bounds_"+i);
+		}
+		Ind = modeler.intVarArray(sources.size(), 0, 1);
+
+		for (int i = 0; i < sources.size(); ++i) {
+			Ind[i].setName(sources.get(i).getId() + "_IND");
+		}
+		cplex.add(Ind);
+
+		StoichiometricMatrix sm = getStoichiometricMatrix();
+		int[] smCols = sm.getColumnIndices();
+		double[] smCoefs = sm.getCoefficients();
+		for (Compound c : network.getCompounds().values()) {
+			IloLinearNumExpr expr = modeler.linearNumExpr();
+			if (sources.contains(c)) {
+				int delta = sources.indexOf(c);
+				expr.addTerm(1.0, x[this.allReactions.size() + delta]);
+				getIndicatorLink(IndicatorLinkStrategy.LOGICAL).link(cplex,
+						Ind[delta], x[this.allReactions.size() + delta], bigM, c.getId());
+			}
+			else if (c.isBootstrap()){
+				int bdelta = bootstrap.indexOf(c);
+				expr.addTerm(1.0, x[this.allReactions.size() + sources.size() + bdelta]);
+				IloLinearNumExpr intConstraitLHS = modeler.linearNumExpr();
+				intConstraitLHS.addTerm(1.0, x[this.allReactions.size()
+						+ sources.size() + bdelta]);
+				cplex.addLe(intConstraitLHS, bigM, c.getId()
+						+ "BootstrapFluxUpperBound");
+			}
+			int row = sm.getRowIndex(c);
+			for (int k = sm.getRowStart(row); k < sm.getRowEnd(row); ++k) {
+				expr.addTerm(smCoefs[k], x[smCols[k]]);
+			}
+
+			IloRange range;
+			if (target.equals(c)) {
+				range = cplex.addGe(expr, epsilon1, c.getId());
+			} else if (!c.isBootstrap()){
+				range = cplex.addGe(expr, 0.0, c.getId());
+			} else {
+				// free row, only bounded if c becomes the target
+				range = cplex.addRange(-Double.MAX_VALUE, expr, Double.MAX_VALUE, c.getId());
+			}
+			modelHolder.addCompoundRow(c, range, c.isBootstrap() ? -Double.MAX_VALUE : 0.0, Double.MAX_VALUE);
+		}
+
+		IloLinearNumExpr fobj = modeler.linearNumExpr();
+		for (IloNumVar Ii : Ind) {
+			fobj.addTerm(1.0, Ii);
+		}
+		cplex.addMinimize(fobj);
+
+		//cplex = new IloCplex();
+		//cplex.importModel("/tmp/BUG_MIPEnumerationModel.lp");
+		
+		if (!InputParameters.verbose) {
+			cplex.setOut(null);
+			cplex.setWarning(null);
+		}
+		cplex.setParam(IloCplex.DoubleParam.EpInt, 1e-9);
+		cplex.setParam(IloCplex.DoubleParam.EpRHS, 1e-9);
+		cplex.setParam(IloCplex.IntParam.Threads,
+				this.nbThreads);
+		cplex.setParam(IloCplex.BooleanParam.NumericalEmphasis, true);
+
+		modelHolder.setModel(cplex, x, Ind, SasitaModelType.NORMAL);
+		modelHolder.setTarget(target, epsilon1);
+		Metrics.stop("model.build", t);
+		return cplex;
+	}
+
+	/*
+	 * Runs the solve of the model, timed and with its nodes counted.
+	 */
+	private boolean solve(IloCplex cplex) throws IloException {
+		long t = Metrics.start();
+		boolean feasible = cplex.solve();
+		Metrics.stop("solver.solve", t);
+		Metrics.add("solver.nodes", cplex.getNnodes());
+		return feasible;
+	}
+
+	private boolean populate(IloCplex cplex) throws IloException {
+		long t = Metrics.start();
+		boolean feasible = cplex.populate();
+		Metrics.stop("solver.populate", t);
+		Metrics.add("solver.nodes", cplex.getNnodes());
+		return feasible;
+	}
+
 	private List<PrecursorSet> getSolutionsFromPopulate(IloCplex cplex, List<Compound> sources, int minSizeAccepted) {
+		long t = Metrics.start();
 		List<PrecursorSet> solutions = new LinkedList<PrecursorSet>();
 		int nsol = cplex.getSolnPoolNsolns();
 		double smallObjFunction = Double.POSITIVE_INFINITY;
@@ -1159,6 +1069,10 @@ public class CPLEXInterface implements OptimisationInterface {
 					}
 				}
 				if (!solutions.contains(solution)){
+					// the fluxes of the pool solution k, not of the incumbent
+					if (InputParameters.addReactionsToSolutions || InputParameters.addCumulatedCompoundsToSolutions) {
+						addFluxInformation(solution, cplex.getValues(modelHolder.getVarX(), k), true);
+					}
 					solutions.add(solution);
 				}
 			}
@@ -1169,6 +1083,9 @@ public class CPLEXInterface implements OptimisationInterface {
 			e.printStackTrace();
 			System.exit(-3);
 		}
+		Metrics.stop("solution.extractPool", t);
+		Metrics.add("pool.solutions", nsol);
+		Metrics.add("pool.kept", solutions.size());
 		return solutions;
 	}
 
@@ -1201,6 +1118,9 @@ public class CPLEXInterface implements OptimisationInterface {
 			}
 			IloLinearNumExpr fobj = modeler.linearNumExpr();
 
+			StoichiometricMatrix sm = getStoichiometricMatrix();
+			int[] smCols = sm.getColumnIndices();
+			double[] smCoefs = sm.getCoefficients();
 			for (Compound c : network.getCompounds().values()) {
 				IloLinearNumExpr expr = modeler.linearNumExpr();
 				if (sources.contains(c)) {
@@ -1215,19 +1135,9 @@ public class CPLEXInterface implements OptimisationInterface {
 					int delta = bootstrap.indexOf(c);
 					expr.addTerm(1.0, x[this.allReactions.size() + sources.size() + delta]);
 				}
-				for (int i = 0; i < this.allReactions.size(); i++) {
-					Reaction r = this.allReactions.get(i);
-					if (r.getProduces().values().contains(c)) { // reaction j
-																// produces
-																// compound i
-						expr.addTerm(r.getProductStochiometricValue(c), x[i]);
-					} else if (r.getSubstrates().values().contains(c)) { // reaction
-																			// j
-																			// consumes
-																			// compound
-																			// i
-						expr.addTerm(-r.getSubstrateStochiometricValue(c), x[i]);
-					}
+				int row = sm.getRowIndex(c);
+				for (int k = sm.getRowStart(row); k < sm.getRowEnd(row); ++k) {
+					expr.addTerm(smCoefs[k], x[smCols[k]]);
 				}
 
 				// Mv = 0 except if free to accumulate
@@ -1254,7 +1164,7 @@ public class CPLEXInterface implements OptimisationInterface {
 				cplex.setOut(null);
 				cplex.setWarning(null);
 			}
-			cplex.exportModel("/tmp/fbaCheckModel.lp");
+			Diagnostics.exportModel("fbaCheckModel", cplex);
 
 		} catch (IloException e) {
 			System.err.println("Concert exception caught: " + e);
@@ -1300,6 +1210,17 @@ public class CPLEXInterface implements OptimisationInterface {
 		return solutionValue;
 	}
 
+	/*
+	 * Sparse stoichiometric matrix of the network with allReactions as
+	 * columns. It is built on first use and shared by all model builders.
+	 */
+	private StoichiometricMatrix getStoichiometricMatrix() {
+		if (this.stoichiometricMatrix == null) {
+			this.stoichiometricMatrix = this.network.getStoichiometricMatrix(this.allReactions);
+		}
+		return this.stoichiometricMatrix;
+	}
+
 	private void logln(String message) {
 		if (InputParameters.verbose) {
 			System.out.println("[SASITA] " + message);
@@ -1313,9 +1234,18 @@ public class CPLEXInterface implements OptimisationInterface {
 		this.modelHolder = new SasitaCPLEXModelHolder();
 }
 
+	@Override
+	public void clearSolutionExclusions() {
+		if (this.modelHolder.isModelSet()) {
+			this.modelHolder.clearSolutions();
+		}
+	}
+
 	@Override
 	public void finish() {
-		this.modelHolder.clearModel();		
+		if (this.modelHolder.isModelSet()) {
+			this.modelHolder.clearModel();
+		}
 	}
 	
 	private List<PrecursorSet> loadPartialSolutions(String filename) {
@@ -0,0 +1,151 @@
+package utils;
+
+import ilog.concert.IloException;
+import ilog.cplex.IloCplex;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import metabolicNetwork.MetabolicNetwork;
+
+/*
+ * Diagnostic files of a run (preprocessed networks, MILP models), off
+ * unless -diagnostics=<dir> is given. The files go to a directory of their
+ * own for each run, <dir>/run-<date>, and only the first -diagnosticsFirst
+ * occurrences of each name are written: the first one as <name>.<ext>,
+ * the next ones as <name>-<k>.<ext>.
+ *
+ * A network is formatted by the caller and written to the disk by a
+ * background thread. A CPLEX model can only be exported by the thread
+ * that owns it, while it is not modified, so it is written at once.
+ */
+public class Diagnostics {
+
+	private static File runDir = null;
+	private static int sampleFirst = 1;
+	private static ExecutorService writer = null;
+	private static final Map<String, Integer> occurrences = new HashMap<String, Integer>();
+
+	public static synchronized void open(File dir, int first) {
+		runDir = new File(dir, "run-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()));
+		if (!runDir.isDirectory() && !runDir.mkdirs()) {
+			System.err.println("Could not create the diagnostics directory " + runDir
+					+ ", no diagnostics written.");
+			runDir = null;
+			return;
+		}
+		sampleFirst = first;
+		writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "diagnostics writer");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		System.out.println("Diagnostics written to " + runDir);
+	}
+
+	public static synchronized boolean isEnabled() {
+		return runDir != null;
+	}
+
+	/*
+	 * File of this occurrence of name, null if the diagnostics are off or
+	 * the first occurrences of name were already written.
+	 */
+	private static synchronized File sample(String name, String extension) {
+		if (runDir == null) {
+			return null;
+		}
+		Integer seen = occurrences.get(name);
+		int k = seen == null ? 0 : seen;
+		if (k >= sampleFirst) {
+			return null;
+		}
+		occurrences.put(name, k + 1);
+		return new File(runDir, (k == 0 ? name : name + "-" + k) + "." + extension);
+	}
+
+	public static void writeNetwork(String name, MetabolicNetwork network) {
+		File file = sample(name, "xml");
+		if (file == null) {
+			return;
+		}
+		StringWriter content = new StringWriter();
+		try {
+			new MetabolicNetworkSBMLWriter(file.getPath()).write(network, content);
+		} catch (IOException e) {
+			e.printStackTrace();
+			return;
+		}
+		writeInBackground(file, content.toString());
+	}
+
+	public static void exportModel(String name, IloCplex cplex) {
+		File file = sample(name, "lp");
+		if (file == null) {
+			return;
+		}
+		long t = Metrics.start();
+		try {
+			cplex.exportModel(file.getPath());
+		} catch (IloException e) {
+			System.err.println("Could not export the model to " + file + ": " + e);
+		}
+		Metrics.stop("output.diagnostics", t);
+	}
+
+	/*
+	 * The file was sampled before the lock was taken again, the diagnostics
+	 * may have been closed in between by another thread.
+	 */
+	private static synchronized void writeInBackground(final File file, final String content) {
+		if (writer == null || writer.isShutdown()) {
+			return;
+		}
+		writer.submit(new Runnable() {
+			@Override
+			public void run() {
+				long t = Metrics.start();
+				try {
+					Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+					out.write(content);
+					out.close();
+				} catch (IOException e) {
+					System.err.println("Could not write the diagnostic file " + file + ": " + e.getMessage());
+				}
+				Metrics.stop("output.diagnostics", t);
+			}
+		});
+	}
+
+	/*
+	 * Waits for the files still in the queue.
+	 */
+	public static synchronized void close() {
+		if (writer == null) {
+			return;
+		}
+		writer.shutdown();
+		try {
+			writer.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		}
+		writer = null;
+		runDir = null;
+	}
+}
@@ -0,0 +1,142 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/*
+ * No-good cuts excluding precursor sets, kept as the sorted indices of
+ * their sources. The cut of a set S, sum(Ind[i], i in S) <= |S| - 1, also
+ * excludes every superset of S, so a cut whose set contains the set of
+ * another cut is redundant: it is refused when added, or dropped when the
+ * smaller cut arrives later. The cuts are handed to the model in batches,
+ * takePending giving the cuts to add since the last call and takeRemoved
+ * the ones to take out of it. The arrays are returned as they were given,
+ * so that they can be used as identity keys.
+ *
+ * The active cuts are stored in a set-trie on their indices, as the sets
+ * of PrecursorSetIndex: the subsets of a cut are found by following only
+ * its indices, its supersets by following the paths through all of them.
+ * No active cut contains another one, so a node holds at most one cut.
+ */
+public class ExclusionCutPool {
+
+	private Node root = new Node();
+	private int nbActive = 0;
+	private LinkedHashSet<int[]> pending = new LinkedHashSet<int[]>();
+	private List<int[]> removed = new ArrayList<int[]>();
+
+	/*
+	 * Returns false if the cut is subsumed by a cut of the pool.
+	 */
+	public boolean add(int[] cut) {
+		Arrays.sort(cut);
+		if (containsSubset(this.root, cut, 0)) {
+			Metrics.increment("cuts.subsumed");
+			return false;
+		}
+		List<int[]> supersets = new ArrayList<int[]>();
+		removeSupersets(this.root, cut, 0, supersets);
+		for (int[] c : supersets) {
+			// a cut never given to the model is simply forgotten
+			if (!pending.remove(c)) {
+				removed.add(c);
+			}
+		}
+		this.nbActive -= supersets.size();
+
+		Node node = this.root;
+		for (int i : cut) {
+			Node child = node.children.get(i);
+			if (child == null) {
+				child = new Node();
+				node.children.put(i, child);
+			}
+			node = child;
+		}
+		node.cut = cut;
+		++this.nbActive;
+		pending.add(cut);
+		return true;
+	}
+
+	public List<int[]> takePending() {
+		List<int[]> cuts = new ArrayList<int[]>(pending);
+		pending = new LinkedHashSet<int[]>();
+		return cuts;
+	}
+
+	public List<int[]> takeRemoved() {
+		List<int[]> cuts = removed;
+		removed = new ArrayList<int[]>();
+		return cuts;
+	}
+
+	public int size() {
+		return this.nbActive;
+	}
+
+	public void clear() {
+		this.root = new Node();
+		this.nbActive = 0;
+		pending.clear();
+		removed.clear();
+	}
+
+	/*
+	 * Whether a cut below node is made of indices of cut from cut[from].
+	 */
+	private static boolean containsSubset(Node node, int[] cut, int from) {
+		if (node.cut != null) {
+			return true;
+		}
+		for (int k = from; k < cut.length; ++k) {
+			Node child = node.children.get(cut[k]);
+			if (child != null && containsSubset(child, cut, k + 1)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * Takes the cuts below node containing the indices of cut from
+	 * cut[from] out of the trie, into found. The children past the next
+	 * index can not contain it, and the branches left empty are dropped.
+	 */
+	private static void removeSupersets(Node node, int[] cut, int from, List<int[]> found) {
+		if (from == cut.length) {
+			collect(node, found);
+			node.cut = null;
+			node.children.clear();
+			return;
+		}
+		Iterator<Map.Entry<Integer, Node>> it = node.children.headMap(cut[from], true).entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<Integer, Node> e = it.next();
+			Node child = e.getValue();
+			removeSupersets(child, cut, e.getKey() == cut[from] ? from + 1 : from, found);
+			if (child.cut == null && child.children.isEmpty()) {
+				it.remove();
+			}
+		}
+	}
+
+	private static void collect(Node node, List<int[]> found) {
+		if (node.cut != null) {
+			found.add(node.cut);
+		}
+		for (Node child : node.children.values()) {
+			collect(child, found);
+		}
+	}
+
+	private static class Node {
+		final TreeMap<Integer, Node> children = new TreeMap<Integer, Node>();
+		int[] cut = null;
+	}
+}
@@ -0,0 +1,103 @@
+package utils;
+
+import ilog.concert.IloException;
+import ilog.concert.IloLinearNumExpr;
+import ilog.concert.IloNumVar;
+import ilog.cplex.IloCplex;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import metabolicNetwork.Compound;
+import metabolicNetwork.MetabolicNetwork;
+import metabolicNetwork.Reaction;
+import metabolicNetwork.StoichiometricMatrix;
+
+/*
+ * FBA on the network with a given set of sources, built once and solved
+ * again for each set. Every compound may accumulate (Sv >= 0), up to
+ * maxAccumulation, the target must be produced at least at minTargetProd
+ * and its production is maximised.
+ *
+ * Each compound has a producer column, in its row only, from nothing. The
+ * producers of the bootstraps are always open, the others are closed (upper
+ * bound 0) and a set of sources opens its own ones for the time of a solve.
+ * Only bounds change from one set to the next, so CPLEX starts each solve
+ * from the previous basis. The LPs are small and several oracles may run at
+ * the same time, each one solves with a single thread.
+ */
+public class FBAOracle {
+
+	private final StoichiometricMatrix sm;
+	private final double maxFlux;
+	private IloCplex cplex;
+	private IloNumVar[] producers;
+
+	public FBAOracle(MetabolicNetwork network, Compound target, double maxFlux,
+			double minTargetProd) throws IloException {
+		this(network, target, maxFlux, minTargetProd, Double.MAX_VALUE);
+	}
+
+	public FBAOracle(MetabolicNetwork network, Compound target, double maxFlux,
+			double minTargetProd, double maxAccumulation) throws IloException {
+		this.maxFlux = maxFlux;
+		this.sm = network.getStoichiometricMatrix(new ArrayList<Reaction>(network.getReactions().values()));
+		buildModel(target, minTargetProd, maxAccumulation);
+	}
+
+	private void buildModel(Compound target, double minTargetProd, double maxAccumulation) throws IloException {
+		this.cplex = new IloCplex();
+		this.cplex.setOut(null);
+		this.cplex.setWarning(null);
+		this.cplex.setParam(IloCplex.IntParam.Threads, 1);
+		this.cplex.setParam(IloCplex.DoubleParam.EpRHS, 1e-9);
+
+		IloNumVar[] x = this.cplex.numVarArray(this.sm.getNbColumns(), 0.0, this.maxFlux);
+		this.producers = new IloNumVar[this.sm.getNbRows()];
+		int[] smCols = this.sm.getColumnIndices();
+		double[] smCoefs = this.sm.getCoefficients();
+		for (int row = 0; row < this.sm.getNbRows(); ++row) {
+			Compound c = this.sm.getRowCompound(row);
+			this.producers[row] = this.cplex.numVar(0.0, c.isBootstrap() ? this.maxFlux : 0.0,
+					c.getId() + "_producer");
+			IloLinearNumExpr expr = this.cplex.linearNumExpr();
+			expr.addTerm(1.0, this.producers[row]);
+			for (int k = this.sm.getRowStart(row); k < this.sm.getRowEnd(row); ++k) {
+				expr.addTerm(smCoefs[k], x[smCols[k]]);
+			}
+			if (c.equals(target)) {
+				this.cplex.addRange(minTargetProd, expr, maxAccumulation, c.getId() + "_tgt");
+				this.cplex.addMaximize(expr, "objective");
+			} else {
+				this.cplex.addRange(0.0, expr, maxAccumulation, c.getId() + "_qss");
+			}
+		}
+	}
+
+	/*
+	 * Maximal production of the target from the sources, 0 if it can not
+	 * be produced at minTargetProd.
+	 */
+	public double maxProduction(Collection<Compound> sources) throws IloException {
+		List<IloNumVar> opened = new ArrayList<IloNumVar>();
+		for (Compound c : sources) {
+			int row = this.sm.getRowIndex(c);
+			if (row >= 0 && !c.isBootstrap()) {
+				this.producers[row].setUB(this.maxFlux);
+				opened.add(this.producers[row]);
+			}
+		}
+		try {
+			return this.cplex.solve() ? this.cplex.getObjValue() : 0.0;
+		} finally {
+			for (IloNumVar producer : opened) {
+				producer.setUB(0.0);
+			}
+		}
+	}
+
+	public void end() {
+		this.cplex.end();
+	}
+}
@@ -0,0 +1,90 @@
+package utils;
+
+import ilog.concert.IloException;
+import ilog.concert.IloIntVar;
+import ilog.concert.IloLinearNumExpr;
+import ilog.concert.IloNumVar;
+import ilog.cplex.IloCplex;
+
+/*
+ * Formulations of the link between the Ind variable of a source and the
+ * flux of its producer: Ind = 1 if and only if the source is used. Each
+ * one is chosen with -link, and the fastest one depends on the network,
+ * -benchmarkLinks compares them on the targets.
+ */
+public enum IndicatorLinkStrategy {
+
+	/*
+	 * x <= bigM.Ind and Ind <= x, a used source has a flux of at least 1.
+	 */
+	BIGM("bigM") {
+		@Override
+		public void link(IloCplex cplex, IloIntVar ind, IloNumVar flux,
+				double bigM, String name) throws IloException {
+			IloLinearNumExpr intConstraitLHS = cplex.linearNumExpr();
+			intConstraitLHS.addTerm(1.0, flux);
+			IloLinearNumExpr intConstraitRHS = cplex.linearNumExpr();
+			intConstraitRHS.addTerm(bigM, ind);
+			cplex.addLe(intConstraitLHS, intConstraitRHS, name + "FluxIfUsed");
+
+			intConstraitLHS = cplex.linearNumExpr();
+			intConstraitLHS.addTerm(1.0, ind);
+			intConstraitRHS = cplex.linearNumExpr();
+			intConstraitRHS.addTerm(1.0, flux);
+			cplex.addLe(intConstraitLHS, intConstraitRHS, name + "_NotUsedNotCounted");
+		}
+	},
+
+	/*
+	 * Ind = 0 => x <= 0 and x <= 0 => Ind = 0, as two logical constraints.
+	 */
+	IFTHEN("ifThen") {
+		@Override
+		public void link(IloCplex cplex, IloIntVar ind, IloNumVar flux,
+				double bigM, String name) throws IloException {
+			cplex.add(cplex.ifThen(cplex.eq(ind, 0.0), cplex.le(flux, 0.0)));
+			cplex.add(cplex.ifThen(cplex.le(flux, 0.0), cplex.eq(ind, 0.0)));
+		}
+	},
+
+	/*
+	 * Ind + (x <= 0) = 1, the truth value of x <= 0 being used as a
+	 * binary expression.
+	 */
+	LOGICAL("logical") {
+		@Override
+		public void link(IloCplex cplex, IloIntVar ind, IloNumVar flux,
+				double bigM, String name) throws IloException {
+			cplex.addEq(cplex.sum(ind, cplex.le(flux, 0.0)), 1.0, name + "_IC");
+		}
+	};
+
+	private final String name;
+
+	private IndicatorLinkStrategy(String name) {
+		this.name = name;
+	}
+
+	/*
+	 * Adds to the model the constraints linking ind and flux, named after
+	 * name.
+	 */
+	public abstract void link(IloCplex cplex, IloIntVar ind, IloNumVar flux,
+			double bigM, String name) throws IloException;
+
+	public String getName() {
+		return name;
+	}
+
+	/*
+	 * The strategy given on the command line, null if the name is unknown.
+	 */
+	public static IndicatorLinkStrategy fromName(String name) {
+		for (IndicatorLinkStrategy strategy : values()) {
+			if (strategy.name.equals(name)) {
+				return strategy;
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,732 @@
+package utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+
+import metabolicNetwork.Compound;
+import metabolicNetwork.MetabolicNetwork;
+import metabolicNetwork.Reaction;
+import metabolicNetwork.StoichiometricMatrix;
+import utils.BranchAndBoundSolver.MIPStatus;
+import utils.SasitaCPLEXModelHolder.SasitaModelType;
+import utils.SimplexSolver.LPStatus;
+import application.InputParameters;
+import application.MinimalPrecursorSetStore;
+import application.PrecursorSet;
+
+/*
+ * In-process implementation of OptimisationInterface. It builds the same
+ * models as CPLEXInterface on top of SimplexSolver and BranchAndBoundSolver,
+ * so no native library is needed. The Ind/x link uses the bigM pair
+ * (x <= bigM.Ind and Ind <= x) and the disjunction of the duplicating
+ * machinery model is written with one binary per compound.
+ */
+public class JavaSolverInterface implements OptimisationInterface {
+
+	/* Same capacity as the CPLEX solution pool */
+	private static final int POPULATE_LIMIT = 100;
+
+	private MetabolicNetwork network;
+	private List<Reaction> allReactions = new ArrayList<Reaction>();
+	private StoichiometricMatrix stoichiometricMatrix = null;
+
+	// Current model
+	private SimplexSolver lp = null;
+	// package-private for the tests
+	BranchAndBoundSolver mip = null;
+	private SasitaModelType modelType = null;
+	private double bigM = 0.0;
+	private HashMap<Compound, Integer> sourceIndex = null;
+	private int[] indCols = null;
+	private int sizeRow = -1;
+	// lp row of each compound (indexed as the stoichiometric matrix) and its
+	// bounds when the compound is not the target
+	private int[] compoundRows = null;
+	private double[] compoundRowLB = null;
+	private double[] compoundRowUB = null;
+	private Compound target = null;
+	// rows added after this one are solution exclusions
+	private int nbModelRows = 0;
+	private int sizeOfTheBiggestSolutionFound = 0;
+	private Set<List<Integer>> excludedSolutions = new HashSet<List<Integer>>();
+	// sources whose Ind column is fixed to 0 or 1 in the default model
+	private Set<Compound> excludedSources = new HashSet<Compound>();
+	private Set<Compound> requiredSources = new HashSet<Compound>();
+	private Set<Reaction> blockedReactions = new HashSet<Reaction>();
+	// exclusions of a checkpoint, added to the model of the next search
+	private List<PrecursorSet> restoredSolutions = new ArrayList<PrecursorSet>();
+	private int restoredSizeLevel = 0;
+
+	// Model used to check the solutions when fbaCheck is on
+	private SimplexSolver fbaLP = null;
+	private int fbaTargetRow = -1;
+
+	public JavaSolverInterface(MetabolicNetwork network) {
+		this.network = network;
+		this.allReactions.addAll(this.network.getReactions().values());
+	}
+
+	@Override
+	public void startup() {
+		clearModel();
+	}
+
+	@Override
+	public void finish() {
+		clearModel();
+		this.fbaLP = null;
+	}
+
+	@Override
+	public PrecursorSet findNextMinimalPrecursor(List<Compound> sources,
+			Compound target, PrecursorSet lastSolution, double bigM, double epsilon1) {
+		if (this.modelType != SasitaModelType.NORMAL) {
+			buildModel(sources, target, bigM, epsilon1, 0.0, SasitaModelType.NORMAL);
+		} else {
+			setTarget(target, epsilon1);
+		}
+		applySourceFixing(sources);
+		applyRestoredSolutions();
+		if (lastSolution != null) {
+			addSolutionExclusion(lastSolution);
+		}
+		this.mip.setTimeLimit(-1);
+		PrecursorSet solution = solveModel(sources);
+		if (solution != null && InputParameters.fbaCheck) {
+			logln("Testing solution...");
+			if (!checkSolution(solution, target, bigM, epsilon1)) {
+				System.err
+						.println("Error, the last solution found is not a true solution.");
+				System.err
+						.println("Choose a bigger epsilon or a smaller bigM.");
+				return null;
+			}
+		}
+		return solution;
+	}
+
+	@Override
+	public PrecursorSet findNextDuplicatingMachineryMinimalPrecursor(
+			List<Compound> sources, Compound target, PrecursorSet lastSolution, double bigM, double epsilon1, double epsilon2) {
+		if (this.modelType != SasitaModelType.DUPMACH) {
+			buildModel(sources, target, bigM, epsilon1, epsilon2, SasitaModelType.DUPMACH);
+		} else {
+			setTarget(target, epsilon1);
+		}
+		applyRestoredSolutions();
+		if (lastSolution != null) {
+			addSolutionExclusion(lastSolution);
+		}
+		this.mip.setTimeLimit(-1);
+		return solveModel(sources);
+	}
+
+	@Override
+	public PrecursorSet findNextSteadyStateMinimalPrecursor(
+			List<Compound> sources, Compound target, PrecursorSet lastSolution, double bigM, double epsilon1) {
+		if (this.modelType != SasitaModelType.STEADYSTATE) {
+			buildModel(sources, target, bigM, epsilon1, 0.0, SasitaModelType.STEADYSTATE);
+		} else {
+			setTarget(target, epsilon1);
+		}
+		applyRestoredSolutions();
+		if (lastSolution != null) {
+			addSolutionExclusion(lastSolution);
+		}
+		this.mip.setTimeLimit(-1);
+		return solveModel(sources);
+	}
+
+	/*
+	 * Emulates the CPLEX populate: returns every minimal set of the smallest
+	 * size still available (up to POPULATE_LIMIT), or null if there is none.
+	 */
+	@Override
+	public List<PrecursorSet> findNextsMinimalPrecursor(List<Compound> sources,
+			Compound target, List<PrecursorSet> lastSolutions, double bigM, double epsilon1) {
+		if (this.modelType != SasitaModelType.NORMAL) {
+			buildModel(sources, target, bigM, epsilon1, 0.0, SasitaModelType.NORMAL);
+		} else {
+			setTarget(target, epsilon1);
+		}
+		applySourceFixing(sources);
+		applyRestoredSolutions();
+		if (lastSolutions != null) {
+			for (PrecursorSet solution : lastSolutions) {
+				addSolutionExclusion(solution);
+			}
+		}
+		this.mip.setTimeLimit(1000L * InputParameters.TiLim);
+		MIPStatus status = solveMIP();
+		if (status == MIPStatus.TIME_LIMIT) {
+			// the incumbent may not be of the minimum size, it must not
+			// raise the size row
+			System.err.println("\nPopulate could not find a solution, changing strategy...");
+			return null;
+		}
+		PrecursorSet first = readSolution(sources, status);
+		if (first == null) {
+			return null;
+		}
+		List<PrecursorSet> solutions = new LinkedList<PrecursorSet>();
+		solutions.add(first);
+
+		// only sets of the same size are wanted, the size row prunes the rest
+		int size = first.getPrecursors().size();
+		this.lp.setRowBounds(this.sizeRow, size, size);
+		PrecursorSet last = first;
+		while (solutions.size() < POPULATE_LIMIT) {
+			addSolutionExclusion(last);
+			last = readSolution(sources, solveMIP());
+			if (last == null) {
+				break;
+			}
+			solutions.add(last);
+		}
+		this.lp.setRowBounds(this.sizeRow, this.sizeOfTheBiggestSolutionFound, SimplexSolver.INF);
+
+		if (InputParameters.fbaCheck) {
+			logln("Testing solutions...");
+			List<PrecursorSet> falseSolutions = new ArrayList<PrecursorSet>();
+			for (PrecursorSet solution : solutions) {
+				if (!checkSolution(solution, target, bigM, epsilon1)) {
+					falseSolutions.add(solution);
+				}
+			}
+			solutions.removeAll(falseSolutions);
+			if (solutions.size() == 0) {
+				System.err
+						.println("\nError, the last solutions found are not true solutions.");
+				System.err
+						.println("Trying again, now looking for one solution a time...");
+				return null;
+			}
+		}
+		return solutions;
+	}
+
+	/*
+	 * Single search enumeration: every integer point reached by the
+	 * branch-and-bound is recorded, cut off together with its supersets and
+	 * the node is solved again, until the whole tree is closed.
+	 */
+	@Override
+	public List<PrecursorSet> enumerateMinimalPrecursors(final List<Compound> sources,
+			Compound target, double bigM, double epsilon1) {
+		if (this.modelType != SasitaModelType.NORMAL) {
+			buildModel(sources, target, bigM, epsilon1, 0.0, SasitaModelType.NORMAL);
+		} else {
+			setTarget(target, epsilon1);
+		}
+		applySourceFixing(sources);
+		applyRestoredSolutions();
+		final MinimalPrecursorSetStore store = new MinimalPrecursorSetStore();
+		this.mip.setIncumbentListener(new BranchAndBoundSolver.IncumbentListener() {
+			@Override
+			public boolean accept(double[] values, double objective) {
+				PrecursorSet solution = getSolution(sources, values);
+				if (store.add(solution)) {
+					logln("Candidate found: " + solution.getPrecursors());
+				}
+				addSolutionExclusion(solution);
+				return false;
+			}
+		});
+		this.mip.setTimeLimit(-1);
+		MIPStatus status = solveMIP();
+		this.mip.setIncumbentListener(null);
+		if (status != MIPStatus.INFEASIBLE) {
+			System.err.println("\nThe enumeration stopped before the end (status " + status + ").");
+			clearModel();
+			return null;
+		}
+		logln("Enumeration finished after " + this.mip.getNbNodes() + " nodes.");
+
+		List<PrecursorSet> solutions = store.getMinimalSets();
+		if (InputParameters.fbaCheck) {
+			logln("Testing solutions...");
+			List<PrecursorSet> falseSolutions = new ArrayList<PrecursorSet>();
+			for (PrecursorSet solution : solutions) {
+				if (!checkSolution(solution, target, bigM, epsilon1)) {
+					falseSolutions.add(solution);
+				}
+			}
+			if (falseSolutions.size() > 0) {
+				System.err
+						.println("\nError, " + falseSolutions.size() + " of the solutions found are not true solutions.");
+				System.err
+						.println("Choose a bigger epsilon or a smaller bigM.");
+				solutions.removeAll(falseSolutions);
+			}
+		}
+		return solutions;
+	}
+
+	/*
+	 * Builds the MILP of the given type. Column layout follows CPLEXInterface:
+	 * reactions, source producers, bootstrap producers, then the Ind binaries
+	 * and, for the duplicating machinery model, one binary per compound.
+	 */
+	private void buildModel(List<Compound> sources, Compound target, double bigM,
+			double epsilon1, double epsilon2, SasitaModelType type) {
+		long t = Metrics.start();
+		clearModel();
+		List<Compound> bootstrap = InputParameters.getBootstrapCompounds();
+
+		if (type == SasitaModelType.DUPMACH) {
+			for (Reaction r : this.allReactions) {
+				for (Compound src : sources) {
+					if (r.getProduces().containsKey(src.getId())) {
+						r.getProduces().remove(src.getId());
+					}
+				}
+			}
+			this.stoichiometricMatrix = null;
+		}
+		StoichiometricMatrix sm = getStoichiometricMatrix();
+		int[] smCols = sm.getColumnIndices();
+		double[] smCoefs = sm.getCoefficients();
+		int[] smConsumers = sm.getConsumerIndices();
+
+		this.lp = new SimplexSolver();
+		this.mip = new BranchAndBoundSolver(this.lp);
+		this.bigM = bigM;
+		this.sourceIndex = new HashMap<Compound, Integer>();
+		for (int i = 0; i < sources.size(); ++i) {
+			this.sourceIndex.put(sources.get(i), i);
+		}
+		HashMap<Compound, Integer> bootstrapIndex = new HashMap<Compound, Integer>();
+		for (int i = 0; i < bootstrap.size(); ++i) {
+			bootstrapIndex.put(bootstrap.get(i), i);
+		}
+
+		int nbReactions = this.allReactions.size();
+		int nbX = nbReactions + sources.size() + bootstrap.size();
+		for (int j = 0; j < nbX; ++j) {
+			this.lp.addColumn(0.0, bigM, 0.0);
+		}
+		this.indCols = new int[sources.size()];
+		for (int i = 0; i < sources.size(); ++i) {
+			this.indCols[i] = this.lp.addColumn(0.0, 1.0, 1.0);
+			this.mip.setInteger(this.indCols[i]);
+		}
+		int[] mdCols = null;
+		if (type == SasitaModelType.DUPMACH) {
+			mdCols = new int[sm.getNbRows()];
+			Arrays.fill(mdCols, -1);
+			for (int row = 0; row < sm.getNbRows(); ++row) {
+				if (!sm.getRowCompound(row).isPrecursor()
+						&& sm.getConsumerEnd(row) > sm.getConsumerStart(row)) {
+					mdCols[row] = this.lp.addColumn(0.0, 1.0, 0.0);
+					this.mip.setInteger(mdCols[row]);
+				}
+			}
+		}
+
+		this.compoundRows = new int[sm.getNbRows()];
+		this.compoundRowLB = new double[sm.getNbRows()];
+		this.compoundRowUB = new double[sm.getNbRows()];
+		RowBuffer buffer = new RowBuffer(nbX + 2);
+		for (int row = 0; row < sm.getNbRows(); ++row) {
+			Compound c = sm.getRowCompound(row);
+			Integer delta = this.sourceIndex.get(c);
+			Integer bdelta = bootstrapIndex.get(c);
+			buffer.clear();
+			if (delta != null) {
+				buffer.add(nbReactions + delta, 1.0);
+			} else if (c.isBootstrap() && bdelta != null) {
+				buffer.add(nbReactions + sources.size() + bdelta, 1.0);
+			}
+			for (int k = sm.getRowStart(row); k < sm.getRowEnd(row); ++k) {
+				buffer.add(smCols[k], smCoefs[k]);
+			}
+
+			// bounds of the row when c is not the target, the rows of the
+			// bootstraps are free in the default model
+			this.compoundRowLB[row] = 0.0;
+			this.compoundRowUB[row] = SimplexSolver.INF;
+			if (type == SasitaModelType.NORMAL && c.isBootstrap()) {
+				this.compoundRowLB[row] = -SimplexSolver.INF;
+			} else if (type == SasitaModelType.STEADYSTATE && delta == null && !c.isBoundary()) {
+				this.compoundRowUB[row] = 0.0;
+			}
+			if (target.equals(c)) {
+				this.compoundRows[row] = buffer.addRow(this.lp, epsilon1, SimplexSolver.INF);
+			} else {
+				this.compoundRows[row] = buffer.addRow(this.lp, this.compoundRowLB[row], this.compoundRowUB[row]);
+			}
+
+			if (type == SasitaModelType.DUPMACH) {
+				if (mdCols[row] >= 0) {
+					// MD constraint: either the compound is produced (C1 >= epsilon2)
+					// or it is not consumed (C2 == 0), written as
+					// C1 >= epsilon2.z and C2 <= U.z with z binary
+					buffer.add(mdCols[row], -epsilon2);
+					buffer.addRow(this.lp, 0.0, SimplexSolver.INF);
+					buffer.clear();
+					int nbConsumers = 0;
+					for (int k = sm.getConsumerStart(row); k < sm.getConsumerEnd(row); ++k) {
+						buffer.add(smConsumers[k], 1.0);
+						nbConsumers++;
+					}
+					buffer.add(mdCols[row], -bigM * nbConsumers);
+					buffer.addRow(this.lp, -SimplexSolver.INF, 0.0);
+				}
+			}
+		}
+
+		// Ind <-> producer flux
+		for (int i = 0; i < sources.size(); ++i) {
+			buffer.clear();
+			buffer.add(nbReactions + i, 1.0);
+			buffer.add(this.indCols[i], -bigM);
+			buffer.addRow(this.lp, -SimplexSolver.INF, 0.0);
+			buffer.clear();
+			buffer.add(this.indCols[i], 1.0);
+			buffer.add(nbReactions + i, -1.0);
+			buffer.addRow(this.lp, -SimplexSolver.INF, 0.0);
+		}
+
+		// Size of the solutions, raised as bigger solutions are found
+		buffer.clear();
+		for (int col : this.indCols) {
+			buffer.add(col, 1.0);
+		}
+		this.sizeRow = buffer.addRow(this.lp, 0.0, SimplexSolver.INF);
+		this.nbModelRows = this.lp.getNbRows();
+		this.target = target;
+		this.modelType = type;
+		Metrics.stop("model.build", t);
+	}
+
+	/*
+	 * Moves the epsilon1 production bound from the current target to the
+	 * given compound, the rest of the model is unchanged.
+	 */
+	private void setTarget(Compound target, double epsilon1) {
+		StoichiometricMatrix sm = getStoichiometricMatrix();
+		if (this.target != null && !this.target.equals(target)) {
+			int row = sm.getRowIndex(this.target);
+			this.lp.setRowBounds(this.compoundRows[row], this.compoundRowLB[row], this.compoundRowUB[row]);
+		}
+		int row = sm.getRowIndex(target);
+		if (row >= 0) {
+			this.lp.setRowBounds(this.compoundRows[row], epsilon1, SimplexSolver.INF);
+		}
+		this.target = target;
+	}
+
+	@Override
+	public void fixSources(List<Compound> excluded, List<Compound> required, List<Reaction> blocked) {
+		this.excludedSources = new HashSet<Compound>(excluded);
+		this.requiredSources = new HashSet<Compound>(required);
+		this.blockedReactions = new HashSet<Reaction>(blocked);
+	}
+
+	/*
+	 * Bounds of the Ind columns after the last fixSources, and the fluxes
+	 * of the blocked reactions fixed to 0. The reaction columns stay in the
+	 * LP, which is kept for the next targets, a fixed column never enters
+	 * the basis. Only the bounds that changed are set again.
+	 */
+	private void applySourceFixing(List<Compound> sources) {
+		for (int i = 0; i < sources.size(); ++i) {
+			Compound s = sources.get(i);
+			double lb = 0.0;
+			double ub = 1.0;
+			if (this.excludedSources.contains(s)) {
+				ub = 0.0;
+			} else if (this.requiredSources.contains(s)) {
+				lb = 1.0;
+			}
+			setColumnBounds(this.indCols[i], lb, ub);
+		}
+		// the reaction columns come first, in the order of allReactions
+		for (int j = 0; j < this.allReactions.size(); ++j) {
+			double ub = this.blockedReactions.contains(this.allReactions.get(j)) ? 0.0 : this.bigM;
+			setColumnBounds(j, 0.0, ub);
+		}
+	}
+
+	private void setColumnBounds(int col, double lb, double ub) {
+		if (this.lp.getColumnLB(col) != lb || this.lp.getColumnUB(col) != ub) {
+			this.lp.setColumnBounds(col, lb, ub);
+		}
+	}
+
+	@Override
+	public void restoreSolutions(List<PrecursorSet> solutions, int sizeLevel) {
+		this.restoredSolutions.addAll(solutions);
+		this.restoredSizeLevel = Math.max(this.restoredSizeLevel, sizeLevel);
+	}
+
+	private void applyRestoredSolutions() {
+		for (PrecursorSet solution : this.restoredSolutions) {
+			addSolutionExclusion(solution);
+		}
+		if (this.restoredSizeLevel > this.sizeOfTheBiggestSolutionFound) {
+			this.sizeOfTheBiggestSolutionFound = this.restoredSizeLevel;
+			this.lp.setRowBounds(this.sizeRow, this.sizeOfTheBiggestSolutionFound, SimplexSolver.INF);
+		}
+		this.restoredSolutions.clear();
+		this.restoredSizeLevel = 0;
+	}
+
+	@Override
+	public void clearSolutionExclusions() {
+		if (this.lp == null) {
+			return;
+		}
+		this.lp.removeRowsFrom(this.nbModelRows);
+		this.excludedSolutions.clear();
+		this.sizeOfTheBiggestSolutionFound = 0;
+		this.lp.setRowBounds(this.sizeRow, 0.0, SimplexSolver.INF);
+	}
+
+	private void addSolutionExclusion(PrecursorSet solution) {
+		List<Integer> key = new ArrayList<Integer>();
+		for (Compound c : solution.getPrecursors()) {
+			Integer ind = this.sourceIndex.get(c);
+			if (ind == null) {
+				// not a point of this model, a cut on the other compounds
+				// would exclude more than the set and its supersets
+				logln("Not excluding " + solution.getPrecursors() + ", "
+						+ c + " is not a source of the model.");
+				return;
+			}
+			key.add(ind);
+		}
+		Collections.sort(key);
+		if (!this.excludedSolutions.add(key)) {
+			return;
+		}
+		int[] cols = new int[key.size()];
+		double[] vals = new double[key.size()];
+		for (int k = 0; k < key.size(); ++k) {
+			cols[k] = this.indCols[key.get(k)];
+			vals[k] = 1.0;
+		}
+		this.lp.addRow(cols, vals, -SimplexSolver.INF, key.size() - 1.0);
+		Metrics.increment("cuts.added");
+	}
+
+	/*
+	 * Runs the branch and bound, timed and with its nodes counted.
+	 */
+	private MIPStatus solveMIP() {
+		long t = Metrics.start();
+		long nodes = this.mip.getNbNodes();
+		MIPStatus status = this.mip.solve();
+		Metrics.stop("solver.solve", t);
+		// the node count of the branch and bound is not reset between solves
+		Metrics.add("solver.nodes", this.mip.getNbNodes() - nodes);
+		return status;
+	}
+
+	private PrecursorSet solveModel(List<Compound> sources) {
+		return readSolution(sources, solveMIP());
+	}
+
+	/*
+	 * Only an optimal point is a minimal set, a search stopped by the time
+	 * limit gives none.
+	 */
+	private PrecursorSet readSolution(List<Compound> sources, MIPStatus status) {
+		if (status == MIPStatus.INCOMPLETE) {
+			System.err.println("\nThe LP of some branch and bound nodes could not be solved,"
+					+ " the search is not complete, Aborting.");
+			System.exit(-1);
+		}
+		if (status != MIPStatus.OPTIMAL) {
+			return null;
+		}
+		logln("Solution status = " + status);
+		logln("Solution value = " + this.mip.getObjective());
+		PrecursorSet solution = getSolution(sources, this.mip.getValues());
+		if (solution.getPrecursors().size() > this.sizeOfTheBiggestSolutionFound) {
+			this.sizeOfTheBiggestSolutionFound = solution.getPrecursors().size();
+			this.lp.setRowBounds(this.sizeRow, this.sizeOfTheBiggestSolutionFound, SimplexSolver.INF);
+		}
+		return solution;
+	}
+
+	private PrecursorSet getSolution(List<Compound> sources, double[] values) {
+		long t = Metrics.start();
+		PrecursorSet solution = new PrecursorSet();
+		for (int i = 0; i < this.indCols.length; ++i) {
+			if (((int) (values[this.indCols[i]] + 0.5)) == 1) {
+				solution.addPrecursor(sources.get(i));
+			}
+		}
+		if (InputParameters.addReactionsToSolutions || InputParameters.addCumulatedCompoundsToSolutions) {
+			addFluxInformation(solution, values);
+		}
+		Metrics.stop("solution.extract", t);
+		return solution;
+	}
+
+	/*
+	 * Same as in CPLEXInterface, Sv being summed row by row on the
+	 * stoichiometric matrix, whose columns are the first ones of the model.
+	 */
+	private void addFluxInformation(PrecursorSet solution, double[] xs) {
+		StoichiometricMatrix sm = getStoichiometricMatrix();
+		if (InputParameters.addReactionsToSolutions) {
+			Set<Reaction> reactionsInSolution = new HashSet<Reaction>();
+			for (int j = 0; j < sm.getNbColumns(); ++j) {
+				if (xs[j] > 1e-6) {
+					reactionsInSolution.add(sm.getColumnReaction(j));
+				}
+			}
+			solution.addReactions(reactionsInSolution);
+		}
+		if (InputParameters.addCumulatedCompoundsToSolutions) {
+			int[] smCols = sm.getColumnIndices();
+			double[] smCoefs = sm.getCoefficients();
+			for (int row = 0; row < sm.getNbRows(); ++row) {
+				double sv = 0.0;
+				for (int k = sm.getRowStart(row); k < sm.getRowEnd(row); ++k) {
+					double flux = xs[smCols[k]];
+					if (flux > 1e-6) {
+						sv += smCoefs[k] * flux;
+					}
+				}
+				if (sv > 1e-6) {
+					solution.addCumullatedCompound(sm.getRowCompound(row));
+				}
+			}
+		}
+	}
+
+	/*
+	 * FBA check of a solution: with only the precursors of the solution and
+	 * the bootstraps as inputs, and every compound free to accumulate, the
+	 * target must be produced at rate epsilon1.
+	 */
+	private boolean checkSolution(PrecursorSet solution, Compound target, double bigM, double epsilon1) {
+		long t = Metrics.start();
+		StoichiometricMatrix sm = getStoichiometricMatrix();
+		int nbReactions = this.allReactions.size();
+		if (this.fbaLP == null) {
+			this.fbaLP = new SimplexSolver();
+			for (int j = 0; j < nbReactions; ++j) {
+				this.fbaLP.addColumn(0.0, bigM, 0.0);
+			}
+			for (int row = 0; row < sm.getNbRows(); ++row) {
+				this.fbaLP.addColumn(0.0, 0.0, 0.0);
+			}
+			int[] smCols = sm.getColumnIndices();
+			double[] smCoefs = sm.getCoefficients();
+			RowBuffer buffer = new RowBuffer(nbReactions + 1);
+			for (int row = 0; row < sm.getNbRows(); ++row) {
+				buffer.clear();
+				buffer.add(nbReactions + row, 1.0);
+				for (int k = sm.getRowStart(row); k < sm.getRowEnd(row); ++k) {
+					buffer.add(smCols[k], smCoefs[k]);
+				}
+				buffer.addRow(this.fbaLP, 0.0, SimplexSolver.INF);
+			}
+			this.fbaTargetRow = -1;
+		}
+		int targetRow = sm.getRowIndex(target);
+		if (targetRow != this.fbaTargetRow) {
+			if (this.fbaTargetRow >= 0) {
+				this.fbaLP.setRowBounds(this.fbaTargetRow, 0.0, SimplexSolver.INF);
+			}
+			this.fbaLP.setRowBounds(targetRow, epsilon1, SimplexSolver.INF);
+			this.fbaTargetRow = targetRow;
+		}
+
+		List<Integer> opened = new ArrayList<Integer>();
+		for (Compound c : solution.getPrecursors()) {
+			opened.add(sm.getRowIndex(c));
+		}
+		for (Compound c : InputParameters.getBootstrapCompounds()) {
+			opened.add(sm.getRowIndex(c));
+		}
+		for (int row : opened) {
+			if (row >= 0) {
+				this.fbaLP.setColumnBounds(nbReactions + row, 0.0, bigM);
+			}
+		}
+		boolean feasible = this.fbaLP.solve() == LPStatus.OPTIMAL;
+		for (int row : opened) {
+			if (row >= 0) {
+				this.fbaLP.setColumnBounds(nbReactions + row, 0.0, 0.0);
+			}
+		}
+		Metrics.stop("fbaCheck", t);
+		if (!feasible) {
+			Metrics.increment("fbaCheck.rejected");
+		}
+		return feasible;
+	}
+
+	private StoichiometricMatrix getStoichiometricMatrix() {
+		if (this.stoichiometricMatrix == null) {
+			this.stoichiometricMatrix = this.network.getStoichiometricMatrix(this.allReactions);
+		}
+		return this.stoichiometricMatrix;
+	}
+
+	private void clearModel() {
+		this.lp = null;
+		this.mip = null;
+		this.modelType = null;
+		this.sourceIndex = null;
+		this.indCols = null;
+		this.sizeRow = -1;
+		this.compoundRows = null;
+		this.compoundRowLB = null;
+		this.compoundRowUB = null;
+		this.target = null;
+		this.nbModelRows = 0;
+		this.sizeOfTheBiggestSolutionFound = 0;
+		this.excludedSolutions.clear();
+	}
+
+	private void logln(String message) {
+		if (InputParameters.verbose) {
+			System.out.println("[SASITA] " + message);
+		} else {
+			System.out.print(".");
+		}
+	}
+
+	/*
+	 * Growable sparse row used while building the models.
+	 */
+	private static class RowBuffer {
+		private int[] cols;
+		private double[] vals;
+		private int len = 0;
+
+		RowBuffer(int capacity) {
+			this.cols = new int[Math.max(capacity, 4)];
+			this.vals = new double[Math.max(capacity, 4)];
+		}
+
+		void clear() {
+			len = 0;
+		}
+
+		void add(int col, double val) {
+			if (len == cols.length) {
+				cols = Arrays.copyOf(cols, 2 * len);
+				vals = Arrays.copyOf(vals, 2 * len);
+			}
+			cols[len] = col;
+			vals[len++] = val;
+		}
+
+		int addRow(SimplexSolver lp, double lo, double hi) {
+			return lp.addRow(cols, vals, len, lo, hi);
+		}
+	}
+}
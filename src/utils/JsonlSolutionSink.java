@@ -0,0 +1,78 @@
+package utils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.util.Collection;
+
+import metabolicNetwork.Compound;
+import metabolicNetwork.Reaction;
+import application.PrecursorSet;
+
+/*
+ * One JSON object per line and per set, e.g.
+ * {"id":1,"precursors":["A","B"],"bootstraps":[],"reactions":["R1"]}
+ * A truncated file is still readable up to its last complete line.
+ */
+public class JsonlSolutionSink extends StreamingSolutionSink {
+
+	public JsonlSolutionSink(String filename, int flushEvery, long flushDelay) {
+		super(filename, flushEvery, flushDelay);
+	}
+
+	@Override
+	protected void writeHeader(BufferedWriter out) throws IOException {
+	}
+
+	@Override
+	protected void writeSet(BufferedWriter out, PrecursorSet set, int id) throws IOException {
+		StringBuilder line = new StringBuilder();
+		line.append("{\"id\":").append(id);
+		line.append(",\"precursors\":");
+		appendCompounds(line, set.getPrecursors());
+		line.append(",\"bootstraps\":");
+		appendCompounds(line, set.getBootstraps());
+		line.append(",\"reactions\":[");
+		if (set.getReactions() != null) {
+			String separator = "";
+			for (Reaction r : set.getReactions()) {
+				line.append(separator);
+				appendString(line, r.getId());
+				separator = ",";
+			}
+		}
+		line.append("]}\n");
+		out.write(line.toString());
+	}
+
+	@Override
+	protected void writeFooter(BufferedWriter out) throws IOException {
+	}
+
+	private static void appendCompounds(StringBuilder line, Collection<Compound> compounds) {
+		line.append('[');
+		if (compounds != null) {
+			String separator = "";
+			for (Compound c : compounds) {
+				line.append(separator);
+				appendString(line, StringUtils.sbmlDecode(c.getId()));
+				separator = ",";
+			}
+		}
+		line.append(']');
+	}
+
+	private static void appendString(StringBuilder line, String s) {
+		line.append('"');
+		for (int i = 0; i < s.length(); ++i) {
+			char ch = s.charAt(i);
+			if (ch == '"' || ch == '\\') {
+				line.append('\\').append(ch);
+			} else if (ch < 0x20) {
+				line.append(String.format("\\u%04x", (int) ch));
+			} else {
+				line.append(ch);
+			}
+		}
+		line.append('"');
+	}
+}
@@ -0,0 +1,32 @@
+package utils;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import application.PrecursorSet;
+
+/*
+ * Keeps the sets in memory, the behaviour of SASITA without -stream.
+ */
+public class ListSolutionSink implements SolutionSink {
+
+	private List<PrecursorSet> solutions = new LinkedList<PrecursorSet>();
+
+	@Override
+	public synchronized void add(PrecursorSet set) {
+		solutions.add(set);
+	}
+
+	@Override
+	public synchronized int getNbSolutions() {
+		return solutions.size();
+	}
+
+	@Override
+	public void close() {
+	}
+
+	public List<PrecursorSet> getSolutions() {
+		return solutions;
+	}
+}
@@ -4,6 +4,7 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
 
 import metabolicNetwork.Compound;
 import metabolicNetwork.MetabolicNetwork;
@@ -49,6 +50,20 @@ public class MetabolicNetworkSBMLWriter
 		}	
 	}
 
+	/*
+	 * Writes the network to out instead of the file, out is not closed.
+	 */
+	public void write(MetabolicNetwork network, Writer out) throws IOException
+	{
+		bw = new BufferedWriter(out);
+		writeHeader();
+		writeListOfCompounds(network);
+		writeListOfReactions(network);
+		writeTail();
+		bw.flush();
+		bw = null;
+	}
+
 	private void writeHeader() throws IOException {
 		bw.write("<?xml version=\"1.0\"  encoding=\"UTF-8\"?>");
 		bw.write("\n<sbml xmlns=\"http://www.sbml.org/sbml/level2\" version=\"1\" level=\"2\" xmlns:html=\"http://www.w3.org/1999/xhtml\">");
@@ -0,0 +1,186 @@
+package utils;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.TreeMap;
+
+/*
+ * Named timers and counters of a run, shared by all the threads. A timer
+ * adds up the time of its calls:
+ *
+ *   long t = Metrics.start();
+ *   ...
+ *   Metrics.stop("model.build", t);
+ *
+ * and a counter is increased with increment or add. The names are dotted,
+ * the first part being the phase (sbml, preprocess, model, solver,
+ * solution, fbaCheck, output). With -metrics=<file> the registry is written
+ * to the file, as JSON if its name ends with .json and as CSV otherwise,
+ * every -metricsEvery seconds during the run and once at the end. The file
+ * is replaced as a whole, so it can be read at any time.
+ */
+public class Metrics {
+
+	private static final Map<String, long[]> timers = new TreeMap<String, long[]>();
+	private static final Map<String, long[]> counters = new TreeMap<String, long[]>();
+	private static Timer exportTimer = null;
+
+	public static long start() {
+		return System.nanoTime();
+	}
+
+	/*
+	 * Adds the time elapsed since start to the timer.
+	 */
+	public static void stop(String timer, long start) {
+		long elapsed = System.nanoTime() - start;
+		synchronized (timers) {
+			long[] t = timers.get(timer);
+			if (t == null) {
+				t = new long[2];
+				timers.put(timer, t);
+			}
+			t[0]++;
+			t[1] += elapsed;
+		}
+	}
+
+	public static void increment(String counter) {
+		add(counter, 1);
+	}
+
+	public static void add(String counter, long value) {
+		synchronized (counters) {
+			long[] c = counters.get(counter);
+			if (c == null) {
+				c = new long[1];
+				counters.put(counter, c);
+			}
+			c[0] += value;
+		}
+	}
+
+	public static long getCounter(String counter) {
+		synchronized (counters) {
+			long[] c = counters.get(counter);
+			return c == null ? 0 : c[0];
+		}
+	}
+
+	/*
+	 * Total time of the timer in milliseconds.
+	 */
+	public static double getTime(String timer) {
+		synchronized (timers) {
+			long[] t = timers.get(timer);
+			return t == null ? 0.0 : t[1] / 1e6;
+		}
+	}
+
+	public static void reset() {
+		synchronized (timers) {
+			timers.clear();
+		}
+		synchronized (counters) {
+			counters.clear();
+		}
+	}
+
+	/*
+	 * kind,name,calls,value: the value is the total time in milliseconds
+	 * for a timer and the count itself for a counter.
+	 */
+	public static String toCsv() {
+		StringBuilder out = new StringBuilder("kind,name,calls,value\n");
+		synchronized (timers) {
+			for (Map.Entry<String, long[]> e : timers.entrySet()) {
+				out.append("timer,").append(e.getKey()).append(',')
+						.append(e.getValue()[0]).append(',')
+						.append(formatMs(e.getValue()[1])).append('\n');
+			}
+		}
+		synchronized (counters) {
+			for (Map.Entry<String, long[]> e : counters.entrySet()) {
+				out.append("counter,").append(e.getKey()).append(",,")
+						.append(e.getValue()[0]).append('\n');
+			}
+		}
+		return out.toString();
+	}
+
+	public static String toJson() {
+		StringBuilder out = new StringBuilder("{\"timers\":{");
+		synchronized (timers) {
+			boolean first = true;
+			for (Map.Entry<String, long[]> e : timers.entrySet()) {
+				out.append(first ? "" : ",").append('"').append(e.getKey())
+						.append("\":{\"calls\":").append(e.getValue()[0])
+						.append(",\"ms\":").append(formatMs(e.getValue()[1])).append('}');
+				first = false;
+			}
+		}
+		out.append("},\"counters\":{");
+		synchronized (counters) {
+			boolean first = true;
+			for (Map.Entry<String, long[]> e : counters.entrySet()) {
+				out.append(first ? "" : ",").append('"').append(e.getKey())
+						.append("\":").append(e.getValue()[0]);
+				first = false;
+			}
+		}
+		return out.append("}}\n").toString();
+	}
+
+	private static String formatMs(long nanos) {
+		return String.format(Locale.US, "%.3f", nanos / 1e6);
+	}
+
+	/*
+	 * Writes the registry to a temporary file renamed to file, so that a
+	 * reader never sees a half written file.
+	 */
+	public static synchronized void write(File file) {
+		String content = file.getName().endsWith(".json") ? toJson() : toCsv();
+		File tmp = new File(file.getPath() + ".tmp");
+		try {
+			Writer out = new OutputStreamWriter(new FileOutputStream(tmp), "UTF-8");
+			out.write(content);
+			out.close();
+			if (!tmp.renameTo(file)) {
+				file.delete();
+				tmp.renameTo(file);
+			}
+		} catch (IOException e) {
+			System.err.println("Could not write the metrics to " + file + ": " + e.getMessage());
+		}
+	}
+
+	/*
+	 * Writes the registry to file every period milliseconds until
+	 * stopExport.
+	 */
+	public static synchronized void startExport(final File file, long period) {
+		stopExport();
+		exportTimer = new Timer("metrics export", true);
+		exportTimer.schedule(new TimerTask() {
+			@Override
+			public void run() {
+				write(file);
+			}
+		}, period, period);
+	}
+
+	public static synchronized void stopExport() {
+		if (exportTimer != null) {
+			exportTimer.cancel();
+			exportTimer = null;
+		}
+	}
+}
@@ -4,6 +4,7 @@ import java.util.List;
 
 import application.PrecursorSet;
 import metabolicNetwork.Compound;
+import metabolicNetwork.Reaction;
 
 public interface OptimisationInterface {
 	void startup();
@@ -19,6 +20,34 @@ public interface OptimisationInterface {
 
 	List<PrecursorSet> findNextsMinimalPrecursor(List<Compound> sources,
 			Compound target, List<PrecursorSet> lastSolutions, double bigM, double epsilon1);
+
+	/*
+	 * Enumerates all the minimal precursor sets of the default model in one
+	 * search, or returns null if the enumeration could not be completed.
+	 */
+	List<PrecursorSet> enumerateMinimalPrecursors(List<Compound> sources,
+			Compound target, double bigM, double epsilon1);
+
+	/*
+	 * Adds the exclusion of the given solutions, and the constraint that the
+	 * next ones have at least sizeLevel precursors, to the model of the next
+	 * search in any mode. Used to resume an enumeration from a checkpoint.
+	 */
+	void restoreSolutions(List<PrecursorSet> solutions, int sizeLevel);
+
+	/*
+	 * Fixes the Ind variables of the default model for the next searches:
+	 * the excluded sources can not be used and the required ones must be.
+	 * The fluxes of the blocked reactions are fixed to 0. Empty lists free
+	 * every source and reaction again.
+	 */
+	void fixSources(List<Compound> excluded, List<Compound> required, List<Reaction> blocked);
+
+	/*
+	 * Removes the solution exclusions added so far. The model itself is kept,
+	 * so that the next target of the same network and mode reuses it.
+	 */
+	void clearSolutionExclusions();
 		
 	void finish(); 
 }
@@ -3,6 +3,7 @@ package utils;
 import java.util.List;
 
 import metabolicNetwork.Compound;
+import metabolicNetwork.Reaction;
 import application.PrecursorSet;
 import de.zib.jscip.nativ.NativeScipException;
 import de.zib.jscip.nativ.jni.JniScip;
@@ -80,7 +81,32 @@ public class SCIPInterface implements OptimisationInterface {
 			Compound target, List<PrecursorSet> lastSolutions, double bigM, double epsilon1) {
 		return null;
 	}
+
+	@Override
+	public List<PrecursorSet> enumerateMinimalPrecursors(List<Compound> sources,
+			Compound target, double bigM, double epsilon1) {
+		// TODO Auto-generated method stub
+		return null;
+	}
 	
+	@Override
+	public void fixSources(List<Compound> excluded, List<Compound> required, List<Reaction> blocked) {
+		// TODO Auto-generated method stub
+
+	}
+
+	@Override
+	public void restoreSolutions(List<PrecursorSet> solutions, int sizeLevel) {
+		// TODO Auto-generated method stub
+
+	}
+
+	@Override
+	public void clearSolutionExclusions() {
+		// TODO Auto-generated method stub
+
+	}
+
 	@Override
 	public void finish() {
 		// TODO Auto-generated method stub
@@ -10,6 +10,12 @@ import ilog.concert.IloRange;
 import ilog.cplex.IloCplex;
 import ilog.cplex.IloCplexModeler;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import metabolicNetwork.Compound;
 
 public class SasitaCPLEXModelHolder {
 	public static enum SasitaModelType {NORMAL, DUPMACH,STEADYSTATE};
@@ -23,6 +29,14 @@ public class SasitaCPLEXModelHolder {
 	private int sizeOfTheBiggestSolutionFound = 0;
 	private IloRange sizeConstraint = null;
 	private IloLinearNumExpr fobj = null;
+	// Mass balance rows and their bounds when the compound is not the target,
+	// kept to move the target of the model from one compound to another
+	private HashMap<Compound, IloRange> compoundRows = new HashMap<Compound, IloRange>();
+	private HashMap<Compound, double[]> compoundRowBounds = new HashMap<Compound, double[]>();
+	private Compound target = null;
+	// Solution exclusion cuts and, for the ones in the model, their rows
+	private ExclusionCutPool cutPool = new ExclusionCutPool();
+	private IdentityHashMap<int[], IloRange> exclusionRows = new IdentityHashMap<int[], IloRange>();
 	
 	public boolean isModelSet() {
 		return isModelSet;
@@ -65,6 +79,118 @@ public class SasitaCPLEXModelHolder {
 		}
 	}
 
+	/*
+	 * Registers the mass balance row of c, lb and ub being its bounds when c
+	 * is not the target. Called while the model is built.
+	 */
+	public void addCompoundRow(Compound c, IloRange row, double lb, double ub) {
+		this.compoundRows.put(c, row);
+		this.compoundRowBounds.put(c, new double[] {lb, ub});
+	}
+
+	public Compound getTarget() {
+		return target;
+	}
+
+	/*
+	 * Makes target the compound that must be produced at rate epsilon1, the
+	 * row of the previous target getting its normal bounds back.
+	 */
+	public void setTarget(Compound target, double epsilon1) {
+		try {
+			if (this.target != null && !this.target.equals(target)) {
+				double[] bounds = this.compoundRowBounds.get(this.target);
+				this.compoundRows.get(this.target).setBounds(bounds[0], bounds[1]);
+			}
+			IloRange row = this.compoundRows.get(target);
+			if (row != null) {
+				row.setBounds(epsilon1, Double.MAX_VALUE);
+			}
+			this.target = target;
+		} catch (IloException e) {
+			e.printStackTrace();
+			System.err.println("Error in the CPLEX Model Holder, Aborting.");
+			System.exit(-1);
+		}
+	}
+
+	/*
+	 * Excludes the set made of the sources of the given Ind indices, and so
+	 * its supersets. The cut is only added to the model by the next call to
+	 * flushSolutionExclusions.
+	 */
+	public void addSolutionExclusion(int[] sources) {
+		this.cutPool.add(sources);
+	}
+
+	/*
+	 * Takes the cuts subsumed since the last call out of the model and adds
+	 * the new ones, each in one batch of unnamed rows.
+	 */
+	public void flushSolutionExclusions() {
+		try {
+			List<int[]> removed = this.cutPool.takeRemoved();
+			if (removed.size() > 0) {
+				IloRange[] rows = new IloRange[removed.size()];
+				for (int k = 0; k < rows.length; ++k) {
+					rows[k] = this.exclusionRows.remove(removed.get(k));
+				}
+				this.cplex.remove(rows);
+				Metrics.add("cuts.removed", rows.length);
+			}
+			List<int[]> pending = this.cutPool.takePending();
+			if (pending.size() > 0) {
+				IloRange[] rows = new IloRange[pending.size()];
+				for (int k = 0; k < rows.length; ++k) {
+					int[] cut = pending.get(k);
+					IloLinearNumExpr expr = this.modeler.linearNumExpr();
+					for (int i : cut) {
+						expr.addTerm(1.0, this.varInd[i]);
+					}
+					rows[k] = this.modeler.le(expr, cut.length - 1.0);
+					this.exclusionRows.put(cut, rows[k]);
+				}
+				this.cplex.add(rows);
+				Metrics.add("cuts.added", rows.length);
+			}
+		} catch (IloException e) {
+			e.printStackTrace();
+			System.err.println("Error in the CPLEX Model Holder, Aborting.");
+			System.exit(-1);
+		}
+	}
+
+	public int getNbSolutionExclusions() {
+		return this.cutPool.size();
+	}
+
+	/*
+	 * Removes the solution exclusions, the size constraint and the MIP starts,
+	 * leaving the model as it was built so that it can be used for another
+	 * target.
+	 */
+	public void clearSolutions() {
+		try {
+			if (this.exclusionRows.size() > 0) {
+				this.cplex.remove(this.exclusionRows.values().toArray(new IloRange[this.exclusionRows.size()]));
+				this.exclusionRows.clear();
+			}
+			this.cutPool.clear();
+			if (this.sizeConstraint != null) {
+				this.cplex.remove(this.sizeConstraint);
+				this.sizeConstraint = null;
+			}
+			if (this.cplex.getNMIPStarts() > 0) {
+				this.cplex.deleteMIPStarts(0, this.cplex.getNMIPStarts());
+			}
+		} catch (IloException e) {
+			e.printStackTrace();
+			System.err.println("Error in the CPLEX Model Holder, Aborting.");
+			System.exit(-1);
+		}
+		this.sizeOfTheBiggestSolutionFound = 0;
+	}
+
 	public void setModel(IloCplex cplex, IloNumVar[] varX, IloIntVar[] varInd, SasitaModelType modelType){
 		this.cplex = cplex;
 		this.varX = varX;
@@ -125,6 +251,11 @@ public class SasitaCPLEXModelHolder {
 		this.fobj = null;
 		this.sizeConstraint = null;
 		this.sizeOfTheBiggestSolutionFound = 0;
+		this.compoundRows.clear();
+		this.compoundRowBounds.clear();
+		this.target = null;
+		this.cutPool.clear();
+		this.exclusionRows.clear();
 		this.isModelSet = false;
 	}
 }
@@ -0,0 +1,723 @@
+package utils;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/*
+ * Sparse bounded revised simplex for problems of the form
+ *
+ *    min  c.x
+ *    s.t. lo_i <= a_i.x <= hi_i   for every row i
+ *         lb_j <= x_j  <= ub_j    for every column j
+ *
+ * Every row i gets a logical variable y_i = a_i.x bounded by [lo_i, hi_i],
+ * so the constraint matrix is [A -I] with a zero right hand side. The basis
+ * inverse is kept in product form (an eta file over the initial all-logical
+ * basis) and is rebuilt from scratch every REFACTOR_FREQUENCY pivots. Phase 1
+ * minimises the sum of the bound violations of the basic variables, phase 2
+ * the true objective; both use the same pricing and a Harris ratio test.
+ *
+ * Columns must all be created before the first row. Rows may be appended at
+ * any time (the basis is then extended by the new logical) and bounds can be
+ * changed between solves, the last basis is kept as a warm start.
+ */
+public class SimplexSolver {
+	public static enum LPStatus {OPTIMAL, INFEASIBLE, UNBOUNDED, ITERATION_LIMIT};
+
+	public static final double INF = Double.POSITIVE_INFINITY;
+
+	private static final double FEAS_TOL = 1e-7;
+	private static final double DUAL_TOL = 1e-9;
+	private static final double PIVOT_TOL = 1e-9;
+	private static final double DROP_TOL = 1e-12;
+	private static final int REFACTOR_FREQUENCY = 100;
+	private static final int DEGENERATE_ITERATIONS_BEFORE_BLAND = 200;
+
+	// Structural columns in sparse form
+	private int nCols = 0;
+	private int[][] colRows = new int[16][];
+	private double[][] colVals = new double[16][];
+	private int[] colLen = new int[16];
+	private double[] cost = new double[16];
+
+	// Rows
+	private int nRows = 0;
+	private int[] head = new int[16];
+
+	// All variables, structural (0..nCols-1) and then logical (nCols..nCols+nRows-1)
+	private double[] lb = new double[16];
+	private double[] ub = new double[16];
+	private double[] value = new double[16];
+	private int[] basisPos = new int[16];
+
+	// Eta file
+	private int nEtas = 0;
+	private int[] etaRow = new int[16];
+	private double[] etaPivot = new double[16];
+	private int[][] etaIdx = new int[16][];
+	private double[][] etaVal = new double[16][];
+
+	private boolean mustRefactor = true;
+	private boolean mustRecompute = true;
+	private double objective = 0.0;
+	private int iterationLimit = -1;
+	private long iterations = 0;
+
+	public int getNbColumns() {
+		return nCols;
+	}
+
+	public int getNbRows() {
+		return nRows;
+	}
+
+	public long getIterations() {
+		return iterations;
+	}
+
+	public void setIterationLimit(int iterationLimit) {
+		this.iterationLimit = iterationLimit;
+	}
+
+	public int addColumn(double lower, double upper, double c) {
+		if (nRows > 0) {
+			throw new IllegalStateException("Columns must be added before the rows.");
+		}
+		ensureVariableCapacity(nCols + 1);
+		if (nCols == colRows.length) {
+			int cap = 2 * nCols;
+			colRows = Arrays.copyOf(colRows, cap);
+			colVals = Arrays.copyOf(colVals, cap);
+			colLen = Arrays.copyOf(colLen, cap);
+			cost = Arrays.copyOf(cost, cap);
+		}
+		int j = nCols++;
+		colRows[j] = new int[2];
+		colVals[j] = new double[2];
+		colLen[j] = 0;
+		cost[j] = c;
+		lb[j] = lower;
+		ub[j] = upper;
+		value[j] = initialValue(lower, upper);
+		basisPos[j] = -1;
+		mustRecompute = true;
+		return j;
+	}
+
+	/*
+	 * Appends the row lo <= sum_k vals[k]*x[cols[k]] <= hi and returns its index.
+	 * Columns must not be repeated in cols.
+	 */
+	public int addRow(int[] cols, double[] vals, double lo, double hi) {
+		return addRow(cols, vals, cols.length, lo, hi);
+	}
+
+	public int addRow(int[] cols, double[] vals, int len, double lo, double hi) {
+		int i = nRows;
+		ensureVariableCapacity(nCols + nRows + 1);
+		if (nRows == head.length) {
+			head = Arrays.copyOf(head, 2 * nRows);
+		}
+		double activity = 0.0;
+		for (int k = 0; k < len; ++k) {
+			if (vals[k] == 0.0) {
+				continue;
+			}
+			int j = cols[k];
+			if (colLen[j] == colRows[j].length) {
+				colRows[j] = Arrays.copyOf(colRows[j], 2 * colLen[j]);
+				colVals[j] = Arrays.copyOf(colVals[j], 2 * colLen[j]);
+			}
+			colRows[j][colLen[j]] = i;
+			colVals[j][colLen[j]] = vals[k];
+			colLen[j]++;
+			activity += vals[k] * value[j];
+		}
+		int v = nCols + i;
+		lb[v] = lo;
+		ub[v] = hi;
+		value[v] = activity;
+		head[i] = v;
+		basisPos[v] = i;
+		nRows++;
+		// the eta file was computed for the previous basis dimension
+		mustRefactor = true;
+		return i;
+	}
+
+	/*
+	 * Deletes the rows first, first+1, ... up to the last one. The basic
+	 * structurals are kept as a warm start, logicals of the remaining rows
+	 * leave the basis if there are more basic variables than rows.
+	 */
+	public void removeRowsFrom(int first) {
+		if (first >= nRows) {
+			return;
+		}
+		for (int j = 0; j < nCols; ++j) {
+			// rows are appended, so the entries of a column are sorted by row
+			while (colLen[j] > 0 && colRows[j][colLen[j] - 1] >= first) {
+				colLen[j]--;
+			}
+		}
+		int nBasic = 0;
+		for (int i = 0; i < nRows; ++i) {
+			int k = head[i];
+			if (k < nCols + first) {
+				head[nBasic++] = k;
+			}
+			basisPos[k] = -1;
+		}
+		// logicals leave first, then structurals if it is not enough
+		int excess = nBasic - first;
+		for (int pass = 0; pass < 2 && excess > 0; ++pass) {
+			int nKept = 0;
+			for (int i = 0; i < nBasic; ++i) {
+				int k = head[i];
+				if (excess > 0 && (pass == 1 || k >= nCols)) {
+					value[k] = nearestBound(k);
+					excess--;
+				} else {
+					head[nKept++] = k;
+				}
+			}
+			nBasic = nKept;
+		}
+		for (int i = 0; i < first; ++i) {
+			basisPos[head[i]] = i;
+		}
+		nRows = first;
+		nEtas = 0;
+		mustRefactor = true;
+	}
+
+	public void setObjectiveCoefficient(int col, double c) {
+		cost[col] = c;
+	}
+
+	public double getObjectiveCoefficient(int col) {
+		return cost[col];
+	}
+
+	public void setColumnBounds(int col, double lower, double upper) {
+		setVariableBounds(col, lower, upper);
+	}
+
+	public void setRowBounds(int row, double lo, double hi) {
+		setVariableBounds(nCols + row, lo, hi);
+	}
+
+	public double getColumnLB(int col) {
+		return lb[col];
+	}
+
+	public double getColumnUB(int col) {
+		return ub[col];
+	}
+
+	public double getRowLB(int row) {
+		return lb[nCols + row];
+	}
+
+	public double getRowUB(int row) {
+		return ub[nCols + row];
+	}
+
+	public double getObjective() {
+		return objective;
+	}
+
+	public double getValue(int col) {
+		return value[col];
+	}
+
+	public double[] getValues() {
+		return Arrays.copyOf(value, nCols);
+	}
+
+	public double getRowActivity(int row) {
+		return value[nCols + row];
+	}
+
+	/*
+	 * Solves the current problem starting from the last basis.
+	 */
+	public LPStatus solve() {
+		int m = nRows;
+		int nVars = nCols + nRows;
+		double[] work = new double[m];
+		double[] y = new double[m];
+		double[] alpha = new double[m];
+
+		if (mustRefactor) {
+			refactor();
+		} else if (mustRecompute) {
+			computeBasicValues(work);
+		}
+
+		boolean freshFactorization = true;
+		boolean bland = false;
+		int degenerateIterations = 0;
+		double lastPhaseObjective = INF;
+		boolean lastPhase1 = true;
+		int localIterations = 0;
+
+		while (true) {
+			if (iterationLimit > 0 && localIterations >= iterationLimit) {
+				return LPStatus.ITERATION_LIMIT;
+			}
+			if (nEtas >= REFACTOR_FREQUENCY) {
+				refactor();
+				freshFactorization = true;
+			}
+
+			// Phase selection and basic costs
+			boolean phase1 = false;
+			double phaseObjective = 0.0;
+			for (int i = 0; i < m; ++i) {
+				int k = head[i];
+				if (value[k] < lb[k] - FEAS_TOL) {
+					phase1 = true;
+					phaseObjective += lb[k] - value[k];
+				} else if (value[k] > ub[k] + FEAS_TOL) {
+					phase1 = true;
+					phaseObjective += value[k] - ub[k];
+				}
+			}
+			for (int i = 0; i < m; ++i) {
+				int k = head[i];
+				if (phase1) {
+					if (value[k] < lb[k] - FEAS_TOL) {
+						y[i] = -1.0;
+					} else if (value[k] > ub[k] + FEAS_TOL) {
+						y[i] = 1.0;
+					} else {
+						y[i] = 0.0;
+					}
+				} else {
+					y[i] = k < nCols ? cost[k] : 0.0;
+				}
+			}
+			if (!phase1) {
+				phaseObjective = 0.0;
+				for (int j = 0; j < nCols; ++j) {
+					phaseObjective += cost[j] * value[j];
+				}
+			}
+			if (phase1 != lastPhase1) {
+				lastPhase1 = phase1;
+				lastPhaseObjective = INF;
+			}
+			if (phaseObjective < lastPhaseObjective - 1e-12) {
+				lastPhaseObjective = phaseObjective;
+				degenerateIterations = 0;
+				bland = false;
+			} else if (++degenerateIterations > DEGENERATE_ITERATIONS_BEFORE_BLAND) {
+				bland = true;
+			}
+			btran(y);
+
+			// Pricing
+			int q = -1;
+			double best = 0.0;
+			int dir = 0;
+			for (int j = 0; j < nVars; ++j) {
+				if (basisPos[j] >= 0 || lb[j] == ub[j]) {
+					continue;
+				}
+				double d;
+				if (j < nCols) {
+					d = phase1 ? 0.0 : cost[j];
+					int[] rows = colRows[j];
+					double[] vals = colVals[j];
+					for (int k = 0; k < colLen[j]; ++k) {
+						d -= y[rows[k]] * vals[k];
+					}
+				} else {
+					d = y[j - nCols];
+				}
+				int candidateDir = 0;
+				if (d < -DUAL_TOL && value[j] < ub[j]) {
+					candidateDir = 1;
+				} else if (d > DUAL_TOL && value[j] > lb[j]) {
+					candidateDir = -1;
+				}
+				if (candidateDir != 0) {
+					if (bland) {
+						q = j;
+						dir = candidateDir;
+						break;
+					}
+					if (Math.abs(d) > best) {
+						best = Math.abs(d);
+						q = j;
+						dir = candidateDir;
+					}
+				}
+			}
+
+			if (q < 0) {
+				if (!freshFactorization) {
+					// confirm the result on a fresh factorization
+					refactor();
+					freshFactorization = true;
+					continue;
+				}
+				if (phase1) {
+					return LPStatus.INFEASIBLE;
+				}
+				objective = phaseObjective;
+				return LPStatus.OPTIMAL;
+			}
+
+			// Column of the entering variable in the current basis
+			loadColumn(q, alpha);
+			ftran(alpha);
+
+			// Harris ratio test, first pass
+			double relaxedMin = INF;
+			for (int i = 0; i < m; ++i) {
+				double a = alpha[i];
+				if (Math.abs(a) <= PIVOT_TOL) {
+					continue;
+				}
+				double r = ratio(i, -dir * a, FEAS_TOL);
+				if (r < relaxedMin) {
+					relaxedMin = r;
+				}
+			}
+			// Second pass
+			int leave = -1;
+			double step = INF;
+			double bestPivot = 0.0;
+			for (int i = 0; i < m; ++i) {
+				double a = alpha[i];
+				if (Math.abs(a) <= PIVOT_TOL) {
+					continue;
+				}
+				double r = ratio(i, -dir * a, 0.0);
+				if (r == INF) {
+					continue;
+				}
+				if (bland) {
+					if (r < step || (r == step && leave >= 0 && head[i] < head[leave])) {
+						step = r;
+						leave = i;
+					}
+				} else if (r <= relaxedMin && Math.abs(a) > bestPivot) {
+					bestPivot = Math.abs(a);
+					step = r;
+					leave = i;
+				}
+			}
+			if (step < 0.0) {
+				step = 0.0;
+			}
+			double flip = ub[q] - lb[q];
+			if (flip < INF && flip <= step) {
+				leave = -1;
+				step = flip;
+			}
+			if (step == INF) {
+				if (phase1) {
+					// should not happen, the phase 1 objective is bounded
+					refactor();
+					freshFactorization = true;
+					if (++localIterations > 3 * (m + nCols) + 1000) {
+						return LPStatus.ITERATION_LIMIT;
+					}
+					continue;
+				}
+				return LPStatus.UNBOUNDED;
+			}
+
+			// Update the primal values
+			if (step > 0.0) {
+				for (int i = 0; i < m; ++i) {
+					if (alpha[i] != 0.0) {
+						value[head[i]] -= dir * alpha[i] * step;
+					}
+				}
+				value[q] += dir * step;
+			}
+			if (leave < 0) {
+				value[q] = dir > 0 ? ub[q] : lb[q];
+			} else {
+				int k = head[leave];
+				double delta = -dir * alpha[leave];
+				value[k] = leavingBound(k, delta);
+				basisPos[k] = -1;
+				head[leave] = q;
+				basisPos[q] = leave;
+				addEta(leave, alpha);
+				freshFactorization = false;
+			}
+			localIterations++;
+			iterations++;
+		}
+	}
+
+	/*
+	 * Step length allowed by basic variable in row i moving at rate delta,
+	 * with the bounds relaxed by tol.
+	 */
+	private double ratio(int i, double delta, double tol) {
+		int k = head[i];
+		double x = value[k];
+		if (delta < 0) {
+			if (x < lb[k] - FEAS_TOL) {
+				return INF;
+			}
+			double bound = x > ub[k] + FEAS_TOL ? ub[k] : lb[k];
+			if (bound == -INF) {
+				return INF;
+			}
+			return (x - bound + tol) / -delta;
+		} else {
+			if (x > ub[k] + FEAS_TOL) {
+				return INF;
+			}
+			double bound = x < lb[k] - FEAS_TOL ? lb[k] : ub[k];
+			if (bound == INF) {
+				return INF;
+			}
+			return (bound - x + tol) / delta;
+		}
+	}
+
+	private double leavingBound(int k, double delta) {
+		double x = value[k];
+		if (delta < 0) {
+			return Math.abs(x - ub[k]) < Math.abs(x - lb[k]) ? ub[k] : lb[k];
+		}
+		return Math.abs(x - lb[k]) < Math.abs(x - ub[k]) ? lb[k] : ub[k];
+	}
+
+	private void setVariableBounds(int v, double lower, double upper) {
+		if (basisPos[v] < 0) {
+			double x = value[v];
+			boolean wasAtUpper = x == ub[v] && x != lb[v];
+			lb[v] = lower;
+			ub[v] = upper;
+			if (wasAtUpper && upper < INF) {
+				value[v] = upper;
+			} else {
+				value[v] = initialValue(lower, upper);
+			}
+			if (value[v] != x) {
+				mustRecompute = true;
+			}
+		} else {
+			lb[v] = lower;
+			ub[v] = upper;
+		}
+	}
+
+	private static double initialValue(double lower, double upper) {
+		if (lower > -INF) {
+			return lower;
+		}
+		if (upper < INF) {
+			return upper;
+		}
+		return 0.0;
+	}
+
+	private void ensureVariableCapacity(int size) {
+		if (size > lb.length) {
+			int cap = Math.max(size, 2 * lb.length);
+			lb = Arrays.copyOf(lb, cap);
+			ub = Arrays.copyOf(ub, cap);
+			value = Arrays.copyOf(value, cap);
+			basisPos = Arrays.copyOf(basisPos, cap);
+		}
+	}
+
+	private void loadColumn(int v, double[] dense) {
+		Arrays.fill(dense, 0, nRows, 0.0);
+		if (v < nCols) {
+			int[] rows = colRows[v];
+			double[] vals = colVals[v];
+			for (int k = 0; k < colLen[v]; ++k) {
+				dense[rows[k]] = vals[k];
+			}
+		} else {
+			dense[v - nCols] = -1.0;
+		}
+	}
+
+	/*
+	 * v := B^-1 v, with B^-1 = E_k ... E_1 (-I)
+	 */
+	private void ftran(double[] v) {
+		for (int i = 0; i < nRows; ++i) {
+			v[i] = -v[i];
+		}
+		for (int e = 0; e < nEtas; ++e) {
+			int p = etaRow[e];
+			double vp = v[p];
+			if (vp == 0.0) {
+				continue;
+			}
+			vp /= etaPivot[e];
+			v[p] = vp;
+			int[] idx = etaIdx[e];
+			double[] val = etaVal[e];
+			for (int k = 0; k < idx.length; ++k) {
+				v[idx[k]] -= val[k] * vp;
+			}
+		}
+	}
+
+	/*
+	 * y := y B^-1
+	 */
+	private void btran(double[] y) {
+		for (int e = nEtas - 1; e >= 0; --e) {
+			int p = etaRow[e];
+			double s = y[p];
+			int[] idx = etaIdx[e];
+			double[] val = etaVal[e];
+			for (int k = 0; k < idx.length; ++k) {
+				s -= y[idx[k]] * val[k];
+			}
+			y[p] = s / etaPivot[e];
+		}
+		for (int i = 0; i < nRows; ++i) {
+			y[i] = -y[i];
+		}
+	}
+
+	private void addEta(int p, double[] alpha) {
+		if (nEtas == etaRow.length) {
+			int cap = 2 * nEtas;
+			etaRow = Arrays.copyOf(etaRow, cap);
+			etaPivot = Arrays.copyOf(etaPivot, cap);
+			etaIdx = Arrays.copyOf(etaIdx, cap);
+			etaVal = Arrays.copyOf(etaVal, cap);
+		}
+		int nnz = 0;
+		for (int i = 0; i < nRows; ++i) {
+			if (i != p && Math.abs(alpha[i]) > DROP_TOL) {
+				nnz++;
+			}
+		}
+		int[] idx = new int[nnz];
+		double[] val = new double[nnz];
+		nnz = 0;
+		for (int i = 0; i < nRows; ++i) {
+			if (i != p && Math.abs(alpha[i]) > DROP_TOL) {
+				idx[nnz] = i;
+				val[nnz++] = alpha[i];
+			}
+		}
+		etaRow[nEtas] = p;
+		etaPivot[nEtas] = alpha[p];
+		etaIdx[nEtas] = idx;
+		etaVal[nEtas] = val;
+		nEtas++;
+	}
+
+	/*
+	 * Rebuilds the eta file for the current basis starting from the all
+	 * logical basis. Structural columns that turn out to be dependent are
+	 * dropped from the basis and replaced by logicals.
+	 */
+	private void refactor() {
+		int m = nRows;
+		int nVars = nCols + nRows;
+		boolean[] inTarget = new boolean[nVars];
+		int nStructurals = 0;
+		for (int i = 0; i < m; ++i) {
+			inTarget[head[i]] = true;
+			if (head[i] < nCols) {
+				nStructurals++;
+			}
+		}
+		Integer[] structurals = new Integer[nStructurals];
+		nStructurals = 0;
+		for (int i = 0; i < m; ++i) {
+			if (head[i] < nCols) {
+				structurals[nStructurals++] = head[i];
+			}
+		}
+		// sparsest columns first to limit the fill-in
+		Arrays.sort(structurals, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return colLen[a] - colLen[b];
+			}
+		});
+
+		nEtas = 0;
+		for (int v = 0; v < nVars; ++v) {
+			basisPos[v] = -1;
+		}
+		for (int i = 0; i < m; ++i) {
+			head[i] = nCols + i;
+		}
+		double[] alpha = new double[m];
+		for (int q : structurals) {
+			loadColumn(q, alpha);
+			ftran(alpha);
+			int p = -1;
+			double best = 1e-7;
+			for (int i = 0; i < m; ++i) {
+				int k = head[i];
+				if (k >= nCols && !inTarget[k] && Math.abs(alpha[i]) > best) {
+					best = Math.abs(alpha[i]);
+					p = i;
+				}
+			}
+			if (p < 0) {
+				// singular, q leaves the basis
+				value[q] = nearestBound(q);
+				continue;
+			}
+			addEta(p, alpha);
+			head[p] = q;
+		}
+		for (int i = 0; i < m; ++i) {
+			basisPos[head[i]] = i;
+		}
+		mustRefactor = false;
+		computeBasicValues(alpha);
+	}
+
+	private double nearestBound(int v) {
+		double x = value[v];
+		if (lb[v] > -INF && (ub[v] == INF || Math.abs(x - lb[v]) <= Math.abs(x - ub[v]))) {
+			return lb[v];
+		}
+		if (ub[v] < INF) {
+			return ub[v];
+		}
+		return 0.0;
+	}
+
+	/*
+	 * x_B := -B^-1 N x_N
+	 */
+	private void computeBasicValues(double[] rhs) {
+		Arrays.fill(rhs, 0, nRows, 0.0);
+		for (int j = 0; j < nCols; ++j) {
+			if (basisPos[j] < 0 && value[j] != 0.0) {
+				int[] rows = colRows[j];
+				double[] vals = colVals[j];
+				for (int k = 0; k < colLen[j]; ++k) {
+					rhs[rows[k]] -= vals[k] * value[j];
+				}
+			}
+		}
+		for (int i = 0; i < nRows; ++i) {
+			int v = nCols + i;
+			if (basisPos[v] < 0) {
+				rhs[i] += value[v];
+			}
+		}
+		ftran(rhs);
+		for (int i = 0; i < nRows; ++i) {
+			value[head[i]] = rhs[i];
+		}
+		mustRecompute = false;
+	}
+}
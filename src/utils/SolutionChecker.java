@@ -1,20 +1,20 @@
 package utils;
 
 import ilog.concert.IloException;
-import ilog.concert.IloLPMatrix;
-import ilog.concert.IloLinearNumExpr;
-import ilog.concert.IloNumVar;
-import ilog.cplex.IloCplex;
-import ilog.cplex.IloCplexModeler;
 
 import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import metabolicNetwork.Compound;
 import metabolicNetwork.MetabolicNetwork;
@@ -28,9 +28,7 @@ public class SolutionChecker {
 	private double maxFlux;
 	private double minTargetProd;
 	private Compound artificialTarget;
-	private IloCplex cplex = null;
-	private List<String> cplexColsIds = null;
-	private List<Compound> allCompounds;
+	private FBAOracle oracle = null;
 
 
 	/**
@@ -50,7 +48,6 @@ public class SolutionChecker {
 		this.artificialTarget = createAndAddArtificialTargetCompound(targets);
 		this.maxFlux = InputParameters.bigM;
 		this.minTargetProd = InputParameters.epsilon1;
-		this.allCompounds = new ArrayList<Compound>(network.getCompounds().values());
 	}
 
 	public MetabolicNetwork getNetwork() {
@@ -61,50 +58,127 @@ public class SolutionChecker {
 		return targets;
 	}
 
-	public void checkSolutions(String fileName){
-		List<List<Compound>> setOfFalseSolutions = new ArrayList<List<Compound>>();
-		List<List<Compound>> setOfSolutions = parseSolutionFile(fileName);
-		//System.out.println("Amount of solutions to check: " + setOfSolutions.size());
-		int checkedSolutions = 0;
-		for (List<Compound> solution : setOfSolutions){
-			double prod = doFBA(solution, this.allCompounds, this.artificialTarget, this.maxFlux, this.minTargetProd);
-			if (prod <= 0){
-				System.err.println("False solution: " + solution);
-				System.exit(-3);
-				setOfFalseSolutions.add(solution);
-			}
-			System.out.print("\rChecking solutions (" + (++checkedSolutions)+ "/"+setOfSolutions.size() +") [");
-			int i;
-			for(i=0; i<=10*(checkedSolutions/(float)setOfSolutions.size());++i){
-				System.out.print(".");
-			}
-			for(int j = i; j <= 10; ++j){
-				System.out.print(" ");
+	/*
+	 * Checks the sets of the XML file with nbThreads oracles, each thread
+	 * taking the next set not checked yet. The false solutions are reported
+	 * in the order of the file. With stopAtFirstFalse, the sets after the
+	 * first false solution found are skipped, but the ones before it are
+	 * still checked, so the false solution reported is the first one of the
+	 * file, as with a single thread.
+	 *
+	 * @return the amount of false solutions
+	 */
+	public int checkSolutions(String fileName, int nbThreads, final boolean stopAtFirstFalse){
+		final List<List<Compound>> setOfSolutions = parseSolutionFile(fileName);
+		final int nbSets = setOfSolutions.size();
+		final boolean[] isFalse = new boolean[nbSets];
+		final AtomicInteger nextSet = new AtomicInteger(0);
+		final AtomicInteger checkedSolutions = new AtomicInteger(0);
+		// index of the first false solution found, nbSets while none
+		final AtomicInteger firstFalse = new AtomicInteger(nbSets);
+
+		int nbCheckers = Math.max(1, Math.min(nbThreads, nbSets));
+		ExecutorService executor = Executors.newFixedThreadPool(nbCheckers);
+		List<Future<Object>> results = new ArrayList<Future<Object>>();
+		for (int w = 0; w < nbCheckers; w++) {
+			results.add(executor.submit(new Callable<Object>() {
+				@Override
+				public Object call() throws IloException {
+					FBAOracle checkerOracle = createOracle();
+					int i;
+					while ((i = nextSet.getAndIncrement()) < nbSets) {
+						if (stopAtFirstFalse && i > firstFalse.get()) {
+							break;
+						}
+						if (doFBA(checkerOracle, setOfSolutions.get(i)) <= 0){
+							isFalse[i] = true;
+							int first = firstFalse.get();
+							while (i < first && !firstFalse.compareAndSet(first, i)) {
+								first = firstFalse.get();
+							}
+						}
+						checkedSolutions.incrementAndGet();
+					}
+					checkerOracle.end();
+					return null;
+				}
+			}));
+		}
+		executor.shutdown();
+		try {
+			while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+				printProgress(checkedSolutions.get(), nbSets);
 			}
-			System.out.print("]");
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+			System.exit(-1);
 		}
-		if (setOfFalseSolutions.size() > 0){
-			System.out.println("\nFalse solutions:");
-			for (List<Compound> solution : setOfFalseSolutions){
-				System.out.println(solution);
+		for (Future<Object> result : results) {
+			try {
+				result.get();
+			} catch (InterruptedException e) {
+				e.printStackTrace();
+				System.exit(-1);
+			} catch (ExecutionException e) {
+				e.printStackTrace();
+				System.exit(-1);
 			}
-			System.out.println("Total of " + setOfFalseSolutions.size() + " false solutions:");
+		}
+		printProgress(checkedSolutions.get(), nbSets);
 
+		int last = stopAtFirstFalse ? Math.min(firstFalse.get(), nbSets - 1) : nbSets - 1;
+		int nbFalse = 0;
+		for (int i = 0; i <= last; ++i) {
+			if (isFalse[i]) {
+				if (nbFalse == 0) {
+					System.out.println("\nFalse solutions:");
+				}
+				System.out.println((i + 1) + ": " + setOfSolutions.get(i));
+				nbFalse++;
+			}
+		}
+		System.out.println((nbFalse == 0 ? "\n" : "") + "Checked " + (last + 1) + " of " + nbSets
+				+ " solutions with " + nbCheckers + " threads: " + (last + 1 - nbFalse)
+				+ " valid, " + nbFalse + " false.");
+		if (stopAtFirstFalse && nbFalse > 0 && last + 1 < nbSets) {
+			System.out.println("Stopped at the first false solution, the next "
+					+ (nbSets - last - 1) + " solutions were not checked.");
+		}
+		return nbFalse;
+	}
 
+	private void printProgress(int checkedSolutions, int nbSets) {
+		System.out.print("\rChecking solutions (" + checkedSolutions + "/" + nbSets + ") [");
+		int i;
+		for(i=0; i<=10*(checkedSolutions/(float)nbSets);++i){
+			System.out.print(".");
 		}
-		else{
-			System.out.println("\nAll solutions are valid.");
+		for(int j = i; j <= 10; ++j){
+			System.out.print(" ");
 		}
+		System.out.print("]");
 	}
 
 	public boolean checkSolution(List<Compound> solution) {
-		double prod = doFBA(solution, this.allCompounds, this.artificialTarget, this.maxFlux, this.minTargetProd);
+		if (this.oracle == null) {
+			try {
+				this.oracle = createOracle();
+			} catch (IloException e) {
+				System.err.println("Concert exception caught: " + e);
+				return false;
+			}
+		}
+		double prod = doFBA(this.oracle, solution);
 		if (prod <= 0){
 			return false;
 		}
 		return true;
 	}
 
+	private FBAOracle createOracle() throws IloException {
+		return new FBAOracle(this.network, this.artificialTarget, this.maxFlux, this.minTargetProd);
+	}
+
 	/* Create an special reaction that takes as substrates the targets
 	 * and that produces an special, TARGET, compound.
 	 * If TARGET already exists, return it.
@@ -164,133 +238,17 @@ public class SolutionChecker {
 		return precursorSetSolutions;
 	}
 
-	private double doFBA(List<Compound> sources, List<Compound> freeToAccumulate, Compound target, double inOrOutMaxAmount, double minTargetProd) {
+	private double doFBA(FBAOracle fbaOracle, List<Compound> sources) {
+		long t = Metrics.start();
 		double solutionValue = 0;
-		int nVars = this.network.getReactions().values().size() + this.network.getCompounds().values().size();
-
-		if (this.cplex == null){
-			IloCplex cplex = null;
-			IloNumVar[] x = null;
-			String[] reacIds = new String[nVars];
-			try {
-				cplex = new IloCplex();
-				// cplex.setOut(null); // no output to console
-
-				int nbReac = 0;
-				for (Reaction r : this.network.getReactions().values()) {
-					reacIds[nbReac++] = r.getId();
-				}
-				for (Compound c : this.network.getCompounds().values()) {
-					reacIds[nbReac++] = c.getId() + "_producer";
-				}
-				
-				this.cplexColsIds = Arrays.asList(reacIds);
-				IloCplexModeler modeler = new IloCplexModeler();
-				x = modeler.numVarArray(nVars, 0.0, Double.MAX_VALUE, reacIds);
-				cplex.add(x);
-
-				for (int i=0; i<nVars; ++i){
-					cplex.addGe(x[i], 0.0, "Bound_Inf_"+i);
-					cplex.addLe(x[i], inOrOutMaxAmount, "Bound_Sup_"+i);
-				}
-				IloLinearNumExpr fobj = modeler.linearNumExpr();
-
-				for (Compound c : network.getCompounds().values()) {
-					IloLinearNumExpr expr = modeler.linearNumExpr();
-					if (sources.contains(c)) {
-						// If it is a source, add a reaction that produces it from
-						// nothing
-						int delta = this.cplexColsIds.indexOf(c.getId()+"_producer");
-						expr.addTerm(1.0, x[delta]);
-					}
-					else if (c.isBootstrap()){
-						// If it is a bootstrap, add a reaction that produces it from
-						// nothing
-						int delta = this.cplexColsIds.indexOf(c.getId()+"_producer");
-						expr.addTerm(1.0, x[delta]);
-					}
-					for (int i = 0; i < this.network.getReactions().values().size(); i++) {
-						Reaction r = this.network.getReactions().get(reacIds[i]);
-						if (r.getProduces().values().contains(c)) { // reaction j
-							// produces
-							// compound i
-							expr.addTerm(r.getProductStochiometricValue(c), x[i]);
-						} else if (r.getSubstrates().values().contains(c)) { // reaction
-							// j
-							// consumes
-							// compound
-							// i
-							expr.addTerm(-r.getSubstrateStochiometricValue(c), x[i]);
-						}
-					}
-
-					// Mv = 0 except if free to accumulate
-					if ((freeToAccumulate != null && freeToAccumulate.contains(c))
-							|| target.equals(c)) {
-						if (target.equals(c)){
-							cplex.addGe(expr, minTargetProd, c.getId()+"_tgt");
-						}
-						else{
-							cplex.addGe(expr, 0.0, c.getId()+"_qss");
-						}
-					} else {
-						cplex.addEq(expr, 0.0, c.getId()+"_stdstt");
-					}
-					//TODO: Seems redundant, checking, soon to be erased.
-					//if (sources.contains(c)){
-					//	cplex.addLe(expr, inOrOutMaxAmount, c.getId()+"_src");
-					//}
-					if (target.equals(c)) {
-						fobj.add(expr);
-					}
-				}
-				cplex.addMaximize(fobj,"objective");
-
-			} catch (IloException e) {
-				System.err.println("Concert exception caught: " + e);
-			}
-			try {
-				cplex.exportModel("/tmp/m.lp");
-				this.cplex = new IloCplex();
-				this.cplex.importModel("/tmp/m.lp");
-				this.cplex.setOut(null);
-				this.cplex.setWarning(null);
-				this.cplex.setParam(IloCplex.IntParam.MIPKappaStats, 2);
-				this.cplex.setParam(IloCplex.IntParam.MIPKappaStats, 2);
-				this.cplex.setParam(IloCplex.DoubleParam.EpInt, 1e-9);
-				this.cplex.setParam(IloCplex.DoubleParam.EpRHS, 1e-9);
-			} catch (IloException e) {
-				e.printStackTrace();
-			}
-		}
-		else{
-			// CPLEX was already initialized, let's only change the constrains
-			IloLPMatrix lp = (IloLPMatrix)cplex.LPMatrixIterator().next();
-			for (Compound c : sources){
-				int j = this.cplexColsIds.indexOf(c.getId()+"_producer");
-				int i = 2*nVars + (j-this.network.getReactions().values().size());
-				try {
-					lp.setNZ(i, j, 1.0);
-				} catch (IloException e) {
-					e.printStackTrace();
-				}
-			}
-		}
-
 		try {
-			// solve
-			if (this.cplex.solve()) {
-				solutionValue = this.cplex.getObjValue();
-			}
-			// Erase the producer reactions for the next iteration
-			IloLPMatrix lp = (IloLPMatrix)cplex.LPMatrixIterator().next();
-			for (Compound c : sources){
-				int j = this.cplexColsIds.indexOf(c.getId()+"_producer");
-				int i = 2*nVars + (j-this.network.getReactions().values().size());
-				lp.setNZ(i, j, 0.0);
-			}
+			solutionValue = fbaOracle.maxProduction(sources);
 		} catch (IloException e) {
-			e.printStackTrace();
+			System.err.println("Concert exception caught: " + e);
+		}
+		Metrics.stop("fbaCheck", t);
+		if (solutionValue <= 0) {
+			Metrics.increment("fbaCheck.rejected");
 		}
 		return solutionValue;
 	}
@@ -0,0 +1,24 @@
+package utils;
+
+import application.PrecursorSet;
+
+/*
+ * Receives the precursor sets of a target as soon as they are found, so
+ * that the enumeration does not have to keep them until it ends.
+ * Implementations are called from the worker threads of -pivots and must
+ * be thread safe.
+ */
+public interface SolutionSink {
+
+	void add(PrecursorSet set);
+
+	/*
+	 * Number of sets received so far.
+	 */
+	int getNbSolutions();
+
+	/*
+	 * Flushes and releases the sink, no set can be added afterwards.
+	 */
+	void close();
+}
@@ -0,0 +1,94 @@
+package utils;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+
+import application.PrecursorSet;
+
+/*
+ * Writes the sets to a file as they arrive. The writer buffer has a fixed
+ * size, and it is flushed every flushEvery sets or flushDelay milliseconds,
+ * whichever comes first, so that other tools can read the file while the
+ * enumeration goes on.
+ */
+public abstract class StreamingSolutionSink implements SolutionSink {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final String filename;
+	private final int flushEvery;
+	private final long flushDelay;
+	private BufferedWriter writer;
+	private int nbSolutions = 0;
+	private int nbSinceFlush = 0;
+	private long lastFlush;
+
+	protected StreamingSolutionSink(String filename, int flushEvery, long flushDelay) {
+		this.filename = filename;
+		this.flushEvery = flushEvery;
+		this.flushDelay = flushDelay;
+		try {
+			this.writer = new BufferedWriter(new OutputStreamWriter(
+					new FileOutputStream(filename), "UTF-8"), BUFFER_SIZE);
+			writeHeader(this.writer);
+			this.writer.flush();
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.err.println("Could not open " + filename + ", Aborting.");
+			System.exit(-1);
+		}
+		this.lastFlush = System.currentTimeMillis();
+	}
+
+	public String getFilename() {
+		return filename;
+	}
+
+	@Override
+	public synchronized void add(PrecursorSet set) {
+		long t = Metrics.start();
+		nbSolutions++;
+		nbSinceFlush++;
+		try {
+			writeSet(this.writer, set, nbSolutions);
+			long now = System.currentTimeMillis();
+			if (nbSinceFlush >= flushEvery || now - lastFlush >= flushDelay) {
+				this.writer.flush();
+				nbSinceFlush = 0;
+				lastFlush = now;
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			System.err.println("Could not write to " + filename + ", Aborting.");
+			System.exit(-1);
+		}
+		Metrics.stop("output.stream", t);
+	}
+
+	@Override
+	public synchronized int getNbSolutions() {
+		return nbSolutions;
+	}
+
+	@Override
+	public synchronized void close() {
+		if (this.writer == null) {
+			return;
+		}
+		try {
+			writeFooter(this.writer);
+			this.writer.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		this.writer = null;
+	}
+
+	protected abstract void writeHeader(BufferedWriter out) throws IOException;
+
+	protected abstract void writeSet(BufferedWriter out, PrecursorSet set, int id) throws IOException;
+
+	protected abstract void writeFooter(BufferedWriter out) throws IOException;
+}
@@ -0,0 +1,40 @@
+package utils;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+
+import metabolicNetwork.Compound;
+import application.PrecursorSet;
+
+/*
+ * Same format as Sasita.printSolutions2Xml, the sets are numbered in the
+ * order they are found instead of being sorted first.
+ */
+public class XmlSolutionSink extends StreamingSolutionSink {
+
+	public XmlSolutionSink(String filename, int flushEvery, long flushDelay) {
+		super(filename, flushEvery, flushDelay);
+	}
+
+	@Override
+	protected void writeHeader(BufferedWriter out) throws IOException {
+		out.write("<precursorSets>\n");
+	}
+
+	@Override
+	protected void writeSet(BufferedWriter out, PrecursorSet set, int id) throws IOException {
+		out.write("\t<precursorSet id=\"" + id + "\">\n");
+		for (Compound source : set.getPrecursors()) {
+			out.write("\t\t<source id=\"" + source.getId()
+					+ "\" name=\"" + source.getName()
+					+ "\" compartment=\"" + source.getCompartment()
+					+ "\" />\n");
+		}
+		out.write("\t</precursorSet>\n");
+	}
+
+	@Override
+	protected void writeFooter(BufferedWriter out) throws IOException {
+		out.write("</precursorSets>\n");
+	}
+}
@@ -0,0 +1,113 @@
+package application;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import metabolicNetwork.Compound;
+import metabolicNetwork.MetabolicNetwork;
+
+import org.junit.Test;
+
+/*
+ * MinimalPrecursorSetStore against the scans of a list it replaces.
+ */
+public class MinimalPrecursorSetStoreTest {
+
+	private final List<Compound> compounds = new ArrayList<Compound>();
+
+	public MinimalPrecursorSetStoreTest() {
+		MetabolicNetwork network = new MetabolicNetwork();
+		for (int i = 0; i < 30; ++i) {
+			Compound c = network.addCompound("C" + i, "C" + i, "c");
+			c.setUserDefinedPrecursor(true);
+			this.compounds.add(c);
+		}
+	}
+
+	private PrecursorSet set(int... sources) {
+		PrecursorSet s = new PrecursorSet();
+		for (int i : sources) {
+			s.addPrecursor(this.compounds.get(i));
+		}
+		return s;
+	}
+
+	@Test
+	public void keepsTheMinimalSets() {
+		MinimalPrecursorSetStore store = new MinimalPrecursorSetStore();
+		PrecursorSet s012 = set(0, 1, 2);
+		PrecursorSet s01 = set(0, 1);
+		PrecursorSet s3 = set(3);
+		assertTrue(store.add(s012));
+		assertTrue(store.add(s3));
+		assertFalse(store.add(s012));
+		assertFalse(store.add(set(0, 1, 2)));
+		assertFalse(store.add(set(3, 4)));
+		assertTrue(store.add(s01));
+		List<PrecursorSet> sets = store.getMinimalSets();
+		assertEquals(2, sets.size());
+		assertSame(s3, sets.get(0));
+		assertSame(s01, sets.get(1));
+		assertTrue(store.containsSubsetOf(set(0, 1, 5)));
+		assertFalse(store.containsSubsetOf(set(0, 5)));
+		store.clear();
+		assertEquals(0, store.size());
+	}
+
+	private static boolean listAdd(List<PrecursorSet> sets, PrecursorSet s) {
+		for (PrecursorSet stored : sets) {
+			if (stored.isSourcesSubSetOf(s, false)) {
+				return false;
+			}
+		}
+		Iterator<PrecursorSet> it = sets.iterator();
+		while (it.hasNext()) {
+			if (s.isSourcesSubSetOf(it.next(), true)) {
+				it.remove();
+			}
+		}
+		sets.add(s);
+		return true;
+	}
+
+	@Test
+	public void randomAdds() {
+		Random random = new Random(1);
+		for (int n = 0; n < 500; ++n) {
+			int nbCompounds = 4 + random.nextInt(20);
+			MinimalPrecursorSetStore store = new MinimalPrecursorSetStore();
+			List<PrecursorSet> expected = new LinkedList<PrecursorSet>();
+			List<PrecursorSet> added = new ArrayList<PrecursorSet>();
+			for (int k = 0; k < 60; ++k) {
+				PrecursorSet s;
+				if (!added.isEmpty() && random.nextInt(8) == 0) {
+					s = added.get(random.nextInt(added.size()));
+				} else {
+					s = new PrecursorSet();
+					int size = random.nextInt(6);
+					for (int i = 0; i < size; ++i) {
+						Compound c = this.compounds.get(random.nextInt(nbCompounds));
+						if (!s.getPrecursors().contains(c)) {
+							s.addPrecursor(c);
+						}
+					}
+				}
+				added.add(s);
+				assertEquals(listAdd(expected, s), store.add(s));
+				assertEquals(expected.size(), store.size());
+			}
+			List<PrecursorSet> found = store.getMinimalSets();
+			for (int i = 0; i < expected.size(); ++i) {
+				assertSame(expected.get(i), found.get(i));
+			}
+		}
+	}
+}
@@ -0,0 +1,146 @@
+package application;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import metabolicNetwork.Compound;
+import metabolicNetwork.MetabolicNetwork;
+
+import org.junit.Test;
+
+import pitufo.PrecursorFinder;
+
+/*
+ * PrecursorSetIndex and reduceToMinimalPrecursorSets against the quadratic
+ * loops on isSourcesSubSetOf they replace, on random lists with duplicates
+ * and stale flags.
+ */
+public class PrecursorSetIndexTest {
+
+	private static final int NB_LISTS = 2000;
+
+	private final Random random = new Random(1);
+	private final List<Compound> compounds = new ArrayList<Compound>();
+
+	public PrecursorSetIndexTest() {
+		MetabolicNetwork network = new MetabolicNetwork();
+		for (int i = 0; i < 100; ++i) {
+			Compound c = network.addCompound("C" + i, "C" + i, "c");
+			c.setUserDefinedPrecursor(true);
+			this.compounds.add(c);
+		}
+	}
+
+	/*
+	 * Up to 40 sets of up to 4 sources among the first nbCompounds, some of
+	 * them copies of earlier ones, some with a stop compound.
+	 */
+	private List<PrecursorSet> randomSets(int nbCompounds) {
+		int nbSets = this.random.nextInt(40);
+		List<PrecursorSet> sets = new ArrayList<PrecursorSet>();
+		for (int i = 0; i < nbSets; ++i) {
+			PrecursorSet p;
+			if (i > 0 && this.random.nextInt(6) == 0) {
+				p = new PrecursorSet(sets.get(this.random.nextInt(i)));
+			} else {
+				p = new PrecursorSet();
+				int size = this.random.nextInt(5);
+				for (int k = 0; k < size; ++k) {
+					Compound c = this.compounds.get(this.random.nextInt(nbCompounds));
+					if (!p.getPrecursors().contains(c)) {
+						p.addPrecursor(c);
+					}
+				}
+				if (this.random.nextBoolean()) {
+					p.addSubstrateAsStopCompound(this.compounds.get(this.random.nextInt(nbCompounds)));
+				}
+			}
+			sets.add(p);
+		}
+		return sets;
+	}
+
+	private static void assertSameSets(List<PrecursorSet> expected, List<PrecursorSet> found) {
+		assertEquals(expected.size(), found.size());
+		for (int i = 0; i < expected.size(); ++i) {
+			assertSame(expected.get(i), found.get(i));
+		}
+	}
+
+	@Test
+	public void queries() {
+		for (int n = 0; n < NB_LISTS; ++n) {
+			List<PrecursorSet> sets = randomSets(n % 2 == 0 ? 8 : 90);
+			PrecursorSetIndex index = new PrecursorSetIndex(sets);
+			for (int i = 0; i < sets.size(); i += 3) {
+				index.remove(sets.get(i));
+			}
+			assertEquals(sets.size() - (sets.size() + 2) / 3, index.size());
+			for (PrecursorSet query : sets) {
+				List<PrecursorSet> subsets = new ArrayList<PrecursorSet>();
+				List<PrecursorSet> supersets = new ArrayList<PrecursorSet>();
+				for (int i = 0; i < sets.size(); ++i) {
+					PrecursorSet s = sets.get(i);
+					if (i % 3 == 0 || s == query) {
+						continue;
+					}
+					if (s.isSourcesSubSetOf(query, false)) {
+						subsets.add(s);
+					}
+					if (query.isSourcesSubSetOf(s, false)) {
+						supersets.add(s);
+					}
+				}
+				assertSameSets(subsets, index.getSubsetsOf(query));
+				assertSameSets(supersets, index.getSupersetsOf(query));
+				assertEquals(!subsets.isEmpty(), index.containsSubsetOf(query));
+			}
+		}
+	}
+
+	/*
+	 * The loop of reduceToMinimalPrecursorSets before the index.
+	 */
+	private static List<PrecursorSet> quadraticReduce(List<PrecursorSet> l) {
+		List<PrecursorSet> reducedL = new ArrayList<PrecursorSet>(l);
+		for (int i = 0; i < l.size(); i++) {
+			for (int j = 0; j < l.size(); j++) {
+				if (i == j)
+					continue;
+				if (!l.get(j).isFlag() && l.get(j).isSourcesSubSetOf(l.get(i), false)) {
+					reducedL.remove(l.get(i));
+					l.get(i).setFlag(true);
+					break;
+				}
+			}
+		}
+		return reducedL;
+	}
+
+	@Test
+	public void reduceToMinimalPrecursorSets() {
+		for (int n = 0; n < NB_LISTS; ++n) {
+			List<PrecursorSet> sets = randomSets(n % 2 == 0 ? 8 : 90);
+			boolean[] flags = new boolean[sets.size()];
+			for (int i = 0; i < sets.size(); ++i) {
+				flags[i] = this.random.nextInt(4) == 0;
+				sets.get(i).setFlag(flags[i]);
+			}
+			List<PrecursorSet> expected = quadraticReduce(sets);
+			boolean[] expectedFlags = new boolean[sets.size()];
+			for (int i = 0; i < sets.size(); ++i) {
+				expectedFlags[i] = sets.get(i).isFlag();
+				sets.get(i).setFlag(flags[i]);
+			}
+			List<PrecursorSet> found = PrecursorFinder.reduceToMinimalPrecursorSets(new ArrayList<PrecursorSet>(sets));
+			assertSameSets(expected, found);
+			for (int i = 0; i < sets.size(); ++i) {
+				assertEquals(expectedFlags[i], sets.get(i).isFlag());
+			}
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package metabolicNetwork;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class CompressLinearChainsTest {
+
+	private static final double TOL = 1e-9;
+
+	private static Reaction reaction(MetabolicNetwork network, String id, Compound[] substrates, double[] substrateCoefs,
+			Compound[] products, double[] productCoefs) {
+		Reaction r = network.addNewReaction(id, id, false);
+		for (int k = 0; k < substrates.length; ++k) {
+			r.addSubstrate(substrates[k], substrateCoefs[k]);
+		}
+		for (int k = 0; k < products.length; ++k) {
+			r.addProduct(products[k], productCoefs[k]);
+		}
+		return r;
+	}
+
+	private static Compound source(MetabolicNetwork network, String id) {
+		Compound c = network.addCompound(id, id, "c");
+		c.setUserDefinedPrecursor(true);
+		return c;
+	}
+
+	@Test
+	public void scaledChain() {
+		// S -> 2 A, 3 A -> B, B -> T: 3 S -> 2 T, A and B removed
+		MetabolicNetwork network = new MetabolicNetwork();
+		Compound s = source(network, "S");
+		Compound a = network.addCompound("A", "A", "c");
+		Compound b = network.addCompound("B", "B", "c");
+		Compound t = network.addCompound("T", "T", "c");
+		reaction(network, "R1", new Compound[] {s}, new double[] {1.0}, new Compound[] {a}, new double[] {2.0});
+		reaction(network, "R2", new Compound[] {a}, new double[] {3.0}, new Compound[] {b}, new double[] {1.0});
+		reaction(network, "R3", new Compound[] {b}, new double[] {1.0}, new Compound[] {t}, new double[] {1.0});
+		Set<String> keep = new HashSet<String>(Collections.singleton("T"));
+		assertEquals(2, network.compressLinearChains(keep, false));
+
+		assertEquals(1, network.getReactions().size());
+		Reaction merged = network.getReactions().values().iterator().next();
+		assertEquals(1.5, merged.getSubstrateStochiometricValue(s) / merged.getProductStochiometricValue(t), TOL);
+		assertEquals(new HashSet<String>(Arrays.asList("R1", "R2", "R3")), merged.getCompressedReactions().keySet());
+		assertFalse(network.getCompounds().containsKey("A"));
+		assertFalse(network.getCompounds().containsKey("B"));
+		assertTrue(network.getCompounds().containsKey("T"));
+		assertEquals(1, s.getReactionsThatConsume(false).size());
+		assertEquals(1, t.getReactionsThatProduce(false).size());
+	}
+
+	@Test
+	public void accumulationKeepsBranchedPairs() {
+		// S -> A + C, A + S2 -> T: A is neither the only product of R1 nor
+		// the only substrate of R2, it may accumulate
+		MetabolicNetwork network = new MetabolicNetwork();
+		Compound s = source(network, "S");
+		Compound s2 = source(network, "S2");
+		Compound a = network.addCompound("A", "A", "c");
+		Compound c = network.addCompound("C", "C", "c");
+		Compound t = network.addCompound("T", "T", "c");
+		reaction(network, "R1", new Compound[] {s}, new double[] {1.0}, new Compound[] {a, c}, new double[] {1.0, 1.0});
+		reaction(network, "R2", new Compound[] {a, s2}, new double[] {1.0, 1.0}, new Compound[] {t}, new double[] {1.0});
+		Set<String> keep = new HashSet<String>(Collections.singleton("T"));
+		assertEquals(0, network.compressLinearChains(keep, false));
+		assertEquals(2, network.getReactions().size());
+		// in steady state A can not accumulate, the pair is fully coupled
+		assertEquals(1, network.compressLinearChains(keep, true));
+		assertEquals(1, network.getReactions().size());
+	}
+
+	@Test
+	public void longChain() {
+		// every compound but the last one is merged away, each merge only
+		// updating the compounds of the pair
+		MetabolicNetwork network = new MetabolicNetwork();
+		Compound previous = source(network, "S");
+		for (int i = 0; i < 20000; ++i) {
+			Compound c = network.addCompound("C" + i, "C" + i, "c");
+			reaction(network, "R" + i, new Compound[] {previous}, new double[] {1.0}, new Compound[] {c}, new double[] {1.0});
+			previous = c;
+		}
+		Set<String> keep = new HashSet<String>(Collections.singleton(previous.getId()));
+		assertEquals(19999, network.compressLinearChains(keep, true));
+		assertEquals(1, network.getReactions().size());
+		assertEquals(20000, network.getReactions().values().iterator().next().getCompressedReactions().size());
+	}
+}
@@ -0,0 +1,161 @@
+package pitufolandia;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import metabolicNetwork.Compound;
+import metabolicNetwork.MetabolicNetwork;
+
+import org.junit.After;
+import org.junit.Test;
+
+import application.InputParameters;
+import application.PrecursorSet;
+
+/*
+ * The final filter of Pitufrankstein and Sasita.checkMinimality against
+ * the quadratic loops they replace, on random lists with duplicates and
+ * stale flags.
+ */
+public class MinimalityTest {
+
+	private static final int NB_LISTS = 2000;
+
+	private final Random random = new Random(1);
+	private final MetabolicNetwork network = new MetabolicNetwork();
+	private final List<Compound> compounds = new ArrayList<Compound>();
+	private final boolean verbose = InputParameters.verbose;
+
+	public MinimalityTest() {
+		for (int i = 0; i < 100; ++i) {
+			Compound c = this.network.addCompound("C" + i, "C" + i, "c");
+			c.setUserDefinedPrecursor(true);
+			this.compounds.add(c);
+		}
+	}
+
+	@After
+	public void restoreVerbose() {
+		InputParameters.verbose = this.verbose;
+	}
+
+	private List<PrecursorSet> randomSets(int nbCompounds) {
+		int nbSets = this.random.nextInt(40);
+		List<PrecursorSet> sets = new ArrayList<PrecursorSet>();
+		for (int i = 0; i < nbSets; ++i) {
+			PrecursorSet p;
+			if (i > 0 && this.random.nextInt(6) == 0) {
+				p = new PrecursorSet(sets.get(this.random.nextInt(i)));
+			} else {
+				p = new PrecursorSet();
+				int size = this.random.nextInt(5);
+				for (int k = 0; k < size; ++k) {
+					Compound c = this.compounds.get(this.random.nextInt(nbCompounds));
+					if (!p.getPrecursors().contains(c)) {
+						p.addPrecursor(c);
+					}
+				}
+				if (this.random.nextBoolean()) {
+					p.addSubstrateAsStopCompound(this.compounds.get(this.random.nextInt(nbCompounds)));
+				}
+			}
+			sets.add(p);
+		}
+		return sets;
+	}
+
+	/*
+	 * The filter of findPrecursorsInNetworkForTarget before the index.
+	 */
+	private static List<PrecursorSet> quadraticFilter(List<PrecursorSet> solutions) {
+		solutions = new LinkedList<PrecursorSet>(solutions);
+		LinkedList<Integer> rl = new LinkedList<Integer>();
+		for (int i = 0; i < solutions.size(); ++i) {
+			PrecursorSet p = solutions.get(i);
+			p.setFlag(false);
+			for (PrecursorSet pP : solutions) {
+				if (p != pP && !pP.isFlag() && pP.isSourcesSubSetOf(p, false)) {
+					p.setFlag(true);
+					rl.addFirst(i);
+					break;
+				}
+			}
+		}
+		for (Integer i : rl) {
+			solutions.remove(i.intValue());
+		}
+		return solutions;
+	}
+
+	/*
+	 * The log of checkMinimality before the index.
+	 */
+	private static String quadraticCheck(List<PrecursorSet> solutions) {
+		StringBuilder log = new StringBuilder("[SASITA] Checking for the minimality of the solutions...\n");
+		int solutionNumber = 1;
+		for (PrecursorSet k : solutions) {
+			for (int j = solutionNumber; j < solutions.size(); ++j) {
+				PrecursorSet t = solutions.get(j);
+				if (t.isSourcesSubSetOf(k, false)) {
+					log.append("[SASITA] Solution " + solutionNumber + " is not minimal\n");
+				} else if (k.isSourcesSubSetOf(t, false)) {
+					log.append("[SASITA] Solution " + (j + 1) + " is not minimal\n");
+				}
+			}
+			++solutionNumber;
+		}
+		return log.append("[SASITA] Done!\n").toString();
+	}
+
+	@Test
+	public void removeNonMinimalSolutions() {
+		for (int n = 0; n < NB_LISTS; ++n) {
+			List<PrecursorSet> sets = randomSets(n % 2 == 0 ? 8 : 90);
+			boolean[] flags = new boolean[sets.size()];
+			for (int i = 0; i < sets.size(); ++i) {
+				flags[i] = this.random.nextInt(4) == 0;
+				sets.get(i).setFlag(flags[i]);
+			}
+			List<PrecursorSet> expected = quadraticFilter(sets);
+			boolean[] expectedFlags = new boolean[sets.size()];
+			for (int i = 0; i < sets.size(); ++i) {
+				expectedFlags[i] = sets.get(i).isFlag();
+				sets.get(i).setFlag(flags[i]);
+			}
+			List<PrecursorSet> found = Pitufrankstein.removeNonMinimalSolutions(sets);
+			assertEquals(expected.size(), found.size());
+			for (int i = 0; i < expected.size(); ++i) {
+				assertSame(expected.get(i), found.get(i));
+			}
+			for (int i = 0; i < sets.size(); ++i) {
+				assertEquals(expectedFlags[i], sets.get(i).isFlag());
+			}
+		}
+	}
+
+	@Test
+	public void checkMinimality() {
+		InputParameters.verbose = true;
+		Sasita sasita = new Sasita(this.network, false);
+		PrintStream out = System.out;
+		try {
+			for (int n = 0; n < NB_LISTS; ++n) {
+				List<PrecursorSet> sets = randomSets(n % 2 == 0 ? 8 : 90);
+				ByteArrayOutputStream log = new ByteArrayOutputStream();
+				System.setOut(new PrintStream(log));
+				sasita.checkMinimality(sets);
+				System.setOut(out);
+				assertEquals(quadraticCheck(sets), log.toString());
+			}
+		} finally {
+			System.setOut(out);
+		}
+	}
+}
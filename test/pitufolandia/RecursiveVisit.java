@@ -0,0 +1,145 @@
+package pitufolandia;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+
+import metabolicNetwork.Compound;
+import metabolicNetwork.Reaction;
+import application.PrecursorSet;
+
+/*
+ * The recursive visitCompound of Pitufrankstein as it was before the memo,
+ * the fork/join pool and the explicit stack, kept as the reference of
+ * VisitCompoundTest. It copies the visited compounds and reactions for
+ * every substrate and knows nothing of the indices of the current visit.
+ */
+class RecursiveVisit {
+
+	static List<PrecursorSet> visitCompound(Compound a, Reaction incommingReaction, List<Compound> visitedCompounds, Set<Reaction> visitedReactions){
+		if (incommingReaction != null){
+			visitedReactions.add(incommingReaction);
+		}
+		if (a.isPrecursor()){
+			List<PrecursorSet> ps = new LinkedList<PrecursorSet>();
+			PrecursorSet s = new PrecursorSet();
+			s.addPrecursor(a);
+			s.addReactions(visitedReactions);
+			ps.add(s);
+			return ps;
+		}
+		if (a.isBootstrap()){
+			List<PrecursorSet> ps = new LinkedList<PrecursorSet>();
+			PrecursorSet s = new PrecursorSet();
+			s.addBootstrap(a);
+			s.addReactions(visitedReactions);
+			ps.add(s);
+			return ps;
+		}
+		if (visitedCompounds.contains(a)){
+			List<PrecursorSet> ps = new LinkedList<PrecursorSet>();
+			PrecursorSet s = new PrecursorSet();
+			s.addReactions(visitedReactions);
+			s.addSubstrateAsStopCompound(a);
+			ps.add(s);
+			return ps;
+		}
+
+		visitedCompounds.add(a);
+
+		Queue<Reaction> reactionsToAnalyze = new LinkedList<Reaction>();
+		for(Reaction r : a.getProducedBy()){
+			if (!visitedReactions.contains(r)){
+				if((r.getReverseReaction() == null) || (r.getReverseReaction() != null && !visitedReactions.contains(r.getReverseReaction()))){
+					reactionsToAnalyze.add(r);
+				}
+			}
+		}
+
+		List<PrecursorSet> allPSs = new LinkedList<PrecursorSet>();
+		while( ! reactionsToAnalyze.isEmpty()){
+			Reaction r = reactionsToAnalyze.poll();
+			List<PrecursorSet> tps =  new LinkedList<PrecursorSet>();
+			for(Compound c: r.getSubstrates().values()){
+				List<Compound> newVisitedCompounds = new LinkedList<Compound>(visitedCompounds);
+				List<Compound> compoundListToAdd = new LinkedList<Compound>(r.getSubstrates().values());
+				compoundListToAdd.remove(c);
+				newVisitedCompounds.addAll(compoundListToAdd);
+				Set<Reaction> newVisitedReactions = new TreeSet<Reaction>(visitedReactions);
+				List<PrecursorSet> lps = visitCompound(c,r, newVisitedCompounds, newVisitedReactions);
+				tps = unionOfPSets(tps, lps);
+			}
+			for (PrecursorSet p : tps){
+				if (!allPSs.contains(p))
+					allPSs.add(p);
+			}
+		}
+
+		// Minimalise the solution list
+		List<PrecursorSet> reducedL = new ArrayList<PrecursorSet>(allPSs);
+		for(int i = 0; i < allPSs.size(); i++)
+		{
+			for(int j = 0; j < allPSs.size(); j++)
+			{
+				if(i == j)
+					continue;
+				if( !allPSs.get(j).isFlag() && factoryIsSubsetOf(allPSs.get(j), allPSs.get(i)) )
+				{
+					reducedL.remove(allPSs.get(i));
+					allPSs.get(i).setFlag( true );
+					break;
+				}
+			}
+		}
+		return reducedL;
+	}
+
+	private static boolean factoryIsSubsetOf(PrecursorSet s1, PrecursorSet s2)
+	{
+		HashSet<Compound> hash = new HashSet<Compound>();
+		for(int i = 0; i < s2.getPrecursors().size(); i++)
+			hash.add(s2.getPrecursors().get(i));
+
+		boolean isAPrecusorSubset = hash.containsAll(s1.getPrecursors());
+
+		if (isAPrecusorSubset){
+			return s2.getReactions().contains(s1.getReactions());
+		}
+
+		return false;
+	}
+
+	private static List<PrecursorSet> unionOfPSets(List<PrecursorSet> tps, List<PrecursorSet> lps) {
+		if (lps.size() > 0 ){
+			if (tps.size() == 0){
+				tps.addAll(lps);
+				return tps;
+			}
+			else{
+				List<PrecursorSet> newTps = new LinkedList<PrecursorSet>();
+				for (PrecursorSet ps : lps){
+					for (PrecursorSet x : tps){
+						PrecursorSet newx = new PrecursorSet(x);
+						newx.add(ps);
+						boolean isRepeatedNewPrecursorSet = false;
+						for(PrecursorSet s : newTps){
+							if(s.haveSameSources(newx)){
+								isRepeatedNewPrecursorSet = true;
+								break;
+							}
+						}
+						if(!isRepeatedNewPrecursorSet){
+							newTps.add(newx);
+						}
+					}
+				}
+				return newTps;
+			}
+		}
+		return tps;
+	}
+}
@@ -0,0 +1,217 @@
+package pitufolandia;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+import metabolicNetwork.Compound;
+import metabolicNetwork.MetabolicNetwork;
+import metabolicNetwork.Reaction;
+
+import org.junit.After;
+import org.junit.Test;
+
+import application.InputParameters;
+import application.PrecursorSet;
+
+/*
+ * Pitufrankstein.visitCompound, memoized, iterative and forked, gives the
+ * same sets as RecursiveVisit: the same sources, bootstraps, stop
+ * compounds and reactions, in the same order.
+ */
+public class VisitCompoundTest {
+
+	private static final int NB_NETWORKS = 300;
+
+	private final int nbThreads = InputParameters.nbThreads;
+
+	@After
+	public void restoreThreads() {
+		InputParameters.nbThreads = this.nbThreads;
+	}
+
+	/*
+	 * Random reactions of one or two substrates among all the compounds and
+	 * one or two products among the intermediates, with cycles.
+	 */
+	private static Compound randomNetwork(Random random, MetabolicNetwork network, int nbSources, int nbIntermediates, int nbReactions) {
+		List<Compound> all = new ArrayList<Compound>();
+		for (int i = 0; i < nbSources; ++i) {
+			Compound c = network.addCompound("S" + i, "S" + i, "c");
+			c.setUserDefinedPrecursor(true);
+			all.add(c);
+		}
+		for (int i = 0; i < nbIntermediates; ++i) {
+			all.add(network.addCompound("I" + i, "I" + i, "c"));
+		}
+		for (int r = 0; r < nbReactions; ++r) {
+			Reaction reaction = network.addNewReaction("R" + r, "R" + r, false);
+			Set<Compound> used = new HashSet<Compound>();
+			int nbSubstrates = 1 + random.nextInt(2);
+			for (int k = 0; k < nbSubstrates; ++k) {
+				Compound c = all.get(random.nextInt(all.size()));
+				if (used.add(c)) {
+					reaction.addSubstrate(c, 1 + random.nextInt(2));
+				}
+			}
+			int nbProducts = 1 + random.nextInt(2);
+			for (int k = 0; k < nbProducts; ++k) {
+				Compound c = all.get(nbSources + random.nextInt(nbIntermediates));
+				if (used.add(c)) {
+					reaction.addProduct(c, 1 + random.nextInt(2));
+				}
+			}
+		}
+		return network.getCompounds().get("I0");
+	}
+
+	/*
+	 * Layered reactions producing each intermediate from the few compounds
+	 * before it: deep networks with many shared substrates.
+	 */
+	private static Compound layeredNetwork(Random random, MetabolicNetwork network, int nbSources, int nbIntermediates) {
+		List<Compound> all = new ArrayList<Compound>();
+		for (int i = 0; i < nbSources; ++i) {
+			Compound c = network.addCompound("S" + i, "S" + i, "c");
+			c.setUserDefinedPrecursor(true);
+			all.add(c);
+		}
+		for (int i = 0; i < nbIntermediates; ++i) {
+			all.add(network.addCompound("I" + i, "I" + i, "c"));
+		}
+		for (int r = 0; r < 2 * nbIntermediates; ++r) {
+			Reaction reaction = network.addNewReaction("R" + r, "R" + r, false);
+			int p = nbSources + random.nextInt(nbIntermediates);
+			reaction.addProduct(all.get(p), 1.0);
+			int nbSubstrates = 1 + random.nextInt(2);
+			for (int k = 0; k < nbSubstrates; ++k) {
+				Compound c = all.get(Math.max(0, p - 1 - random.nextInt(4)));
+				if (c != all.get(p) && !reaction.getSubstrates().containsKey(c.getId())) {
+					reaction.addSubstrate(c, 1.0);
+				}
+			}
+		}
+		return all.get(nbSources + nbIntermediates - 1);
+	}
+
+	/*
+	 * Makes a third of the reactions reversible and maybe one intermediate
+	 * a bootstrap.
+	 */
+	private static void addReverseReactions(Random random, MetabolicNetwork network, int nbIntermediates) {
+		List<Reaction> reactions = new ArrayList<Reaction>(network.getReactions().values());
+		for (Reaction r : reactions) {
+			if (random.nextInt(3) == 0) {
+				Reaction reverse = network.addNewReaction(r.getId() + "_REV", r.getId() + "_REV", true);
+				r.setReversible(true);
+				for (Compound c : r.getProduces().values()) {
+					reverse.addSubstrate(c, 1.0);
+				}
+				for (Compound c : r.getSubstrates().values()) {
+					reverse.addProduct(c, 1.0);
+				}
+				r.setReverse(reverse);
+				reverse.setReverse(r);
+			}
+		}
+		if (random.nextInt(3) == 0) {
+			network.getCompounds().get("I" + (nbIntermediates - 1)).setBootstrap(true);
+		}
+	}
+
+	private static String signature(List<PrecursorSet> sets) {
+		StringBuilder sig = new StringBuilder();
+		for (PrecursorSet p : sets) {
+			List<String> sources = new ArrayList<String>();
+			for (Compound c : p.getPrecursors()) {
+				sources.add(c.getId());
+			}
+			Collections.sort(sources);
+			List<String> bootstraps = new ArrayList<String>();
+			for (Compound c : p.getBootstraps()) {
+				bootstraps.add(c.getId());
+			}
+			Collections.sort(bootstraps);
+			List<String> stops = new ArrayList<String>();
+			for (Compound c : p.getStopCompounds()) {
+				stops.add(c.getId());
+			}
+			Collections.sort(stops);
+			List<String> reactions = new ArrayList<String>();
+			for (Reaction r : p.getReactions()) {
+				reactions.add(r.getId());
+			}
+			Collections.sort(reactions);
+			sig.append(sources).append('|').append(bootstraps).append('|').append(stops).append('|').append(reactions).append('\n');
+		}
+		return sig.toString();
+	}
+
+	private static void checkNetworks(boolean layered, int nbThreads, int forkThreshold) {
+		for (int seed = 0; seed < NB_NETWORKS; ++seed) {
+			Random random = new Random(seed);
+			MetabolicNetwork network = new MetabolicNetwork();
+			int nbIntermediates = 5 + random.nextInt(4);
+			Compound target = layered
+					? layeredNetwork(random, network, 3, nbIntermediates)
+					: randomNetwork(random, network, 2 + random.nextInt(3), nbIntermediates, nbIntermediates + random.nextInt(nbIntermediates));
+			addReverseReactions(random, network, nbIntermediates);
+
+			String expected = signature(RecursiveVisit.visitCompound(target, null,
+					new LinkedList<Compound>(), new TreeSet<Reaction>()));
+			InputParameters.nbThreads = nbThreads;
+			Pitufrankstein pitufrankstein = new Pitufrankstein(network, false);
+			pitufrankstein.forkThreshold = forkThreshold;
+			String found = signature(pitufrankstein.visitCompound(target, null,
+					new LinkedList<Compound>(), new HashSet<Reaction>()));
+			assertEquals("network " + seed, expected, found);
+		}
+	}
+
+	@Test
+	public void sequentialRandomNetworks() {
+		checkNetworks(false, 1, 16);
+	}
+
+	@Test
+	public void sequentialLayeredNetworks() {
+		checkNetworks(true, 1, 16);
+	}
+
+	@Test
+	public void forkedRandomNetworks() {
+		checkNetworks(false, 4, 2);
+	}
+
+	@Test
+	public void forkedLayeredNetworks() {
+		checkNetworks(true, 4, 2);
+	}
+
+	@Test
+	public void longLinearChain() {
+		// deeper than the call stack of the recursive visit
+		MetabolicNetwork network = new MetabolicNetwork();
+		Compound previous = network.addCompound("S", "S", "c");
+		previous.setUserDefinedPrecursor(true);
+		for (int i = 0; i < 3000; ++i) {
+			Compound c = network.addCompound("C" + i, "C" + i, "c");
+			Reaction r = network.addNewReaction("R" + i, "R" + i, false);
+			r.addSubstrate(previous, 1.0);
+			r.addProduct(c, 1.0);
+			previous = c;
+		}
+		InputParameters.nbThreads = 1;
+		List<PrecursorSet> sets = new Pitufrankstein(network, false).visitCompound(previous, null,
+				new LinkedList<Compound>(), new HashSet<Reaction>());
+		assertEquals(1, sets.size());
+		assertEquals(3000, sets.get(0).getReactions().size());
+	}
+}
@@ -0,0 +1,71 @@
+package utils;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import metabolicNetwork.Compound;
+import metabolicNetwork.MetabolicNetwork;
+import metabolicNetwork.Reaction;
+
+import org.junit.Test;
+
+public class BlockedReactionFinderTest {
+
+	private static Set<String> ids(List<Reaction> reactions) {
+		Set<String> ids = new HashSet<String>();
+		for (Reaction r : reactions) {
+			ids.add(r.getId());
+		}
+		return ids;
+	}
+
+	private static Reaction reaction(MetabolicNetwork network, String id, Compound substrate, double coef,
+			Compound product, double productCoef) {
+		Reaction r = network.addNewReaction(id, id, false);
+		r.addSubstrate(substrate, coef);
+		r.addProduct(product, productCoef);
+		return r;
+	}
+
+	@Test
+	public void deadEnd() {
+		// S -> A -> B and C -> D, C being neither produced nor a source
+		MetabolicNetwork network = new MetabolicNetwork();
+		Compound s = network.addCompound("S", "S", "c");
+		s.setUserDefinedPrecursor(true);
+		Compound a = network.addCompound("A", "A", "c");
+		Compound b = network.addCompound("B", "B", "c");
+		Compound c = network.addCompound("C", "C", "c");
+		Compound d = network.addCompound("D", "D", "c");
+		reaction(network, "R1", s, 1.0, a, 1.0);
+		reaction(network, "R2", a, 1.0, b, 1.0);
+		reaction(network, "R3", c, 1.0, d, 1.0);
+		Set<String> expected = new HashSet<String>();
+		expected.add("R3");
+		assertEquals(expected, ids(new BlockedReactionFinder(network, new HashSet<String>()).findBlockedReactions(1)));
+	}
+
+	/*
+	 * Each Ri can only carry a flux of 1e-8, below the tolerance, but the
+	 * sum of the 100 of them is above: no optimum of the sum classifies any
+	 * of them, they are maximised one at a time.
+	 */
+	@Test
+	public void fluxesBelowTheTolerance() {
+		MetabolicNetwork network = new MetabolicNetwork();
+		Compound s = network.addCompound("S", "S", "c");
+		s.setUserDefinedPrecursor(true);
+		Set<String> expected = new HashSet<String>();
+		for (int i = 0; i < 100; ++i) {
+			Compound x = network.addCompound("X" + i, "X" + i, "c");
+			Compound y = network.addCompound("Y" + i, "Y" + i, "c");
+			reaction(network, "P" + i, s, 1.0, x, 1e-8);
+			reaction(network, "R" + i, x, 1.0, y, 1.0);
+			expected.add("R" + i);
+		}
+		assertEquals(expected, ids(new BlockedReactionFinder(network, new HashSet<String>()).findBlockedReactions(2)));
+	}
+}
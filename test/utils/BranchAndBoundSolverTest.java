@@ -0,0 +1,155 @@
+package utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+import utils.BranchAndBoundSolver.MIPStatus;
+
+/*
+ * Small MILPs whose status, optimum and integer points are known by hand.
+ */
+public class BranchAndBoundSolverTest {
+
+	private static final double TOL = 1e-7;
+
+	private static int row(SimplexSolver lp, double[] vals, double lo, double hi) {
+		int[] cols = new int[vals.length];
+		for (int j = 0; j < vals.length; ++j) {
+			cols[j] = j;
+		}
+		return lp.addRow(cols, vals, lo, hi);
+	}
+
+	/*
+	 * max 8a + 11b + 6c + 4d, 5a + 7b + 4c + 3d <= 14, binaries: the LP
+	 * optimum is fractional (22), the integer one is b = c = d = 1 (21).
+	 */
+	private static BranchAndBoundSolver knapsack() {
+		SimplexSolver lp = new SimplexSolver();
+		BranchAndBoundSolver mip = new BranchAndBoundSolver(lp);
+		double[] values = {8.0, 11.0, 6.0, 4.0};
+		for (int j = 0; j < values.length; ++j) {
+			mip.setInteger(lp.addColumn(0.0, 1.0, -values[j]));
+		}
+		row(lp, new double[] {5.0, 7.0, 4.0, 3.0}, -SimplexSolver.INF, 14.0);
+		return mip;
+	}
+
+	@Test
+	public void knapsackOptimum() {
+		BranchAndBoundSolver mip = knapsack();
+		assertEquals(MIPStatus.OPTIMAL, mip.solve());
+		assertEquals(-21.0, mip.getObjective(), TOL);
+		double[] x = mip.getValues();
+		assertEquals(0.0, x[0], TOL);
+		assertEquals(1.0, x[1], TOL);
+		assertEquals(1.0, x[2], TOL);
+		assertEquals(1.0, x[3], TOL);
+	}
+
+	@Test
+	public void generalIntegers() {
+		// max y, -x + y <= 1, 3x + 2y <= 12, 2x + 3y <= 12: the LP optimum
+		// is (1.8, 2.8), the integer optima have y = 2
+		SimplexSolver lp = new SimplexSolver();
+		BranchAndBoundSolver mip = new BranchAndBoundSolver(lp);
+		mip.setInteger(lp.addColumn(0.0, SimplexSolver.INF, 0.0));
+		mip.setInteger(lp.addColumn(0.0, SimplexSolver.INF, -1.0));
+		row(lp, new double[] {-1.0, 1.0}, -SimplexSolver.INF, 1.0);
+		row(lp, new double[] {3.0, 2.0}, -SimplexSolver.INF, 12.0);
+		row(lp, new double[] {2.0, 3.0}, -SimplexSolver.INF, 12.0);
+		assertEquals(MIPStatus.OPTIMAL, mip.solve());
+		assertEquals(-2.0, mip.getObjective(), TOL);
+	}
+
+	@Test
+	public void integerInfeasible() {
+		// 2x = 1 has an LP solution but no integer one
+		SimplexSolver lp = new SimplexSolver();
+		BranchAndBoundSolver mip = new BranchAndBoundSolver(lp);
+		mip.setInteger(lp.addColumn(0.0, 5.0, 1.0));
+		row(lp, new double[] {2.0}, 1.0, 1.0);
+		assertEquals(MIPStatus.INFEASIBLE, mip.solve());
+	}
+
+	@Test
+	public void lpInfeasible() {
+		SimplexSolver lp = new SimplexSolver();
+		BranchAndBoundSolver mip = new BranchAndBoundSolver(lp);
+		mip.setInteger(lp.addColumn(0.0, 1.0, 1.0));
+		mip.setInteger(lp.addColumn(0.0, 1.0, 1.0));
+		row(lp, new double[] {1.0, 1.0}, 3.0, SimplexSolver.INF);
+		assertEquals(MIPStatus.INFEASIBLE, mip.solve());
+	}
+
+	@Test
+	public void unboundedNodeIsIncomplete() {
+		// the root LP is unbounded, nothing is proven
+		SimplexSolver lp = new SimplexSolver();
+		BranchAndBoundSolver mip = new BranchAndBoundSolver(lp);
+		mip.setInteger(lp.addColumn(0.0, SimplexSolver.INF, -1.0));
+		lp.addColumn(0.0, SimplexSolver.INF, 0.0);
+		row(lp, new double[] {1.0, -1.0}, -SimplexSolver.INF, 1.0);
+		assertEquals(MIPStatus.INCOMPLETE, mip.solve());
+	}
+
+	@Test
+	public void iterationLimitIsIncomplete() {
+		BranchAndBoundSolver mip = knapsack();
+		mip.getLP().setIterationLimit(1);
+		assertEquals(MIPStatus.INCOMPLETE, mip.solve());
+	}
+
+	/*
+	 * Enumeration as JavaSolverInterface does it: every integer point is
+	 * rejected and cut off with its supersets. The covers of {0, 1, 2} by
+	 * the pairs {0, 1}, {1, 2} are {1}, {0, 2}: min sum Ind, Ind0 + Ind1 >= 1
+	 * and Ind1 + Ind2 >= 1.
+	 */
+	@Test
+	public void enumerationOfMinimalCovers() {
+		final SimplexSolver lp = new SimplexSolver();
+		BranchAndBoundSolver mip = new BranchAndBoundSolver(lp);
+		for (int j = 0; j < 3; ++j) {
+			mip.setInteger(lp.addColumn(0.0, 1.0, 1.0));
+		}
+		row(lp, new double[] {1.0, 1.0, 0.0}, 1.0, SimplexSolver.INF);
+		row(lp, new double[] {0.0, 1.0, 1.0}, 1.0, SimplexSolver.INF);
+		final List<Set<Integer>> found = new ArrayList<Set<Integer>>();
+		mip.setIncumbentListener(new BranchAndBoundSolver.IncumbentListener() {
+			@Override
+			public boolean accept(double[] values, double objective) {
+				Set<Integer> set = new HashSet<Integer>();
+				int[] cols = new int[3];
+				double[] vals = new double[3];
+				int len = 0;
+				for (int j = 0; j < 3; ++j) {
+					if (values[j] > 0.5) {
+						set.add(j);
+						cols[len] = j;
+						vals[len++] = 1.0;
+					}
+				}
+				found.add(set);
+				lp.addRow(cols, vals, len, -SimplexSolver.INF, len - 1.0);
+				return false;
+			}
+		});
+		assertEquals(MIPStatus.INFEASIBLE, mip.solve());
+		// each point found is the LP optimum of its node, a minimal cover
+		Set<Set<Integer>> expected = new HashSet<Set<Integer>>();
+		expected.add(new HashSet<Integer>(Arrays.asList(1)));
+		expected.add(new HashSet<Integer>(Arrays.asList(0, 2)));
+		assertEquals(expected, new HashSet<Set<Integer>>(found));
+		assertEquals(2, found.size());
+		assertTrue(mip.getNbNodes() > 0);
+	}
+}
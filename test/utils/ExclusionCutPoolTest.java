@@ -0,0 +1,144 @@
+package utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/*
+ * ExclusionCutPool against the scans of a list it replaces.
+ */
+public class ExclusionCutPoolTest {
+
+	@Test
+	public void subsumedCuts() {
+		ExclusionCutPool pool = new ExclusionCutPool();
+		int[] c012 = {2, 0, 1};
+		int[] c3 = {3};
+		int[] c01 = {1, 0};
+		assertTrue(pool.add(c012));
+		assertTrue(pool.add(c3));
+		List<int[]> pending = pool.takePending();
+		assertEquals(2, pending.size());
+		assertSame(c012, pending.get(0));
+		assertSame(c3, pending.get(1));
+		assertFalse(pool.add(new int[] {0, 1, 2}));
+		assertFalse(pool.add(new int[] {4, 3}));
+		assertTrue(pool.add(c01));
+		assertEquals(2, pool.size());
+		List<int[]> removed = pool.takeRemoved();
+		assertEquals(1, removed.size());
+		assertSame(c012, removed.get(0));
+		assertTrue(Arrays.equals(new int[] {0, 1}, pool.takePending().get(0)));
+		// {0, 1, 5} is forgotten before it reaches the model
+		int[] c5 = {5};
+		assertFalse(pool.add(new int[] {0, 1, 5}));
+		assertTrue(pool.add(new int[] {5, 6}));
+		assertTrue(pool.add(c5));
+		assertEquals(0, pool.takeRemoved().size());
+		pending = pool.takePending();
+		assertEquals(1, pending.size());
+		assertSame(c5, pending.get(0));
+		pool.clear();
+		assertEquals(0, pool.size());
+		assertTrue(pool.add(new int[] {0, 1, 2}));
+	}
+
+	private static boolean isSubset(int[] a, int[] b) {
+		for (int i : a) {
+			boolean found = false;
+			for (int j : b) {
+				found |= i == j;
+			}
+			if (!found) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static void assertSameCuts(List<int[]> expected, List<int[]> found) {
+		assertEquals(expected.size(), found.size());
+		IdentityHashMap<int[], Boolean> cuts = new IdentityHashMap<int[], Boolean>();
+		for (int[] c : expected) {
+			cuts.put(c, Boolean.TRUE);
+		}
+		for (int[] c : found) {
+			assertTrue(cuts.containsKey(c));
+		}
+	}
+
+	@Test
+	public void randomAdds() {
+		Random random = new Random(1);
+		for (int n = 0; n < 500; ++n) {
+			int nbSources = 6 + random.nextInt(20);
+			ExclusionCutPool pool = new ExclusionCutPool();
+			List<int[]> active = new LinkedList<int[]>();
+			List<int[]> pending = new ArrayList<int[]>();
+			List<int[]> removed = new ArrayList<int[]>();
+			for (int k = 0; k < 80; ++k) {
+				List<Integer> indices = new ArrayList<Integer>();
+				int size = random.nextInt(6);
+				while (indices.size() < size) {
+					int i = random.nextInt(nbSources);
+					if (!indices.contains(i)) {
+						indices.add(i);
+					}
+				}
+				int[] cut = new int[size];
+				for (int i = 0; i < size; ++i) {
+					cut[i] = indices.get(i);
+				}
+
+				boolean subsumed = false;
+				for (int[] c : active) {
+					subsumed |= isSubset(c, cut);
+				}
+				if (!subsumed) {
+					Iterator<int[]> it = active.iterator();
+					while (it.hasNext()) {
+						int[] c = it.next();
+						if (isSubset(cut, c)) {
+							it.remove();
+							if (!pending.remove(c)) {
+								removed.add(c);
+							}
+						}
+					}
+					active.add(cut);
+					pending.add(cut);
+				}
+				assertEquals(!subsumed, pool.add(cut));
+				assertEquals(active.size(), pool.size());
+				if (random.nextInt(10) == 0) {
+					List<int[]> found = pool.takePending();
+					assertEquals(pending.size(), found.size());
+					for (int i = 0; i < pending.size(); ++i) {
+						assertSame(pending.get(i), found.get(i));
+					}
+					assertSameCuts(removed, pool.takeRemoved());
+					pending.clear();
+					removed.clear();
+				}
+			}
+			assertSameCuts(pending, pool.takePending());
+			assertSameCuts(removed, pool.takeRemoved());
+			Collections.shuffle(active, random);
+			for (int[] c : active) {
+				assertFalse(pool.add(c.clone()));
+			}
+		}
+	}
+}
@@ -0,0 +1,228 @@
+package utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import metabolicNetwork.Compound;
+import metabolicNetwork.MetabolicNetwork;
+import metabolicNetwork.Reaction;
+
+import org.junit.Test;
+
+import application.InputParameters;
+import application.PrecursorSet;
+
+/*
+ * Enumeration of the minimal precursor sets of a network small enough for
+ * its sets to be known by hand:
+ *   R1: S1 -> T
+ *   R2: S2 + S3 -> T
+ *   R3: S2 -> I
+ *   R4: I + S1 -> T
+ *   R5: I + S4 -> S3
+ *   R6: 2 S4 -> J       (J is never consumed, S4 alone is no solution)
+ * The minimal sets of T are {S1}, {S2, S3} and {S2, S4}; {S1, S2} is a set
+ * but not a minimal one.
+ */
+public class JavaSolverInterfaceTest {
+
+	private static final double BIGM = 1000.0;
+	private static final double EPSILON1 = 0.1;
+
+	private MetabolicNetwork network;
+	private List<Compound> sources;
+	private Compound target;
+
+	private Compound compound(String id, boolean source) {
+		Compound c = this.network.addCompound(id, id, "c");
+		if (source) {
+			c.setUserDefinedPrecursor(true);
+			this.sources.add(c);
+		}
+		return c;
+	}
+
+	private void reaction(String id, Compound[] substrates, double[] coefs, Compound product) {
+		Reaction r = this.network.addNewReaction(id, id, false);
+		for (int k = 0; k < substrates.length; ++k) {
+			r.addSubstrate(substrates[k], coefs[k]);
+		}
+		r.addProduct(product, 1.0);
+	}
+
+	private void buildNetwork() {
+		this.network = new MetabolicNetwork();
+		this.sources = new ArrayList<Compound>();
+		Compound s1 = compound("S1", true);
+		Compound s2 = compound("S2", true);
+		Compound s3 = compound("S3", true);
+		Compound s4 = compound("S4", true);
+		Compound i = compound("I", false);
+		Compound j = compound("J", false);
+		this.target = compound("T", false);
+		reaction("R1", new Compound[] {s1}, new double[] {1.0}, this.target);
+		reaction("R2", new Compound[] {s2, s3}, new double[] {1.0, 1.0}, this.target);
+		reaction("R3", new Compound[] {s2}, new double[] {1.0}, i);
+		reaction("R4", new Compound[] {i, s1}, new double[] {1.0, 1.0}, this.target);
+		reaction("R5", new Compound[] {i, s4}, new double[] {1.0, 1.0}, s3);
+		reaction("R6", new Compound[] {s4}, new double[] {2.0}, j);
+	}
+
+	private static Set<Set<String>> ids(List<PrecursorSet> sets) {
+		Set<Set<String>> ids = new HashSet<Set<String>>();
+		for (PrecursorSet s : sets) {
+			Set<String> set = new HashSet<String>();
+			for (Compound c : s.getPrecursors()) {
+				set.add(c.getId());
+			}
+			ids.add(set);
+		}
+		return ids;
+	}
+
+	private static Set<Set<String>> expected() {
+		Set<Set<String>> expected = new HashSet<Set<String>>();
+		expected.add(new HashSet<String>(Arrays.asList("S1")));
+		expected.add(new HashSet<String>(Arrays.asList("S2", "S3")));
+		expected.add(new HashSet<String>(Arrays.asList("S2", "S4")));
+		return expected;
+	}
+
+	@Test
+	public void singleSearchEnumeration() {
+		buildNetwork();
+		JavaSolverInterface solver = new JavaSolverInterface(this.network);
+		solver.startup();
+		List<PrecursorSet> sets = solver.enumerateMinimalPrecursors(this.sources, this.target, BIGM, EPSILON1);
+		solver.finish();
+		assertEquals(expected(), ids(sets));
+		assertEquals(3, sets.size());
+	}
+
+	/*
+	 * Without S4 and R1: {S2, S3}, and {S1, S2} through R3 and R4. The
+	 * fixing is undone by the next fixSources on the same model.
+	 */
+	@Test
+	public void fixedSourcesAndReactions() {
+		buildNetwork();
+		JavaSolverInterface solver = new JavaSolverInterface(this.network);
+		solver.startup();
+		List<Compound> excluded = new ArrayList<Compound>();
+		excluded.add(this.network.getCompounds().get("S4"));
+		List<Reaction> blocked = new ArrayList<Reaction>();
+		blocked.add(this.network.getReactions().get("R1"));
+		solver.fixSources(excluded, new ArrayList<Compound>(), blocked);
+		List<PrecursorSet> sets = solver.enumerateMinimalPrecursors(this.sources, this.target, BIGM, EPSILON1);
+		Set<Set<String>> expected = new HashSet<Set<String>>();
+		expected.add(new HashSet<String>(Arrays.asList("S2", "S3")));
+		expected.add(new HashSet<String>(Arrays.asList("S1", "S2")));
+		assertEquals(expected, ids(sets));
+
+		solver.clearSolutionExclusions();
+		solver.fixSources(new ArrayList<Compound>(), new ArrayList<Compound>(), new ArrayList<Reaction>());
+		sets = solver.enumerateMinimalPrecursors(this.sources, this.target, BIGM, EPSILON1);
+		solver.finish();
+		assertEquals(expected(), ids(sets));
+	}
+
+	/*
+	 * I is not a source: {S1, I} and {I} can not be points of the model and
+	 * must exclude nothing, neither {S1} nor everything.
+	 */
+	@Test
+	public void exclusionOfANonSource() {
+		buildNetwork();
+		JavaSolverInterface solver = new JavaSolverInterface(this.network);
+		solver.startup();
+		Compound i = this.network.getCompounds().get("I");
+		PrecursorSet withSource = new PrecursorSet();
+		withSource.addPrecursor(this.network.getCompounds().get("S1"));
+		withSource.addPrecursor(i);
+		PrecursorSet alone = new PrecursorSet();
+		alone.addPrecursor(i);
+		solver.restoreSolutions(Arrays.asList(withSource, alone), 0);
+		List<PrecursorSet> sets = solver.enumerateMinimalPrecursors(this.sources, this.target, BIGM, EPSILON1);
+		solver.finish();
+		assertEquals(expected(), ids(sets));
+	}
+
+	@Test
+	public void oneByOneEnumeration() {
+		buildNetwork();
+		JavaSolverInterface solver = new JavaSolverInterface(this.network);
+		solver.startup();
+		List<PrecursorSet> sets = new ArrayList<PrecursorSet>();
+		PrecursorSet last = null;
+		for (int k = 0; k < 3; ++k) {
+			last = solver.findNextMinimalPrecursor(this.sources, this.target, last, BIGM, EPSILON1);
+			sets.add(last);
+		}
+		assertNull(solver.findNextMinimalPrecursor(this.sources, this.target, last, BIGM, EPSILON1));
+		solver.finish();
+		assertEquals(expected(), ids(sets));
+	}
+
+	/*
+	 * Each integer point takes a few milliseconds and the time limit is 0:
+	 * the populate emulation is stopped right after its first point, which
+	 * may not be of the minimum size. It must give up instead of raising the
+	 * size row, and the one at a time search, as Sasita does, still finds
+	 * every minimal set.
+	 */
+	@Test
+	public void populateTimeLimit() {
+		buildNetwork();
+		JavaSolverInterface solver = new JavaSolverInterface(this.network);
+		solver.startup();
+		// builds the model, then forgets the set found
+		solver.findNextMinimalPrecursor(this.sources, this.target, null, BIGM, EPSILON1);
+		solver.clearSolutionExclusions();
+		solver.mip.setIncumbentListener(new BranchAndBoundSolver.IncumbentListener() {
+			@Override
+			public boolean accept(double[] values, double objective) {
+				try {
+					Thread.sleep(5);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return true;
+			}
+		});
+		int tiLim = InputParameters.TiLim;
+		InputParameters.TiLim = 0;
+		List<PrecursorSet> sets = new ArrayList<PrecursorSet>();
+		try {
+			List<PrecursorSet> last = null;
+			while (true) {
+				List<PrecursorSet> batch = solver.findNextsMinimalPrecursor(this.sources, this.target, last,
+						BIGM, EPSILON1);
+				if (batch == null) {
+					break;
+				}
+				for (PrecursorSet s : batch) {
+					assertTrue(sets.isEmpty() || s.getPrecursors().size() >= sets.get(sets.size() - 1).getPrecursors().size());
+				}
+				sets.addAll(batch);
+				last = batch;
+			}
+			PrecursorSet lastSolution = sets.isEmpty() ? null : sets.get(sets.size() - 1);
+			while ((lastSolution = solver.findNextMinimalPrecursor(this.sources, this.target, lastSolution,
+					BIGM, EPSILON1)) != null) {
+				sets.add(lastSolution);
+			}
+		} finally {
+			InputParameters.TiLim = tiLim;
+			solver.finish();
+		}
+		assertEquals(expected(), ids(sets));
+		assertEquals(3, sets.size());
+	}
+}
@@ -0,0 +1,181 @@
+package utils;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import utils.SimplexSolver.LPStatus;
+
+/*
+ * Small LPs whose status and optimum are known by hand.
+ */
+public class SimplexSolverTest {
+
+	private static final double TOL = 1e-7;
+
+	private static int row(SimplexSolver lp, double[] vals, double lo, double hi) {
+		int[] cols = new int[vals.length];
+		for (int j = 0; j < vals.length; ++j) {
+			cols[j] = j;
+		}
+		return lp.addRow(cols, vals, lo, hi);
+	}
+
+	@Test
+	public void optimalVertex() {
+		// min -x - y, x + 2y <= 4, 3x + y <= 6: x = 8/5, y = 6/5
+		SimplexSolver lp = new SimplexSolver();
+		lp.addColumn(0.0, SimplexSolver.INF, -1.0);
+		lp.addColumn(0.0, SimplexSolver.INF, -1.0);
+		row(lp, new double[] {1.0, 2.0}, -SimplexSolver.INF, 4.0);
+		row(lp, new double[] {3.0, 1.0}, -SimplexSolver.INF, 6.0);
+		assertEquals(LPStatus.OPTIMAL, lp.solve());
+		assertEquals(-14.0 / 5.0, lp.getObjective(), TOL);
+		assertEquals(8.0 / 5.0, lp.getValue(0), TOL);
+		assertEquals(6.0 / 5.0, lp.getValue(1), TOL);
+	}
+
+	@Test
+	public void equalityRows() {
+		// min x + 2y + 3z, x + y + z = 1, x - y = 0: x = y = 1/2
+		SimplexSolver lp = new SimplexSolver();
+		lp.addColumn(0.0, SimplexSolver.INF, 1.0);
+		lp.addColumn(0.0, SimplexSolver.INF, 2.0);
+		lp.addColumn(0.0, SimplexSolver.INF, 3.0);
+		row(lp, new double[] {1.0, 1.0, 1.0}, 1.0, 1.0);
+		row(lp, new double[] {1.0, -1.0, 0.0}, 0.0, 0.0);
+		assertEquals(LPStatus.OPTIMAL, lp.solve());
+		assertEquals(1.5, lp.getObjective(), TOL);
+		assertEquals(0.0, lp.getValue(2), TOL);
+	}
+
+	@Test
+	public void infeasible() {
+		// x + y >= 3 with x and y in [0, 1]
+		SimplexSolver lp = new SimplexSolver();
+		lp.addColumn(0.0, 1.0, 1.0);
+		lp.addColumn(0.0, 1.0, 1.0);
+		row(lp, new double[] {1.0, 1.0}, 3.0, SimplexSolver.INF);
+		assertEquals(LPStatus.INFEASIBLE, lp.solve());
+	}
+
+	@Test
+	public void infeasibleRows() {
+		// x - y >= 1 and y - x >= 1
+		SimplexSolver lp = new SimplexSolver();
+		lp.addColumn(0.0, 10.0, 0.0);
+		lp.addColumn(0.0, 10.0, 0.0);
+		row(lp, new double[] {1.0, -1.0}, 1.0, SimplexSolver.INF);
+		row(lp, new double[] {-1.0, 1.0}, 1.0, SimplexSolver.INF);
+		assertEquals(LPStatus.INFEASIBLE, lp.solve());
+	}
+
+	@Test
+	public void unbounded() {
+		// min -x, x - y <= 1, both unbounded above
+		SimplexSolver lp = new SimplexSolver();
+		lp.addColumn(0.0, SimplexSolver.INF, -1.0);
+		lp.addColumn(0.0, SimplexSolver.INF, 0.0);
+		row(lp, new double[] {1.0, -1.0}, -SimplexSolver.INF, 1.0);
+		assertEquals(LPStatus.UNBOUNDED, lp.solve());
+	}
+
+	@Test
+	public void degenerateCycling() {
+		// Beale's example, the textbook simplex cycles on it without an
+		// anti-cycling rule: optimum -5/4 at x0 = 1, x2 = 1
+		SimplexSolver lp = new SimplexSolver();
+		lp.addColumn(0.0, SimplexSolver.INF, -0.75);
+		lp.addColumn(0.0, SimplexSolver.INF, 20.0);
+		lp.addColumn(0.0, SimplexSolver.INF, -0.5);
+		lp.addColumn(0.0, SimplexSolver.INF, 6.0);
+		row(lp, new double[] {0.25, -8.0, -1.0, 9.0}, -SimplexSolver.INF, 0.0);
+		row(lp, new double[] {0.5, -12.0, -0.5, 3.0}, -SimplexSolver.INF, 0.0);
+		row(lp, new double[] {0.0, 0.0, 1.0, 0.0}, -SimplexSolver.INF, 1.0);
+		assertEquals(LPStatus.OPTIMAL, lp.solve());
+		assertEquals(-1.25, lp.getObjective(), TOL);
+		assertEquals(1.0, lp.getValue(0), TOL);
+		assertEquals(1.0, lp.getValue(2), TOL);
+	}
+
+	@Test
+	public void degenerateVertex() {
+		// four rows tight at the optimum (1, 1)
+		SimplexSolver lp = new SimplexSolver();
+		lp.addColumn(0.0, SimplexSolver.INF, -1.0);
+		lp.addColumn(0.0, SimplexSolver.INF, -1.0);
+		row(lp, new double[] {1.0, 1.0}, -SimplexSolver.INF, 2.0);
+		row(lp, new double[] {1.0, 0.0}, -SimplexSolver.INF, 1.0);
+		row(lp, new double[] {0.0, 1.0}, -SimplexSolver.INF, 1.0);
+		row(lp, new double[] {2.0, 1.0}, -SimplexSolver.INF, 3.0);
+		assertEquals(LPStatus.OPTIMAL, lp.solve());
+		assertEquals(-2.0, lp.getObjective(), TOL);
+	}
+
+	@Test
+	public void boundFlips() {
+		// the optimum is on the column bounds, no row is tight
+		SimplexSolver lp = new SimplexSolver();
+		lp.addColumn(0.0, 2.0, -1.0);
+		lp.addColumn(0.0, 3.0, -1.0);
+		lp.addColumn(-2.0, 2.0, 1.0);
+		row(lp, new double[] {1.0, 1.0, 1.0}, -SimplexSolver.INF, 10.0);
+		assertEquals(LPStatus.OPTIMAL, lp.solve());
+		assertEquals(-7.0, lp.getObjective(), TOL);
+		assertEquals(2.0, lp.getValue(0), TOL);
+		assertEquals(3.0, lp.getValue(1), TOL);
+		assertEquals(-2.0, lp.getValue(2), TOL);
+
+		// solved again from the previous basis
+		lp.setColumnBounds(0, 1.0, 1.0);
+		lp.setColumnBounds(2, 0.0, 2.0);
+		assertEquals(LPStatus.OPTIMAL, lp.solve());
+		assertEquals(-4.0, lp.getObjective(), TOL);
+		assertEquals(1.0, lp.getValue(0), TOL);
+		assertEquals(0.0, lp.getValue(2), TOL);
+	}
+
+	@Test
+	public void changedRowBounds() {
+		// min x + y, x + y >= lo with x, y in [0, 1]
+		SimplexSolver lp = new SimplexSolver();
+		lp.addColumn(0.0, 1.0, 1.0);
+		lp.addColumn(0.0, 1.0, 1.0);
+		int r = row(lp, new double[] {1.0, 1.0}, 1.5, SimplexSolver.INF);
+		assertEquals(LPStatus.OPTIMAL, lp.solve());
+		assertEquals(1.5, lp.getObjective(), TOL);
+		assertEquals(1.5, lp.getRowActivity(r), TOL);
+
+		lp.setRowBounds(r, 3.0, SimplexSolver.INF);
+		assertEquals(LPStatus.INFEASIBLE, lp.solve());
+
+		lp.setRowBounds(r, 0.5, SimplexSolver.INF);
+		assertEquals(LPStatus.OPTIMAL, lp.solve());
+		assertEquals(0.5, lp.getObjective(), TOL);
+	}
+
+	@Test
+	public void removedRows() {
+		SimplexSolver lp = new SimplexSolver();
+		lp.addColumn(0.0, 4.0, -1.0);
+		row(lp, new double[] {1.0}, -SimplexSolver.INF, 3.0);
+		int cut = row(lp, new double[] {1.0}, -SimplexSolver.INF, 1.0);
+		assertEquals(LPStatus.OPTIMAL, lp.solve());
+		assertEquals(-1.0, lp.getObjective(), TOL);
+
+		lp.removeRowsFrom(cut);
+		assertEquals(LPStatus.OPTIMAL, lp.solve());
+		assertEquals(-3.0, lp.getObjective(), TOL);
+	}
+
+	@Test
+	public void iterationLimit() {
+		SimplexSolver lp = new SimplexSolver();
+		lp.addColumn(0.0, SimplexSolver.INF, -1.0);
+		lp.addColumn(0.0, SimplexSolver.INF, -1.0);
+		row(lp, new double[] {1.0, 2.0}, -SimplexSolver.INF, 4.0);
+		row(lp, new double[] {3.0, 1.0}, -SimplexSolver.INF, 6.0);
+		lp.setIterationLimit(1);
+		assertEquals(LPStatus.ITERATION_LIMIT, lp.solve());
+	}
+}